@@ -254,6 +254,7 @@ public class Router implements Lifecycle, ApplicationContextAware, BeanNameAware
 	public void init() throws Exception {
 		for (Rule rule : getRuleManager().getRules())
 			rule.init(this);
+		getRuleManager().invalidateIndex();
 		transport.init(this);
 	}
 
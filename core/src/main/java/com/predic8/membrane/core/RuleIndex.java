@@ -0,0 +1,329 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.predic8.membrane.core.rules.Rule;
+import com.predic8.membrane.core.rules.RuleKey;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+
+/**
+ * A compiled routing table for {@link RuleManager#getMatchingRule(String, String, String, String, int, String)}.
+ *
+ * The rules are bucketed by port, host name (exact names first, then names containing wildcards), method and path
+ * prefix. A lookup collects the rules from the buckets the request falls into, which is a superset of the matching
+ * rules, and checks them in their original order using the same predicate as the linear scan. Therefore the first match
+ * is always the same as the one found by checking every rule.
+ *
+ * The table is immutable: It has to be rebuilt when the list of rules or one of the rule keys changes.
+ */
+class RuleIndex {
+
+	private static final ThreadLocal<IntList> CANDIDATES = new ThreadLocal<IntList>() {
+		@Override
+		protected IntList initialValue() {
+			return new IntList();
+		}
+	};
+
+	private final Rule[] rules;
+	private final int modCount;
+	private final int generation;
+
+	private final HashMap<Integer, HostLevel> byPort = new HashMap<Integer, HostLevel>();
+	/** rules listening on any port, used for requests on a port without specific rules */
+	private final HostLevel anyPort = new HostLevel();
+	/** all rules, used for requests received on an unknown port (-1) */
+	private final HostLevel all = new HostLevel();
+
+	RuleIndex(Rule[] rules, int modCount, int generation) {
+		this.rules = rules;
+		this.modCount = modCount;
+		this.generation = generation;
+
+		for (int i = 0; i < rules.length; i++) {
+			int port = rules[i].getKey().getPort();
+			if (port != -1 && !byPort.containsKey(port))
+				byPort.put(port, new HostLevel());
+		}
+		for (int i = 0; i < rules.length; i++) {
+			RuleKey key = rules[i].getKey();
+			all.add(key, i);
+			if (key.getPort() == -1) {
+				anyPort.add(key, i);
+				for (HostLevel level : byPort.values())
+					level.add(key, i);
+			} else {
+				byPort.get(key.getPort()).add(key, i);
+			}
+		}
+	}
+
+	int getModCount() {
+		return modCount;
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+
+	Rule getMatchingRule(String hostHeader, String method, String uri, String version, int port, String localIP) {
+		HostLevel level = port == -1 ? all : byPort.get(port);
+		if (level == null)
+			level = anyPort;
+
+		IntList candidates = CANDIDATES.get();
+		candidates.clear();
+		if (hostHeader != null) {
+			MethodLevel exact = level.exact.get(toLowerCase(getHostName(hostHeader)));
+			if (exact != null)
+				exact.collect(method, uri, candidates);
+			level.patterns.collect(method, uri, candidates);
+		}
+		level.any.collect(method, uri, candidates);
+		candidates.sort();
+
+		int last = -1;
+		for (int i = 0; i < candidates.size; i++) {
+			int index = candidates.values[i];
+			if (index == last)
+				continue;
+			last = index;
+			if (RuleManager.matches(rules[index], hostHeader, method, uri, version, port, localIP))
+				return rules[index];
+		}
+		return null;
+	}
+
+	/**
+	 * Host names and paths are only indexed for plain {@link ServiceProxyKey}s: Other keys may implement
+	 * {@link RuleKey#matchesHostHeader(String)} and {@link RuleKey#matchesPath(String)} differently.
+	 */
+	private static boolean isIndexable(RuleKey key) {
+		return key.getClass() == ServiceProxyKey.class;
+	}
+
+	/**
+	 * Same as the host name extraction in {@link ServiceProxyKey#matchesHostHeader(String)}.
+	 */
+	private static String getHostName(String hostHeader) {
+		int colon = hostHeader.indexOf(':');
+		return colon == -1 ? hostHeader : hostHeader.substring(0, colon);
+	}
+
+	/**
+	 * Only folds ASCII letters, like a {@link java.util.regex.Pattern#CASE_INSENSITIVE} host pattern does.
+	 */
+	static String toLowerCase(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				char[] chars = s.toCharArray();
+				for (int j = i; j < chars.length; j++)
+					if (chars[j] >= 'A' && chars[j] <= 'Z')
+						chars[j] += 'a' - 'A';
+				return new String(chars);
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Returns a string every input matched by the regular expression starts with. The result may be shorter than
+	 * necessary (down to the empty string), but never too long.
+	 */
+	static String getLiteralPrefix(String regex) {
+		if (regex.indexOf('|') != -1)
+			return "";
+		StringBuilder prefix = new StringBuilder();
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			switch (c) {
+			case '?':
+			case '*':
+			case '{':
+				// the previous character is optional
+				if (prefix.length() > 0)
+					prefix.setLength(prefix.length() - 1);
+				return prefix.toString();
+			case '\\':
+			case '[':
+			case ']':
+			case '(':
+			case ')':
+			case '}':
+			case '.':
+			case '+':
+			case '^':
+			case '$':
+				return prefix.toString();
+			default:
+				prefix.append(c);
+			}
+		}
+		return prefix.toString();
+	}
+
+	private static class HostLevel {
+		final HashMap<String, MethodLevel> exact = new HashMap<String, MethodLevel>();
+		/** rules with host names containing wildcards */
+		final MethodLevel patterns = new MethodLevel();
+		/** rules matching any host, and rules whose host matching is not indexed */
+		final MethodLevel any = new MethodLevel();
+
+		void add(RuleKey key, int index) {
+			if (!isIndexable(key) || ((ServiceProxyKey) key).isHostWildcard()) {
+				any.add(key, index);
+				return;
+			}
+			boolean added = false;
+			for (String host : key.getHost().split(" ")) {
+				if (host.length() == 0)
+					continue;
+				added = true;
+				if (host.indexOf('*') != -1) {
+					patterns.add(key, index);
+				} else {
+					String name = toLowerCase(host);
+					MethodLevel level = exact.get(name);
+					if (level == null)
+						exact.put(name, level = new MethodLevel());
+					level.add(key, index);
+				}
+			}
+			if (!added)
+				patterns.add(key, index);
+		}
+	}
+
+	private static class MethodLevel {
+		final HashMap<String, PathLevel> exact = new HashMap<String, PathLevel>();
+		final PathLevel any = new PathLevel();
+
+		void add(RuleKey key, int index) {
+			if (key.isMethodWildcard()) {
+				any.add(key, index);
+				return;
+			}
+			PathLevel level = exact.get(key.getMethod());
+			if (level == null)
+				exact.put(key.getMethod(), level = new PathLevel());
+			level.add(key, index);
+		}
+
+		void collect(String method, String uri, IntList candidates) {
+			PathLevel level = exact.get(method);
+			if (level != null)
+				level.collect(uri, candidates);
+			any.collect(uri, candidates);
+		}
+	}
+
+	private static class PathLevel {
+		/** rules matching any path, and rules whose path matching is not indexed */
+		final IntList any = new IntList();
+		/** rules matching only paths starting with a prefix, by prefix */
+		final TrieNode prefixes = new TrieNode();
+		final IntList prefixed = new IntList();
+
+		void add(RuleKey key, int index) {
+			if (!key.isUsePathPattern() || !isIndexable(key) || key.getPath() == null) {
+				any.add(index);
+				return;
+			}
+			String prefix = key.isPathRegExp() ? getLiteralPrefix(key.getPath()) : key.getPath();
+			TrieNode node = prefixes;
+			for (int i = 0; i < prefix.length(); i++)
+				node = node.getOrCreateChild(prefix.charAt(i));
+			node.rules.add(index);
+			prefixed.add(index);
+		}
+
+		void collect(String uri, IntList candidates) {
+			candidates.addAll(any);
+			if (uri == null) {
+				candidates.addAll(prefixed);
+				return;
+			}
+			TrieNode node = prefixes;
+			candidates.addAll(node.rules);
+			for (int i = 0; i < uri.length(); i++) {
+				node = node.getChild(uri.charAt(i));
+				if (node == null)
+					return;
+				candidates.addAll(node.rules);
+			}
+		}
+	}
+
+	private static class TrieNode {
+		char[] chars = new char[0];
+		TrieNode[] children = new TrieNode[0];
+		final IntList rules = new IntList();
+
+		TrieNode getChild(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			return i < 0 ? null : children[i];
+		}
+
+		TrieNode getOrCreateChild(char c) {
+			int i = Arrays.binarySearch(chars, c);
+			if (i >= 0)
+				return children[i];
+			i = -i - 1;
+			char[] newChars = new char[chars.length + 1];
+			TrieNode[] newChildren = new TrieNode[chars.length + 1];
+			System.arraycopy(chars, 0, newChars, 0, i);
+			System.arraycopy(children, 0, newChildren, 0, i);
+			System.arraycopy(chars, i, newChars, i + 1, chars.length - i);
+			System.arraycopy(children, i, newChildren, i + 1, chars.length - i);
+			newChars[i] = c;
+			TrieNode child = newChildren[i] = new TrieNode();
+			chars = newChars;
+			children = newChildren;
+			return child;
+		}
+	}
+
+	private static class IntList {
+		int[] values = new int[8];
+		int size;
+
+		void add(int value) {
+			if (size > 0 && values[size - 1] == value)
+				return;
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		void addAll(IntList other) {
+			if (size + other.size > values.length)
+				values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+			System.arraycopy(other.values, 0, values, size, other.size);
+			size += other.size;
+		}
+
+		void sort() {
+			Arrays.sort(values, 0, size);
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +45,7 @@ public class RuleManager {
 
 	private Router router;
 
-	private List<Rule> rules = new Vector<Rule>();
+	private final RuleList rules = new RuleList();
 	private List<RuleDefinitionSource> ruleSources = new ArrayList<RuleManager.RuleDefinitionSource>();
 	private Set<IRuleChangeListener> listeners = new HashSet<IRuleChangeListener>();
 
@@ -55,6 +56,28 @@ public class RuleManager {
 	private String defaultPath = ".*";
 	private int defaultMethod = 4;
 
+	private volatile RuleIndex index;
+	/** incremented when rule keys might have changed without changing the list of rules */
+	private final AtomicInteger indexGeneration = new AtomicInteger();
+
+	/**
+	 * Exposes {@link Vector#modCount}, so that the {@link RuleIndex} can be rebuilt when the list is modified, even if
+	 * this happens through {@link #getRules()}.
+	 */
+	private static class RuleList extends Vector<Rule> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Rule set(int index, Rule element) {
+			modCount++;
+			return super.set(index, element);
+		}
+
+		int getModCount() {
+			return modCount;
+		}
+	}
+
 	public enum RuleDefinitionSource {
 		/** rule defined in the spring context that created the router */
 		SPRING,
@@ -157,6 +180,8 @@ public class RuleManager {
 			throw new IOException(e);
 		}
 
+		invalidateIndex();
+
 		for (Rule rule : rules) {
 			IpPort ipPort = new IpPort(rule.getKey().getIp(), rule.getKey().getPort());
 			router.getTransport().openPort(rule.getKey().getIp(), rule.getKey().getPort(), sslProviders.get(ipPort));
@@ -203,6 +228,7 @@ public class RuleManager {
 	}
 
 	public void ruleChanged(Rule rule) {
+		invalidateIndex();
 		for (IRuleChangeListener listener : listeners) {
 			listener.ruleUpdated(rule);
 		}
@@ -210,31 +236,56 @@ public class RuleManager {
 	}
 
 	public Rule getMatchingRule(String hostHeader, String method, String uri, String version, int port, String localIP) {
-		for (Rule rule : rules) {
-			RuleKey key = rule.getKey();
-
-			log.debug("Host from rule: " + key.getHost() + ";   Host from parameter rule key: " + hostHeader);
-
-			if (!rule.isActive())
-				continue;
-			if (!key.matchesVersion(version))
-				continue;
-			if (key.getIp() != null && !key.getIp().equals(localIP))
-				continue;
-			if (!key.matchesHostHeader(hostHeader))
-				continue;
-			if (key.getPort() != -1 && port != -1 && key.getPort() != port)
-				continue;
-			if (!key.getMethod().equals(method) && !key.isMethodWildcard())
-				continue;
-			if (key.isUsePathPattern() && !key.matchesPath(uri))
-				continue;
-			if (!key.complexMatch(hostHeader, method, uri, version, port, localIP))
-				continue;
-
-			return rule;
+		return getIndex().getMatchingRule(hostHeader, method, uri, version, port, localIP);
+	}
+
+	static boolean matches(Rule rule, String hostHeader, String method, String uri, String version, int port, String localIP) {
+		RuleKey key = rule.getKey();
+
+		log.debug("Host from rule: " + key.getHost() + ";   Host from parameter rule key: " + hostHeader);
+
+		if (!rule.isActive())
+			return false;
+		if (!key.matchesVersion(version))
+			return false;
+		if (key.getIp() != null && !key.getIp().equals(localIP))
+			return false;
+		if (!key.matchesHostHeader(hostHeader))
+			return false;
+		if (key.getPort() != -1 && port != -1 && key.getPort() != port)
+			return false;
+		if (!key.getMethod().equals(method) && !key.isMethodWildcard())
+			return false;
+		if (key.isUsePathPattern() && !key.matchesPath(uri))
+			return false;
+		if (!key.complexMatch(hostHeader, method, uri, version, port, localIP))
+			return false;
+
+		return true;
+	}
+
+	private RuleIndex getIndex() {
+		RuleIndex index = this.index;
+		int generation = indexGeneration.get();
+		if (index != null && index.getModCount() == rules.getModCount() && index.getGeneration() == generation)
+			return index;
+		Rule[] snapshot;
+		int modCount;
+		synchronized (rules) {
+			snapshot = rules.toArray(new Rule[rules.size()]);
+			modCount = rules.getModCount();
 		}
-		return null;
+		index = new RuleIndex(snapshot, modCount, generation);
+		this.index = index;
+		return index;
+	}
+
+	/**
+	 * Causes the routing table to be rebuilt before the next lookup. Has to be called when the keys of rules have
+	 * been modified.
+	 */
+	void invalidateIndex() {
+		indexGeneration.incrementAndGet();
 	}
 
 	public void addRuleChangeListener(IRuleChangeListener viewer) {
@@ -14,6 +14,7 @@
 
 package com.predic8.membrane.core.config.security;
 
+import com.predic8.membrane.annot.MCAttribute;
 import com.predic8.membrane.annot.MCChildElement;
 import com.predic8.membrane.annot.MCElement;
 
@@ -27,6 +28,10 @@ import com.predic8.membrane.annot.MCElement;
 public class KeyGenerator {
 
     private Key key;
+    private String keyAlgorithm = "RSA";
+    private int keyPoolSize = 4;
+    private int cacheSize = 100;
+    private String cacheDir;
 
     public Key getKey() {
         return key;
@@ -36,4 +41,60 @@ public class KeyGenerator {
     public void setKey(Key key) {
         this.key = key;
     }
+
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * @description The algorithm of the generated keys: "RSA" (2048 bit) or "EC" (ECDSA on the P-256 curve). EC keys
+     * are generated much faster. The certificates are always signed using the root CA's RSA key.
+     * @default RSA
+     */
+    @MCAttribute
+    public void setKeyAlgorithm(String keyAlgorithm) {
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    public int getKeyPoolSize() {
+        return keyPoolSize;
+    }
+
+    /**
+     * @description Number of key pairs generated in advance by a background thread, so that certificates for new
+     * domain names can be issued without generating a key during the TLS handshake. 0 disables the pool.
+     * @default 4
+     */
+    @MCAttribute
+    public void setKeyPoolSize(int keyPoolSize) {
+        this.keyPoolSize = keyPoolSize;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * @description Maximum number of generated certificates kept in memory.
+     * @default 100
+     */
+    @MCAttribute
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * @description Directory, in which generated keys and certificates are stored (one PKCS12 keystore per domain
+     * name, protected by the key's password), so that they survive restarts. As it contains private keys, the
+     * directory (if it does not exist yet) and the keystores are created accessible by their owner only. If not set,
+     * certificates are only kept in memory.
+     */
+    @MCAttribute
+    public void setCacheDir(String cacheDir) {
+        this.cacheDir = cacheDir;
+    }
 }
@@ -41,6 +41,8 @@ public class SSLParser {
 	private boolean showSSLExceptions = true;
 	private boolean useAsDefault = true;
 	private boolean useExperimentalHttp2;
+	private int sessionCacheSize = -1;
+	private int sessionTimeout = -1;
 
 	@Override
 	public boolean equals(Object obj) {
@@ -58,7 +60,9 @@ public class SSLParser {
 				&& Objects.equal(ignoreTimestampCheckFailure, other.ignoreTimestampCheckFailure)
 				&& Objects.equal(endpointIdentificationAlgorithm, other.endpointIdentificationAlgorithm)
 				&& Objects.equal(serverName, other.serverName)
-				&& Objects.equal(showSSLExceptions, other.showSSLExceptions);
+				&& Objects.equal(showSSLExceptions, other.showSSLExceptions)
+				&& sessionCacheSize == other.sessionCacheSize
+				&& sessionTimeout == other.sessionTimeout;
 	}
 
 
@@ -258,4 +262,34 @@ public class SSLParser {
 	public void setUseExperimentalHttp2(boolean useHttp2) {
 		this.useExperimentalHttp2 = useHttp2;
 	}
+
+	public int getSessionCacheSize() {
+		return sessionCacheSize;
+	}
+
+	/**
+	 * @description the maximum number of TLS sessions kept for resumption. 0 means no limit. If not set, the JVM
+	 *              default (20480) is used.
+	 * @default -1
+	 */
+	@MCAttribute
+	public void setSessionCacheSize(int sessionCacheSize) {
+		this.sessionCacheSize = sessionCacheSize;
+	}
+
+	public int getSessionTimeout() {
+		return sessionTimeout;
+	}
+
+	/**
+	 * @description the number of seconds, for which a TLS session may be resumed. 0 means no limit. If not set, the
+	 *              JVM default (86400) is used. (Whether stateless session tickets are issued instead of cache entries
+	 *              can only be configured JVM-wide using the system property
+	 *              <tt>jdk.tls.server.enableSessionTicketExtension</tt>.)
+	 * @default -1
+	 */
+	@MCAttribute
+	public void setSessionTimeout(int sessionTimeout) {
+		this.sessionTimeout = sessionTimeout;
+	}
 }
@@ -472,6 +472,10 @@ public abstract class AbstractExchange {
 	 */
 	public void detach() {
 		properties.clear();
+		if (request != null && request.getBody() != null)
+			request.getBody().deleteSpillFile();
+		if (response != null && response.getBody() != null)
+			response.getBody().deleteSpillFile();
 	}
 
 	public abstract long getId();
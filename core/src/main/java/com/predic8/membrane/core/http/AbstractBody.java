@@ -17,6 +17,7 @@ package com.predic8.membrane.core.http;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -40,15 +41,38 @@ import org.slf4j.LoggerFactory;
  * message's body), the incoming network stream's buffer is directly written to
  * the output stream. This allows Membrane to perform very well in this
  * situation.
+ *
+ * If a body has to be read and the system property
+ * <code>membrane.core.http.body.spillthreshold</code> is set, everything
+ * beyond the threshold (in bytes) is buffered in a temporary file instead of
+ * on the heap. The file is deleted by {@link #deleteSpillFile()}, which is
+ * called when the exchange is detached.
  */
 public abstract class AbstractBody {
 	private static final Logger log = LoggerFactory.getLogger(AbstractBody.class.getName());
 
+	/**
+	 * Content spilled to disk is buffered in chunks of this size.
+	 */
+	private static final int SPILL_CHUNK_LENGTH = 1024 * 1024;
+
+	/**
+	 * -1 disables spilling. Not final, so that tests can lower it.
+	 */
+	static long spillThreshold;
+
+	static {
+		String threshold = System.getProperty("membrane.core.http.body.spillthreshold");
+		spillThreshold = threshold == null ? -1 : Long.parseLong(threshold);
+	}
+
 	boolean read;
 
 	protected List<Chunk> chunks = new ArrayList<Chunk>();
 	protected List<MessageObserver> observers = new ArrayList<MessageObserver>(1);
 	private boolean wasStreamed = false;
+	private long bufferedLength;
+	private SpillFile spillFile;
 
 	public void read() throws IOException {
 		if (wasStreamed)
@@ -79,6 +103,103 @@ public abstract class AbstractBody {
 
 	protected abstract void readLocal() throws IOException;
 
+	/**
+	 * @return whether {@link #readChunk(InputStream, int)} should be used to read the body piecewise, as it might
+	 * have to be spilled to disk
+	 */
+	protected boolean isSpillingEnabled() {
+		return spillThreshold >= 0;
+	}
+
+	/**
+	 * Reads the next piece of the body and notifies the observers. The caller is responsible to add the chunk to
+	 * {@link #chunks}.
+	 *
+	 * Once the body has outgrown the spill threshold, the data is written to the spill file and the returned chunk
+	 * refers to it. Spilled chunks are at most {@link #SPILL_CHUNK_LENGTH} long.
+	 *
+	 * @param length the maximum number of bytes to read, or -1 to read as much as convenient until the end of the
+	 *               stream
+	 * @return the chunk (which may be shorter than <code>length</code>), or null, if the stream has ended
+	 */
+	protected Chunk readChunk(InputStream in, int length) throws IOException {
+		if (spillFile == null && bufferedLength + (length == -1 ? Body.BUFFERS.getBufferSize() : length) <= spillThreshold) {
+			byte[] content = new byte[length == -1 ? Body.BUFFERS.getBufferSize() : length];
+			int offset = 0;
+			int count;
+			while (offset < content.length && (count = in.read(content, offset, content.length - offset)) >= 0) {
+				offset += count;
+				if (length == -1)
+					break;
+			}
+			if (offset == 0 && content.length > 0)
+				return null;
+			if (offset < content.length)
+				content = Arrays.copyOf(content, offset);
+			bufferedLength += offset;
+			Chunk chunk = new Chunk(content);
+			for (MessageObserver observer : observers)
+				observer.bodyChunk(chunk);
+			return chunk;
+		}
+
+		if (spillFile == null)
+			spillFile = new SpillFile();
+		int remaining = length == -1 ? SPILL_CHUNK_LENGTH : Math.min(length, SPILL_CHUNK_LENGTH);
+		long position = spillFile.getSize();
+		byte[] buffer = Body.BUFFERS.acquire();
+		try {
+			while (remaining > 0) {
+				int count = in.read(buffer, 0, Math.min(buffer.length, remaining));
+				if (count < 0)
+					break;
+				spillFile.append(buffer, 0, count);
+				// the chunk refers to the spill file, which is deleted when the exchange is detached: observers
+				// have to copy the data they want to keep
+				for (MessageObserver observer : observers)
+					observer.bodyChunk(buffer, 0, count);
+				remaining -= count;
+			}
+		} finally {
+			Body.BUFFERS.release(buffer);
+		}
+		int spilled = (int)(spillFile.getSize() - position);
+		if (spilled == 0)
+			return null;
+		bufferedLength += spilled;
+		return new SpilledChunk(spillFile, position, spilled);
+	}
+
+	/**
+	 * @return whether part of the body has been spilled to disk
+	 */
+	public boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * Deletes the temporary file holding the part of the body exceeding the spill threshold. The body's content
+	 * is not available anymore afterwards.
+	 */
+	public void deleteSpillFile() {
+		if (spillFile == null)
+			return;
+		try {
+			spillFile.close();
+		} catch (IOException e) {
+			log.warn("Could not delete spill file.", e);
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the body kept on the heap
+	 */
+	public int getHeapLength() throws IOException {
+		if (spillFile == null)
+			return getLength();
+		return getLength() - (int) spillFile.getSize();
+	}
+
 	/**
 	 * Returns the body's content as a byte[] represenatation.
 	 *
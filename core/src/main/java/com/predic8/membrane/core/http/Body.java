@@ -38,11 +38,18 @@ public class Body extends AbstractBody {
 	private final static int BUFFER_SIZE;
 	private final static int MAX_CHUNK_LENGTH;
 
+	/**
+	 * Transfer buffers of {@link #BUFFER_SIZE} bytes, shared by all bodies.
+	 */
+	public final static BufferPool BUFFERS;
+
 	static {
 		String bufferSize = System.getProperty("membrane.core.http.body.buffersize");
 		BUFFER_SIZE = bufferSize == null ? 8192 : Integer.parseInt(bufferSize);
 		String maxChunkLength = System.getProperty("membrane.core.http.body.maxchunklength");
 		MAX_CHUNK_LENGTH = maxChunkLength == null ? 1000000000 : Integer.parseInt(maxChunkLength);
+		String pooledBuffers = System.getProperty("membrane.core.http.body.pooledbuffers");
+		BUFFERS = new BufferPool(BUFFER_SIZE, pooledBuffers == null ? 256 : Integer.parseInt(pooledBuffers));
 	}
 
 	private static Logger log = LoggerFactory.getLogger(Body.class.getName());
@@ -70,6 +77,10 @@ public class Body extends AbstractBody {
 
 	@Override
 	protected void readLocal() throws IOException {
+		if (isSpillingEnabled()) {
+			readLocalPiecewise();
+			return;
+		}
 		long l = length;
 		while (l > 0 || l == -1) {
 			int chunkLength = l > MAX_CHUNK_LENGTH ? MAX_CHUNK_LENGTH : (int)l;
@@ -81,6 +92,18 @@ public class Body extends AbstractBody {
 		}
 	}
 
+	private void readLocalPiecewise() throws IOException {
+		long l = length;
+		while (l > 0 || l == -1) {
+			Chunk chunk = readChunk(inputStream, l == -1 ? -1 : (int)Math.min(l, MAX_CHUNK_LENGTH));
+			if (chunk == null)
+				break;
+			chunks.add(chunk);
+			if (l != -1)
+				l -= chunk.getLength();
+		}
+	}
+
 	public void discard() throws IOException {
 		if (read)
 			return;
@@ -93,23 +116,27 @@ public class Body extends AbstractBody {
 		byte[] buffer = null;
 		boolean hasRelevantObserver = hasRelevantObservers();
 		if (hasRelevantObserver)
-			buffer = new byte[BUFFER_SIZE];
-
-		chunks.clear();
-		long toSkip = length;
-		while (toSkip > 0) {
-			long skipped;
-			if (hasRelevantObserver) {
-				skipped = inputStream.read(buffer);
-				if (skipped > 0)
-					for (MessageObserver observer : observers)
-						observer.bodyChunk(buffer, 0, (int)skipped);
-			} else {
-				skipped = inputStream.skip(toSkip);
+			buffer = BUFFERS.acquire();
+
+		try {
+			chunks.clear();
+			long toSkip = length;
+			while (toSkip > 0) {
+				long skipped;
+				if (hasRelevantObserver) {
+					skipped = inputStream.read(buffer, 0, (int)Math.min(buffer.length, toSkip));
+					if (skipped > 0)
+						for (MessageObserver observer : observers)
+							observer.bodyChunk(buffer, 0, (int)skipped);
+				} else {
+					skipped = inputStream.skip(toSkip);
+				}
+				if (skipped <= 0)
+					break; // EOF
+				toSkip -= skipped;
 			}
-			if (skipped == 0)
-				break; // EOF
-			toSkip -= skipped;
+		} finally {
+			BUFFERS.release(buffer);
 		}
 		markAsRead();
 	}
@@ -119,7 +146,12 @@ public class Body extends AbstractBody {
 		if (getLength() == 0)
 			return;
 
-		out.write(getContent(), 0, getLength());
+		if (isSpilled()) {
+			for (Chunk chunk : chunks)
+				out.write(chunk);
+		} else {
+			out.write(getContent(), 0, getLength());
+		}
 		out.finish();
 	}
 
@@ -147,22 +179,35 @@ public class Body extends AbstractBody {
 
 	@Override
 	protected void writeStreamed(AbstractBodyTransferrer out) throws IOException {
-		byte[] buffer = new byte[BUFFER_SIZE];
-
-		long totalLength = 0;
-		int length = 0;
-		chunks.clear();
-		while ((this.length > totalLength || this.length == -1) && (length = inputStream.read(buffer)) > 0) {
-			totalLength += length;
-			streamedLength += length;
-			out.write(buffer, 0, length);
-			for (MessageObserver observer : observers)
-				observer.bodyChunk(buffer, 0, length);
+		byte[] buffer = BUFFERS.acquire();
+		try {
+			long totalLength = 0;
+			int length = 0;
+			chunks.clear();
+			while ((this.length > totalLength || this.length == -1) && (length = inputStream.read(buffer, 0, bufferLength(totalLength))) > 0) {
+				totalLength += length;
+				streamedLength += length;
+				out.write(buffer, 0, length);
+				for (MessageObserver observer : observers)
+					observer.bodyChunk(buffer, 0, length);
+			}
+		} finally {
+			BUFFERS.release(buffer);
 		}
 		out.finish();
 		markAsRead();
 	}
 
+	/**
+	 * @return the number of bytes to read next, never reading beyond the end of the body, as the connection might
+	 * already carry the next message
+	 */
+	private int bufferLength(long totalLength) {
+		if (length == -1)
+			return BUFFER_SIZE;
+		return (int)Math.min(BUFFER_SIZE, length - totalLength);
+	}
+
 	@Override
 	public int getLength() throws IOException {
 		if (wasStreamed())
@@ -65,7 +65,8 @@ public abstract class BodyCollectingMessageObserver implements MessageObserver {
     }
 
     public AbstractBody getBody(AbstractBody body) throws IOException {
-        if (!body.wasStreamed()) {
+        // a spilled body will lose its content, when the exchange is detached
+        if (!body.wasStreamed() && !body.isSpilled()) {
             return body;
         }
         return new Body(new BodyInputStream(chunks), storedSize);
@@ -0,0 +1,76 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.http;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized byte buffers, used to pump message bodies from one stream to another.
+ *
+ * Streaming a body needs a transfer buffer only for the duration of the copy. Taking it from the pool instead of
+ * allocating it per message keeps large numbers of concurrently streamed messages from producing a steady stream of
+ * short-lived arrays. The pool does not rely on thread-locals, as request handling might run on virtual threads.
+ *
+ * A buffer must be returned using {@link #release(byte[])} only once, and must not be used afterwards.
+ */
+public class BufferPool {
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<byte[]>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param bufferSize the size of each buffer
+	 * @param maxPooled the maximum number of idle buffers kept for reuse
+	 */
+	public BufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * @return a buffer of {@link #getBufferSize()} bytes. The content is undefined.
+	 */
+	public byte[] acquire() {
+		byte[] buffer = free.poll();
+		if (buffer == null)
+			return new byte[bufferSize];
+		pooled.decrementAndGet();
+		return buffer;
+	}
+
+	public void release(byte[] buffer) {
+		if (buffer == null || buffer.length != bufferSize)
+			return;
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		free.offer(buffer);
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return the number of idle buffers
+	 */
+	public int getPooledCount() {
+		return pooled.get();
+	}
+}
@@ -16,6 +16,7 @@ package com.predic8.membrane.core.http;
 
 import static com.predic8.membrane.core.http.ChunkedBodyTransferrer.ZERO;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -66,6 +67,23 @@ public class ChunkedBody extends AbstractBody {
 
 	@Override
 	protected void readLocal() throws IOException {
+		if (isSpillingEnabled()) {
+			int chunkSize;
+			while ((chunkSize = HttpUtil.readChunkSize(inputStream)) > 0) {
+				while (chunkSize > 0) {
+					Chunk chunk = readChunk(inputStream, chunkSize);
+					if (chunk == null)
+						throw new EOFException("Unexpected end of stream while reading a chunk.");
+					chunks.add(chunk);
+					chunkSize -= chunk.getLength();
+				}
+				inputStream.read(); // CR
+				inputStream.read(); // LF
+			}
+			inputStream.read(); // CR
+			inputStream.read(); // LF
+			return;
+		}
 		List<Chunk> chunkList = HttpUtil.readChunks(inputStream);
 		chunks.addAll(chunkList);
 		for (Chunk chunk : chunkList)
@@ -101,12 +119,23 @@ public class ChunkedBody extends AbstractBody {
 		}
 
 		return new BodyInputStream(chunks) {
+			/**
+			 * the rest of the current chunk on the wire, if it did not fit into one spilled chunk
+			 */
+			private int remaining;
+
 			@Override
 			protected Chunk readNextChunk() throws IOException {
 				if (bodyComplete)
 					return null;
+				if (remaining > 0)
+					return readSpillableChunk();
 				int chunkSize = HttpUtil.readChunkSize(inputStream);
 				if (chunkSize > 0) {
+					if (isSpillingEnabled()) {
+						remaining = chunkSize;
+						return readSpillableChunk();
+					}
 					Chunk c = new Chunk(ByteUtil.readByteArray(inputStream, chunkSize));
 					inputStream.read(); // CR
 					inputStream.read(); // LF
@@ -126,6 +155,18 @@ public class ChunkedBody extends AbstractBody {
 					return null;
 				}
 			}
+
+			private Chunk readSpillableChunk() throws IOException {
+				Chunk c = readChunk(inputStream, remaining);
+				if (c == null)
+					throw new EOFException("Unexpected end of stream while reading a chunk.");
+				remaining -= c.getLength();
+				if (remaining == 0) {
+					inputStream.read(); // CR
+					inputStream.read(); // LF
+				}
+				return c;
+			}
 		};
 	}
 
@@ -151,15 +192,17 @@ public class ChunkedBody extends AbstractBody {
 	@Override
 	protected void writeStreamed(AbstractBodyTransferrer out) throws IOException {
 		log.debug("writeStreamed");
-		int chunkSize;
-		while ((chunkSize = HttpUtil.readChunkSize(inputStream)) > 0) {
-			Chunk chunk = new Chunk(ByteUtil.readByteArray(inputStream, chunkSize));
-			out.write(chunk);
-			for (MessageObserver observer : observers)
-				observer.bodyChunk(chunk);
-			inputStream.read(); // CR
-			inputStream.read(); // LF
-			lengthStreamed += chunkSize;
+		byte[] buffer = Body.BUFFERS.acquire();
+		try {
+			int chunkSize;
+			while ((chunkSize = HttpUtil.readChunkSize(inputStream)) > 0) {
+				HttpUtil.transferChunk(inputStream, chunkSize, buffer, out, observers);
+				inputStream.read(); // CR
+				inputStream.read(); // LF
+				lengthStreamed += chunkSize;
+			}
+		} finally {
+			Body.BUFFERS.release(buffer);
 		}
 		inputStream.read(); // CR
 		inputStream.read(); // LF-
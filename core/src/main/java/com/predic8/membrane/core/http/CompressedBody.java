@@ -0,0 +1,260 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.http;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A body holding the compressed content of another body.
+ *
+ * The content is compressed while the original body is written, piece by piece as it arrives: When the message is
+ * streamed, neither the original nor the compressed body is held in memory completely. Each piece is compressed
+ * using {@link Deflater#SYNC_FLUSH}, so the client receives data as soon as the server sends it.
+ *
+ * The caller is responsible to adjust the header, e.g. to set "Content-Encoding" and "Transfer-Encoding: chunked".
+ */
+public class CompressedBody extends AbstractBody {
+
+	public enum Encoding {
+		GZIP("gzip"),
+		DEFLATE("deflate");
+
+		private final String token;
+
+		Encoding(String token) {
+			this.token = token;
+		}
+
+		/**
+		 * @return the value used in the "Content-Encoding" and "Accept-Encoding" header fields
+		 */
+		public String getToken() {
+			return token;
+		}
+	}
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private final AbstractBody source;
+	private final Encoding encoding;
+	private final DeflaterPool deflaters;
+	private long streamedLength;
+
+	/**
+	 * @param deflaters the pool to take the {@link Deflater}s from. For {@link Encoding#GZIP}, it has to provide
+	 *                  deflaters without zlib wrapping (<code>nowrap</code>), for {@link Encoding#DEFLATE}
+	 *                  deflaters with.
+	 */
+	public CompressedBody(AbstractBody source, Encoding encoding, DeflaterPool deflaters) {
+		this.source = source;
+		this.encoding = encoding;
+		this.deflaters = deflaters;
+	}
+
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+	@Override
+	protected void readLocal() throws IOException {
+		compress(new Output(null, true), true);
+	}
+
+	@Override
+	public void discard() throws IOException {
+		if (read || wasStreamed())
+			return;
+		source.discard();
+		chunks.clear();
+		markAsRead();
+	}
+
+	@Override
+	protected void writeAlreadyRead(AbstractBodyTransferrer out) throws IOException {
+		read();
+		for (Chunk chunk : chunks)
+			out.write(chunk);
+		out.finish();
+	}
+
+	@Override
+	protected void writeNotRead(AbstractBodyTransferrer out) throws IOException {
+		chunks.clear();
+		compress(new Output(out, true), false);
+		out.finish();
+		markAsRead();
+	}
+
+	@Override
+	protected void writeStreamed(AbstractBodyTransferrer out) throws IOException {
+		chunks.clear();
+		compress(new Output(out, false), false);
+		out.finish();
+		markAsRead();
+	}
+
+	private void compress(Output output, boolean retainSource) throws IOException {
+		Compressor compressor = new Compressor(output);
+		try {
+			source.write(compressor, retainSource);
+			compressor.end();
+		} finally {
+			compressor.release();
+		}
+	}
+
+	@Override
+	public int getLength() throws IOException {
+		if (wasStreamed())
+			return (int)streamedLength;
+		return super.getLength();
+	}
+
+	@Override
+	protected byte[] getRawLocal() throws IOException {
+		return getContent();
+	}
+
+	@Override
+	public void deleteSpillFile() {
+		source.deleteSpillFile();
+		super.deleteSpillFile();
+	}
+
+	/**
+	 * Receives the original content and passes it on compressed.
+	 *
+	 * {@link #finish()} is ignored, as the original body does not call it if it is empty: {@link #end()} has to be
+	 * called instead.
+	 */
+	private class Compressor extends AbstractBodyTransferrer {
+		private final AbstractBodyTransferrer out;
+		private final Deflater deflater = deflaters.acquire();
+		private final CRC32 crc = encoding == Encoding.GZIP ? new CRC32() : null;
+		private final byte[] buffer = Body.BUFFERS.acquire();
+		private int pending;
+
+		private Compressor(AbstractBodyTransferrer out) {
+			this.out = out;
+			if (encoding == Encoding.GZIP) {
+				System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+				pending = GZIP_HEADER.length;
+			}
+		}
+
+		@Override
+		public void write(byte[] content, int offset, int length) throws IOException {
+			if (length == 0)
+				return;
+			if (crc != null)
+				crc.update(content, offset, length);
+			deflater.setInput(content, offset, length);
+			boolean full;
+			do {
+				int space = buffer.length - pending;
+				int n = deflater.deflate(buffer, pending, space, Deflater.SYNC_FLUSH);
+				full = n == space;
+				pending += n;
+				writePending();
+			} while (full);
+		}
+
+		@Override
+		public void write(Chunk chunk) throws IOException {
+			write(chunk.getContent(), 0, chunk.getLength());
+		}
+
+		@Override
+		public void finish() {
+		}
+
+		private void end() throws IOException {
+			deflater.finish();
+			while (!deflater.finished()) {
+				pending += deflater.deflate(buffer, pending, buffer.length - pending);
+				if (pending == buffer.length)
+					writePending();
+			}
+			if (crc != null) {
+				if (buffer.length - pending < 8)
+					writePending();
+				writeInt((int) crc.getValue());
+				writeInt((int) deflater.getBytesRead());
+			}
+			writePending();
+		}
+
+		private void writeInt(int i) {
+			buffer[pending++] = (byte) i;
+			buffer[pending++] = (byte) (i >> 8);
+			buffer[pending++] = (byte) (i >> 16);
+			buffer[pending++] = (byte) (i >> 24);
+		}
+
+		private void writePending() throws IOException {
+			if (pending == 0)
+				return;
+			out.write(buffer, 0, pending);
+			pending = 0;
+		}
+
+		private void release() {
+			deflaters.release(deflater);
+			Body.BUFFERS.release(buffer);
+		}
+	}
+
+	/**
+	 * Receives the compressed content: passes it on to <code>out</code> (if not null), notifies the observers and
+	 * keeps it as {@link #chunks} (if <code>keep</code> is set).
+	 */
+	private class Output extends AbstractBodyTransferrer {
+		private final AbstractBodyTransferrer out;
+		private final boolean keep;
+
+		private Output(AbstractBodyTransferrer out, boolean keep) {
+			this.out = out;
+			this.keep = keep;
+		}
+
+		@Override
+		public void write(byte[] content, int offset, int length) throws IOException {
+			if (out != null)
+				out.write(content, offset, length);
+			streamedLength += length;
+			if (keep) {
+				Chunk chunk = new Chunk(Arrays.copyOfRange(content, offset, offset + length));
+				chunks.add(chunk);
+				for (MessageObserver observer : observers)
+					observer.bodyChunk(chunk);
+			} else {
+				for (MessageObserver observer : observers)
+					observer.bodyChunk(content, offset, length);
+			}
+		}
+
+		@Override
+		public void write(Chunk chunk) throws IOException {
+			write(chunk.getContent(), 0, chunk.getLength());
+		}
+
+		@Override
+		public void finish() {
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.http;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * A bounded pool of {@link Deflater}s with the same settings.
+ *
+ * A {@link Deflater} allocates a considerable amount of native memory, which is only freed by {@link Deflater#end()}
+ * (or, eventually, by the garbage collector). Reusing them keeps compressing many responses from allocating and
+ * freeing it for every message. Like {@link BufferPool}, the pool does not rely on thread-locals.
+ *
+ * A deflater must be returned using {@link #release(Deflater)} only once, and must not be used afterwards.
+ */
+public class DeflaterPool {
+
+	private final int level;
+	private final boolean nowrap;
+	private final int maxPooled;
+	private final ConcurrentLinkedQueue<Deflater> free = new ConcurrentLinkedQueue<Deflater>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param level the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+	 * @param nowrap whether to omit the zlib header and checksum (as needed for gzip)
+	 * @param maxPooled the maximum number of idle deflaters kept for reuse
+	 */
+	public DeflaterPool(int level, boolean nowrap, int maxPooled) {
+		this.level = level;
+		this.nowrap = nowrap;
+		this.maxPooled = maxPooled;
+	}
+
+	public Deflater acquire() {
+		Deflater deflater = free.poll();
+		if (deflater == null)
+			return new Deflater(level, nowrap);
+		pooled.decrementAndGet();
+		return deflater;
+	}
+
+	public void release(Deflater deflater) {
+		if (deflater == null)
+			return;
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			deflater.end();
+			return;
+		}
+		deflater.reset();
+		free.offer(deflater);
+	}
+
+	/**
+	 * @return the number of idle deflaters
+	 */
+	public int getPooledCount() {
+		return pooled.get();
+	}
+}
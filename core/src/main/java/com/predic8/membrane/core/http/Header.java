@@ -114,6 +114,12 @@ public class Header {
 
 	public static final String X_HTTP_METHOD_OVERRIDE = "X-HTTP-Method-Override";
 
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+	public static final String VARY = "Vary";
+
+	public static final String ETAG = "ETag";
+
 	// Header field values
 
 	public static final String CHUNKED = "chunked";
@@ -135,19 +141,53 @@ public class Header {
 
 	private final ArrayList<HeaderField> fields = new ArrayList<HeaderField>();
 
-	public Header() {
+	/**
+	 * Index of {@link #fields}: one slot per well-known header name (see {@link HeaderName#getWellKnownIndex()}),
+	 * created on demand.
+	 */
+	private Slot[] wellKnown;
+	/**
+	 * Index of {@link #fields} for all other header names, created on demand.
+	 */
+	private HashMap<HeaderName, Slot> others;
+
+	/**
+	 * The first field of a header name and the number of fields with this name.
+	 */
+	private static final class Slot {
+		HeaderField first;
+		int count;
 	}
 
-	public Header(InputStream in) throws IOException, EndOfStreamException {
-		String line;
+	private static final ThreadLocal<byte[]> writeBuffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[1024];
+		}
+	};
 
-		while ((line = HttpUtil.readLine(in)).length() > 0) {
-			try {
+	/**
+	 * Write buffers larger than this are not kept for reuse.
+	 */
+	private static final int MAX_REUSED_WRITE_BUFFER_SIZE = 64 * 1024;
 
-				add(new HeaderField(line));
-			} catch (StringIndexOutOfBoundsException sie) {
+	public Header() {
+	}
+
+	public Header(InputStream in) throws IOException, EndOfStreamException {
+		HttpUtil.Line line;
+
+		while ((line = HttpUtil.readLineBytes(in)).getLength() > 0) {
+			byte[] bytes = line.getBytes();
+			int length = line.getLength();
+			int colon = 0;
+			while (colon < length && bytes[colon] != ':')
+				colon++;
+			if (colon == length) {
 				log.error("Header read line that caused problems: " + line);
+				continue;
 			}
+			add(new HeaderField(HeaderName.fromBytes(bytes, 0, colon), bytes, colon + 1, length));
 		}
 	}
 
@@ -159,33 +199,68 @@ public class Header {
 
 	public Header(Header header) {
 		for (HeaderField field : header.fields) {
-			fields.add(new HeaderField(field));
+			add(new HeaderField(field));
 		}
 	}
 
 	public void add(String key, String val) {
-		fields.add(new HeaderField(key, val));
+		add(new HeaderField(key, val));
 	}
 
 	public void add(HeaderField field) {
 		fields.add(field);
+		Slot slot = getSlot(field.getHeaderName(), true);
+		if (slot.count++ == 0)
+			slot.first = field;
 	}
 
 	public void remove(HeaderField field) {
-		fields.remove(field);
+		if (!fields.remove(field))
+			return;
+		Slot slot = getSlot(field.getHeaderName(), false);
+		if (--slot.count == 0) {
+			removeSlot(field.getHeaderName());
+		} else if (slot.first == field) {
+			for (HeaderField f : fields)
+				if (f.getHeaderName().equals(field.getHeaderName())) {
+					slot.first = f;
+					break;
+				}
+		}
 	}
 
 	public void removeFields(String name) {
-		List<HeaderField> deleteValues = new ArrayList<HeaderField>();
-		for (HeaderField field : fields) {
-			if (field.getHeaderName().equals(name))
-				deleteValues.add(field);
+		Slot slot = getSlot(name);
+		if (slot == null)
+			return;
+		removeAll(slot.first.getHeaderName(), 0);
+		removeSlot(slot.first.getHeaderName());
+	}
+
+	/**
+	 * Removes the fields with the given name, except the first <code>keep</code> ones.
+	 */
+	private void removeAll(HeaderName name, int keep) {
+		int j = 0;
+		for (int i = 0; i < fields.size(); i++) {
+			HeaderField field = fields.get(i);
+			if (field.getHeaderName().equals(name) && keep-- <= 0)
+				continue;
+			fields.set(j++, field);
 		}
-		fields.removeAll(deleteValues);
+		while (fields.size() > j)
+			fields.remove(fields.size() - 1);
 	}
 
 	public List<HeaderField> getValues(HeaderName headerName) {
-		List<HeaderField> res = new ArrayList<HeaderField>();
+		Slot slot = getSlot(headerName, false);
+		if (slot == null)
+			return new ArrayList<HeaderField>(0);
+		List<HeaderField> res = new ArrayList<HeaderField>(slot.count);
+		if (slot.count == 1) {
+			res.add(slot.first);
+			return res;
+		}
 		for (HeaderField headerField : fields) {
 			if (headerField.getHeaderName().equals(headerName))
 				res.add(headerField);
@@ -194,11 +269,47 @@ public class Header {
 	}
 
 	public String getFirstValue(String name) {
-		for (HeaderField field : fields) {
-			if (field.getHeaderName().equals(name))
-				return field.getValue();
+		Slot slot = getSlot(name);
+		return slot == null ? null : slot.first.getValue();
+	}
+
+	private Slot getSlot(String name) {
+		int index = HeaderName.getWellKnownIndex(name);
+		if (index != -1)
+			return wellKnown == null ? null : wellKnown[index];
+		return others == null ? null : others.get(new HeaderName(name));
+	}
+
+	private Slot getSlot(HeaderName name, boolean create) {
+		int index = name.getWellKnownIndex();
+		if (index != -1) {
+			if (wellKnown == null) {
+				if (!create)
+					return null;
+				wellKnown = new Slot[HeaderName.getWellKnownCount()];
+			}
+			Slot slot = wellKnown[index];
+			if (slot == null && create)
+				slot = wellKnown[index] = new Slot();
+			return slot;
 		}
-		return null;
+		if (others == null) {
+			if (!create)
+				return null;
+			others = new HashMap<HeaderName, Slot>();
+		}
+		Slot slot = others.get(name);
+		if (slot == null && create)
+			others.put(name, slot = new Slot());
+		return slot;
+	}
+
+	private void removeSlot(HeaderName name) {
+		int index = name.getWellKnownIndex();
+		if (index != -1)
+			wellKnown[index] = null;
+		else
+			others.remove(name);
 	}
 
 	public HeaderField[] getAllHeaderFields() {
@@ -210,35 +321,40 @@ public class Header {
 	 * converting it to char-by-char, we use ISO-8859-1 for output here.
 	 */
 	public void write(OutputStream out) throws IOException {
-		StringBuilder buffer = new StringBuilder();
+		int length = 0;
+		for (HeaderField field : fields)
+			length += field.getHeaderName().toString().length() + field.getValueLength() + 4;
+
+		byte[] buffer = writeBuffers.get();
+		if (buffer.length < length) {
+			buffer = new byte[Math.max(length, 2 * buffer.length)];
+			if (buffer.length <= MAX_REUSED_WRITE_BUFFER_SIZE)
+				writeBuffers.set(buffer);
+		}
+
+		int p = 0;
 		for (HeaderField field : fields) {
-			String name = field.getHeaderName().toString();
-			String value = field.getValue();
-			buffer.append(name).append(": ").append(value)
-			.append(Constants.CRLF);
+			p = HeaderField.encode(field.getHeaderName().toString(), buffer, p);
+			buffer[p++] = ':';
+			buffer[p++] = ' ';
+			p = field.writeValue(buffer, p);
+			buffer[p++] = '\r';
+			buffer[p++] = '\n';
 		}
-		out.write(buffer.toString().getBytes(Constants.ISO_8859_1_CHARSET));
+		out.write(buffer, 0, p);
 	}
 
 	public void setValue(String name, String value) {
-		boolean found = false;
-		for (int i = 0; i < fields.size(); i++) {
-			if (fields.get(i).getHeaderName().equals(name)) {
-				if (found) {
-					fields.set(i, fields.get(fields.size()-1));
-					fields.remove(fields.size()-1);
-					i--;
-				} else {
-					fields.get(i).setValue(value);
-					found = true;
-				}
-			}
-		}
-		if (found)
+		Slot slot = getSlot(name);
+		if (slot == null) {
+			add(new HeaderField(name, value));
 			return;
-		HeaderField newField = new HeaderField(name, value);
-		fields.add(newField);
-		return;
+		}
+		slot.first.setValue(value);
+		if (slot.count > 1) {
+			removeAll(slot.first.getHeaderName(), 1);
+			slot.count = 1;
+		}
 	}
 
 	public void setHost(String value) {
@@ -478,11 +594,8 @@ public class Header {
 	}
 
 	public int getNumberOf(String headerName) {
-		int res = 0;
-		for (HeaderField headerField : fields)
-			if (headerField.getHeaderName().equals(headerName))
-				res++;
-		return res;
+		Slot slot = getSlot(headerName);
+		return slot == null ? 0 : slot.count;
 	}
 
 	/**
@@ -507,6 +620,8 @@ public class Header {
 
 	public void clear() {
 		fields.clear();
+		wellKnown = null;
+		others = null;
 	}
 
 	public boolean isUserAgentSupportsSNI() {
@@ -569,6 +684,11 @@ public class Header {
 	}
 
 	public String getNormalizedValue(String headerName) {
+		Slot slot = getSlot(headerName);
+		if (slot == null)
+			return null;
+		if (slot.count == 1)
+			return slot.first.getValue();
 		StringBuilder sb = new StringBuilder();
 		for (HeaderField headerField : fields) {
 			if (headerField.getHeaderName().equals(headerName)) {
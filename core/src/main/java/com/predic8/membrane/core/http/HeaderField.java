@@ -15,12 +15,18 @@
 
 package com.predic8.membrane.core.http;
 
+import java.util.Arrays;
+
 import com.predic8.membrane.core.Constants;
 
 public class HeaderField {
 
 	private HeaderName headerName;
 	private String value;
+	/**
+	 * The ISO-8859-1 encoded value as it was read from the wire, if {@link #value} has not been decoded yet.
+	 */
+	private byte[] rawValue;
 
 	public HeaderField(HeaderName headerName,String value) {
 		this.headerName = headerName;
@@ -32,6 +38,19 @@ public class HeaderField {
 		value = getValue(line);
 	}
 
+	/**
+	 * Creates a field from the raw bytes of a header line: the value is taken from
+	 * <code>line[valueStart..end)</code>, trimmed, and only decoded when {@link #getValue()} is called.
+	 */
+	HeaderField(HeaderName headerName, byte[] line, int valueStart, int end) {
+		this.headerName = headerName;
+		while (valueStart < end && (line[valueStart] & 0xFF) <= ' ')
+			valueStart++;
+		while (end > valueStart && (line[end - 1] & 0xFF) <= ' ')
+			end--;
+		rawValue = Arrays.copyOfRange(line, valueStart, end);
+	}
+
 	private String getValue(String line) {
 		return (line.substring(line.indexOf(":")+1)).trim();
 	}
@@ -47,16 +66,66 @@ public class HeaderField {
 	public HeaderField(HeaderField element) {
 		headerName = new HeaderName(element.headerName);
 		value = element.value;
+		rawValue = element.rawValue;
 	}
 	public String getValue() {
+		byte[] raw = rawValue;
+		if (raw != null) {
+			value = new String(raw, Constants.ISO_8859_1_CHARSET);
+			rawValue = null;
+		}
 		return value;
 	}
 	public void setValue(String value) {
 		this.value = value;
+		rawValue = null;
+	}
+	/**
+	 * @return the number of bytes written by {@link #writeValue(byte[], int)}
+	 */
+	int getValueLength() {
+		byte[] raw = rawValue;
+		return raw != null ? raw.length : value.length();
 	}
+
+	/**
+	 * Writes the ISO-8859-1 encoded value into the buffer, without decoding it first.
+	 *
+	 * @return the position in the buffer behind the value
+	 */
+	int writeValue(byte[] buffer, int offset) {
+		byte[] raw = rawValue;
+		if (raw == null)
+			return encode(value, buffer, offset);
+		System.arraycopy(raw, 0, buffer, offset, raw.length);
+		return offset + raw.length;
+	}
+
+	/**
+	 * Encodes the string as ISO-8859-1, replacing unmappable characters by '?' like {@link String#getBytes(java.nio.charset.Charset)}.
+	 *
+	 * @return the position in the buffer behind the string
+	 */
+	static int encode(String s, byte[] buffer, int offset) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c <= 0xFF) {
+				buffer[offset++] = (byte) c;
+				continue;
+			}
+			if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1)))
+				i++;
+			buffer[offset++] = '?';
+		}
+		return offset;
+	}
+
 	public HeaderName getHeaderName() {
 		return headerName;
 	}
+	/**
+	 * Must not be called while the field is part of a {@link Header}, as its index would become stale.
+	 */
 	public void setHeaderName(HeaderName headerName) {
 		this.headerName = headerName;
 	}
@@ -66,12 +135,12 @@ public class HeaderField {
 		StringBuilder buf = new StringBuilder();
 		buf.append(headerName.toString());
 		buf.append(": ");
-		buf.append(value);
+		buf.append(getValue());
 		buf.append(Constants.CRLF);
 		return buf.toString();
 	}
 
 	public int estimateHeapSize() {
-		return 2*(4 + headerName.toString().length() + value.length());
+		return 2*(4 + headerName.toString().length() + (rawValue != null ? rawValue.length : value.length()));
 	}
 }
@@ -14,6 +14,8 @@
 
 package com.predic8.membrane.core.http;
 
+import com.predic8.membrane.core.Constants;
+
 /**
  * This class is used by {@link Header} a key for header fields.
  * The {@link #hashCode()} method is overridden so the keys are
@@ -21,14 +23,143 @@ package com.predic8.membrane.core.http;
  */
 public class HeaderName {
 
+	/**
+	 * Header names which are shared by all parsed messages instead of being allocated per header field, see
+	 * {@link #fromBytes(byte[], int, int)}.
+	 */
+	private static final String[] WELL_KNOWN = new String[] {
+			Header.TRANSFER_ENCODING, Header.CONTENT_ENCODING, Header.CONTENT_LENGTH, Header.CONTENT_TYPE,
+			Header.CONNECTION, Header.PROXY_CONNECTION, Header.HOST, Header.EXPECT, Header.X_FORWARDED_FOR,
+			Header.X_FORWARDED_PROTO, Header.X_FORWARDED_HOST, Header.PROXY_AUTHORIZATION, Header.SOAP_ACTION,
+			Header.ACCEPT, Header.LOCATION, Header.AUTHORIZATION, Header.SET_COOKIE, Header.COOKIE,
+			Header.DESTINATION, Header.USER_AGENT, Header.X_REQUESTED_WITH, Header.EXPIRES, Header.KEEP_ALIVE,
+			Header.SERVER, Header.PRAGMA, Header.CACHE_CONTROL, Header.UPGRADE, Header.LAST_MODIFIED,
+			Header.IF_MODIFIED_SINCE, Header.WWW_AUTHENTICATE, Header.ACCESS_CONTROL_ALLOW_ORIGIN, Header.ORIGIN,
+			"Accept-Encoding", "Accept-Language", "Accept-Charset", "Accept-Ranges", "Age", "Date", "ETag",
+			"If-None-Match", "If-Match", "Range", "Referer", "Vary", "Via", "Content-Disposition",
+			"Content-Language", "Content-Range", "Strict-Transport-Security", "Sec-Fetch-Mode", "Sec-Fetch-Site",
+			"Sec-Fetch-Dest", "Upgrade-Insecure-Requests", "DNT", "TE", "Trailer", "Forwarded", "X-Real-IP"
+	};
+
+	/**
+	 * Open addressing hash table of the {@link #WELL_KNOWN} names.
+	 */
+	private static final HeaderName[] table = new HeaderName[128];
+
+	static {
+		for (int index = 0; index < WELL_KNOWN.length; index++) {
+			HeaderName headerName = new HeaderName(WELL_KNOWN[index], index);
+			int i = headerName.hash & (table.length - 1);
+			while (table[i] != null)
+				i = (i + 1) & (table.length - 1);
+			table[i] = headerName;
+		}
+	}
+
 	private final String name;
+	private final int hash;
+	/**
+	 * The index of this name in the {@link #WELL_KNOWN} names (compared case-insensitively), or -1.
+	 */
+	private final int wellKnownIndex;
 
 	public HeaderName(String name) {
 		this.name = name;
+		hash = hash(name);
+		wellKnownIndex = lookupWellKnownIndex(name, hash);
 	}
 
 	public HeaderName(HeaderName headerName) {
 		name = headerName.name;
+		hash = headerName.hash;
+		wellKnownIndex = headerName.wellKnownIndex;
+	}
+
+	private HeaderName(String name, int wellKnownIndex) {
+		this.name = name;
+		hash = hash(name);
+		this.wellKnownIndex = wellKnownIndex;
+	}
+
+	private static int hash(String name) {
+		int h = 0;
+		for (int i = 0; i < name.length(); i++)
+			h = 31 * h + foldCase(name.charAt(i));
+		return h;
+	}
+
+	private static int lookupWellKnownIndex(String name, int hash) {
+		for (int i = hash & (table.length - 1); table[i] != null; i = (i + 1) & (table.length - 1)) {
+			HeaderName candidate = table[i];
+			if (candidate.hash == hash && candidate.name.equalsIgnoreCase(name))
+				return candidate.wellKnownIndex;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the well-known index of the name, see {@link #getWellKnownIndex()}
+	 */
+	static int getWellKnownIndex(String name) {
+		return lookupWellKnownIndex(name, hash(name));
+	}
+
+	/**
+	 * @return the number of well-known header names, see {@link #getWellKnownIndex()}
+	 */
+	static int getWellKnownCount() {
+		return WELL_KNOWN.length;
+	}
+
+	/**
+	 * @return a number in <code>[0, {@link #getWellKnownCount()})</code> identifying this name (case-insensitively),
+	 * if it is well-known, or -1
+	 */
+	int getWellKnownIndex() {
+		return wellKnownIndex;
+	}
+
+	/**
+	 * Returns the header name contained in the bytes (decoded as ISO-8859-1).
+	 *
+	 * If the bytes exactly match a well-known header name, a shared instance is returned, so that
+	 * neither a {@link String} nor a {@link HeaderName} has to be allocated.
+	 */
+	public static HeaderName fromBytes(byte[] bytes, int offset, int length) {
+		int h = 0;
+		for (int i = offset; i < offset + length; i++)
+			h = 31 * h + foldCase((char) (bytes[i] & 0xFF));
+		int wellKnownIndex = -1;
+		for (int i = h & (table.length - 1); table[i] != null; i = (i + 1) & (table.length - 1)) {
+			HeaderName candidate = table[i];
+			if (candidate.hash == h && candidate.matches(bytes, offset, length, false))
+				return candidate;
+			if (candidate.hash == h && candidate.matches(bytes, offset, length, true))
+				wellKnownIndex = candidate.wellKnownIndex;
+		}
+		return new HeaderName(new String(bytes, offset, length, Constants.ISO_8859_1_CHARSET), wellKnownIndex);
+	}
+
+	/**
+	 * Only an exact match allows to share the instance, as the name is written to the wire as it was received.
+	 */
+	private boolean matches(byte[] bytes, int offset, int length, boolean ignoreCase) {
+		if (name.length() != length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			char c = (char) (bytes[offset + i] & 0xFF);
+			if (name.charAt(i) != c && !(ignoreCase && foldCase(name.charAt(i)) == foldCase(c)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Folds the case the same way {@link String#equalsIgnoreCase(String)} does, so that {@link #hashCode()} is
+	 * consistent with {@link #equals(Object)}.
+	 */
+	private static char foldCase(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
 	}
 
 	@Override
@@ -49,7 +180,7 @@ public class HeaderName {
 
 	@Override
 	public int hashCode() {
-		return name.toLowerCase().hashCode();
+		return hash;
 	}
 
 	@Override
@@ -0,0 +1,101 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A temporary file holding the part of a message body, which exceeded the spill threshold (see {@link AbstractBody}).
+ *
+ * The file is opened with {@link StandardOpenOption#DELETE_ON_CLOSE}, so it is removed by {@link #close()}. (On Unix-like
+ * systems, the file is unlinked right away and its space is reclaimed, once the channel is closed or garbage collected.)
+ * Data is appended through the channel and read back through a read-only memory mapping, which is extended when data
+ * was appended after mapping.
+ */
+class SpillFile {
+
+	private static final File DIRECTORY;
+
+	static {
+		String dir = System.getProperty("membrane.core.http.body.spilldir");
+		DIRECTORY = new File(dir == null ? System.getProperty("java.io.tmpdir") : dir);
+	}
+
+	private final FileChannel channel;
+	private long size;
+	private MappedByteBuffer mapping;
+	private boolean closed;
+
+	SpillFile() throws IOException {
+		Path path = Files.createTempFile(DIRECTORY.toPath(), "membrane-body-", ".tmp");
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException e) {
+			Files.deleteIfExists(path);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the position of the appended data within the file
+	 */
+	synchronized long append(byte[] buffer, int offset, int length) throws IOException {
+		checkOpen();
+		if (size + length > Integer.MAX_VALUE)
+			throw new IOException("Message body is too large.");
+		long position = size;
+		ByteBuffer b = ByteBuffer.wrap(buffer, offset, length);
+		while (b.hasRemaining())
+			position += channel.write(b, position);
+		long start = size;
+		size = position;
+		return start;
+	}
+
+	synchronized void read(long position, byte[] buffer, int offset, int length) throws IOException {
+		checkOpen();
+		if (position + length > size)
+			throw new IOException("Reading beyond the end of the spill file.");
+		if (mapping == null || mapping.capacity() < position + length)
+			mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		ByteBuffer b = mapping.duplicate();
+		b.position((int) position);
+		b.get(buffer, offset, length);
+	}
+
+	synchronized long getSize() {
+		return size;
+	}
+
+	synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		mapping = null;
+		channel.close();
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed)
+			throw new IOException("The message body's spill file has already been deleted.");
+	}
+}
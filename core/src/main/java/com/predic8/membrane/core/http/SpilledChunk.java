@@ -0,0 +1,79 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.predic8.membrane.core.Constants;
+
+/**
+ * A {@link Chunk} whose content lives in a {@link SpillFile} instead of on the heap.
+ *
+ * {@link #getContent()} copies the content onto the heap on every call, so the chunks of a spilled body are kept
+ * small enough to be materialized one at a time.
+ */
+class SpilledChunk extends Chunk {
+
+	private final SpillFile file;
+	private final long position;
+	private final int length;
+
+	SpilledChunk(SpillFile file, long position, int length) {
+		super(null);
+		this.file = file;
+		this.position = position;
+		this.length = length;
+	}
+
+	@Override
+	public byte[] getContent() {
+		byte[] content = new byte[length];
+		copyChunk(content, 0);
+		return content;
+	}
+
+	@Override
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		if (out == null)
+			return;
+
+		out.write(Long.toHexString(length).getBytes(Constants.UTF_8_CHARSET));
+		out.write(Constants.CRLF_BYTES);
+		out.write(getContent(), 0, length);
+		out.write(Constants.CRLF_BYTES);
+		out.flush();
+	}
+
+	@Override
+	public int copyChunk(byte[] raw, int destPos) {
+		try {
+			file.read(position, raw, destPos, length);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return destPos + length;
+	}
+
+	@Override
+	public String toString() {
+		return new String(getContent(), Constants.UTF_8_CHARSET);
+	}
+}
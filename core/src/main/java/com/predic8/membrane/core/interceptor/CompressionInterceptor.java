@@ -0,0 +1,223 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.predic8.membrane.annot.MCAttribute;
+import com.predic8.membrane.annot.MCElement;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.CompressedBody;
+import com.predic8.membrane.core.http.CompressedBody.Encoding;
+import com.predic8.membrane.core.http.DeflaterPool;
+import com.predic8.membrane.core.http.Header;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+
+/**
+ * @description Compresses response bodies using gzip or deflate, if the client accepts it.
+ * @explanation <p>
+ *              The content coding is negotiated using the request's <tt>Accept-Encoding</tt> header field. Only
+ *              responses with a compressible <tt>Content-Type</tt> and a body of at least <tt>minSize</tt> bytes
+ *              (or of unknown length) are compressed. Responses which already have a <tt>Content-Encoding</tt> are
+ *              passed on unchanged.
+ *              </p>
+ *              <p>
+ *              The body is compressed while it is streamed to the client: It is not read into memory as a whole. The
+ *              compressed response is sent using <tt>Transfer-Encoding: chunked</tt>, so only HTTP/1.1 clients
+ *              receive compressed responses.
+ *              </p>
+ * @topic 4. Interceptors/Features
+ */
+@MCElement(name="compress")
+public class CompressionInterceptor extends AbstractInterceptor {
+
+	private static final Logger log = LoggerFactory.getLogger(CompressionInterceptor.class);
+
+	private static final int MAX_POOLED_DEFLATERS = 64;
+
+	private static final String DEFAULT_MIME_TYPES = "text/*,application/json,application/xml,application/javascript," +
+			"application/x-javascript,image/svg+xml,*+xml,*+json";
+
+	private int minSize = 1024;
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private String[] mimeTypes = DEFAULT_MIME_TYPES.split(",");
+
+	private DeflaterPool gzipDeflaters;
+	private DeflaterPool deflateDeflaters;
+
+	public CompressionInterceptor() {
+		name = "Compression";
+		setFlow(Flow.Set.RESPONSE);
+		createPools();
+	}
+
+	private void createPools() {
+		gzipDeflaters = new DeflaterPool(level, true, MAX_POOLED_DEFLATERS);
+		deflateDeflaters = new DeflaterPool(level, false, MAX_POOLED_DEFLATERS);
+	}
+
+	@Override
+	public Outcome handleResponse(Exchange exc) throws Exception {
+		Request req = exc.getRequest();
+		Response res = exc.getResponse();
+		if (req == null || res == null || !isCompressible(req, res))
+			return Outcome.CONTINUE;
+
+		Encoding encoding = negotiate(req.getHeader().getFirstValue(Header.ACCEPT_ENCODING));
+		Header header = res.getHeader();
+		header.add(Header.VARY, Header.ACCEPT_ENCODING);
+		if (encoding == null)
+			return Outcome.CONTINUE;
+
+		log.debug("compressing response using " + encoding.getToken());
+		res.setBody(new CompressedBody(res.getBody(), encoding,
+				encoding == Encoding.GZIP ? gzipDeflaters : deflateDeflaters));
+		header.removeFields(Header.CONTENT_LENGTH);
+		header.setValue(Header.TRANSFER_ENCODING, Header.CHUNKED);
+		header.setValue(Header.CONTENT_ENCODING, encoding.getToken());
+		// the compressed representation is not byte-identical to the original one
+		String etag = header.getFirstValue(Header.ETAG);
+		if (etag != null && !etag.startsWith("W/"))
+			header.setValue(Header.ETAG, "W/" + etag);
+		return Outcome.CONTINUE;
+	}
+
+	private boolean isCompressible(Request req, Response res) throws IOException {
+		if (req.isHEADRequest() || !req.isHTTP11())
+			return false;
+		int status = res.getStatusCode();
+		if (status < 200 || status == 204 || status == 206 || status == 304)
+			return false;
+		Header header = res.getHeader();
+		if (header.getFirstValue(Header.CONTENT_ENCODING) != null)
+			return false;
+		if (header.hasContentLength() && header.getContentLength() < minSize)
+			return false;
+		if (!isCompressibleType(header.getContentType()))
+			return false;
+		return !res.isBodyEmpty();
+	}
+
+	private boolean isCompressibleType(String contentType) {
+		if (contentType == null)
+			return false;
+		int p = contentType.indexOf(';');
+		String type = (p == -1 ? contentType : contentType.substring(0, p)).trim().toLowerCase();
+		for (String mimeType : mimeTypes) {
+			if (mimeType.endsWith("/*") ? type.startsWith(mimeType.substring(0, mimeType.length() - 1))
+					: mimeType.startsWith("*") ? type.endsWith(mimeType.substring(1))
+					: type.equals(mimeType))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the preferred content coding acceptable to the client, or null, if it accepts neither gzip nor deflate
+	 */
+	static Encoding negotiate(String acceptEncoding) {
+		double gzip = getQuality(acceptEncoding, Encoding.GZIP.getToken());
+		double deflate = getQuality(acceptEncoding, Encoding.DEFLATE.getToken());
+		if (gzip <= 0 && deflate <= 0)
+			return null;
+		return gzip >= deflate ? Encoding.GZIP : Encoding.DEFLATE;
+	}
+
+	/**
+	 * @return the quality value which the "Accept-Encoding" header field assigns to the content coding, or 0, if
+	 *         it is not acceptable
+	 */
+	public static double getQuality(String acceptEncoding, String coding) {
+		if (acceptEncoding == null)
+			return 0;
+		double wildcard = 0;
+		for (String element : acceptEncoding.split(",")) {
+			String[] params = element.split(";");
+			String name = params[0].trim();
+			double q = 1;
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				if (param.length() > 1 && Character.toLowerCase(param.charAt(0)) == 'q' && param.charAt(1) == '=') {
+					try {
+						q = Double.parseDouble(param.substring(2).trim());
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			if (name.equalsIgnoreCase(coding) || name.equalsIgnoreCase("x-" + coding))
+				return q;
+			if (name.equals("*"))
+				wildcard = q;
+		}
+		return wildcard;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @description Responses whose Content-Length is smaller than this number of bytes are not compressed.
+	 * @default 1024
+	 */
+	@MCAttribute
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * @description The compression level, from 1 (fastest) to 9 (best compression), or -1 for the default level.
+	 * @default -1
+	 */
+	@MCAttribute
+	public void setLevel(int level) {
+		this.level = level;
+		createPools();
+	}
+
+	public String getMimeTypes() {
+		return StringUtils.join(mimeTypes, ",");
+	}
+
+	/**
+	 * @description Comma-separated list of compressible MIME types. "text/*" matches all subtypes, "*+xml" all
+	 *              types with the given suffix.
+	 * @default text/*,application/json,application/xml,application/javascript,application/x-javascript,image/svg+xml,*+xml,*+json
+	 */
+	@MCAttribute
+	public void setMimeTypes(String mimeTypes) {
+		String[] types = mimeTypes.split(",");
+		for (int i = 0; i < types.length; i++)
+			types[i] = types[i].trim().toLowerCase();
+		this.mimeTypes = types;
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Compresses responses of at least " + minSize + " bytes using gzip or deflate.";
+	}
+
+}
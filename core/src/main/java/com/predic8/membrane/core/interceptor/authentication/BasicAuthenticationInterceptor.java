@@ -28,12 +28,16 @@ import com.predic8.membrane.core.interceptor.authentication.session.UserDataProv
 import com.predic8.membrane.core.util.HttpUtil;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringEscapeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * @description Blocks requests which do not have the correct RFC 1945 basic authentication credentials (HTTP header "Authentication: Basic ....").
@@ -41,6 +45,7 @@ import java.util.Map;
  */
 @MCElement(name="basicAuthentication")
 public class BasicAuthenticationInterceptor extends AbstractInterceptor {
+	private static final Logger log = LoggerFactory.getLogger(BasicAuthenticationInterceptor.class.getName());
 
 	private StaticUserDataProvider userDataProvider = new StaticUserDataProvider();
 
@@ -60,8 +65,19 @@ public class BasicAuthenticationInterceptor extends AbstractInterceptor {
 	}
 
 	private boolean validUser(Exchange exc) throws Exception {
-		return userDataProvider.getUsersByName().containsKey(getUsername(exc)) &&
-				userDataProvider.getUsersByName().get(getUsername(exc)).getPassword().equals(getPassword(exc));
+		Map<String, String> postData = new HashMap<String, String>();
+		postData.put("username", getUsername(exc));
+		postData.put("password", getPassword(exc));
+		try {
+			userDataProvider.verify(postData);
+			return true;
+		} catch (NoSuchElementException e) {
+			return false;
+		} catch (RuntimeException e) {
+			// do not let clients provoke a server error by choosing their credentials
+			log.warn("Could not verify credentials.", e);
+			return false;
+		}
 	}
 
 	private String getUsername(Exchange exc) throws Exception {
@@ -130,8 +146,7 @@ public class BasicAuthenticationInterceptor extends AbstractInterceptor {
 		}
 
 		userDataProvider.getUsersByName().clear();
-		for (User user : userDataProvider.getUsers())
-			userDataProvider.getUsersByName().put(user.getUsername(), user);
+		userDataProvider.init(router);
 	}
 
 	@Override
@@ -13,10 +13,7 @@
    limitations under the License. */
 package com.predic8.membrane.core.interceptor.authentication.session;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.stream.XMLStreamReader;
 
@@ -71,7 +68,7 @@ public class AccountBlocker extends AbstractXmlElement implements Cleaner {
 	private long afterFailedLoginsWithin = Long.MAX_VALUE;
 	private long blockFor = 3600000;
 
-	private HashMap<String, Info> users = new HashMap<String, Info>();
+	private final ConcurrentHashMap<String, Info> users = new ConcurrentHashMap<String, Info>();
 
 	private class Info {
 		private final long tries[];
@@ -112,49 +109,36 @@ public class AccountBlocker extends AbstractXmlElement implements Cleaner {
 	}
 
 	public boolean isBlocked(String username) {
-		Info info;
-		synchronized (users) {
-			if (users.size() == blockWholeSystemAfter) {
-				log.error("There are " + blockWholeSystemAfter + " blocked user accounts. To avoid on OutOfMemoryError all accounts have been blocked.");
-				return true;
-			}
-			info = users.get(username);
+		if (users.size() >= blockWholeSystemAfter) {
+			log.error("There are " + blockWholeSystemAfter + " blocked user accounts. To avoid on OutOfMemoryError all accounts have been blocked.");
+			return true;
 		}
+		Info info = users.get(username);
 		if (info == null)
 			return false;
 		return info.isBlocked();
 	}
 
 	public void unblock(String username) {
-		synchronized (users) {
-			users.remove(username);
-		}
+		users.remove(username);
 	}
 
 	public boolean fail(String username) {
-		Info info, info2 = new Info();
-		synchronized (users) {
-			info = users.get(username);
-			if (info == null) {
-				info = info2;
-				if (users.size() < blockWholeSystemAfter)
-					users.put(username, info);
-			}
+		Info info = users.get(username);
+		if (info == null) {
+			Info created = new Info();
+			if (users.size() < blockWholeSystemAfter)
+				info = users.putIfAbsent(username, created);
+			if (info == null)
+				info = created;
 		}
 		info.fail();
 		return info.isBlocked();
 	}
 
 	public void cleanup() {
-		List<String> removeUs = new ArrayList<String>();
 		long death = System.currentTimeMillis() - afterFailedLoginsWithin;
-		synchronized (users) {
-			for (Map.Entry<String, Info> e : users.entrySet())
-				if (!e.getValue().hasRelevantInformation(death))
-					removeUs.add(e.getKey());
-			for (String username : removeUs)
-				users.remove(username);
-		}
+		users.values().removeIf(info -> !info.hasRelevantInformation(death));
 	}
 
 	public int getBlockWholeSystemAfter() {
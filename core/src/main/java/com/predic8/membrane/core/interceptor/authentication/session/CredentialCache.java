@@ -0,0 +1,135 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Remembers successful verifications of a username and password for a short time, so that clients sending their
+ * credentials with every request (e.g. using HTTP Basic authentication) do not cause an expensive password hash
+ * computation or a round trip to the user store each time.
+ *
+ * Entries are keyed by an HMAC of username and password using a random key, which is created per instance and never
+ * leaves memory: Neither the password nor an offline-attackable hash of it is stored. Failed verifications are never
+ * cached.
+ */
+public class CredentialCache {
+
+	private final int maximumSize;
+	private final long ttlSeconds;
+	private final HashFunction hmac;
+	/**
+	 * null, if caching is disabled
+	 */
+	private final Cache<HashCode, Map<String, String>> verified;
+
+	/**
+	 * @param maximumSize the maximum number of cached verifications, 0 to disable caching
+	 * @param ttlSeconds how long a verification is remembered, 0 to disable caching
+	 */
+	public CredentialCache(int maximumSize, long ttlSeconds) {
+		this.maximumSize = maximumSize;
+		this.ttlSeconds = ttlSeconds;
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		hmac = Hashing.hmacSha256(key);
+		if (maximumSize > 0 && ttlSeconds > 0)
+			verified = CacheBuilder.newBuilder()
+					.maximumSize(maximumSize)
+					.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+					.recordStats()
+					.build();
+		else
+			verified = null;
+	}
+
+	/**
+	 * Returns the user's attributes, either from the cache or by calling <code>verifier</code>.
+	 *
+	 * @throws NoSuchElementException
+	 *             if <code>verifier</code> does
+	 */
+	public Map<String, String> verify(Map<String, String> postData, Function<Map<String, String>, Map<String, String>> verifier) {
+		String username = postData.get("username");
+		String password = postData.get("password");
+		if (verified == null || username == null || password == null)
+			return verifier.apply(postData);
+
+		HashCode key = hmac.newHasher()
+				.putInt(username.length())
+				.putString(username, Charsets.UTF_8)
+				.putString(password, Charsets.UTF_8)
+				.hash();
+		Map<String, String> attributes = verified.getIfPresent(key);
+		if (attributes == null) {
+			attributes = verifier.apply(postData);
+			verified.put(key, new HashMap<String, String>(attributes));
+			return attributes;
+		}
+		// callers may modify the map they get
+		return new HashMap<String, String>(attributes);
+	}
+
+	/**
+	 * Forgets all verifications, e.g. because the users' passwords might have changed.
+	 */
+	public void invalidateAll() {
+		if (verified != null)
+			verified.invalidateAll();
+	}
+
+	public boolean isEnabled() {
+		return verified != null;
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	public long getSize() {
+		return verified == null ? 0 : verified.size();
+	}
+
+	public long getHitCount() {
+		return verified == null ? 0 : verified.stats().hitCount();
+	}
+
+	public long getMissCount() {
+		return verified == null ? 0 : verified.stats().missCount();
+	}
+
+	/**
+	 * @return the ratio of verifications answered from the cache, 1.0 if there were none yet and 0 if the cache is disabled
+	 */
+	public double getHitRate() {
+		return verified == null ? 0 : verified.stats().hitRate();
+	}
+}
@@ -0,0 +1,87 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timer wheel: keys are put into the bucket of the tick in which they are due, so that {@link #advance(long, Consumer)}
+ * only has to look at the keys which are due instead of at all keys.
+ *
+ * Keys due more than one revolution in the future share a bucket with keys due earlier and are therefore handed out
+ * early. The same happens to keys whose deadline was extended after they had been scheduled. The consumer is expected to
+ * check the actual deadline and to {@link #schedule(Object, long)} the key again, if it is not due yet.
+ *
+ * {@link #schedule(Object, long)} may be called concurrently from any thread without blocking.
+ */
+public class ExpiryWheel<K> {
+
+	private final long tickMillis;
+	private final AtomicReferenceArray<Queue<K>> buckets;
+
+	/**
+	 * All ticks up to and including this one have been processed.
+	 */
+	private volatile long processedTick;
+
+	public ExpiryWheel(long tickMillis, int size) {
+		this.tickMillis = tickMillis;
+		this.buckets = new AtomicReferenceArray<Queue<K>>(size);
+		for (int i = 0; i < size; i++)
+			buckets.set(i, new ConcurrentLinkedQueue<K>());
+		processedTick = System.currentTimeMillis() / tickMillis;
+	}
+
+	public void schedule(K key, long dueMillis) {
+		while (true) {
+			int bucket = bucket(Math.max(dueMillis / tickMillis, processedTick + 1));
+			Queue<K> queue = buckets.get(bucket);
+			queue.add(key);
+			if (buckets.get(bucket) == queue)
+				return;
+			// the bucket was swapped out concurrently and might already have been drained: schedule again (the key
+			// might be handed out twice)
+		}
+	}
+
+	/**
+	 * Hands all keys scheduled for ticks up to <code>nowMillis</code> to <code>due</code>.
+	 */
+	public synchronized void advance(long nowMillis, Consumer<K> due) {
+		long target = nowMillis / tickMillis;
+		// each bucket has to be processed at most once
+		processedTick = Math.max(processedTick, target - buckets.length());
+		while (processedTick < target) {
+			long tick = processedTick + 1;
+			// publish the tick before swapping, so that a concurrent schedule() retrying does not pick this bucket again
+			processedTick = tick;
+			Queue<K> queue = buckets.getAndSet(bucket(tick), new ConcurrentLinkedQueue<K>());
+			K key;
+			while ((key = queue.poll()) != null)
+				due.accept(key);
+		}
+	}
+
+	private int bucket(long tick) {
+		return (int) (tick % buckets.length());
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+}
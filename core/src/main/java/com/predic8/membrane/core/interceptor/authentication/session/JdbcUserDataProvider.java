@@ -35,10 +35,12 @@ public class JdbcUserDataProvider implements UserDataProvider {
     private String userColumnName;
     private String passwordColumnName;
     private Router router;
+    private CredentialCache credentialCache = new CredentialCache(1000, 0);
 
     @Override
     public void init(Router router) {
         this.router = router;
+        credentialCache.invalidateAll();
 
         sanitizeUserInputs();
         getDatasourceIfNull();
@@ -99,6 +101,10 @@ public class JdbcUserDataProvider implements UserDataProvider {
 
     @Override
     public Map<String, String> verify(Map<String, String> postData) {
+        return credentialCache.verify(postData, this::verifyWithDatabase);
+    }
+
+    private Map<String, String> verifyWithDatabase(Map<String, String> postData) {
         String username = postData.get("username");
         if (username == null)
             throw new NoSuchElementException();
@@ -187,4 +193,36 @@ public class JdbcUserDataProvider implements UserDataProvider {
         this.passwordColumnName = passwordColumnName;
     }
 
+    public CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
+
+    public int getCredentialCacheSize() {
+        return credentialCache.getMaximumSize();
+    }
+
+    /**
+     * @description The maximum number of successful logins to remember, so that the database does not have to be
+     *              queried for each request. 0 disables the cache.
+     * @default 1000
+     */
+    @MCAttribute
+    public void setCredentialCacheSize(int credentialCacheSize) {
+        credentialCache = new CredentialCache(credentialCacheSize, credentialCache.getTtlSeconds());
+    }
+
+    public long getCredentialCacheTtl() {
+        return credentialCache.getTtlSeconds();
+    }
+
+    /**
+     * @description How long (in seconds) a successful login is remembered. A changed password or a removed user
+     *              might still be accepted for this time. 0 disables the cache.
+     * @default 0
+     */
+    @MCAttribute
+    public void setCredentialCacheTtl(long credentialCacheTtl) {
+        credentialCache = new CredentialCache(credentialCache.getMaximumSize(), credentialCacheTtl);
+    }
+
 }
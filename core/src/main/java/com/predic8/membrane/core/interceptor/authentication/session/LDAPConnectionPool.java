@@ -0,0 +1,211 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pools bound LDAP connections, all authenticated as the same principal, to avoid a TCP (and often TLS) handshake and
+ * a bind for each search.
+ *
+ * A {@link DirContext} may not be used by more than one thread at a time, so each one is used exclusively while
+ * borrowed. Connections are reused most recently used first. Connections idle for longer than the idle timeout are
+ * closed instead of being reused, as the server or a firewall might have dropped them in the meantime. If a reused
+ * connection fails nevertheless, it is discarded and the operation is retried once on a new connection.
+ */
+public class LDAPConnectionPool {
+	private static final Logger log = LoggerFactory.getLogger(LDAPConnectionPool.class);
+
+	public interface ConnectionFactory {
+		DirContext create() throws NamingException;
+	}
+
+	public interface Operation<T> {
+		T execute(DirContext ctx) throws NamingException;
+	}
+
+	private static class Entry {
+		private final DirContext ctx;
+		private long lastUsed;
+
+		private Entry(DirContext ctx) {
+			this.ctx = ctx;
+		}
+	}
+
+	private final ConnectionFactory factory;
+	private final int maxIdle;
+	private final long idleTimeoutMillis;
+
+	private final ConcurrentLinkedDeque<Entry> idle = new ConcurrentLinkedDeque<Entry>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final LongAdder created = new LongAdder();
+	private final LongAdder reused = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private final LongAdder broken = new LongAdder();
+
+	/**
+	 * @param maxIdle the maximum number of idle connections kept open, 0 to close each connection after use
+	 * @param idleTimeoutMillis how long an idle connection may be reused
+	 */
+	public LDAPConnectionPool(ConnectionFactory factory, int maxIdle, long idleTimeoutMillis) {
+		this.factory = factory;
+		this.maxIdle = maxIdle;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	public <T> T execute(Operation<T> operation) throws NamingException {
+		Entry entry = acquire();
+		boolean wasReused = entry.lastUsed != 0;
+		try {
+			T result = operation.execute(entry.ctx);
+			release(entry);
+			return result;
+		} catch (CommunicationException | ServiceUnavailableException e) {
+			discard(entry);
+			broken.increment();
+			if (!wasReused)
+				throw e;
+			log.debug("Pooled LDAP connection failed, retrying using a new connection.", e);
+		} catch (NamingException | RuntimeException e) {
+			// the connection itself is fine (e.g. the user was not found)
+			release(entry);
+			throw e;
+		}
+
+		entry = newEntry();
+		try {
+			T result = operation.execute(entry.ctx);
+			release(entry);
+			return result;
+		} catch (CommunicationException | ServiceUnavailableException e) {
+			discard(entry);
+			broken.increment();
+			throw e;
+		} catch (NamingException | RuntimeException e) {
+			release(entry);
+			throw e;
+		}
+	}
+
+	private Entry acquire() throws NamingException {
+		long now = System.currentTimeMillis();
+		Entry entry;
+		while ((entry = idle.pollFirst()) != null) {
+			idleCount.decrementAndGet();
+			if (now - entry.lastUsed < idleTimeoutMillis) {
+				reused.increment();
+				inUse.incrementAndGet();
+				return entry;
+			}
+			expired.increment();
+			close(entry);
+		}
+		return newEntry();
+	}
+
+	private Entry newEntry() throws NamingException {
+		Entry entry = new Entry(factory.create());
+		created.increment();
+		inUse.incrementAndGet();
+		return entry;
+	}
+
+	private void release(Entry entry) {
+		inUse.decrementAndGet();
+		if (idleCount.incrementAndGet() > maxIdle) {
+			idleCount.decrementAndGet();
+			close(entry);
+			return;
+		}
+		entry.lastUsed = System.currentTimeMillis();
+		idle.offerFirst(entry);
+	}
+
+	private void discard(Entry entry) {
+		inUse.decrementAndGet();
+		close(entry);
+	}
+
+	private void close(Entry entry) {
+		try {
+			entry.ctx.close();
+		} catch (NamingException e) {
+			log.debug("Could not close LDAP connection.", e);
+		}
+	}
+
+	/**
+	 * Closes all idle connections.
+	 */
+	public void clear() {
+		Entry entry;
+		while ((entry = idle.pollFirst()) != null) {
+			idleCount.decrementAndGet();
+			close(entry);
+		}
+	}
+
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	public int getInUse() {
+		return inUse.get();
+	}
+
+	/**
+	 * @return the number of connections opened
+	 */
+	public long getCreated() {
+		return created.sum();
+	}
+
+	/**
+	 * @return the number of operations which used an already open connection
+	 */
+	public long getReused() {
+		return reused.sum();
+	}
+
+	/**
+	 * @return the number of idle connections closed because of the idle timeout
+	 */
+	public long getExpired() {
+		return expired.sum();
+	}
+
+	/**
+	 * @return the number of connections discarded because of a communication failure
+	 */
+	public long getBroken() {
+		return broken.sum();
+	}
+}
@@ -23,6 +23,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.naming.AuthenticationException;
@@ -37,6 +38,9 @@ import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.net.SocketFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.predic8.membrane.core.config.security.SSLParser;
 import com.predic8.membrane.core.transport.ssl.SSLContext;
 import com.predic8.membrane.core.transport.ssl.StaticSSLContext;
@@ -91,6 +95,10 @@ import com.predic8.membrane.core.Router;
  *              it is set, an additional request is made after the second successful binding to retrieve the node's
  *              attributes.
  *              </p>
+ *              <p>
+ *              The connections used for the search are pooled (see <i>connectionPoolSize</i>). The search results
+ *              can additionally be cached for <i>searchCacheTtl</i> seconds.
+ *              </p>
  */
 @MCElement(name="ldapUserDataProvider", topLevel=false)
 public class LDAPUserDataProvider implements UserDataProvider {
@@ -110,6 +118,13 @@ public class LDAPUserDataProvider implements UserDataProvider {
 	HashMap<String, String> attributeMap = new HashMap<String, String>(); // maps LDAP attributes to TokenGenerator attributes
 	AttributeMap map;
 	SSLParser sslParser;
+	CredentialCache credentialCache = new CredentialCache(1000, 0);
+	int connectionPoolSize = 8; // maximum number of idle connections bound as binddn
+	long connectionIdleTimeout = 60000; // in milliseconds
+	int searchCacheSize = 1000;
+	long searchCacheTtl = 0; // in seconds, 0 to disable the search cache
+	LDAPConnectionPool connectionPool;
+	Cache<String, SearchResultEntry> searchCache;
 
 	@MCElement(name="map", topLevel=false, id="ldapUserDataProvider-map")
 	public static class AttributeMap {
@@ -160,35 +175,8 @@ public class LDAPUserDataProvider implements UserDataProvider {
 	 * @throws NamingException on any other LDAP error
 	 */
 	private HashMap<String, String> auth(String login, String password) throws NamingException {
-		Hashtable<String, String> env = new Hashtable<String, String>();
-		env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-		env.put(Context.PROVIDER_URL, url);
-		env.put("com.sun.jndi.ldap.read.timeout", timeout);
-		env.put("com.sun.jndi.ldap.connect.timeout", connectTimeout);
-		if (binddn != null) {
-			env.put(Context.SECURITY_AUTHENTICATION, "simple");
-			env.put(Context.SECURITY_PRINCIPAL, binddn);
-			env.put(Context.SECURITY_CREDENTIALS, bindpw);
-		}
-		if (sslParser != null)
-			env.put("java.naming.ldap.factory.socket", CustomSocketFactory.class.getName());
-
 		HashMap<String, String> userAttrs = new HashMap<String, String>();
-		String uid;
-
-		DirContext ctx;
-		ClassLoader old = Thread.currentThread().getContextClassLoader();
-		try {
-			Thread.currentThread().setContextClassLoader(CustomSocketFactory.class.getClassLoader());
-			ctx = new InitialDirContext(env);
-		} finally {
-			Thread.currentThread().setContextClassLoader(old);
-		}
-		try {
-			uid = searchUser(login, userAttrs, ctx);
-		} finally {
-			ctx.close();
-		}
+		String uid = lookupUser(login, userAttrs);
 
 		if (passwordAttribute != null) {
 			if (!userAttrs.containsKey("_pass"))
@@ -202,18 +190,12 @@ public class LDAPUserDataProvider implements UserDataProvider {
 				throw new NoSuchElementException();
 			userAttrs.remove("_pass");
 		} else {
+			Hashtable<String, String> env = createEnvironment();
 			env.put(Context.SECURITY_AUTHENTICATION, "simple");
 			env.put(Context.SECURITY_PRINCIPAL, uid + "," + base);
 			env.put(Context.SECURITY_CREDENTIALS, password);
-			DirContext ctx2;
-            ClassLoader old2 = Thread.currentThread().getContextClassLoader();
-            try {
-                Thread.currentThread().setContextClassLoader(CustomSocketFactory.class.getClassLoader());
-                ctx2 = new InitialDirContext(env);
-            } finally {
-                Thread.currentThread().setContextClassLoader(old2);
-            }
-            try {
+			DirContext ctx2 = createContext(env);
+			try {
 				if (readAttributesAsSelf)
 					searchUser(login, userAttrs, ctx2);
 			} finally {
@@ -223,6 +205,68 @@ public class LDAPUserDataProvider implements UserDataProvider {
 		return userAttrs;
 	}
 
+	/**
+	 * Searches the user's node using a pooled connection bound as <i>binddn</i>, or takes it from the search cache.
+	 *
+	 * @return the user's DN relative to <i>base</i>
+	 */
+	private String lookupUser(final String login, HashMap<String, String> userAttrs) throws NamingException {
+		if (searchCache != null) {
+			SearchResultEntry cached = searchCache.getIfPresent(login);
+			if (cached != null) {
+				userAttrs.putAll(cached.attributes);
+				return cached.uid;
+			}
+		}
+		final HashMap<String, String> found = new HashMap<String, String>();
+		String uid = connectionPool.execute(new LDAPConnectionPool.Operation<String>() {
+			@Override
+			public String execute(DirContext ctx) throws NamingException {
+				return searchUser(login, found, ctx);
+			}
+		});
+		if (searchCache != null)
+			searchCache.put(login, new SearchResultEntry(uid, found));
+		userAttrs.putAll(found);
+		return uid;
+	}
+
+	private Hashtable<String, String> createEnvironment() {
+		Hashtable<String, String> env = new Hashtable<String, String>();
+		env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+		env.put(Context.PROVIDER_URL, url);
+		env.put("com.sun.jndi.ldap.read.timeout", timeout);
+		env.put("com.sun.jndi.ldap.connect.timeout", connectTimeout);
+		if (binddn != null) {
+			env.put(Context.SECURITY_AUTHENTICATION, "simple");
+			env.put(Context.SECURITY_PRINCIPAL, binddn);
+			env.put(Context.SECURITY_CREDENTIALS, bindpw);
+		}
+		if (sslParser != null)
+			env.put("java.naming.ldap.factory.socket", CustomSocketFactory.class.getName());
+		return env;
+	}
+
+	private DirContext createContext(Hashtable<String, String> env) throws NamingException {
+		ClassLoader old = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(CustomSocketFactory.class.getClassLoader());
+			return new InitialDirContext(env);
+		} finally {
+			Thread.currentThread().setContextClassLoader(old);
+		}
+	}
+
+	private static class SearchResultEntry {
+		private final String uid;
+		private final Map<String, String> attributes;
+
+		private SearchResultEntry(String uid, Map<String, String> attributes) {
+			this.uid = uid;
+			this.attributes = attributes;
+		}
+	}
+
 	private String searchUser(String login, HashMap<String, String> userAttrs,
 			DirContext ctx) throws NamingException {
 		String uid;
@@ -283,8 +327,12 @@ public class LDAPUserDataProvider implements UserDataProvider {
 		String password = postData.get("password");
 		if (username == null || password == null)
 			throw new NoSuchElementException();
+		return credentialCache.verify(postData, this::verifyWithLDAP);
+	}
+
+	private Map<String, String> verifyWithLDAP(Map<String, String> postData) {
 		try {
-			return auth(username, password);
+			return auth(postData.get("username"), postData.get("password"));
 		} catch (NoSuchElementException e) {
 			throw e;
 		} catch (AuthenticationException e) {
@@ -444,6 +492,21 @@ public class LDAPUserDataProvider implements UserDataProvider {
 
 		if (sslParser != null)
 			CustomSocketFactory.sslContext = new StaticSSLContext(sslParser, router.getResolverMap(), router.getBaseLocation());
+
+		if (connectionPool != null)
+			connectionPool.clear();
+		connectionPool = new LDAPConnectionPool(new LDAPConnectionPool.ConnectionFactory() {
+			@Override
+			public DirContext create() throws NamingException {
+				return createContext(createEnvironment());
+			}
+		}, connectionPoolSize, connectionIdleTimeout);
+		searchCache = searchCacheTtl > 0 && searchCacheSize > 0 ? CacheBuilder.newBuilder()
+				.maximumSize(searchCacheSize)
+				.expireAfterWrite(searchCacheTtl, TimeUnit.SECONDS)
+				.recordStats()
+				.<String, SearchResultEntry>build() : null;
+		credentialCache.invalidateAll();
 	}
 
 	public AttributeMap getMap() {
@@ -493,4 +556,103 @@ public class LDAPUserDataProvider implements UserDataProvider {
 		}
 
 	}
+
+	public int getConnectionPoolSize() {
+		return connectionPoolSize;
+	}
+
+	/**
+	 * @description The maximum number of idle connections (bound as <i>binddn</i>) kept open for searching users.
+	 *              0 opens a new connection for each search.
+	 * @default 8
+	 */
+	@MCAttribute
+	public void setConnectionPoolSize(int connectionPoolSize) {
+		this.connectionPoolSize = connectionPoolSize;
+	}
+
+	public long getConnectionIdleTimeout() {
+		return connectionIdleTimeout;
+	}
+
+	/**
+	 * @description Idle connections are closed after this number of milliseconds. Should be lower than the idle
+	 *              timeout of the LDAP server and of firewalls in between.
+	 * @default 60000
+	 */
+	@MCAttribute
+	public void setConnectionIdleTimeout(long connectionIdleTimeout) {
+		this.connectionIdleTimeout = connectionIdleTimeout;
+	}
+
+	public int getSearchCacheSize() {
+		return searchCacheSize;
+	}
+
+	/**
+	 * @description The maximum number of users whose DN and attributes are remembered.
+	 * @default 1000
+	 */
+	@MCAttribute
+	public void setSearchCacheSize(int searchCacheSize) {
+		this.searchCacheSize = searchCacheSize;
+	}
+
+	public long getSearchCacheTtl() {
+		return searchCacheTtl;
+	}
+
+	/**
+	 * @description How long (in seconds) a user's DN and attributes found by the search are remembered. The
+	 *              password is still checked by binding as the user (unless <i>passwordAttribute</i> is used).
+	 *              0 disables the cache.
+	 * @default 0
+	 */
+	@MCAttribute
+	public void setSearchCacheTtl(long searchCacheTtl) {
+		this.searchCacheTtl = searchCacheTtl;
+	}
+
+	public LDAPConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	/**
+	 * @return the statistics of the search cache, or null if it is disabled
+	 */
+	public CacheStats getSearchCacheStats() {
+		return searchCache == null ? null : searchCache.stats();
+	}
+
+	public CredentialCache getCredentialCache() {
+		return credentialCache;
+	}
+
+	public int getCredentialCacheSize() {
+		return credentialCache.getMaximumSize();
+	}
+
+	/**
+	 * @description The maximum number of successful logins to remember, so that the LDAP server does not have to be
+	 *              contacted for each request. 0 disables the cache.
+	 * @default 1000
+	 */
+	@MCAttribute
+	public void setCredentialCacheSize(int credentialCacheSize) {
+		credentialCache = new CredentialCache(credentialCacheSize, credentialCache.getTtlSeconds());
+	}
+
+	public long getCredentialCacheTtl() {
+		return credentialCache.getTtlSeconds();
+	}
+
+	/**
+	 * @description How long (in seconds) a successful login is remembered. A changed password or a removed user
+	 *              might still be accepted for this time. 0 disables the cache.
+	 * @default 0
+	 */
+	@MCAttribute
+	public void setCredentialCacheTtl(long credentialCacheTtl) {
+		credentialCache = new CredentialCache(credentialCache.getMaximumSize(), credentialCacheTtl);
+	}
 }
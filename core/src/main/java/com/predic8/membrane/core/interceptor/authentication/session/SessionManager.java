@@ -13,18 +13,30 @@
    limitations under the License. */
 package com.predic8.membrane.core.interceptor.authentication.session;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.stream.XMLStreamReader;
 
-import com.github.fge.jsonschema.core.keyword.syntax.checkers.common.ExclusiveMaximumSyntaxChecker;
 import org.apache.commons.lang.StringUtils;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableSet;
 import com.predic8.membrane.annot.MCAttribute;
 import com.predic8.membrane.annot.MCElement;
 import com.predic8.membrane.core.Router;
@@ -32,6 +44,7 @@ import com.predic8.membrane.core.config.AbstractXmlElement;
 import com.predic8.membrane.core.exchange.Exchange;
 import com.predic8.membrane.core.http.Request;
 import com.predic8.membrane.core.interceptor.authentication.session.CleanupThread.Cleaner;
+import com.predic8.membrane.core.util.FileUtil;
 
 /**
  * @explanation <p>
@@ -45,15 +58,33 @@ import com.predic8.membrane.core.interceptor.authentication.session.CleanupThrea
  *              The session timeout can be specified in milliseconds using the <i>timeout</i> attribute. The default
  *              timeout is 5 minutes.
  *              </p>
+ *              <p>
+ *              If <i>persistenceFile</i> is set, the sessions are written to this file once a minute and read from it
+ *              on startup, so that they survive a restart. The file contains the session IDs, which grant access to
+ *              the sessions, and is therefore only readable by its owner. Attributes holding credentials or tokens are
+ *              not saved: sessions which held any of them are not restored.
+ *              </p>
  */
 @MCElement(name="sessionManager", topLevel=false)
 public class SessionManager extends AbstractXmlElement implements Cleaner {
+	private static final Logger log = LoggerFactory.getLogger(SessionManager.class);
+
 	private String cookieName;
 	private long timeout;
 	private String domain;
+	private String persistenceFile;
 
 	// TODO: bind session also to remote IP (for public Membrane release)
-	HashMap<String, Session> sessions = new HashMap<String, SessionManager.Session>();
+	final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<String, SessionManager.Session>();
+	/**
+	 * Holds the ID of each session once, due at the time the session would expire if it were not used anymore.
+	 */
+	final ExpiryWheel<String> expiry = new ExpiryWheel<String>(1000, 1024);
+	/**
+	 * User attributes holding credentials or tokens, which are not written to the persistence file.
+	 */
+	private static final Set<String> CREDENTIAL_ATTRIBUTES = ImmutableSet.of("password", "client_secret",
+			"access_token", "refresh_token", "id_token", "code", "oauth2Answer");
 	protected final static String SESSION_ID = "SESSION_ID";
 	protected final static String SESSION = "SESSION";
 
@@ -62,11 +93,14 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 		cookieName = token.getAttributeValue("", "cookieName");
 		timeout = Long.parseLong(StringUtils.defaultIfEmpty(token.getAttributeValue("", "timeout"), "300000"));
 		domain = token.getAttributeValue("", "domain");
+		persistenceFile = token.getAttributeValue("", "persistenceFile");
 	}
 
 	public void init(Router router) {
 		cookieName = StringUtils.defaultIfEmpty(cookieName, "SESSIONID");
 		timeout = timeout == 0 ? 300000 : timeout;
+		if (persistenceFile != null)
+			loadSessions(new File(persistenceFile));
 	}
 
 	/**
@@ -89,9 +123,7 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
     public void removeSession(Exchange exc) {
 		String id = exc.getRequest().getHeader().getFirstCookie(cookieName);
 		if(id != null) {
-			synchronized (sessions) {
-				sessions.remove(id);
-			}
+			sessions.remove(id);
 			return;
 		}
 		Session s = getSession(exc);
@@ -100,83 +132,108 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 
     public void removeSession(Session s){
 		if(s != null){
-
-			synchronized (sessions){
-				List<String> remove = sessions.keySet().stream().filter(sId -> {
-					Session other = sessions.get(sId);
-					return s == other;
-				}).collect(Collectors.toList());
-				remove.forEach(sId -> sessions.remove(sId));
-			}
+			if (s.id != null)
+				sessions.remove(s.id, s);
+			else
+				sessions.values().removeIf(other -> s == other);
 		}
 	}
 
+	/**
+	 * The state of a session is held in volatile fields and a concurrent map, so it can be read and changed without
+	 * locking. (Callers may still synchronize on the session to make several changes atomically with respect to each
+	 * other.)
+	 */
     public static class Session {
-		private Map<String, String> userAttributes = new HashMap<String, String>();
-		private int level = 0;
-		private long lastUse;
-		private String userName;
+		private volatile String id;
+		private volatile Map<String, String> userAttributes = new UserAttributes();
+		private volatile int level = 0;
+		private volatile long lastUse;
+		private volatile String userName;
 
-		public synchronized boolean isAuthorized() {
+		public boolean isAuthorized() {
 			return level == 2;
 		}
-		public synchronized boolean isPreAuthorized() {
+		public boolean isPreAuthorized() {
 			return level == 1;
 		}
 
-		public synchronized Map<String, String> getUserAttributes() {
+		public Map<String, String> getUserAttributes() {
 			return userAttributes;
 		}
 
-		public synchronized void setUserAttributes(Map<String, String> userAttributes) {
-			this.userAttributes = userAttributes;
+		public void setUserAttributes(Map<String, String> userAttributes) {
+			UserAttributes copy = new UserAttributes();
+			copy.putAll(userAttributes);
+			this.userAttributes = copy;
 		}
 
-		public synchronized void clear() {
+		public void clear() {
 			level = 0;
-			userAttributes = new HashMap<String, String>();
+			userAttributes = new UserAttributes();
 		}
 
-		public synchronized void preAuthorize(String userName, Map<String, String> userAttributes) {
+		public void preAuthorize(String userName, Map<String, String> userAttributes) {
 			this.userName = userName;
 			this.userAttributes.putAll(userAttributes);
 			level = 1;
 		}
 
-		public synchronized void authorize() {
+		public void authorize() {
 			level = 2;
 		}
 
-		public synchronized void touch() {
+		public void touch() {
 			lastUse = System.currentTimeMillis();
 		}
 
-		public synchronized long getLastUse() {
+		public long getLastUse() {
 			return lastUse;
 		}
 
-		public synchronized String getUserName() {
+		public String getUserName() {
 			return userName;
 		}
 
-		protected synchronized void setUserName(String userName) {
+		protected void setUserName(String userName) {
 			this.userName = userName;
 		}
 
-		public synchronized void clearCredentials() {
+		public void clearCredentials() {
             getUserAttributes().remove("password");
             getUserAttributes().remove("client_secret");
         }
 
-		protected synchronized int getLevel() {
+		protected int getLevel() {
 			return level;
 		}
 
-		protected synchronized void setLevel(int level) {
+		protected void setLevel(int level) {
 			this.level = level;
 		}
 	}
 
+	/**
+	 * A {@link ConcurrentHashMap} which, like the {@link java.util.HashMap} used before, accepts <code>null</code>
+	 * values: putting <code>null</code> removes the key.
+	 */
+	private static class UserAttributes extends ConcurrentHashMap<String, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String put(String key, String value) {
+			if (value == null)
+				return remove(key);
+			return super.put(key, value);
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends String> m) {
+			for (Map.Entry<? extends String, ? extends String> e : m.entrySet())
+				put(e.getKey(), e.getValue());
+		}
+	}
+
 	private String generateSessionID() {
 		return UUID.randomUUID().toString();
 	}
@@ -193,10 +250,7 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 	}
 
 	private Session getSession(String id){
-		Session s;
-		synchronized (sessions) {
-			s = sessions.get(id);
-		}
+		Session s = sessions.get(id);
 		if (s != null) {
 			s.touch();
 		}
@@ -211,9 +265,10 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 	private Session createSession(Exchange exc, String id)
 	{
 		Session s = new Session();
-		synchronized (sessions) {
-			sessions.put(id, s);
-		}
+		s.id = id;
+		s.touch();
+		sessions.put(id, s);
+		expiry.schedule(id, s.getLastUse() + timeout);
 		String cookieValue = id + "; " +
 				(domain != null ? "Domain=" + domain + "; " : "") +
 				"Path=/" +
@@ -225,15 +280,105 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 		return s;
 	}
 
+	/**
+	 * Removes the expired sessions. Only the sessions which would have expired since the last cleanup if they had not
+	 * been used are looked at: the ones used in the meantime are scheduled again.
+	 */
 	public void cleanup() {
+		long now = System.currentTimeMillis();
+		long death = now - timeout;
+		expiry.advance(now, id -> {
+			Session s = sessions.get(id);
+			if (s == null)
+				return; // removed in the meantime
+			if (s.getLastUse() < death)
+				sessions.remove(id, s);
+			else
+				expiry.schedule(id, s.getLastUse() + timeout);
+		});
+		if (persistenceFile != null)
+			saveSessions(new File(persistenceFile));
+	}
+
+	/**
+	 * Writes all sessions to the file. The sessions are not locked while doing so: the snapshot of sessions being used
+	 * concurrently might be slightly out of date.
+	 */
+	void saveSessions(File file) {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			try (OutputStream os = FileUtil.createOwnerOnly(tmp);
+				 JsonGenerator gen = new JsonFactory().createGenerator(os, JsonEncoding.UTF8)) {
+				gen.writeStartArray();
+				for (Map.Entry<String, Session> e : sessions.entrySet()) {
+					Session s = e.getValue();
+					gen.writeStartObject();
+					gen.writeStringField("id", e.getKey());
+					gen.writeStringField("userName", s.getUserName());
+					gen.writeNumberField("level", s.getLevel());
+					gen.writeNumberField("lastUse", s.getLastUse());
+					gen.writeObjectFieldStart("userAttributes");
+					boolean credentialsOmitted = false;
+					for (Map.Entry<String, String> a : s.getUserAttributes().entrySet())
+						if (CREDENTIAL_ATTRIBUTES.contains(a.getKey()))
+							credentialsOmitted = true;
+						else
+							gen.writeStringField(a.getKey(), a.getValue());
+					gen.writeEndObject();
+					if (credentialsOmitted)
+						gen.writeBooleanField("credentialsOmitted", true);
+					gen.writeEndObject();
+				}
+				gen.writeEndArray();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("Could not write sessions to " + file + ".", e);
+		}
+	}
+
+	void loadSessions(File file) {
+		if (!file.exists())
+			return;
 		long death = System.currentTimeMillis() - timeout;
-		List<String> removeUs = new ArrayList<String>();
-		synchronized (sessions) {
-			for (Map.Entry<String, Session> e : sessions.entrySet())
-				if (e.getValue().getLastUse() < death)
-					removeUs.add(e.getKey());
-			for (String sessionId : removeUs)
-				sessions.remove(sessionId);
+		int loaded = 0;
+		try (InputStream is = new FileInputStream(file);
+			 JsonParser parser = new JsonFactory().createParser(is)) {
+			if (parser.nextToken() != JsonToken.START_ARRAY)
+				throw new IOException("Expected a JSON array.");
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				Session s = new Session();
+				boolean credentialsOmitted = false;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.getCurrentName();
+					parser.nextToken();
+					switch (field) {
+						case "id": s.id = parser.getValueAsString(); break;
+						case "userName": s.setUserName(parser.getValueAsString()); break;
+						case "level": s.setLevel(parser.getIntValue()); break;
+						case "lastUse": s.lastUse = parser.getLongValue(); break;
+						case "credentialsOmitted": credentialsOmitted = parser.getBooleanValue(); break;
+						case "userAttributes":
+							while (parser.nextToken() == JsonToken.FIELD_NAME) {
+								String key = parser.getCurrentName();
+								parser.nextToken();
+								s.getUserAttributes().put(key, parser.getValueAsString());
+							}
+							break;
+						default: parser.skipChildren();
+					}
+				}
+				// a session depending on credentials which were not saved (e.g. an OAuth2 token, which has to be
+				// revalidated) must not be restored as authorized without them
+				if (s.id == null || s.getLastUse() < death || credentialsOmitted)
+					continue;
+				sessions.put(s.id, s);
+				expiry.schedule(s.id, s.getLastUse() + timeout);
+				loaded++;
+			}
+			log.info("Restored " + loaded + " sessions from " + file + ".");
+		} catch (IOException e) {
+			log.warn("Could not read sessions from " + file + ".", e);
 		}
 	}
 
@@ -263,4 +408,24 @@ public class SessionManager extends AbstractXmlElement implements Cleaner {
 	public void setDomain(String domain) {
 		this.domain = domain;
 	}
+
+	public String getPersistenceFile() {
+		return persistenceFile;
+	}
+
+	/**
+	 * @description If set, the sessions are saved to this file once a minute and restored from it on startup. Sessions
+	 *              changed within the last minute before a shutdown are lost. Anybody able to read the file can take
+	 *              over the sessions, as it contains their IDs and user attributes: it is created readable by its owner
+	 *              only. Passwords, client secrets and OAuth2 tokens are not saved, so sessions holding any of them
+	 *              are not restored and have to be authenticated again after a restart.
+	 */
+	@MCAttribute
+	public void setPersistenceFile(String persistenceFile) {
+		this.persistenceFile = persistenceFile;
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
 }
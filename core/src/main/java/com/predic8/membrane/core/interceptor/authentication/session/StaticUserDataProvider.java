@@ -52,14 +52,17 @@ public class StaticUserDataProvider implements UserDataProvider {
 	private BouncyCastleProvider provider = new BouncyCastleProvider();
 	private SecureRandom random = new SecureRandom();
 	private int saltByteSize = 128;
+	private CredentialCache credentialCache = new CredentialCache(1000, 60);
 
 	@Override
 	public Map<String, String> verify(Map<String, String> postData) {
+		return credentialCache.verify(postData, this::verifyPassword);
+	}
+
+	private Map<String, String> verifyPassword(Map<String, String> postData) {
 		String username = postData.get("username");
 		if (username == null)
 			throw new NoSuchElementException();
-		if (username.equals("error"))
-			throw new RuntimeException();
 		User userAttributes;
 		userAttributes = getUsersByName().get(username);
 		if (userAttributes == null)
@@ -198,6 +201,7 @@ public class StaticUserDataProvider implements UserDataProvider {
 			getUsersByName().put(user.getUsername(), user);
 		}
 		this.users = users;
+		credentialCache.invalidateAll();
 	}
 
 	public Map<String, User> getUsersByName() {
@@ -208,9 +212,41 @@ public class StaticUserDataProvider implements UserDataProvider {
 		this.usersByName = usersByName;
 	}
 
+	public CredentialCache getCredentialCache() {
+		return credentialCache;
+	}
+
+	public int getCredentialCacheSize() {
+		return credentialCache.getMaximumSize();
+	}
+
+	/**
+	 * @description The maximum number of successful logins to remember, so that the password hash does not have
+	 *              to be computed again for each request. 0 disables the cache.
+	 * @default 1000
+	 */
+	@MCAttribute
+	public void setCredentialCacheSize(int credentialCacheSize) {
+		credentialCache = new CredentialCache(credentialCacheSize, credentialCache.getTtlSeconds());
+	}
+
+	public long getCredentialCacheTtl() {
+		return credentialCache.getTtlSeconds();
+	}
+
+	/**
+	 * @description How long (in seconds) a successful login is remembered. 0 disables the cache.
+	 * @default 60
+	 */
+	@MCAttribute
+	public void setCredentialCacheTtl(long credentialCacheTtl) {
+		credentialCache = new CredentialCache(credentialCache.getMaximumSize(), credentialCacheTtl);
+	}
+
 	@Override
 	public void init(Router router) {
 		for (User user : users)
 			getUsersByName().put(user.getUsername(), user);
+		credentialCache.invalidateAll();
 	}
 }
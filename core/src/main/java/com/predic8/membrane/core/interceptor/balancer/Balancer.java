@@ -136,6 +136,13 @@ public class Balancer extends AbstractXmlElement {
 		return getCluster(cName).getAvailableNodes(timeout);
 	}
 
+	/**
+	 * @see Cluster#getAvailableNodeSnapshot(long)
+	 */
+	public List<Node> getAvailableNodeSnapshotByCluster(String cName) {
+		return getCluster(cName).getAvailableNodeSnapshot(timeout);
+	}
+
 	public void addSession2Cluster(String sessionId, String cName, Node n) {
 		getCluster(cName).addSession(sessionId, n);
 	}
@@ -35,6 +35,12 @@ public class Cluster {
 	private List<Node> nodes = Collections.synchronizedList(new LinkedList<Node>());
 	private Map<String, Session> sessions = new Hashtable<String, Session>();
 
+	/**
+	 * Immutable list of the nodes which are up, republished whenever the list of nodes or the status of a node is
+	 * changed through this cluster.
+	 */
+	private volatile List<Node> availableNodes = Collections.emptyList();
+
 	public Cluster() {
 	}
 
@@ -47,44 +53,77 @@ public class Cluster {
 		log.debug("node: " + n +" up");
 		getNodeCreateIfNeeded(n).setLastUpTime(System.currentTimeMillis());
 		getNodeCreateIfNeeded(n).setStatus(Status.UP);
+		publishAvailableNodes();
 	}
 
 	public void nodeDown(Node n) {
 		log.debug("node: " + n +" down");
 		getNodeCreateIfNeeded(n).setStatus(Status.DOWN);
+		publishAvailableNodes();
 	}
 
 	public void nodeTakeOut(Node n) {
 		log.debug("node: " + n +" takeout");
 		getNodeCreateIfNeeded(n).setStatus(Status.TAKEOUT);
+		publishAvailableNodes();
 	}
 
 	public boolean removeNode(Node node) {
-		return nodes.remove(node);
+		boolean removed = nodes.remove(node);
+		publishAvailableNodes();
+		return removed;
 	}
 
 	public List<Node> getAvailableNodes(long timeout) {
-		List<Node> l = new LinkedList<Node>();
-		synchronized (nodes) {
-			for (Node n : getAllNodes(timeout)) {
-				if ( n.isUp() ) l.add(n);
+		return new LinkedList<Node>(getAvailableNodeSnapshot(timeout));
+	}
+
+	/**
+	 * Returns the nodes which are up as an immutable list. In contrast to {@link #getAvailableNodes(long)}, this
+	 * neither copies nor locks, so it is meant to be called for every request.
+	 */
+	public List<Node> getAvailableNodeSnapshot(long timeout) {
+		List<Node> snapshot = availableNodes;
+		if (timeout > 0) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < snapshot.size(); i++) {
+				if (now - snapshot.get(i).getLastUpTime() > timeout) {
+					getAllNodes(timeout);
+					return availableNodes;
+				}
 			}
 		}
-		return l;
+		return snapshot;
 	}
 
 	public List<Node> getAllNodes(long timeout) {
 		if (timeout <= 0) {
 			return nodes;
 		}
+		boolean changed = false;
 		synchronized (nodes) {
 			for (Node n : nodes) {
-				if ( System.currentTimeMillis()-n.getLastUpTime() > timeout ) n.setStatus(Status.DOWN);
+				if ( !n.isDown() && System.currentTimeMillis()-n.getLastUpTime() > timeout ) {
+					n.setStatus(Status.DOWN);
+					changed = true;
+				}
 			}
 		}
+		if (changed)
+			publishAvailableNodes();
 		return nodes;
 	}
 
+	private void publishAvailableNodes() {
+		synchronized (nodes) {
+			List<Node> l = new ArrayList<Node>(nodes.size());
+			for (Node n : nodes) {
+				if ( n.isUp() ) l.add(n);
+			}
+			availableNodes = Collections.unmodifiableList(l);
+		}
+	}
+
 	public Node getNode(Node ep) {
 		synchronized (nodes) {
 			return nodes.get(nodes.indexOf(ep));
@@ -107,6 +146,7 @@ public class Cluster {
 			@Override
 			public boolean add(Node e) {
 				nodes.add(e);
+				publishAvailableNodes();
 				return super.add(e);
 			}
 		};
@@ -119,6 +159,7 @@ public class Cluster {
 	public void setNodes(List<Node> nodes) {
 		this.nodes.clear();
 		this.nodes.addAll(nodes);
+		publishAvailableNodes();
 	}
 
 	public String getName() {
@@ -0,0 +1,178 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.balancer;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.predic8.membrane.annot.MCAttribute;
+import com.predic8.membrane.annot.MCElement;
+import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.config.AbstractXmlElement;
+import com.predic8.membrane.core.exchange.AbstractExchange;
+
+/**
+ * @description <p>
+ *              Dispatches requests at random, weighted by how fast each node responded recently.
+ *              </p>
+ *              <p>
+ *              For each node, an exponentially weighted moving average (EWMA) of the response times is kept. A
+ *              node's weight is the inverse of this average multiplied by the number of requests currently sent to
+ *              the node (plus one). So a node answering twice as fast receives about twice as many requests, and a
+ *              node which stalls stops receiving requests as soon as they pile up.
+ *              </p>
+ *              <p>
+ *              Nodes without a measured response time are weighted like the fastest node, so new nodes receive
+ *              requests right away.
+ *              </p>
+ */
+@MCElement(name="latencyStrategy")
+public class LatencyStrategy extends AbstractXmlElement implements DispatchingStrategy {
+
+	private long halfLife = 10000;
+
+	private final ConcurrentHashMap<Node, AtomicReference<Ewma>> latencies = new ConcurrentHashMap<Node, AtomicReference<Ewma>>();
+
+	private static final class Ewma {
+		final double value;
+		final long time;
+
+		Ewma(double value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+
+	public void done(AbstractExchange exc) {
+		Node node = (Node) exc.getProperty("dispatchedNode");
+		if (node == null || exc.getTimeReqSent() <= 0 || exc.getTimeResReceived() < exc.getTimeReqSent())
+			return;
+		long now = System.currentTimeMillis();
+		// response times are measured in milliseconds; 0 would mean an infinite weight
+		double sample = Math.max(1, exc.getTimeResReceived() - exc.getTimeReqSent());
+
+		AtomicReference<Ewma> ref = latencies.get(node);
+		if (ref == null) {
+			ref = new AtomicReference<Ewma>();
+			AtomicReference<Ewma> existing = latencies.putIfAbsent(node, ref);
+			if (existing != null)
+				ref = existing;
+		}
+		while (true) {
+			Ewma old = ref.get();
+			Ewma updated;
+			if (old == null) {
+				updated = new Ewma(sample, now);
+			} else {
+				double oldWeight = Math.pow(0.5, Math.max(0, now - old.time) / (double) halfLife);
+				updated = new Ewma(old.value * oldWeight + sample * (1 - oldWeight), now);
+			}
+			if (ref.compareAndSet(old, updated))
+				return;
+		}
+	}
+
+	public Node dispatch(LoadBalancingInterceptor interceptor, AbstractExchange exc) throws EmptyNodeListException {
+		List<Node> endpoints = interceptor.getEndpoints();
+		int size = endpoints.size();
+		if (size == 0) {
+			throw new EmptyNodeListException();
+		}
+		if (size == 1) {
+			return endpoints.get(0);
+		}
+
+		double[] latency = new double[size];
+		double fastest = Double.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			AtomicReference<Ewma> ref = latencies.get(endpoints.get(i));
+			Ewma ewma = ref == null ? null : ref.get();
+			latency[i] = ewma == null ? -1 : ewma.value;
+			if (ewma != null && ewma.value < fastest)
+				fastest = ewma.value;
+		}
+		if (fastest == Double.MAX_VALUE)
+			fastest = 1;
+
+		double[] cumulativeWeights = latency;
+		double total = 0;
+		for (int i = 0; i < size; i++) {
+			double l = latency[i] < 0 ? fastest : latency[i];
+			total += 1 / (l * (endpoints.get(i).getThreads() + 1));
+			cumulativeWeights[i] = total;
+		}
+		double chosen = ThreadLocalRandom.current().nextDouble() * total;
+		for (int i = 0; i < size - 1; i++)
+			if (chosen < cumulativeWeights[i])
+				return endpoints.get(i);
+		return endpoints.get(size - 1);
+	}
+
+	/**
+	 * @return the average response time of the node in milliseconds, or -1 if it has not been measured yet
+	 */
+	public double getLatency(Node node) {
+		AtomicReference<Ewma> ref = latencies.get(node);
+		Ewma ewma = ref == null ? null : ref.get();
+		return ewma == null ? -1 : ewma.value;
+	}
+
+	public long getHalfLife() {
+		return halfLife;
+	}
+
+	/**
+	 * @description Time in milliseconds after which a measured response time only contributes half as much to the
+	 *              average.
+	 * @default 10000
+	 */
+	@MCAttribute
+	public void setHalfLife(long halfLife) {
+		this.halfLife = halfLife;
+	}
+
+	@Override
+	public void write(XMLStreamWriter out)
+			throws XMLStreamException {
+
+		out.writeStartElement("latencyStrategy");
+
+		out.writeAttribute("halfLife", ""+halfLife);
+
+		out.writeEndElement();
+	}
+
+	@Override
+	protected void parseAttributes(XMLStreamReader token) {
+		if (token.getAttributeValue("", "halfLife") != null)
+			halfLife = Long.parseLong(token.getAttributeValue("", "halfLife"));
+	}
+
+	@Override
+	protected String getElementName() {
+		return "latencyStrategy";
+	}
+
+	@Override
+	public void init(Router router) {
+		// do nothing
+	}
+}
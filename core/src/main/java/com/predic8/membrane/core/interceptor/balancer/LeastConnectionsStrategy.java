@@ -0,0 +1,84 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.balancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.predic8.membrane.annot.MCElement;
+import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.config.AbstractXmlElement;
+import com.predic8.membrane.core.exchange.AbstractExchange;
+
+/**
+ * @description <p>
+ *              Dispatches each request to the node with the fewest outstanding requests (see
+ *              {@link Node#getThreads()}). Nodes with an equal number of outstanding requests are chosen in a
+ *              round-robin fashion.
+ *              </p>
+ *              <p>
+ *              Slow nodes accumulate outstanding requests and therefore automatically receive less traffic.
+ *              </p>
+ */
+@MCElement(name="leastConnectionsStrategy")
+public class LeastConnectionsStrategy extends AbstractXmlElement implements DispatchingStrategy {
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public void done(AbstractExchange exc) {
+	}
+
+	public Node dispatch(LoadBalancingInterceptor interceptor, AbstractExchange exc) throws EmptyNodeListException {
+		List<Node> endpoints = interceptor.getEndpoints();
+		int size = endpoints.size();
+		if (size == 0) {
+			throw new EmptyNodeListException();
+		}
+		int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+		Node best = null;
+		int bestThreads = Integer.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			Node node = endpoints.get((start + i) % size);
+			int threads = node.getThreads();
+			if (threads < bestThreads) {
+				best = node;
+				bestThreads = threads;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public void write(XMLStreamWriter out)
+			throws XMLStreamException {
+
+		out.writeStartElement("leastConnectionsStrategy");
+
+		out.writeEndElement();
+	}
+
+	@Override
+	protected String getElementName() {
+		return "leastConnectionsStrategy";
+	}
+
+	@Override
+	public void init(Router router) {
+		// do nothing
+	}
+}
@@ -101,6 +101,9 @@ public class LoadBalancingInterceptor extends AbstractInterceptor {
 		if(nodeOnlineChecker != null){
 			nodeOnlineChecker.handle(exc);
 		}		
+		Node n = (Node) exc.getProperty("dispatchedNode");
+		if (n != null)
+			n.removeThread();
 	}
 
 	@Override
@@ -210,8 +213,12 @@ public class LoadBalancingInterceptor extends AbstractInterceptor {
 		this.strategy = strategy;
 	}
 
+	/**
+	 * Returns the nodes which are up. The list is an immutable snapshot, which is cheap to get and may therefore be
+	 * requested by the {@link DispatchingStrategy} for every request.
+	 */
 	public List<Node> getEndpoints() {
-		return balancer.getAvailableNodesByCluster(BalancerUtil.getSingleClusterNameOrDefault(balancer)); // fallback
+		return balancer.getAvailableNodeSnapshotByCluster(BalancerUtil.getSingleClusterNameOrDefault(balancer)); // fallback
 	}
 
 	public AbstractSessionIdExtractor getSessionIdExtractor() {
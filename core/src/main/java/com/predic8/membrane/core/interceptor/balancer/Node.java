@@ -184,15 +184,22 @@ public class Node extends AbstractXmlElement {
 	}
 
 	public void addThread() {
-		if (!isUp()) return;
 		threads.incrementAndGet();
 	}
 
 	public void removeThread() {
-		if (!isUp()) return;
-		threads.incrementAndGet();
+		// the counter is reset when the node goes down, so requests still running at that time must not make it negative
+		int current;
+		do {
+			current = threads.get();
+			if (current == 0)
+				return;
+		} while (!threads.compareAndSet(current, current - 1));
 	}
 
+	/**
+	 * @return the number of requests currently sent to this node
+	 */
 	public int getThreads() {
 		return threads.get();
 	}
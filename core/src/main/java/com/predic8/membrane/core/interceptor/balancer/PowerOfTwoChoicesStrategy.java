@@ -0,0 +1,80 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.predic8.membrane.annot.MCElement;
+import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.config.AbstractXmlElement;
+import com.predic8.membrane.core.exchange.AbstractExchange;
+
+/**
+ * @description <p>
+ *              Picks two nodes at random and dispatches the request to the one with fewer outstanding requests.
+ *              </p>
+ *              <p>
+ *              In contrast to the leastConnectionsStrategy, the cost does not grow with the number of nodes, and
+ *              several balancers (or a burst of requests) do not all pick the same, momentarily least loaded node.
+ *              </p>
+ */
+@MCElement(name="powerOfTwoChoicesStrategy")
+public class PowerOfTwoChoicesStrategy extends AbstractXmlElement implements DispatchingStrategy {
+
+	public void done(AbstractExchange exc) {
+	}
+
+	public Node dispatch(LoadBalancingInterceptor interceptor, AbstractExchange exc) throws EmptyNodeListException {
+		List<Node> endpoints = interceptor.getEndpoints();
+		int size = endpoints.size();
+		if (size == 0) {
+			throw new EmptyNodeListException();
+		}
+		if (size == 1) {
+			return endpoints.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int i = random.nextInt(size);
+		int j = random.nextInt(size - 1);
+		if (j >= i)
+			j++;
+		Node a = endpoints.get(i);
+		Node b = endpoints.get(j);
+		return b.getThreads() < a.getThreads() ? b : a;
+	}
+
+	@Override
+	public void write(XMLStreamWriter out)
+			throws XMLStreamException {
+
+		out.writeStartElement("powerOfTwoChoicesStrategy");
+
+		out.writeEndElement();
+	}
+
+	@Override
+	protected String getElementName() {
+		return "powerOfTwoChoicesStrategy";
+	}
+
+	@Override
+	public void init(Router router) {
+		// do nothing
+	}
+}
@@ -21,39 +21,29 @@ import com.predic8.membrane.core.config.AbstractXmlElement;
 import com.predic8.membrane.core.exchange.AbstractExchange;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Strategy that iterates the endpoints according to https://en.wikipedia.org/wiki/Round-robin
  * This strategy is agnostic to every other factor, such as sessions and endpoint performance.
  * All endpoints that are considered to be UP are in.
+ * Dispatching does not lock, so concurrent requests never wait for each other.
  */
 @MCElement(name="roundRobinStrategy")
 public class RoundRobinStrategy extends AbstractXmlElement implements DispatchingStrategy {
 
-	private int last = -1;
+	private final AtomicInteger next = new AtomicInteger();
 
 	public void done(AbstractExchange exc) {
 	}
 
-	public synchronized Node dispatch(LoadBalancingInterceptor interceptor, AbstractExchange exc) throws EmptyNodeListException {
-		//getting a decoupled copy to avoid index out of bounds in case of concurrent modification (dynamic config files reload...)
-		List<Node> endpoints = interceptor.getEndpoints(); //this calls synchronizes access internally.
+	public Node dispatch(LoadBalancingInterceptor interceptor, AbstractExchange exc) throws EmptyNodeListException {
+		//an immutable snapshot, so the size cannot change while choosing the node (dynamic config files reload...)
+		List<Node> endpoints = interceptor.getEndpoints();
 		if (endpoints.isEmpty()) {
 			throw new EmptyNodeListException();
 		}
-		int i = incrementAndGet(endpoints.size());
-		return endpoints.get(i);
-	}
-
-	/**
-	 * Must be atomic, therefore synchronized.
-	 */
-	private synchronized int incrementAndGet(int numEndpoints) {
-		last ++;
-		if (last >= numEndpoints) {
-			last = 0;
-		}
-		return last;
+		return endpoints.get((next.getAndIncrement() & Integer.MAX_VALUE) % endpoints.size());
 	}
 
 	@Override
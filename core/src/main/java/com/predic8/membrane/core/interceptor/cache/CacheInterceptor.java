@@ -21,14 +21,20 @@ import java.io.ObjectOutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Required;
 
 import com.predic8.membrane.annot.MCAttribute;
@@ -59,10 +65,12 @@ import com.predic8.membrane.core.resolver.ResolverMap;
  * @topic 4. Interceptors/Features
  */
 @MCElement(name="cache")
-public class CacheInterceptor extends AbstractInterceptor {
+public class CacheInterceptor extends AbstractInterceptor implements DisposableBean {
 
 	static final Logger log = LoggerFactory.getLogger(CacheInterceptor.class.getName());
 
+	private static final Pattern maxAgePattern = Pattern.compile("max-age\\s*=\\s*(\\d{1,15})", Pattern.CASE_INSENSITIVE);
+
 	private Store store;
 
 	public static abstract class Store {
@@ -70,11 +78,37 @@ public class CacheInterceptor extends AbstractInterceptor {
 
 		public abstract Node get(String url);
 		public abstract void put(String url, Node node);
+
+		/**
+		 * @return the total size of the stored nodes in bytes, or -1 if unknown
+		 */
+		public long getSize() {
+			return -1;
+		}
+
+		/**
+		 * @return the number of stored nodes, or -1 if unknown
+		 */
+		public long getEntryCount() {
+			return -1;
+		}
+
+		/**
+		 * @return the number of nodes removed to stay within the store's limits, or -1 if unknown
+		 */
+		public long getEvictions() {
+			return -1;
+		}
+
+		/**
+		 * Releases the resources held by the store (e.g. background threads and open files).
+		 */
+		public void close() {}
 	}
 
 	@MCElement(name="inMemoryStore")
 	public static class InMemoryStore extends Store {
-		HashMap<String, Node> cache = new HashMap<String, Node>();
+		ConcurrentHashMap<String, Node> cache = new ConcurrentHashMap<String, Node>();
 
 		@Override
 		public Node get(String url) {
@@ -85,6 +119,11 @@ public class CacheInterceptor extends AbstractInterceptor {
 		public void put(String url, Node node) {
 			cache.put(url, node);
 		}
+
+		@Override
+		public long getEntryCount() {
+			return cache.size();
+		}
 	}
 
 	@MCElement(name="fileStore")
@@ -153,6 +192,25 @@ public class CacheInterceptor extends AbstractInterceptor {
 		}
 	}
 
+	/**
+	 * Exchange property holding the latch released when the response to a cache miss has been handled, see
+	 * {@link #pendingMisses}.
+	 */
+	private static final String PENDING_MISS = "membrane.cache.pendingMiss";
+
+	private boolean coalesceMisses = false;
+	private long coalescingTimeout = 30000;
+
+	/**
+	 * URLs currently being fetched because of a cache miss. Other requests for the same URL wait for the response
+	 * to be stored instead of fetching it, too.
+	 */
+	private final ConcurrentHashMap<String, CountDownLatch> pendingMisses = new ConcurrentHashMap<String, CountDownLatch>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalescedMisses = new AtomicLong();
+
 	public Store getStore() {
 		return store;
 	}
@@ -163,11 +221,81 @@ public class CacheInterceptor extends AbstractInterceptor {
 		this.store = store;
 	}
 
+	public boolean isCoalesceMisses() {
+		return coalesceMisses;
+	}
+
+	/**
+	 * @description Whether concurrent requests for a URL not in the cache should wait for the first of them to
+	 *              fetch and store the response, instead of fetching it each. If the response turns out not to be
+	 *              cacheable, the waiting requests are released at once and fetch it themselves.
+	 * @default false
+	 */
+	@MCAttribute
+	public void setCoalesceMisses(boolean coalesceMisses) {
+		this.coalesceMisses = coalesceMisses;
+	}
+
+	public long getCoalescingTimeout() {
+		return coalescingTimeout;
+	}
+
+	/**
+	 * @description Maximum time in milliseconds to wait for another request fetching the same URL, before fetching
+	 *              it independently.
+	 * @default 30000
+	 */
+	@MCAttribute
+	public void setCoalescingTimeout(long coalescingTimeout) {
+		this.coalescingTimeout = coalescingTimeout;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of requests which waited for another request to fetch the same URL
+	 */
+	public long getCoalescedMisses() {
+		return coalescedMisses.get();
+	}
+
 	@Override
 	public void init(Router router) throws Exception {
 		store.init(router);
 	}
 
+	@Override
+	public void destroy() {
+		store.close();
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Caches responses.";
+	}
+
+	@Override
+	public String getLongDescription() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(getShortDescription());
+		sb.append("\nHits: ").append(getHits());
+		sb.append("\nMisses: ").append(getMisses());
+		sb.append("\nCoalesced misses: ").append(getCoalescedMisses());
+		if (store.getEntryCount() != -1)
+			sb.append("\nEntries: ").append(store.getEntryCount());
+		if (store.getSize() != -1)
+			sb.append("\nSize: ").append(store.getSize()).append(" bytes");
+		if (store.getEvictions() != -1)
+			sb.append("\nEvictions: ").append(store.getEvictions());
+		return sb.toString();
+	}
+
 	/*
 	 * HTTP/1.1 200 OK
 	 * Date: Tue, 10 Mar 2015 13:10:30 GMT
@@ -186,6 +314,29 @@ public class CacheInterceptor extends AbstractInterceptor {
 		return dateFormat.format(new Date(timestamp));
 	}
 
+	/**
+	 * @return the time (in milliseconds since the epoch) after which the response must not be served from the
+	 * cache, as specified by its "Cache-Control: max-age" or "Expires" header, or 0 if unspecified
+	 */
+	static long getExpires(Response response) {
+		String cacheControl = response.getHeader().getFirstValue(Header.CACHE_CONTROL);
+		if (cacheControl != null) {
+			Matcher m = maxAgePattern.matcher(cacheControl);
+			if (m.find())
+				return System.currentTimeMillis() + Long.parseLong(m.group(1)) * 1000;
+		}
+		String expires = response.getHeader().getFirstValue(Header.EXPIRES);
+		if (expires != null) {
+			try {
+				return Math.max(1, fromRFC(expires));
+			} catch (ParseException e) {
+				// "Expires: 0" and other invalid dates mean "already expired"
+				return 1;
+			}
+		}
+		return 0;
+	}
+
 	static long fromRFC(String timestamp) throws ParseException {
 		if (timestamp == null)
 			return 0;
@@ -197,10 +348,14 @@ public class CacheInterceptor extends AbstractInterceptor {
 	public Outcome handleRequest(Exchange exc) throws Exception {
 		String dest = exc.getDestinations().get(0);
 		Node node = store.get(dest);
+		if (node == null && coalesceMisses && canCache(exc.getRequest(), false))
+			node = awaitPendingMiss(exc, dest);
 		if (node != null && node.canSatisfy(exc.getRequest())) {
+			hits.incrementAndGet();
 			exc.setResponse(node.toResponse(exc.getRequest()));
 			return Outcome.RETURN;
 		}
+		misses.incrementAndGet();
 
 		if (canCache(exc.getRequest(), true)) {
 			// simplify request to allow caching
@@ -210,7 +365,42 @@ public class CacheInterceptor extends AbstractInterceptor {
 		return super.handleRequest(exc);
 	}
 
+	/**
+	 * If another request is already fetching the URL, waits for it and returns the stored node. Otherwise registers
+	 * this exchange as fetching the URL.
+	 *
+	 * @return the node stored by the other request, or null (e.g. if its response could not be cached), in which
+	 *         case this exchange fetches the URL itself without registering
+	 */
+	private Node awaitPendingMiss(Exchange exc, String dest) throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		CountDownLatch pending = pendingMisses.putIfAbsent(dest, latch);
+		if (pending == null) {
+			exc.setProperty(PENDING_MISS, latch);
+			return null;
+		}
+		coalescedMisses.incrementAndGet();
+		if (!pending.await(coalescingTimeout, TimeUnit.MILLISECONDS)) {
+			// the exchange fetching the URL seems to be stuck
+			pendingMisses.remove(dest, pending);
+			return null;
+		}
+		return store.get(dest);
+	}
+
+	private void completePendingMiss(Exchange exc) {
+		CountDownLatch latch = (CountDownLatch) exc.getProperty(PENDING_MISS);
+		if (latch == null)
+			return;
+		exc.getProperties().remove(PENDING_MISS);
+		pendingMisses.remove(exc.getDestinations().get(0), latch);
+		latch.countDown();
+	}
 
+	@Override
+	public void handleAbort(Exchange exc) {
+		completePendingMiss(exc);
+	}
 
 	@Override
 	public Outcome handleResponse(Exchange exc) throws Exception {
@@ -239,6 +429,8 @@ public class CacheInterceptor extends AbstractInterceptor {
 			}
 		} catch (Exception e) {
 			log.warn("Exception during cache handling.", e);
+		} finally {
+			completePendingMiss(exc);
 		}
 
 		// we drop some headers so the client does not get the idea we support
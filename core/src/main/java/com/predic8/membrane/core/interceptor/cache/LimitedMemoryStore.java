@@ -0,0 +1,224 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+package com.predic8.membrane.core.interceptor.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.predic8.membrane.annot.MCAttribute;
+import com.predic8.membrane.annot.MCElement;
+
+/**
+ * @description <p>
+ *              Keeps cached responses in memory, limited by the total size of the responses and by the number of
+ *              entries.
+ *              </p>
+ *              <p>
+ *              When a limit is exceeded, entries are evicted using a segmented LRU policy: New entries are put into
+ *              a probationary segment; entries hit again are moved into a protected segment (taking up to 80% of
+ *              the size limit), so that a burst of new, never requested again URLs does not evict the popular ones.
+ *              </p>
+ *              <p>
+ *              Entries expire as specified by the "Cache-Control: max-age" or "Expires" header of the response.
+ *              </p>
+ */
+@MCElement(name="limitedMemoryStore")
+public class LimitedMemoryStore extends CacheInterceptor.Store {
+
+	private static final int ENTRY_OVERHEAD = 128;
+	private static final int PROTECTED_PERCENT = 80;
+
+	private long maxSize = 100 * 1024 * 1024;
+	private int maxEntries = 10000;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Guards the segment lists. Lookups only try to acquire it to record the hit, so they never block each other.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Entry probation = new Entry(null, null, 0);
+	private final Entry protectedSegment = new Entry(null, null, 0);
+	private long protectedSize;
+	private volatile long size;
+	private volatile int count;
+
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	private static class Entry {
+		final String url;
+		final Node node;
+		final int size;
+		boolean isProtected;
+		boolean removed;
+		Entry prev = this, next = this;
+
+		Entry(String url, Node node, int size) {
+			this.url = url;
+			this.node = node;
+			this.size = size;
+		}
+
+		void unlink() {
+			prev.next = next;
+			next.prev = prev;
+			prev = next = this;
+		}
+
+		void linkAfter(Entry head) {
+			next = head.next;
+			prev = head;
+			head.next.prev = this;
+			head.next = this;
+		}
+	}
+
+	@Override
+	public Node get(String url) {
+		Entry entry = entries.get(url);
+		if (entry == null)
+			return null;
+		if (isExpired(entry.node)) {
+			lock.lock();
+			try {
+				if (!entry.removed) {
+					remove(entry);
+					expirations.incrementAndGet();
+				}
+			} finally {
+				lock.unlock();
+			}
+			return null;
+		}
+		if (lock.tryLock()) {
+			try {
+				if (!entry.removed)
+					recordHit(entry);
+			} finally {
+				lock.unlock();
+			}
+		}
+		return entry.node;
+	}
+
+	@Override
+	public void put(String url, Node node) {
+		if (isExpired(node))
+			return;
+		Entry entry = new Entry(url, node, node.estimateHeapSize() + 2 * url.length() + ENTRY_OVERHEAD);
+		if (entry.size > maxSize)
+			return;
+		lock.lock();
+		try {
+			Entry old = entries.put(url, entry);
+			if (old != null)
+				unlink(old);
+			entry.linkAfter(probation);
+			size += entry.size;
+			count++;
+			while (size > maxSize || count > maxEntries) {
+				Entry victim = probation.prev != probation ? probation.prev : protectedSegment.prev;
+				remove(victim);
+				evictions.incrementAndGet();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isExpired(Node node) {
+		return node.getExpires() != 0 && node.getExpires() <= System.currentTimeMillis();
+	}
+
+	/**
+	 * Moves the entry to the front of the protected segment, demoting the protected segment's least recently used
+	 * entries to the probationary segment if it grows too large.
+	 */
+	private void recordHit(Entry entry) {
+		entry.unlink();
+		entry.linkAfter(protectedSegment);
+		if (entry.isProtected)
+			return;
+		entry.isProtected = true;
+		protectedSize += entry.size;
+		while (protectedSize > maxSize / 100 * PROTECTED_PERCENT && protectedSegment.prev != entry) {
+			Entry demoted = protectedSegment.prev;
+			demoted.unlink();
+			demoted.isProtected = false;
+			protectedSize -= demoted.size;
+			demoted.linkAfter(probation);
+		}
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.url, entry);
+		unlink(entry);
+	}
+
+	private void unlink(Entry entry) {
+		entry.unlink();
+		entry.removed = true;
+		if (entry.isProtected)
+			protectedSize -= entry.size;
+		size -= entry.size;
+		count--;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @description Maximum total size of the cached responses in bytes.
+	 * @default 104857600
+	 */
+	@MCAttribute
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @description Maximum number of cached responses.
+	 * @default 10000
+	 */
+	@MCAttribute
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public long getEntryCount() {
+		return count;
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getExpirations() {
+		return expirations.get();
+	}
+}
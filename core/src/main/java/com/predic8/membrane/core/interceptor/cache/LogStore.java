@@ -0,0 +1,623 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+package com.predic8.membrane.core.interceptor.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.predic8.membrane.annot.MCAttribute;
+import com.predic8.membrane.annot.MCChildElement;
+import com.predic8.membrane.annot.MCElement;
+import com.predic8.membrane.core.Constants;
+import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.resolver.ResolverMap;
+
+/**
+ * @description <p>
+ *              Keeps cached responses on disk in a log of append-only segment files, with an index from URL to
+ *              record held in memory.
+ *              </p>
+ *              <p>
+ *              The segments are memory-mapped: Cached bodies are streamed from the mapping to the client, without
+ *              being deserialized or copied onto the heap first.
+ *              </p>
+ *              <p>
+ *              Segments containing mostly overwritten or expired records are compacted in the background. When the
+ *              log exceeds its maximum size, the oldest segment is dropped.
+ *              </p>
+ *              <p>
+ *              The directory is locked while the store is in use, so it cannot be shared by two stores (for example
+ *              the old and the new one during a hot redeployment): the new one fails to start until the old one has
+ *              been closed.
+ *              </p>
+ *              <p>
+ *              Optionally, another store (e.g. a limitedMemoryStore) can be used as first level cache in front of
+ *              the log.
+ *              </p>
+ */
+@MCElement(name="logStore")
+public class LogStore extends CacheInterceptor.Store {
+
+	private static final Logger log = LoggerFactory.getLogger(LogStore.class.getName());
+
+	private static final String SUFFIX = ".log";
+	private static final byte POSITIVE = 1;
+	private static final byte NEGATIVE = 2;
+	/**
+	 * Each record starts with its length and a CRC32 of the rest.
+	 */
+	private static final int RECORD_HEADER_LENGTH = 8;
+	private static final String LOCK_FILE = "lock";
+	/**
+	 * Segments start with this size and double in size until they reach the segment size.
+	 */
+	private static final int INITIAL_SEGMENT_SIZE = 1024 * 1024;
+
+	private String dir;
+	private long maxSize = 1024L * 1024 * 1024;
+	private int segmentSize = 64 * 1024 * 1024;
+	private int compactionThreshold = 50;
+	private long compactionInterval = 60000;
+	private CacheInterceptor.Store memoryStore;
+
+	private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+	private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<Integer, Segment>();
+	/**
+	 * Guards writing to the log. Reading does not need a lock.
+	 */
+	private final Object writeLock = new Object();
+	private Segment active;
+	private final AtomicLong evictions = new AtomicLong();
+	private Timer compactor;
+	private RandomAccessFile lockFile;
+	private FileLock lock;
+
+	private static class Location {
+		final Segment segment;
+		final int offset;
+		final int length;
+
+		Location(Segment segment, int offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private static class Segment {
+		final int id;
+		final File file;
+		final RandomAccessFile raf;
+		final FileChannel channel;
+		/**
+		 * Replaced by a larger mapping when the segment grows. Readers which obtained an older mapping can continue
+		 * to use it, as it covers all records they can know of.
+		 */
+		volatile MappedByteBuffer buffer;
+		volatile int writePosition;
+		final AtomicLong liveBytes = new AtomicLong();
+		/**
+		 * The URLs of the records written to this segment (including overwritten ones), so that its records can be
+		 * found without looking at the whole index.
+		 */
+		final Queue<String> urls = new ConcurrentLinkedQueue<String>();
+
+		Segment(int id, File file, int size) throws IOException {
+			this.id = id;
+			this.file = file;
+			raf = new RandomAccessFile(file, "rw");
+			if (raf.length() < size)
+				raf.setLength(size);
+			channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+
+		/**
+		 * @param maxSize the size the segment may grow to, at least the new write position
+		 */
+		void write(ByteBuffer record, int maxSize) throws IOException {
+			int position = writePosition;
+			int end = position + record.remaining();
+			if (end > buffer.capacity())
+				grow(end, maxSize);
+			while (record.hasRemaining())
+				position += channel.write(record, position);
+			writePosition = position;
+		}
+
+		private void grow(int required, int maxSize) throws IOException {
+			long size = Math.max(buffer.capacity(), 1);
+			while (size < required)
+				size *= 2;
+			size = Math.min(size, maxSize);
+			raf.setLength(size);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		/**
+		 * Existing readers can continue to use the mapping.
+		 */
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.warn("Could not close " + file, e);
+			}
+		}
+
+		void delete() {
+			close();
+			if (!file.delete())
+				log.warn("Could not delete " + file);
+		}
+	}
+
+	@Override
+	public void init(Router router) {
+		if (memoryStore != null)
+			memoryStore.init(router);
+		dir = ResolverMap.combine(router.getBaseLocation(), dir);
+		File d = new File(dir);
+		if (!d.exists())
+			if (!d.mkdirs())
+				throw new RuntimeException("Could not create directory " + dir);
+		lock(d);
+		try {
+			synchronized (writeLock) {
+				openSegments(d);
+				active = createSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+			}
+		} catch (IOException e) {
+			close();
+			throw new RuntimeException("Could not open cache log in " + dir, e);
+		}
+		compactor = new Timer("Cache Log Compactor " + dir, true);
+		compactor.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					compact();
+				} catch (Exception e) {
+					log.warn("Could not compact cache log in " + dir, e);
+				}
+			}
+		}, compactionInterval, compactionInterval);
+	}
+
+	private void lock(File d) {
+		try {
+			lockFile = new RandomAccessFile(new File(d, LOCK_FILE), "rw");
+			try {
+				lock = lockFile.getChannel().tryLock();
+			} catch (OverlappingFileLockException e) {
+				// held by another store within this JVM
+			}
+			if (lock == null) {
+				lockFile.close();
+				lockFile = null;
+				throw new RuntimeException("The cache log in " + dir + " is in use by another store.");
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not lock " + dir, e);
+		}
+	}
+
+	/**
+	 * Stops the compaction and closes the segment files and the directory lock. Responses already handed out can
+	 * still be read, as their mappings stay valid until they are garbage collected.
+	 */
+	@Override
+	public void close() {
+		if (compactor != null) {
+			compactor.cancel();
+			compactor = null;
+		}
+		synchronized (writeLock) {
+			index.clear();
+			for (Segment segment : segments.values())
+				segment.close();
+			segments.clear();
+			active = null;
+		}
+		if (memoryStore != null)
+			memoryStore.close();
+		try {
+			if (lock != null)
+				lock.release();
+			if (lockFile != null)
+				lockFile.close();
+		} catch (IOException e) {
+			log.warn("Could not unlock " + dir, e);
+		}
+		lock = null;
+		lockFile = null;
+	}
+
+	private void openSegments(File d) throws IOException {
+		File[] files = d.listFiles();
+		if (files == null)
+			throw new IOException("Could not list " + d);
+		for (File f : files) {
+			String name = f.getName();
+			if (!name.endsWith(SUFFIX))
+				continue;
+			try {
+				int id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+				segments.put(id, new Segment(id, f, 0));
+			} catch (NumberFormatException e) {
+				// not ours
+			}
+		}
+		for (Segment segment : segments.values()) {
+			scan(segment);
+			if (segment.writePosition == 0) {
+				segments.remove(segment.id);
+				segment.delete();
+			}
+		}
+	}
+
+	/**
+	 * Adds the records of the segment to the index, stopping at the first incomplete or corrupt record.
+	 */
+	private void scan(Segment segment) {
+		ByteBuffer b = segment.buffer.duplicate();
+		int position = 0;
+		while (position + RECORD_HEADER_LENGTH <= b.capacity()) {
+			int length = b.getInt(position);
+			if (length <= RECORD_HEADER_LENGTH || position + length > b.capacity())
+				break;
+			b.limit(position + length).position(position + RECORD_HEADER_LENGTH);
+			CRC32 crc = new CRC32();
+			crc.update(b.slice());
+			if ((int) crc.getValue() != b.getInt(position + 4))
+				break;
+			b.position(position + RECORD_HEADER_LENGTH + 1 + 4 + 8 + 8);
+			String url = readString(b);
+			b.limit(b.capacity());
+			addToIndex(url, new Location(segment, position, length));
+			position += length;
+		}
+		segment.writePosition = position;
+	}
+
+	private void addToIndex(String url, Location location) {
+		location.segment.urls.add(url);
+		location.segment.liveBytes.addAndGet(location.length);
+		Location old = index.put(url, location);
+		if (old != null)
+			old.segment.liveBytes.addAndGet(-old.length);
+	}
+
+	private void removeFromIndex(String url, Location location) {
+		if (index.remove(url, location))
+			location.segment.liveBytes.addAndGet(-location.length);
+	}
+
+	private Segment createSegment(int id) throws IOException {
+		Segment segment = new Segment(id, new File(dir, String.format("%08d", id) + SUFFIX), Math.min(INITIAL_SEGMENT_SIZE, segmentSize));
+		segments.put(id, segment);
+		return segment;
+	}
+
+	@Override
+	public Node get(String url) {
+		if (memoryStore != null) {
+			Node node = memoryStore.get(url);
+			if (node != null)
+				return node;
+		}
+		Location location = index.get(url);
+		if (location == null)
+			return null;
+		Node node = read(location);
+		if (node.getExpires() != 0 && node.getExpires() <= System.currentTimeMillis()) {
+			removeFromIndex(url, location);
+			return null;
+		}
+		if (memoryStore != null)
+			memoryStore.put(url, node);
+		return node;
+	}
+
+	private Node read(Location location) {
+		ByteBuffer b = location.segment.buffer.duplicate();
+		b.limit(location.offset + location.length).position(location.offset + RECORD_HEADER_LENGTH);
+		byte type = b.get();
+		int status = b.getInt();
+		long expires = b.getLong();
+		long lastModified = b.getLong();
+		readString(b); // url
+		if (type == NEGATIVE) {
+			NegativeNode node = new NegativeNode(status);
+			node.expires = expires;
+			return node;
+		}
+		String contentType = readString(b);
+		String inResponseToAccept = readString(b);
+		String location_ = readString(b);
+		int contentLength = b.getInt();
+		ByteBuffer content = b.slice();
+		content.limit(contentLength);
+		MappedNode node = new MappedNode(content);
+		node.status = status;
+		node.expires = expires;
+		node.lastModified = lastModified;
+		node.contentType = contentType;
+		node.inResponseToAccept = inResponseToAccept;
+		node.location = location_;
+		return node;
+	}
+
+	private static String readString(ByteBuffer b) {
+		int length = b.getInt();
+		if (length == -1)
+			return null;
+		byte[] bytes = new byte[length];
+		b.get(bytes);
+		return new String(bytes, Constants.UTF_8_CHARSET);
+	}
+
+	@Override
+	public void put(String url, Node node) {
+		if (memoryStore != null)
+			memoryStore.put(url, node);
+		try {
+			byte[] record = encode(url, node);
+			if (record.length > segmentSize) {
+				log.warn("Could not cache " + url + " in the log, as it is larger than the segment size.");
+				return;
+			}
+			synchronized (writeLock) {
+				if (active == null)
+					return; // closed
+				if (active.writePosition + record.length > segmentSize)
+					roll();
+				int offset = active.writePosition;
+				active.write(ByteBuffer.wrap(record), segmentSize);
+				addToIndex(url, new Location(active, offset, record.length));
+			}
+		} catch (IOException e) {
+			log.warn("Could not write " + url + " to the cache log.", e);
+		}
+	}
+
+	private byte[] encode(String url, Node node) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeInt(0); // length
+		out.writeInt(0); // CRC
+		if (node instanceof PositiveNode) {
+			PositiveNode p = (PositiveNode) node;
+			out.writeByte(POSITIVE);
+			out.writeInt(p.status);
+			out.writeLong(p.expires);
+			out.writeLong(p.lastModified);
+			writeString(out, url);
+			writeString(out, p.contentType);
+			writeString(out, p.inResponseToAccept);
+			writeString(out, p.location);
+			ByteBuffer content = p.getContentBuffer();
+			out.writeInt(content.remaining());
+			if (content.hasArray()) {
+				out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+			} else {
+				byte[] bytes = new byte[content.remaining()];
+				content.get(bytes);
+				out.write(bytes);
+			}
+		} else {
+			NegativeNode n = (NegativeNode) node;
+			out.writeByte(NEGATIVE);
+			out.writeInt(n.status);
+			out.writeLong(n.expires);
+			out.writeLong(0);
+			writeString(out, url);
+		}
+		out.close();
+		byte[] record = baos.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(record, RECORD_HEADER_LENGTH, record.length - RECORD_HEADER_LENGTH);
+		ByteBuffer.wrap(record).putInt(record.length).putInt((int) crc.getValue());
+		return record;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(Constants.UTF_8_CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Starts a new segment and drops the oldest segments while the log is too large. Requires {@link #writeLock}.
+	 */
+	private void roll() throws IOException {
+		active = createSegment(active.id + 1);
+		while (getSize() > maxSize && segments.size() > 1) {
+			Segment oldest = segments.pollFirstEntry().getValue();
+			for (String url : oldest.urls) {
+				Location location = index.get(url);
+				if (location != null && location.segment == oldest && index.remove(url, location))
+					evictions.incrementAndGet();
+			}
+			oldest.delete();
+		}
+	}
+
+	/**
+	 * Copies the live, unexpired records of segments consisting mostly of dead records into the active segment and
+	 * deletes them.
+	 */
+	void compact() throws IOException {
+		synchronized (writeLock) {
+			if (active == null)
+				return; // closed
+			List<Segment> candidates = new ArrayList<Segment>();
+			for (Segment segment : segments.values())
+				if (segment != active && segment.liveBytes.get() * 100 <= (long) segment.writePosition * (100 - compactionThreshold))
+					candidates.add(segment);
+			for (Segment segment : candidates) {
+				if (!segments.containsKey(segment.id))
+					continue; // dropped by roll()
+				for (String url : segment.urls) {
+					Location location = index.get(url);
+					if (location == null || location.segment != segment)
+						continue; // overwritten, or already moved
+					long expires = segment.buffer.getLong(location.offset + RECORD_HEADER_LENGTH + 1 + 4);
+					if (expires != 0 && expires <= System.currentTimeMillis()) {
+						removeFromIndex(url, location);
+						continue;
+					}
+					ByteBuffer record = segment.buffer.duplicate();
+					record.limit(location.offset + location.length).position(location.offset);
+					if (active.writePosition + location.length > segmentSize)
+						roll();
+					Location moved = new Location(active, active.writePosition, location.length);
+					active.write(record, segmentSize);
+					active.urls.add(url);
+					active.liveBytes.addAndGet(location.length);
+					if (index.replace(url, location, moved))
+						segment.liveBytes.addAndGet(-location.length);
+					else
+						active.liveBytes.addAndGet(-location.length);
+				}
+				if (segments.remove(segment.id) != null)
+					segment.delete();
+			}
+		}
+	}
+
+	public String getDir() {
+		return dir;
+	}
+
+	/**
+	 * @description Directory containing the log segments.
+	 */
+	@MCAttribute
+	public void setDir(String dir) {
+		this.dir = dir;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @description Maximum size of the log in bytes. When it is exceeded, the oldest segment is dropped.
+	 * @default 1073741824
+	 */
+	@MCAttribute
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	/**
+	 * @description Maximum size of a log segment in bytes. This also limits the size of a cached response. Segments
+	 *              start with 1 MB and grow as needed.
+	 * @default 67108864
+	 */
+	@MCAttribute
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	public int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * @description Percentage of overwritten or expired data in a segment, from which on the segment is compacted.
+	 * @default 50
+	 */
+	@MCAttribute
+	public void setCompactionThreshold(int compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	public long getCompactionInterval() {
+		return compactionInterval;
+	}
+
+	/**
+	 * @description Milliseconds between checks whether segments should be compacted.
+	 * @default 60000
+	 */
+	@MCAttribute
+	public void setCompactionInterval(long compactionInterval) {
+		this.compactionInterval = compactionInterval;
+	}
+
+	public CacheInterceptor.Store getMemoryStore() {
+		return memoryStore;
+	}
+
+	/**
+	 * @description Optional store consulted before the log, and filled with the responses found in the log.
+	 */
+	@MCChildElement
+	public void setMemoryStore(CacheInterceptor.Store memoryStore) {
+		this.memoryStore = memoryStore;
+	}
+
+	/**
+	 * @return the number of bytes written to the log segments
+	 */
+	@Override
+	public long getSize() {
+		long size = 0;
+		for (Segment segment : segments.values())
+			size += segment.writePosition;
+		return size;
+	}
+
+	@Override
+	public long getEntryCount() {
+		return index.size();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
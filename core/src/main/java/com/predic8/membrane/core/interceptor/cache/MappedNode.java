@@ -0,0 +1,96 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+package com.predic8.membrane.core.interceptor.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.predic8.membrane.core.http.Body;
+import com.predic8.membrane.core.http.Header;
+import com.predic8.membrane.core.http.Response;
+
+/**
+ * A {@link PositiveNode} read by the {@link LogStore}: The content is not copied onto the heap, but streamed from the
+ * memory-mapped log segment when the response is written.
+ */
+class MappedNode extends PositiveNode {
+	private static final long serialVersionUID = 1L;
+
+	private final transient ByteBuffer mappedContent;
+
+	MappedNode(ByteBuffer mappedContent) {
+		this.mappedContent = mappedContent;
+	}
+
+	@Override
+	protected void setBody(Response response) {
+		ByteBuffer buffer = mappedContent.duplicate();
+		response.getHeader().removeFields(Header.CONTENT_ENCODING);
+		response.getHeader().removeFields(Header.TRANSFER_ENCODING);
+		response.getHeader().setContentLength(buffer.remaining());
+		try {
+			response.setBody(new Body(new ByteBufferInputStream(buffer), buffer.remaining()));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * The mapping is not on the heap, but the node keeps it from being released.
+	 */
+	@Override
+	protected int getContentLength() {
+		return mappedContent.remaining();
+	}
+
+	@Override
+	protected ByteBuffer getContentBuffer() {
+		return mappedContent.duplicate();
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining())
+				return -1;
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -22,8 +22,13 @@ class NegativeNode extends Node {
 
 	int status;
 
+	NegativeNode(int status) {
+		this.status = status;
+	}
+
 	public NegativeNode(Exchange exc) {
 		status = exc.getResponse().getStatusCode();
+		expires = CacheInterceptor.getExpires(exc.getResponse());
 	}
 
 	@Override
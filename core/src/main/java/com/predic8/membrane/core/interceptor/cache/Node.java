@@ -21,6 +21,22 @@ import com.predic8.membrane.core.http.Response;
 abstract class Node implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Time in milliseconds since the epoch after which the node must not be used anymore, or 0 if unknown.
+	 */
+	long expires;
+
+	public long getExpires() {
+		return expires;
+	}
+
+	/**
+	 * @return the approximate number of bytes the node occupies on the heap
+	 */
+	public int estimateHeapSize() {
+		return 64;
+	}
+
 	public boolean canSatisfy(Request request) {
 		return true; // TODO
 	}
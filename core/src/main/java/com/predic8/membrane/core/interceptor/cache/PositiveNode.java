@@ -14,6 +14,7 @@
 package com.predic8.membrane.core.interceptor.cache;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 import org.slf4j.Logger;
@@ -39,6 +40,12 @@ class PositiveNode extends Node {
 	String location;
 	int status;
 
+	/**
+	 * For subclasses restoring a node which has been stored in another form.
+	 */
+	PositiveNode() {
+	}
+
 	public PositiveNode(Exchange exchange) throws IOException, ParseException {
 		Request request = exchange.getRequest();
 		Response response = exchange.getResponse();
@@ -48,6 +55,7 @@ class PositiveNode extends Node {
 		inResponseToAccept = request.getHeader().getNormalizedValue(Header.ACCEPT);
 		location = response.getHeader().getFirstValue(Header.LOCATION);
 		status = response.getStatusCode();
+		expires = CacheInterceptor.getExpires(response);
 
 		/*
 		if (contentType == null) {
@@ -79,9 +87,31 @@ class PositiveNode extends Node {
 		if (location != null)
 			builder.header(Header.LOCATION, location);
 		if (lastModified != 0)
-			return builder.header(Header.LAST_MODIFIED, CacheInterceptor.toRFC(lastModified)).body(content).build();
-		else
-			return builder.body(content).build();
+			builder.header(Header.LAST_MODIFIED, CacheInterceptor.toRFC(lastModified));
+		Response response = builder.build();
+		setBody(response);
+		return response;
+	}
+
+	protected void setBody(Response response) {
+		response.setBodyContent(content);
+	}
+
+	@Override
+	public int estimateHeapSize() {
+		return super.estimateHeapSize() + getContentLength() + 2 * (length(contentType) + length(inResponseToAccept) + length(location));
+	}
+
+	protected int getContentLength() {
+		return content.length;
+	}
+
+	protected ByteBuffer getContentBuffer() {
+		return ByteBuffer.wrap(content);
+	}
+
+	private static int length(String s) {
+		return s == null ? 0 : s.length();
 	}
 
 	@Override
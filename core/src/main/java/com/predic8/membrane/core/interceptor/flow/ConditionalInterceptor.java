@@ -31,6 +31,7 @@ import com.predic8.membrane.core.interceptor.InterceptorFlowController;
 import com.predic8.membrane.core.interceptor.Outcome;
 import com.predic8.membrane.core.lang.LanguageSupport;
 import com.predic8.membrane.core.lang.groovy.GroovyLanguageSupport;
+import com.predic8.membrane.core.lang.javascript.JavascriptLanguageSupport;
 
 /**
  * @description
@@ -61,6 +62,7 @@ public class ConditionalInterceptor extends AbstractFlowInterceptor {
 
 	public enum LanguageType {
 		GROOVY,
+		JAVASCRIPT,
 	}
 
 	public ConditionalInterceptor() {
@@ -70,7 +72,7 @@ public class ConditionalInterceptor extends AbstractFlowInterceptor {
 	@Override
 	public void init(Router router) throws Exception {
 		super.init(router);
-		LanguageSupport ls = new GroovyLanguageSupport();
+		LanguageSupport ls = language == LanguageType.JAVASCRIPT ? new JavascriptLanguageSupport() : new GroovyLanguageSupport();
 		condition = ls.compileExpression(router, test);
 	}
 
@@ -98,7 +100,7 @@ public class ConditionalInterceptor extends AbstractFlowInterceptor {
 		return language;
 	}
 	/**
-	 * @description the language of the 'test' condition
+	 * @description the language of the 'test' condition ("groovy" or "javascript")
 	 * @example groovy
 	 */
 	@MCAttribute
@@ -106,6 +108,10 @@ public class ConditionalInterceptor extends AbstractFlowInterceptor {
 		this.language = language;
 	}
 
+	public Function<Map<String, Object>, Boolean> getCondition() {
+		return condition;
+	}
+
 	public String getTest() {
 		return test;
 	}
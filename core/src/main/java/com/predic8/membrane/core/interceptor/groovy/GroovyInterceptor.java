@@ -128,6 +128,10 @@ public class GroovyInterceptor extends AbstractInterceptor {
 		}
 	}
 
+	public Function<Map<String, Object>, Object> getScript() {
+		return script;
+	}
+
 	public String getSrc() {
 		return src;
 	}
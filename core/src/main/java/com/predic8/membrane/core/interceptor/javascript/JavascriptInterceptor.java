@@ -142,6 +142,10 @@ public class JavascriptInterceptor extends AbstractInterceptor {
         return result;
     }
 
+    public Function<Map<String, Object>, Object> getScript() {
+        return script;
+    }
+
     public String getSrc() {
         return src;
     }
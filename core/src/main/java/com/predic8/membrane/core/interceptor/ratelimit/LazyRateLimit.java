@@ -34,7 +34,7 @@ public class LazyRateLimit extends RateLimitStrategy {
 	@Override
 	public boolean isRequestLimitReached(String ip) {
 		synchronized (nextCleanup) {
-			if (DateTime.now().isAfter(nextCleanup)) {
+			if (!DateTime.now().isBefore(nextCleanup)) {
 				for (AtomicInteger info : requestCounterFromIP.values()) {
 					info.set(0);
 				}
@@ -0,0 +1,98 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.Duration;
+
+/**
+ * Base class for rate limits keeping their complete state per key in a single {@link AtomicLong}, which is updated
+ * using compare-and-set. There is no lock shared between keys.
+ *
+ * Keys which have been idle long enough for their state to be equivalent to a new key's are removed now and then,
+ * by the first thread noticing that removal is due. A removed state is set to {@link #REMOVED} first, so that a thread
+ * still holding it does not update it (and lose the update), but fetches the key's state again using
+ * {@link #getState(String, long)}.
+ */
+public abstract class PerKeyRateLimit extends RateLimitStrategy {
+
+	/**
+	 * The value of a state which has been removed. Subclasses must make sure that it is no valid state.
+	 */
+	protected static final long REMOVED = -1L;
+
+	private final long start = System.nanoTime();
+	protected final ConcurrentHashMap<String, AtomicLong> states = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong nextExpiry = new AtomicLong();
+
+	protected PerKeyRateLimit(Duration requestLimitDuration, int requestLimit) {
+		this.requestLimitDuration = requestLimitDuration;
+		this.requestLimit = requestLimit;
+	}
+
+	/**
+	 * @return nanoseconds since this rate limit has been created
+	 */
+	protected long now() {
+		return System.nanoTime() - start;
+	}
+
+	protected long getDurationNanos() {
+		return TimeUnit.MILLISECONDS.toNanos(requestLimitDuration.getMillis());
+	}
+
+	protected AtomicLong getState(String key, long now) {
+		expireIdleKeys(now);
+		AtomicLong state = states.get(key);
+		if (state == null) {
+			AtomicLong newState = new AtomicLong(getInitialState(now));
+			state = states.putIfAbsent(key, newState);
+			if (state == null)
+				state = newState;
+		}
+		return state;
+	}
+
+	private void expireIdleKeys(long now) {
+		long next = nextExpiry.get();
+		if (now < next || !nextExpiry.compareAndSet(next, now + getDurationNanos()))
+			return;
+		for (String key : states.keySet())
+			states.computeIfPresent(key, (k, state) -> retire(state, now) ? null : state);
+	}
+
+	private boolean retire(AtomicLong state, long now) {
+		long s = state.get();
+		return s != REMOVED && isIdle(s, now) && state.compareAndSet(s, REMOVED);
+	}
+
+	/**
+	 * @return the state of a key which has not been used before
+	 */
+	protected abstract long getInitialState(long now);
+
+	/**
+	 * @return whether the state is equivalent to the initial state, so that the key can be removed
+	 */
+	protected abstract boolean isIdle(long state, long now);
+
+	@Override
+	public void updateAfterConfigChange() {
+		states.clear();
+	}
+}
@@ -34,6 +34,7 @@ import com.predic8.membrane.core.http.Response;
 import com.predic8.membrane.core.http.Response.ResponseBuilder;
 import com.predic8.membrane.core.interceptor.AbstractInterceptor;
 import com.predic8.membrane.core.interceptor.Outcome;
+import com.predic8.membrane.core.util.URLParamUtil;
 
 /**
  * @description Allows rate limiting (Experimental)
@@ -41,7 +42,41 @@ import com.predic8.membrane.core.interceptor.Outcome;
 @MCElement(name = "rateLimiter")
 public class RateLimitInterceptor extends AbstractInterceptor {
 
+	public enum Strategy {
+		/**
+		 * Resets all counters after each <code>requestLimitDuration</code>.
+		 */
+		FIXED_WINDOW,
+		TOKEN_BUCKET,
+		SLIDING_WINDOW
+	}
+
+	public enum KeyType {
+		IP,
+		/**
+		 * The value of the header named by <code>keyHeader</code>.
+		 */
+		HEADER,
+		/**
+		 * The value of the "X-Api-Key" header or the "api_key" query parameter.
+		 */
+		API_KEY
+	}
+
+	private static final String API_KEY_HEADER = "X-Api-Key";
+	private static final String API_KEY_PARAMETER = "api_key";
+
+	/**
+	 * Prefixes of the keys, so that a client cannot use up another client's budget by sending its IP address as key.
+	 */
+	private static final String IP_PREFIX = "ip:";
+	private static final String HEADER_PREFIX = "header:";
+	private static final String API_KEY_PREFIX = "apikey:";
+
 	public RateLimitStrategy rateLimitStrategy;
+	private Strategy strategy = Strategy.FIXED_WINDOW;
+	private KeyType key = KeyType.IP;
+	private String keyHeader;
 
 	public RateLimitInterceptor() {
 		this(Duration.standardHours(1), 1000);
@@ -55,16 +90,59 @@ public class RateLimitInterceptor extends AbstractInterceptor {
 
 	@Override
 	public Outcome handleRequest(Exchange exc) throws Exception {
-		String addr = exc.getRemoteAddrIp();
-		if (rateLimitStrategy.isRequestLimitReached(addr)) {
-			setResponseToServiceUnavailable(exc);
+		String key = getKey(exc);
+		if (rateLimitStrategy.isRequestLimitReached(key)) {
+			setResponseToServiceUnavailable(exc, key);
 			return Outcome.RETURN;
 		}
 		return Outcome.CONTINUE;
 
 	}
 
+	/**
+	 * @return the key the request is counted for, prefixed by its type. Falls back to the client's IP address if the
+	 * request does not contain the configured key.
+	 */
+	private String getKey(Exchange exc) {
+		switch (key) {
+		case HEADER:
+			String header = exc.getRequest().getHeader().getFirstValue(keyHeader);
+			if (header != null)
+				return HEADER_PREFIX + header;
+			break;
+		case API_KEY:
+			String apiKey = exc.getRequest().getHeader().getFirstValue(API_KEY_HEADER);
+			if (apiKey == null) {
+				String uri = exc.getRequest().getUri();
+				int q = uri.indexOf('?');
+				if (q != -1)
+					apiKey = URLParamUtil.parseQueryString(uri.substring(q + 1)).get(API_KEY_PARAMETER);
+			}
+			if (apiKey != null)
+				return API_KEY_PREFIX + apiKey;
+			break;
+		default:
+			break;
+		}
+		return IP_PREFIX + exc.getRemoteAddrIp();
+	}
+
+	/**
+	 * @return who exceeded the rate limit. API keys and header values are not included, as they might be secrets.
+	 */
+	private String describe(String key) {
+		if (key.startsWith(API_KEY_PREFIX))
+			return "The API key";
+		if (key.startsWith(HEADER_PREFIX))
+			return "The value of the " + keyHeader + " header";
+		return key.substring(IP_PREFIX.length());
+	}
+
 	public void setResponseToServiceUnavailable(Exchange exc) throws UnsupportedEncodingException {
+		setResponseToServiceUnavailable(exc, IP_PREFIX + exc.getRemoteAddrIp());
+	}
+
+	private void setResponseToServiceUnavailable(Exchange exc, String key) throws UnsupportedEncodingException {
 
 		Header hd = new Header();
 		DateTimeFormatter dateFormatter = DateTimeFormat.forPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'").withZoneUTC()
@@ -72,13 +150,12 @@ public class RateLimitInterceptor extends AbstractInterceptor {
 		hd.add("Date", dateFormatter.print(DateTime.now()));
 		hd.add("X-LimitDuration", PeriodFormat.getDefault().print(rateLimitStrategy.requestLimitDuration.toPeriod()));
 		hd.add("X-LimitRequests", Integer.toString(rateLimitStrategy.requestLimit));
-		String ip = exc.getRemoteAddrIp();
-		DateTime availableAgainDateTime = rateLimitStrategy.getServiceAvailableAgainTime(ip);
+		DateTime availableAgainDateTime = rateLimitStrategy.getServiceAvailableAgainTime(key);
 		hd.add("X-LimitReset", Long.toString(availableAgainDateTime.getMillis()));
 
 		StringBuilder bodyString = new StringBuilder();
 		DateTimeFormatter dtFormatter = DateTimeFormat.forPattern("HH:mm:ss aa");
-		bodyString.append(ip).append(" exceeded the rate limit of ").append(rateLimitStrategy.requestLimit)
+		bodyString.append(describe(key)).append(" exceeded the rate limit of ").append(rateLimitStrategy.requestLimit)
 				.append(" requests per ")
 				.append(PeriodFormat.getDefault().print(rateLimitStrategy.requestLimitDuration.toPeriod()))
 				.append(". The next request can be made at ").append(dtFormatter.print(availableAgainDateTime));
@@ -119,6 +196,63 @@ public class RateLimitInterceptor extends AbstractInterceptor {
 		rateLimitStrategy.setRequestLimitDuration(rld);
 	}
 
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * @description The algorithm used to limit the requests: "fixed_window" resets all counters after each
+	 *              requestLimitDuration, allowing bursts at the window boundaries. "token_bucket" refills each key's
+	 *              bucket continuously. "sliding_window" weights the previous window's count by its overlap with
+	 *              the last requestLimitDuration.
+	 * @default fixed_window
+	 */
+	@MCAttribute
+	public void setStrategy(Strategy strategy) {
+		this.strategy = strategy;
+		Duration duration = rateLimitStrategy.getRequestLimitDuration();
+		int limit = rateLimitStrategy.getRequestLimit();
+		switch (strategy) {
+		case TOKEN_BUCKET:
+			rateLimitStrategy = new TokenBucketRateLimit(duration, limit);
+			break;
+		case SLIDING_WINDOW:
+			rateLimitStrategy = new SlidingWindowRateLimit(duration, limit);
+			break;
+		default:
+			rateLimitStrategy = new LazyRateLimit(duration, limit);
+			break;
+		}
+	}
+
+	public KeyType getKey() {
+		return key;
+	}
+
+	/**
+	 * @description What the requests are counted for: The client's "ip", the value of the header named by
+	 *              keyHeader ("header") or the API key ("api_key") given in the "X-Api-Key" header or the "api_key"
+	 *              query parameter. Requests not containing the key are counted for the client's IP.
+	 * @default ip
+	 */
+	@MCAttribute
+	public void setKey(KeyType key) {
+		this.key = key;
+	}
+
+	public String getKeyHeader() {
+		return keyHeader;
+	}
+
+	/**
+	 * @description Name of the header to count requests for, if key is "header".
+	 * @example X-Client-Id
+	 */
+	@MCAttribute
+	public void setKeyHeader(String keyHeader) {
+		this.keyHeader = keyHeader;
+	}
+
 	@Override
 	public String getShortDescription() {
 		return "Limits incoming requests. It limits to " + rateLimitStrategy.getRequestLimit() + " requests every " + PeriodFormat.getDefault().print(rateLimitStrategy.getRequestLimitDuration().toPeriod()) + ".";
@@ -0,0 +1,141 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * A sliding window counter per key: The number of requests in the last <code>requestLimitDuration</code> is
+ * estimated from the number of requests in the current and the previous fixed window, weighting the previous
+ * window's count by the part of it still covered by the sliding window. This avoids the bursts allowed at the
+ * window boundaries by a fixed window.
+ *
+ * The state of a key packs the window number (modulo 2^22) and both counts (up to 2^21-2 each) into one long. A count
+ * never reaches 2^21-1, so no state equals {@link #REMOVED}, which has all bits set.
+ */
+public class SlidingWindowRateLimit extends PerKeyRateLimit {
+
+	private static final int COUNT_BITS = 21;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final long WINDOW_MASK = (1L << (64 - 2 * COUNT_BITS)) - 1;
+
+	/**
+	 * The maximum supported request limit.
+	 */
+	public static final int MAX_REQUEST_LIMIT = (int) COUNT_MASK - 1;
+
+	public SlidingWindowRateLimit(Duration requestLimitDuration, int requestLimit) {
+		super(requestLimitDuration, requestLimit);
+		checkRequestLimit();
+	}
+
+	private void checkRequestLimit() {
+		if (requestLimit > MAX_REQUEST_LIMIT)
+			throw new IllegalArgumentException("The sliding window rate limit supports a request limit of at most " + MAX_REQUEST_LIMIT + ".");
+	}
+
+	@Override
+	public void updateAfterConfigChange() {
+		checkRequestLimit();
+		super.updateAfterConfigChange();
+	}
+
+	private static long pack(long window, long current, long previous) {
+		return (window & WINDOW_MASK) << (2 * COUNT_BITS) | current << COUNT_BITS | previous;
+	}
+
+	private static long window(long state) {
+		return state >>> (2 * COUNT_BITS);
+	}
+
+	private static long current(long state) {
+		return (state >>> COUNT_BITS) & COUNT_MASK;
+	}
+
+	private static long previous(long state) {
+		return state & COUNT_MASK;
+	}
+
+	/**
+	 * @return the state rolled forward to the given window
+	 */
+	private static long roll(long state, long window) {
+		long age = (window - window(state)) & WINDOW_MASK;
+		if (age == 0)
+			return state;
+		if (age == 1)
+			return pack(window, 0, current(state));
+		return pack(window, 0, 0);
+	}
+
+	@Override
+	public boolean isRequestLimitReached(String key) {
+		long now = now();
+		long duration = getDurationNanos();
+		long window = now / duration;
+		double previousWeight = 1 - (double) (now % duration) / duration;
+		AtomicLong state = getState(key, now);
+		while (true) {
+			long s = state.get();
+			if (s == REMOVED) {
+				state = getState(key, now);
+				continue;
+			}
+			long rolled = roll(s, window);
+			long current = current(rolled);
+			if (previous(rolled) * previousWeight + current + 1 > requestLimit)
+				return true;
+			if (state.compareAndSet(s, pack(window, current + 1, previous(rolled))))
+				return false;
+		}
+	}
+
+	@Override
+	public DateTime getServiceAvailableAgainTime(String key) {
+		AtomicLong state = states.get(key);
+		long now = now();
+		long duration = getDurationNanos();
+		long window = now / duration;
+		long wait = 0;
+		long s = state == null ? REMOVED : state.get();
+		if (s != REMOVED) {
+			s = roll(s, window);
+			long current = current(s), previous = previous(s);
+			long nextWindow = (window + 1) * duration;
+			if (current + 1 > requestLimit) {
+				// wait until the current count, weighted as previous count, is low enough
+				wait = nextWindow - now + (long) (duration * (1 - (double) (requestLimit - 1) / current));
+			} else if (previous > 0) {
+				double weight = (double) (requestLimit - 1 - current) / previous;
+				wait = nextWindow - (long) (duration * weight) - now;
+			}
+		}
+		return DateTime.now().plus(TimeUnit.NANOSECONDS.toMillis(Math.max(0, wait)));
+	}
+
+	@Override
+	protected long getInitialState(long now) {
+		return pack(now / getDurationNanos(), 0, 0);
+	}
+
+	@Override
+	protected boolean isIdle(long state, long now) {
+		return ((now / getDurationNanos() - window(state)) & WINDOW_MASK) >= 2;
+	}
+}
@@ -0,0 +1,84 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * A token bucket per key holding up to <code>requestLimit</code> tokens, which is refilled continuously at a rate of
+ * <code>requestLimit</code> tokens per <code>requestLimitDuration</code>.
+ *
+ * Implemented as "generic cell rate algorithm": The state of a bucket is the theoretical arrival time of the next
+ * request, if requests arrived exactly at the refill rate. A request is allowed if this time is at most
+ * <code>requestLimitDuration</code> (minus one refill interval) in the future. So the bucket is refilled lazily,
+ * when it is used.
+ *
+ * The theoretical arrival time is never negative, so it cannot be mistaken for {@link #REMOVED}.
+ */
+public class TokenBucketRateLimit extends PerKeyRateLimit {
+
+	public TokenBucketRateLimit(Duration requestLimitDuration, int requestLimit) {
+		super(requestLimitDuration, requestLimit);
+	}
+
+	private long getInterval() {
+		return getDurationNanos() / Math.max(1, requestLimit);
+	}
+
+	@Override
+	public boolean isRequestLimitReached(String key) {
+		if (requestLimit <= 0)
+			return true;
+		long now = now();
+		long interval = getInterval();
+		long tolerance = getDurationNanos() - interval;
+		AtomicLong state = getState(key, now);
+		while (true) {
+			long tat = state.get();
+			if (tat == REMOVED) {
+				state = getState(key, now);
+				continue;
+			}
+			long t = Math.max(tat, now);
+			if (t - now > tolerance)
+				return true;
+			if (state.compareAndSet(tat, t + interval))
+				return false;
+		}
+	}
+
+	@Override
+	public DateTime getServiceAvailableAgainTime(String key) {
+		AtomicLong state = states.get(key);
+		long now = now();
+		long tat = state == null ? REMOVED : state.get();
+		long wait = tat == REMOVED ? 0 : tat - (getDurationNanos() - getInterval()) - now;
+		return DateTime.now().plus(TimeUnit.NANOSECONDS.toMillis(Math.max(0, wait)));
+	}
+
+	@Override
+	protected long getInitialState(long now) {
+		return now;
+	}
+
+	@Override
+	protected boolean isIdle(long tat, long now) {
+		return tat <= now;
+	}
+}
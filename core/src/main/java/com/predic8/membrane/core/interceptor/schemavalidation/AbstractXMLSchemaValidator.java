@@ -15,21 +15,18 @@
 package com.predic8.membrane.core.interceptor.schemavalidation;
 
 import java.io.InputStream;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.predic8.membrane.core.Constants;
 import com.predic8.membrane.core.exchange.Exchange;
 import com.predic8.membrane.core.http.Header;
 import com.predic8.membrane.core.http.Message;
@@ -43,7 +40,15 @@ import com.predic8.schema.Schema;
 public abstract class AbstractXMLSchemaValidator implements IValidator {
 	private static Logger log = LoggerFactory.getLogger(AbstractXMLSchemaValidator.class.getName());
 
-	private final ArrayBlockingQueue<List<Validator>> validators;
+	/**
+	 * Compiled schemas are thread-safe and shared, see {@link SchemaCache}. {@link Validator}s are not, but cheap to
+	 * create, so a validation borrows a set of them from a pool. The pool is bounded and dropped together with the
+	 * interceptor, so that no validators are left behind in the threads after a hot deployment.
+	 */
+	private final List<javax.xml.validation.Schema> schemas;
+	private final ConcurrentLinkedQueue<List<Validator>> validators = new ConcurrentLinkedQueue<List<Validator>>();
+	private final AtomicInteger pooled = new AtomicInteger();
+	private final int maxPooled = Runtime.getRuntime().availableProcessors() * 2;
 	protected final XOPReconstitutor xopr;
 	protected final String location;
 	protected final ResolverMap resourceResolver;
@@ -62,10 +67,7 @@ public abstract class AbstractXMLSchemaValidator implements IValidator {
 		this.resourceResolver = resourceResolver;
 		this.failureHandler = failureHandler;
 		this.skipFaults = skipFaults;
-		int concurrency = Runtime.getRuntime().availableProcessors() * 2;
-		validators = new ArrayBlockingQueue<List<Validator>>(concurrency);
-		for (int i = 0; i < concurrency; i++)
-			validators.add(createValidators());
+		schemas = createSchemas();
 		xopr = new XOPReconstitutor();
 	}
 
@@ -73,26 +75,31 @@ public abstract class AbstractXMLSchemaValidator implements IValidator {
 		List<Exception> exceptions = new ArrayList<Exception>();
 		String preliminaryError = getPreliminaryError(xopr, msg);
 		if (preliminaryError == null) {
-			List<Validator> vals = validators.take();
+			List<Validator> vals = acquireValidators();
 			try {
+				boolean isValid = false;
 				// the message must be valid for one schema embedded into WSDL
 				for (Validator validator: vals) {
 					SchemaValidatorErrorHandler handler = (SchemaValidatorErrorHandler)validator.getErrorHandler();
 					try {
 						validator.validate(getMessageBody(xopr.reconstituteIfNecessary(msg)));
 						if (handler.noErrors()) {
-							valid.incrementAndGet();
-							return Outcome.CONTINUE;
+							isValid = true;
+							break;
 						}
 						exceptions.add(handler.getException());
 					} finally {
 						handler.reset();
 					}
 				}
+				releaseValidators(vals);
+				if (isValid) {
+					valid.incrementAndGet();
+					return Outcome.CONTINUE;
+				}
 			} catch (Exception e) {
+				// the validators might be in an undefined state: drop them
 				exceptions.add(e);
-			} finally {
-				validators.put(vals);
 			}
 		} else {
 			exceptions.add(new Exception(preliminaryError));
@@ -114,15 +121,35 @@ public abstract class AbstractXMLSchemaValidator implements IValidator {
 		return Outcome.ABORT;
 	}
 
-	protected List<Validator> createValidators() throws Exception {
-		SchemaFactory sf = SchemaFactory.newInstance(Constants.XSD_NS);
-		List<Validator> validators = new ArrayList<Validator>();
+	protected List<javax.xml.validation.Schema> createSchemas() throws Exception {
+		List<javax.xml.validation.Schema> schemas = new ArrayList<javax.xml.validation.Schema>();
 		for (Schema schema : getSchemas()) {
 			log.debug("Creating validator for schema: " + schema);
-			StreamSource ss = new StreamSource(new StringReader(schema.getAsString()));
-			ss.setSystemId(location);
-			sf.setResourceResolver(resourceResolver.toLSResourceResolver());
-			Validator validator = sf.newSchema(ss).newValidator();
+			schemas.add(SchemaCache.get(resourceResolver, location, schema.getAsString()));
+		}
+		return schemas;
+	}
+
+	private List<Validator> acquireValidators() {
+		List<Validator> vals = validators.poll();
+		if (vals == null)
+			return createValidators();
+		pooled.decrementAndGet();
+		return vals;
+	}
+
+	private void releaseValidators(List<Validator> vals) {
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		validators.offer(vals);
+	}
+
+	private List<Validator> createValidators() {
+		List<Validator> validators = new ArrayList<Validator>();
+		for (javax.xml.validation.Schema schema : schemas) {
+			Validator validator = schema.newValidator();
 			validator.setResourceResolver(resourceResolver.toLSResourceResolver());
 			validator.setErrorHandler(new SchemaValidatorErrorHandler());
 			validators.add(validator);
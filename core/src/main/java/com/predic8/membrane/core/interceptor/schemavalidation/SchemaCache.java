@@ -0,0 +1,162 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.schemavalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.predic8.membrane.core.Constants;
+import com.predic8.membrane.core.resolver.ResolverMap;
+import com.predic8.membrane.core.util.LSInputImpl;
+
+/**
+ * Compiled XML Schemas shared by all validators.
+ *
+ * A {@link Schema} is immutable and thread-safe, so each one is compiled only once, even if several interceptors (or
+ * hot-deployed versions of the same one) validate against it. Schemas are identified by their location and a hash of
+ * their content. Every document read through the resolver while compiling (included and imported schemas, also
+ * transitively) is recorded with a hash of its content: before a cached schema is handed out, these documents are
+ * resolved again using the caller's resolver, and the schema is compiled again if any of them changed or is resolved to
+ * something else. An entry is dropped as soon as no validator uses it anymore.
+ */
+class SchemaCache {
+	private static final Logger log = LoggerFactory.getLogger(SchemaCache.class.getName());
+
+	private static final Cache<String, Schema> schemas = CacheBuilder.newBuilder().weakValues().build();
+	private static final Cache<Schema, List<Dependency>> dependencies = CacheBuilder.newBuilder().weakKeys().build();
+
+	/**
+	 * @return the compiled schema, which was read from <code>location</code> as <code>content</code>
+	 */
+	static Schema get(ResolverMap resourceResolver, String location, byte[] content) throws Exception {
+		return get(resourceResolver, location + "#" + Hashing.sha256().hashBytes(content),
+				new StreamSource(new ByteArrayInputStream(content), location));
+	}
+
+	/**
+	 * @return the compiled schema, which was embedded as <code>content</code> into the document at <code>location</code>
+	 */
+	static Schema get(ResolverMap resourceResolver, String location, String content) throws Exception {
+		return get(resourceResolver, location + "#" + Hashing.sha256().hashString(content, Charsets.UTF_8),
+				new StreamSource(new StringReader(content), location));
+	}
+
+	private static Schema get(ResolverMap resourceResolver, String key, StreamSource source) throws Exception {
+		Schema schema = schemas.getIfPresent(key);
+		if (schema != null && isUpToDate(resourceResolver, schema))
+			return schema;
+
+		log.debug("Compiling schema: " + source.getSystemId());
+		RecordingResolver recorder = new RecordingResolver(resourceResolver);
+		SchemaFactory sf = SchemaFactory.newInstance(Constants.XSD_NS);
+		sf.setResourceResolver(recorder);
+		schema = sf.newSchema(source);
+		dependencies.put(schema, recorder.dependencies);
+		schemas.put(key, schema);
+		return schema;
+	}
+
+	private static boolean isUpToDate(ResolverMap resourceResolver, Schema schema) {
+		List<Dependency> deps = dependencies.getIfPresent(schema);
+		if (deps == null)
+			return false;
+		try {
+			for (Dependency dep : deps)
+				if (!dep.hash.equals(Hashing.sha256().hashBytes(read(resourceResolver, dep.systemId))))
+					return false;
+			return true;
+		} catch (Exception e) {
+			log.debug("Could not resolve a dependency of a cached schema, compiling it again: " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return the raw bytes of the document, so that the parser still decodes them according to their XML declaration
+	 */
+	private static byte[] read(ResolverMap resourceResolver, String systemId) throws Exception {
+		try (InputStream is = resourceResolver.resolve(systemId)) {
+			return IOUtils.toByteArray(is);
+		}
+	}
+
+	private static class Dependency {
+		final String systemId;
+		final HashCode hash;
+
+		Dependency(String systemId, HashCode hash) {
+			this.systemId = systemId;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * Resolves documents like {@link ResolverMap#toLSResourceResolver()} and records them. Each one is read completely,
+	 * so that it can be hashed, and then handed on to the parser unchanged.
+	 */
+	private static class RecordingResolver implements LSResourceResolver {
+		private final ResolverMap resourceResolver;
+		private final List<Dependency> dependencies = new ArrayList<Dependency>();
+
+		RecordingResolver(ResolverMap resourceResolver) {
+			this.resourceResolver = resourceResolver;
+		}
+
+		@Override
+		public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI) {
+			if (systemId == null)
+				return null;
+			try {
+				if (!systemId.contains("://"))
+					systemId = new URI(baseURI).resolve(systemId).toString();
+				final byte[] content = read(resourceResolver, systemId);
+				dependencies.add(new Dependency(systemId, Hashing.sha256().hashBytes(content)));
+				return new LSInputImpl(publicId, systemId, new ByteArrayInputStream(content)) {
+					@Override
+					public InputStream getByteStream() {
+						return new ByteArrayInputStream(content);
+					}
+
+					@Override
+					public String getEncoding() {
+						// let the parser detect the encoding
+						return null;
+					}
+				};
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -20,9 +20,8 @@ import java.util.List;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,18 +47,18 @@ public class XMLSchemaValidator extends AbstractXMLSchemaValidator {
 	}
 
 	@Override
-	protected List<Validator> createValidators() throws Exception {
-		SchemaFactory sf = SchemaFactory.newInstance(Constants.XSD_NS);
-		sf.setResourceResolver(resourceResolver.toLSResourceResolver());
-		List<Validator> validators = new ArrayList<Validator>();
+	protected List<javax.xml.validation.Schema> createSchemas() throws Exception {
 		log.debug("Creating validator for schema: " + location);
-		StreamSource ss = new StreamSource(resourceResolver.resolve(location));
-		ss.setSystemId(location);
-		Validator validator = sf.newSchema(ss).newValidator();
-		validator.setResourceResolver(resourceResolver.toLSResourceResolver());
-		validator.setErrorHandler(new SchemaValidatorErrorHandler());
-		validators.add(validator);
-		return validators;
+		byte[] content;
+		InputStream is = resourceResolver.resolve(location);
+		try {
+			content = IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+		List<javax.xml.validation.Schema> schemas = new ArrayList<javax.xml.validation.Schema>();
+		schemas.add(SchemaCache.get(resourceResolver, location, content));
+		return schemas;
 	}
 
 	@Override
@@ -16,8 +16,10 @@ package com.predic8.membrane.core.interceptor.server;
 import com.predic8.membrane.annot.MCAttribute;
 import com.predic8.membrane.annot.MCElement;
 import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Header;
 import com.predic8.membrane.core.http.Response;
 import com.predic8.membrane.core.interceptor.AbstractInterceptor;
+import com.predic8.membrane.core.interceptor.CompressionInterceptor;
 import com.predic8.membrane.core.interceptor.Outcome;
 import com.predic8.membrane.core.resolver.ResolverMap;
 import com.predic8.membrane.core.resolver.ResourceRetrievalException;
@@ -62,6 +64,7 @@ public class WebServerInterceptor extends AbstractInterceptor {
     boolean docBaseIsNormalized = false;
     String[] index = EMPTY;
     boolean generateIndex;
+    boolean precompressed;
 
     public WebServerInterceptor() {
         name = "Web Server";
@@ -110,7 +113,7 @@ public class WebServerInterceptor extends AbstractInterceptor {
         try {
             exc.setTimeReqSent(System.currentTimeMillis());
 
-            exc.setResponse(createResponse(router.getResolverMap(), ResolverMap.combine(router.getBaseLocation(), docBase, uri)));
+            exc.setResponse(createResponse(exc, ResolverMap.combine(router.getBaseLocation(), docBase, uri)));
 
             exc.setReceived();
             exc.setTimeResReceived(System.currentTimeMillis());
@@ -118,7 +121,7 @@ public class WebServerInterceptor extends AbstractInterceptor {
         } catch (ResourceRetrievalException e) {
             for (String i : index) {
                 try {
-                    exc.setResponse(createResponse(router.getResolverMap(), ResolverMap.combine(router.getBaseLocation(), docBase, uri + i)));
+                    exc.setResponse(createResponse(exc, ResolverMap.combine(router.getBaseLocation(), docBase, uri + i)));
 
                     exc.setReceived();
                     exc.setTimeResReceived(System.currentTimeMillis());
@@ -129,7 +132,7 @@ public class WebServerInterceptor extends AbstractInterceptor {
             String uri2 = uri + "/";
             for (String i : index) {
                 try {
-                    exc.setResponse(createResponse(router.getResolverMap(), ResolverMap.combine(router.getBaseLocation(), docBase, uri2 + i)));
+                    exc.setResponse(createResponse(exc, ResolverMap.combine(router.getBaseLocation(), docBase, uri2 + i)));
 
                     exc.setReceived();
                     exc.setTimeResReceived(System.currentTimeMillis());
@@ -169,6 +172,28 @@ public class WebServerInterceptor extends AbstractInterceptor {
         return Outcome.ABORT;
     }
 
+    private Response createResponse(Exchange exc, String resPath) throws IOException {
+        if (!precompressed)
+            return createResponse(router.getResolverMap(), resPath);
+
+        String acceptEncoding = exc.getRequest().getHeader().getFirstValue(Header.ACCEPT_ENCODING);
+        if (CompressionInterceptor.getQuality(acceptEncoding, "gzip") > 0) {
+            try {
+                return Response.ok()
+                        .header(createHeaders(getContentType(resPath)))
+                        .header(Header.CONTENT_ENCODING, "gzip")
+                        .header(Header.VARY, Header.ACCEPT_ENCODING)
+                        .body(router.getResolverMap().resolve(resPath + ".gz"), true)
+                        .build();
+            } catch (ResourceRetrievalException e) {
+                // no precompressed variant: serve the file itself
+            }
+        }
+        Response res = createResponse(router.getResolverMap(), resPath);
+        res.getHeader().add(Header.VARY, Header.ACCEPT_ENCODING);
+        return res;
+    }
+
     public static Response createResponse(ResolverMap rr, String resPath) throws IOException {
         return Response.ok()
                 .header(createHeaders(getContentType(resPath)))
@@ -256,6 +281,20 @@ public class WebServerInterceptor extends AbstractInterceptor {
         this.generateIndex = generateIndex;
     }
 
+    public boolean isPrecompressed() {
+        return precompressed;
+    }
+
+    /**
+     * @description Whether to serve the precompressed variant "<i>file</i>.gz" of a file instead (if it exists), when
+     * the client accepts gzip. The variant has to be created beforehand, e.g. using <tt>gzip -k</tt>.
+     * @default false
+     */
+    @MCAttribute
+    public void setPrecompressed(boolean precompressed) {
+        this.precompressed = precompressed;
+    }
+
     @Override
     public String getShortDescription() {
         return "Serves static files from<br/>" + TextUtil.linkURL(docBase) + " .";
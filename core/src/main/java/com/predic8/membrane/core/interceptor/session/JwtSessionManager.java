@@ -17,6 +17,8 @@ import com.bornium.security.oauth2openid.token.IdTokenProvider;
 import com.bornium.security.oauth2openid.token.IdTokenVerifier;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.predic8.membrane.annot.MCAttribute;
 import com.predic8.membrane.annot.MCChildElement;
 import com.predic8.membrane.annot.MCElement;
@@ -24,11 +26,16 @@ import com.predic8.membrane.core.Router;
 import com.predic8.membrane.core.config.security.Blob;
 import com.predic8.membrane.core.exchange.Exchange;
 import org.jose4j.json.JsonUtil;
+import org.jose4j.jwk.EllipticCurveJsonWebKey;
 import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.PublicJsonWebKey;
 import org.jose4j.jwk.RsaJsonWebKey;
 import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
 import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.lang.JoseException;
@@ -40,6 +47,8 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +59,12 @@ import java.util.stream.Stream;
 /**
  * Take care - this session manager saves values in the session for internal use -> those are reserved keywords and cannot be used
  * The keywords are "iss","exp","nbf","iat".
+ *
+ * The JWK may be an RSA key (RS256) or an elliptic curve key (ES256, ES384 or ES512 depending on the curve). EC keys
+ * are much cheaper to sign with.
+ *
+ * As JWTs are immutable, the result of verifying a session cookie is cached until the JWT expires, so repeated
+ * requests carrying the same cookie do not verify the signature again.
  */
 @MCElement(name = "jwtSessionManager")
 public class JwtSessionManager extends SessionManager {
@@ -57,13 +72,15 @@ public class JwtSessionManager extends SessionManager {
     private static Logger LOG = LoggerFactory.getLogger(JwtSessionManager.class);
 
     private Cache<Map, String> jwtCache;
+    private Cache<HashCode, VerifiedJwt> verifiedJwtCache;
 
     private SecureRandom random = new SecureRandom();
-    private RsaJsonWebKey rsaJsonWebKey;
+    private PublicJsonWebKey jsonWebKey;
 
     private Duration validTime;
     private Duration renewalTime;
     private Duration jwtCacheTime = Duration.ofMinutes(2);
+    private int verifiedJwtCacheSize = 10000;
 
     IdTokenProvider idTokenProvider;
     IdTokenVerifier idTokenVerifier;
@@ -78,22 +95,31 @@ public class JwtSessionManager extends SessionManager {
             renewalTime = validTime.dividedBy(3);
 
         if (jwk == null) {
-            rsaJsonWebKey = generateKey();
+            jsonWebKey = generateKey();
             LOG.warn("jwtSessionManager uses a generated key ('" +
-                    rsaJsonWebKey.toJson(JsonWebKey.OutputControlLevel.INCLUDE_PRIVATE)+
+                    jsonWebKey.toJson(JsonWebKey.OutputControlLevel.INCLUDE_PRIVATE)+
                     "'). Sessions of this instance will not be compatible with sessions of other (e.g. restarted)"+
                     "instances. To solve this, write the JWK into a file and reference it using <jwtSessionManager><jwk location=\"...\">.");
         } else {
-            rsaJsonWebKey = new RsaJsonWebKey(JsonUtil.parseJson(jwk.get(router.getResolverMap(), router.getBaseLocation())));
+            jsonWebKey = PublicJsonWebKey.Factory.newPublicJwk(JsonUtil.parseJson(jwk.get(router.getResolverMap(), router.getBaseLocation())));
         }
 
-        idTokenProvider = new IdTokenProvider(rsaJsonWebKey);
-        idTokenVerifier = new IdTokenVerifier(idTokenProvider.getJwk());
+        if (jsonWebKey instanceof RsaJsonWebKey) {
+            idTokenProvider = new IdTokenProvider((RsaJsonWebKey) jsonWebKey);
+            idTokenVerifier = new IdTokenVerifier(idTokenProvider.getJwk());
+        } else if (!(jsonWebKey instanceof EllipticCurveJsonWebKey)) {
+            throw new RuntimeException("jwtSessionManager/jwk has to be an RSA or EC key.");
+        }
 
         jwtCache = CacheBuilder.newBuilder().expireAfterWrite(jwtCacheTime.toMillis(), TimeUnit.MILLISECONDS).build();
+        // entries are additionally checked against the JWT's expiration time on each access
+        verifiedJwtCache = CacheBuilder.newBuilder()
+                .maximumSize(verifiedJwtCacheSize)
+                .expireAfterWrite(validTime.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
     }
 
-    private RsaJsonWebKey generateKey() throws JoseException {
+    private PublicJsonWebKey generateKey() throws JoseException {
         RsaJsonWebKey rsaJsonWebKey = RsaJwkGenerator.generateJwk(2048);
         rsaJsonWebKey.setKeyId(new BigInteger(130, random).toString(32));
         rsaJsonWebKey.setUse("sig");
@@ -101,13 +127,54 @@ public class JwtSessionManager extends SessionManager {
         return rsaJsonWebKey;
     }
 
+    /**
+     * The claims of a JWT whose signature and issuer have been verified.
+     */
+    private static class VerifiedJwt {
+        private final String issuer;
+        private final long expirationMillis;
+        private final long issuedAtMillis;
+        private final Map<String, Object> claims;
+
+        private VerifiedJwt(String issuer, JwtClaims claims) throws MalformedClaimException {
+            this.issuer = issuer;
+            this.expirationMillis = claims.getExpirationTime().getValueInMillis();
+            this.issuedAtMillis = claims.getIssuedAt() != null ? claims.getIssuedAt().getValueInMillis() : 0;
+            this.claims = Collections.unmodifiableMap(new HashMap<>(claims.getClaimsMap()));
+        }
+    }
+
+    /**
+     * @return the cached verification result, or null if the JWT has not been verified (for the current issuer) or
+     *         has expired since
+     */
+    private VerifiedJwt getVerifiedJwt(String jwt) {
+        if (verifiedJwtCache == null)
+            return null;
+        HashCode key = hash(jwt);
+        VerifiedJwt verified = verifiedJwtCache.getIfPresent(key);
+        if (verified == null)
+            return null;
+        if (verified.expirationMillis <= System.currentTimeMillis() || !verified.issuer.equals(issuer)) {
+            verifiedJwtCache.invalidate(key);
+            return null;
+        }
+        return verified;
+    }
+
+    private HashCode hash(String jwt) {
+        return Hashing.sha256().hashString(jwt, StandardCharsets.UTF_8);
+    }
+
     @Override
     protected Map<String, Object> cookieValueToAttributes(String cookie) {
-        //TODO jwts are immutable -> can use cache with expiration to speed this up --- Map<JWT,SESSION.CONTENT>
+        VerifiedJwt verified = getVerifiedJwt(getCookieKey(cookie));
+        if (verified != null)
+            return new HashMap<>(verified.claims);
         try {
             //skip signature check as it was already performed beforehand
 
-            return idTokenVerifier.createCustomJwtValidator()
+            return createJwtConsumerBuilder()
                     .setSkipSignatureVerification()
                     .build()
                     .processToClaims(getCookieKey(cookie))
@@ -146,7 +213,7 @@ public class JwtSessionManager extends SessionManager {
             }
             if (LOG.isDebugEnabled())
                 LOG.debug("encoding cookie: " + filteredSession);
-            token = idTokenProvider.createIdTokenNoNullClaims(issuer, null, null, validTime, null, null, new HashMap(filteredSession));
+            token = createJwt(new HashMap(filteredSession));
             jwtCache.put(filteredSession, token);
             return token;
         } catch (JoseException e) {
@@ -154,6 +221,50 @@ public class JwtSessionManager extends SessionManager {
         }
     }
 
+    private String createJwt(Map<String, Object> claims) throws JoseException {
+        if (idTokenProvider != null)
+            return idTokenProvider.createIdTokenNoNullClaims(issuer, null, null, validTime, null, null, claims);
+
+        JwtClaims jwtClaims = new JwtClaims();
+        jwtClaims.setIssuer(issuer);
+        jwtClaims.setExpirationTime(NumericDate.fromMilliseconds(System.currentTimeMillis() + validTime.toMillis()));
+        jwtClaims.setIssuedAtToNow();
+        jwtClaims.setNotBeforeMinutesInThePast(2);
+        for (Map.Entry<String, Object> claim : claims.entrySet())
+            if (claim.getValue() != null)
+                jwtClaims.setClaim(claim.getKey(), claim.getValue());
+
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(jwtClaims.toJson());
+        jws.setKey(jsonWebKey.getPrivateKey());
+        jws.setKeyIdHeaderValue(jsonWebKey.getKeyId());
+        jws.setHeader("typ", "JWT");
+        jws.setAlgorithmHeaderValue(getEllipticCurveAlgorithm((EllipticCurveJsonWebKey) jsonWebKey));
+        return jws.getCompactSerialization();
+    }
+
+    private static String getEllipticCurveAlgorithm(EllipticCurveJsonWebKey key) {
+        switch (key.getCurveName()) {
+            case "P-256":
+                return AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256;
+            case "P-384":
+                return AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384;
+            case "P-521":
+                return AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512;
+            default:
+                throw new RuntimeException("Unsupported curve: " + key.getCurveName());
+        }
+    }
+
+    private JwtConsumerBuilder createJwtConsumerBuilder() {
+        if (idTokenVerifier != null)
+            return idTokenVerifier.createCustomJwtValidator();
+        return new JwtConsumerBuilder()
+                .setRequireExpirationTime()
+                .setAllowedClockSkewInSeconds(30)
+                .setVerificationKey(jsonWebKey.getPublicKey());
+    }
+
     private Map filterSession(Map<String, Object> stringObjectMap) {
         Map result = new HashMap(stringObjectMap);
         Stream.of("iss","exp","nbf","iat").forEach(claim -> result.remove(claim));
@@ -186,9 +297,16 @@ public class JwtSessionManager extends SessionManager {
     protected boolean isValidCookieForThisSessionManager(String cookie) {
         try {
             cookie = getCookieKey(cookie);
+            if (getVerifiedJwt(cookie) != null)
+                return true;
             checkJwtWithoutVerifyingSignature(cookie);
-            validateSignatureOfJwt(cookie);
+            JwtClaims claims = validateSignatureOfJwt(cookie);
+            if (verifiedJwtCache != null && issuer != null)
+                verifiedJwtCache.put(hash(cookie), new VerifiedJwt(issuer, claims));
             return true;
+        } catch (MalformedClaimException e) {
+            if(verbose)
+                e.printStackTrace();
         } catch (InvalidJwtException e) {
             // this should only happen if the issuer doesn't add up or the signature is malformed
             // wrong issuer happens *all the time* so we do not want to print here to not spam the log of membrane
@@ -200,6 +318,9 @@ public class JwtSessionManager extends SessionManager {
 
     @Override
     protected boolean cookieRenewalNeeded(String originalCookie) {
+        VerifiedJwt verified = getVerifiedJwt(getCookieKey(originalCookie));
+        if (verified != null)
+            return Instant.ofEpochMilli(verified.issuedAtMillis).plus(renewalTime).isBefore(Instant.now());
         try {
             JwtClaims claims = processToClaims(originalCookie);
             return Instant.ofEpochSecond(claims.getIssuedAt().getValue()).plus(renewalTime).isBefore(Instant.now());
@@ -212,7 +333,7 @@ public class JwtSessionManager extends SessionManager {
     }
 
     private JwtClaims validateSignatureOfJwt(String cookie) throws InvalidJwtException {
-        return idTokenVerifier.createCustomJwtValidator()
+        return createJwtConsumerBuilder()
                 .setExpectedIssuer(issuer)
                 .build()
                 .processToClaims(cookie);
@@ -281,6 +402,20 @@ public class JwtSessionManager extends SessionManager {
         this.renewalTime = renewalTime;
     }
 
+    public int getVerifiedJwtCacheSize() {
+        return verifiedJwtCacheSize;
+    }
+
+    /**
+     * @description The maximum number of verified session cookies to remember. A remembered cookie is not verified
+     *              again until it expires. 0 disables the cache.
+     * @default 10000
+     */
+    @MCAttribute
+    public void setVerifiedJwtCacheSize(int verifiedJwtCacheSize) {
+        this.verifiedJwtCacheSize = verifiedJwtCacheSize;
+    }
+
     public Duration getJwtCacheTime() {
         return jwtCacheTime;
     }
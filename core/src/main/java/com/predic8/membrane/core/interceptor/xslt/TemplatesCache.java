@@ -0,0 +1,86 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.xslt;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.predic8.membrane.core.resolver.ResolverMap;
+
+/**
+ * Compiled stylesheets shared by all {@link XSLTTransformer}s.
+ *
+ * {@link Templates} are thread-safe, so a stylesheet is compiled only once, even if several interceptors (or
+ * hot-deployed versions of the same one) use it. Stylesheets are identified by their resolved URL and their
+ * timestamp, or a hash of their content, if the resolver does not know the timestamp. An entry is dropped as soon as
+ * no transformer uses it anymore.
+ */
+class TemplatesCache {
+	private static final Logger log = LoggerFactory.getLogger(TemplatesCache.class.getName());
+
+	private static final Cache<String, Templates> templates = CacheBuilder.newBuilder().weakValues().build();
+
+	static Templates get(final XSLTTransformer.Engine engine, final ResolverMap rr, final String url, final String styleSheet) throws Exception {
+		long timestamp = rr.getTimestamp(url);
+		byte[] content = null;
+		String key;
+		if (timestamp > 0) {
+			key = engine + " " + url + "@" + timestamp;
+		} else {
+			content = read(rr, url);
+			key = engine + " " + url + "#" + Hashing.sha256().hashBytes(content);
+		}
+		final byte[] preloaded = content;
+		try {
+			return templates.get(key, new Callable<Templates>() {
+				@Override
+				public Templates call() throws Exception {
+					log.debug("Compiling stylesheet: " + url);
+					StreamSource source = new StreamSource(new ByteArrayInputStream(
+							preloaded != null ? preloaded : read(rr, url)));
+					source.setSystemId(styleSheet);
+					TransformerFactory fac = engine.newTransformerFactory();
+					return fac.newTemplates(source);
+				}
+			});
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
+	private static byte[] read(ResolverMap rr, String url) throws Exception {
+		InputStream is = rr.resolve(url);
+		try {
+			return IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+}
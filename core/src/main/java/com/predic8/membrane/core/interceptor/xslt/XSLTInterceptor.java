@@ -37,6 +37,7 @@ import com.predic8.membrane.core.util.TextUtil;
 public class XSLTInterceptor extends AbstractInterceptor {
 
 	private String xslt;
+	private XSLTTransformer.Engine engine = XSLTTransformer.Engine.DEFAULT;
 	private volatile XSLTTransformer xsltTransformer;
 	private XOPReconstitutor xopr = new XOPReconstitutor();
 
@@ -65,8 +66,7 @@ public class XSLTInterceptor extends AbstractInterceptor {
 
 	@Override
 	public void init() throws Exception {
-		int concurrency = Runtime.getRuntime().availableProcessors() * 2;
-		xsltTransformer = new XSLTTransformer(xslt, router, concurrency);
+		xsltTransformer = new XSLTTransformer(xslt, router, engine);
 	}
 
 	public String getXslt() {
@@ -83,6 +83,23 @@ public class XSLTInterceptor extends AbstractInterceptor {
 		this.xsltTransformer = null;
 	}
 
+	public XSLTTransformer.Engine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @description The XSLT processor: "default" uses the JAXP implementation found on the classpath (usually the
+	 *              one built into the JDK), "saxon" uses Saxon-HE, which supports XSLT 2.0 and 3.0. (The Saxon-HE jar
+	 *              has to be added to the lib folder.)
+	 * @default default
+	 * @example saxon
+	 */
+	@MCAttribute
+	public void setEngine(XSLTTransformer.Engine engine) {
+		this.engine = engine;
+		this.xsltTransformer = null;
+	}
+
 	@Override
 	public String getShortDescription() {
 		return "Applies an XSLT transformation.";
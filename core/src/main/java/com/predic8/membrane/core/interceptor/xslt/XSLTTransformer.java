@@ -18,59 +18,106 @@ import static com.predic8.membrane.core.util.TextUtil.isNullOrEmpty;
 import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.predic8.membrane.core.Router;
 import com.predic8.membrane.core.resolver.ResolverMap;
-import com.predic8.membrane.core.resolver.ResourceRetrievalException;
 
+/**
+ * Applies a stylesheet. The stylesheet is compiled once (and shared, see {@link TemplatesCache}). The
+ * {@link Transformer}s created from it are kept in a bounded pool and reset before they are reused, so that no
+ * transformer holds on to the state of a previous document.
+ */
 public class XSLTTransformer {
 	private static Logger log = LoggerFactory.getLogger(XSLTTransformer.class.getName());
 
-	private final TransformerFactory fac;
-	private final ArrayBlockingQueue<Transformer> transformers;
-	private final String styleSheet;
+	public enum Engine {
+		/**
+		 * the JAXP implementation found on the classpath (usually the one built into the JDK)
+		 */
+		DEFAULT(null),
+		/**
+		 * Saxon-HE, which has to be on the classpath
+		 */
+		SAXON("net.sf.saxon.TransformerFactoryImpl");
+
+		private final String factoryClassName;
+
+		Engine(String factoryClassName) {
+			this.factoryClassName = factoryClassName;
+		}
 
-	public XSLTTransformer(String styleSheet, final Router router, final int concurrency) throws Exception {
-		fac = TransformerFactory.newInstance();
+		TransformerFactory newTransformerFactory() {
+			if (factoryClassName == null)
+				return TransformerFactory.newInstance();
+			return TransformerFactory.newInstance(factoryClassName, XSLTTransformer.class.getClassLoader());
+		}
+	}
 
+	private final String styleSheet;
+	/**
+	 * null, if the identity transformation is used
+	 */
+	private final Templates templates;
+	private final TransformerFactory identityFactory;
+	private final int maxPooled = Runtime.getRuntime().availableProcessors() * 2;
+	private final ConcurrentLinkedQueue<Transformer> transformers = new ConcurrentLinkedQueue<Transformer>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	public XSLTTransformer(String styleSheet, Router router) throws Exception {
+		this(styleSheet, router, Engine.DEFAULT);
+	}
+
+	public XSLTTransformer(String styleSheet, Router router, Engine engine) throws Exception {
 		this.styleSheet = styleSheet;
-		log.debug("using " + concurrency + " parallel transformer instances for " + styleSheet);
-		transformers = new ArrayBlockingQueue<Transformer>(concurrency);
-		createOneTransformer(router.getResolverMap(), router.getBaseLocation());
-		router.getBackgroundInitializator().execute(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					for (int i = 1; i < concurrency; i++)
-						createOneTransformer(router.getResolverMap(), router.getBaseLocation());
-				} catch (Exception e) {
-					log.error("Error creating XSLT transformer:", e);
-				}
-			}
-		});
+		log.debug("using " + engine + " XSLT engine for " + styleSheet);
+		if (isNullOrEmpty(styleSheet)) {
+			templates = null;
+			identityFactory = engine.newTransformerFactory();
+		} else {
+			ResolverMap rr = router.getResolverMap();
+			templates = TemplatesCache.get(engine, rr, ResolverMap.combine(router.getBaseLocation(), styleSheet), styleSheet);
+			identityFactory = null;
+		}
+		// fail early, if the stylesheet cannot be used
+		release(newTransformer());
 	}
 
-	private void createOneTransformer(ResolverMap rr, String baseLocation) throws TransformerConfigurationException, InterruptedException, ResourceRetrievalException {
-		Transformer t;
-		if (isNullOrEmpty(styleSheet))
-			t = fac.newTransformer();
-		else {
-			StreamSource source = new StreamSource(rr.resolve(ResolverMap.combine(baseLocation, styleSheet)));
-			source.setSystemId(styleSheet);
-			t = fac.newTransformer(source);
+	private Transformer acquire() throws TransformerConfigurationException {
+		Transformer t = transformers.poll();
+		if (t == null)
+			return newTransformer();
+		pooled.decrementAndGet();
+		return t;
+	}
+
+	private void release(Transformer t) {
+		if (pooled.incrementAndGet() > maxPooled) {
+			pooled.decrementAndGet();
+			return;
+		}
+		t.reset();
+		transformers.offer(t);
+	}
+
+	private Transformer newTransformer() throws TransformerConfigurationException {
+		if (templates != null)
+			return templates.newTransformer();
+		synchronized (identityFactory) {
+			return identityFactory.newTransformer();
 		}
-		transformers.put(t);
 	}
 
 	public byte[] transform(Source xml) throws Exception {
@@ -79,24 +126,24 @@ public class XSLTTransformer {
 
 	public byte[] transform(Source xml, Map<String, String> parameters)
 			throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		transform(xml, parameters, new StreamResult(baos));
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Applies the stylesheet, writing the output directly to <code>result</code>.
+	 */
+	public void transform(Source xml, Map<String, String> parameters, Result result) throws Exception {
 		log.debug("applying transformation: " + styleSheet);
 
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Transformer t = transformers.take();
-		try {
-			try {
-				t.clearParameters();
-			} catch (NullPointerException e) {
-				// do nothing
-			}
-			for (Map.Entry<String, String> e : parameters.entrySet()) {
-				t.setParameter(e.getKey(), e.getValue());
-			}
-			t.transform(xml, new StreamResult(baos));
-		} finally {
-			transformers.put(t);
+		Transformer t = acquire();
+		for (Map.Entry<String, String> e : parameters.entrySet()) {
+			t.setParameter(e.getKey(), e.getValue());
 		}
-		return baos.toByteArray();
+		// a transformer which failed is not reused
+		t.transform(xml, result);
+		release(t);
 	}
 
 }
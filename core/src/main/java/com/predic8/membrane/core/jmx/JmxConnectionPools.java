@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 predic8 GmbH, www.predic8.com
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.predic8.membrane.core.jmx;
+
+import com.predic8.membrane.core.transport.http.ConnectionManager.PoolStats;
+import com.predic8.membrane.core.transport.http.HttpClient;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.List;
+
+@ManagedResource
+public class JmxConnectionPools {
+
+    private final HttpClient client;
+
+    public JmxConnectionPools(HttpClient client) {
+        this.client = client;
+    }
+
+    @ManagedAttribute
+    public int getDestinations() {
+        return client.getPoolStats().size();
+    }
+
+    @ManagedAttribute
+    public int getIdle() {
+        int idle = 0;
+        for (PoolStats stats : client.getPoolStats())
+            idle += stats.getIdle();
+        return idle;
+    }
+
+    @ManagedAttribute
+    public int getLeased() {
+        int leased = 0;
+        for (PoolStats stats : client.getPoolStats())
+            leased += stats.getLeased();
+        return leased;
+    }
+
+    @ManagedAttribute(description = "number of threads waiting for a connection")
+    public int getPending() {
+        int pending = 0;
+        for (PoolStats stats : client.getPoolStats())
+            pending += stats.getPending();
+        return pending;
+    }
+
+    @ManagedAttribute
+    public long getCreated() {
+        long created = 0;
+        for (PoolStats stats : client.getPoolStats())
+            created += stats.getCreated();
+        return created;
+    }
+
+    @ManagedAttribute
+    public long getEvicted() {
+        long evicted = 0;
+        for (PoolStats stats : client.getPoolStats())
+            evicted += stats.getEvicted();
+        return evicted;
+    }
+
+    @ManagedAttribute(description = "metrics per destination")
+    public String[] getPools() {
+        List<PoolStats> pools = client.getPoolStats();
+        String[] result = new String[pools.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = pools.get(i).toString();
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 predic8 GmbH, www.predic8.com
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.predic8.membrane.core.jmx;
+
+import com.predic8.membrane.core.interceptor.authentication.session.CredentialCache;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource
+public class JmxCredentialCache {
+
+    private final CredentialCache cache;
+
+    public JmxCredentialCache(CredentialCache cache) {
+        this.cache = cache;
+    }
+
+    @ManagedAttribute(description = "number of remembered logins")
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    @ManagedAttribute
+    public int getMaximumSize() {
+        return cache.getMaximumSize();
+    }
+
+    @ManagedAttribute
+    public long getTtlSeconds() {
+        return cache.getTtlSeconds();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @ManagedAttribute(description = "ratio of logins verified without computing the password hash or asking the user store")
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    @ManagedOperation
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 predic8 GmbH, www.predic8.com
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.predic8.membrane.core.jmx;
+
+import com.google.common.cache.CacheStats;
+import com.predic8.membrane.core.interceptor.authentication.session.LDAPConnectionPool;
+import com.predic8.membrane.core.interceptor.authentication.session.LDAPUserDataProvider;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource
+public class JmxLDAPUserDataProvider {
+
+    private final LDAPUserDataProvider udp;
+
+    public JmxLDAPUserDataProvider(LDAPUserDataProvider udp) {
+        this.udp = udp;
+    }
+
+    private LDAPConnectionPool getPool() {
+        return udp.getConnectionPool();
+    }
+
+    @ManagedAttribute
+    public String getUrl() {
+        return udp.getUrl();
+    }
+
+    @ManagedAttribute(description = "number of idle pooled connections")
+    public int getIdleConnections() {
+        return getPool().getIdleCount();
+    }
+
+    @ManagedAttribute
+    public int getConnectionsInUse() {
+        return getPool().getInUse();
+    }
+
+    @ManagedAttribute
+    public long getConnectionsCreated() {
+        return getPool().getCreated();
+    }
+
+    @ManagedAttribute(description = "number of searches using an already open connection")
+    public long getConnectionsReused() {
+        return getPool().getReused();
+    }
+
+    @ManagedAttribute(description = "number of idle connections closed because of the idle timeout")
+    public long getConnectionsExpired() {
+        return getPool().getExpired();
+    }
+
+    @ManagedAttribute(description = "number of connections discarded because of a communication failure")
+    public long getConnectionsBroken() {
+        return getPool().getBroken();
+    }
+
+    @ManagedAttribute
+    public long getSearchCacheHitCount() {
+        CacheStats stats = udp.getSearchCacheStats();
+        return stats == null ? 0 : stats.hitCount();
+    }
+
+    @ManagedAttribute
+    public long getSearchCacheMissCount() {
+        CacheStats stats = udp.getSearchCacheStats();
+        return stats == null ? 0 : stats.missCount();
+    }
+
+    @ManagedOperation(description = "closes all idle connections")
+    public void closeIdleConnections() {
+        getPool().clear();
+    }
+}
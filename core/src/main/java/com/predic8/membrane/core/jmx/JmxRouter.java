@@ -14,12 +14,32 @@
 package com.predic8.membrane.core.jmx;
 
 import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.interceptor.HTTPClientInterceptor;
+import com.predic8.membrane.core.interceptor.Interceptor;
+import com.predic8.membrane.core.interceptor.authentication.BasicAuthenticationInterceptor;
+import com.predic8.membrane.core.interceptor.authentication.session.CredentialCache;
+import com.predic8.membrane.core.interceptor.authentication.session.JdbcUserDataProvider;
+import com.predic8.membrane.core.interceptor.authentication.session.LDAPUserDataProvider;
+import com.predic8.membrane.core.interceptor.authentication.session.LoginInterceptor;
+import com.predic8.membrane.core.interceptor.authentication.session.StaticUserDataProvider;
+import com.predic8.membrane.core.interceptor.authentication.session.UnifyingUserDataProvider;
+import com.predic8.membrane.core.interceptor.authentication.session.UserDataProvider;
+import com.predic8.membrane.core.interceptor.cache.CacheInterceptor;
+import com.predic8.membrane.core.interceptor.flow.ConditionalInterceptor;
+import com.predic8.membrane.core.interceptor.groovy.GroovyInterceptor;
+import com.predic8.membrane.core.interceptor.javascript.JavascriptInterceptor;
+import com.predic8.membrane.core.lang.ScriptExecutorPool;
 import com.predic8.membrane.core.rules.Rule;
 import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.transport.http.HttpClient;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 @ManagedResource()
 public class JmxRouter {
@@ -32,6 +52,7 @@ public class JmxRouter {
         this.router = router;
         this.exporter = exporter;
         exportServiceProxyList();
+        exportConnectionPools();
     }
 
     @ManagedAttribute
@@ -44,6 +65,112 @@ public class JmxRouter {
             if(rule instanceof ServiceProxy){
                 exportServiceProxy((ServiceProxy) rule);
             }
+            exportCaches(rule);
+            exportSSLContext(rule);
+            exportScripts(rule);
+            exportUserDataProviders(rule);
+        }
+    }
+
+    private void exportSSLContext(Rule rule) {
+        if (rule.getSslInboundContext() == null)
+            return;
+        String prefix = "org.membrane-soa:00=sslContexts, 01=" + router.getJmx() + ", name=";
+        exporter.addBean(prefix + rule.getName().replace(":", ""), new JmxSSLContext(rule.getSslInboundContext()));
+    }
+
+    private void exportCaches(Rule rule) {
+        String prefix = "org.membrane-soa:00=caches, 01=" + router.getJmx() + ", 02=" + rule.getName().replace(":", "") + ", name=";
+        List<Interceptor> interceptors = rule.getInterceptors();
+        for (int i = 0; i < interceptors.size(); i++)
+            if (interceptors.get(i) instanceof CacheInterceptor)
+                exporter.addBean(prefix + i, new JmxCache((CacheInterceptor) interceptors.get(i)));
+    }
+
+    private void exportScripts(Rule rule) {
+        String prefix = "org.membrane-soa:00=scripts, 01=" + router.getJmx() + ", 02=" + rule.getName().replace(":", "") + ", name=";
+        List<Interceptor> interceptors = rule.getInterceptors();
+        for (int i = 0; i < interceptors.size(); i++) {
+            Object script = getScript(interceptors.get(i));
+            if (script instanceof ScriptExecutorPool)
+                exporter.addBean(prefix + i, new JmxScriptExecutorPool((ScriptExecutorPool<?, ?>) script));
+        }
+    }
+
+    private Object getScript(Interceptor interceptor) {
+        if (interceptor instanceof GroovyInterceptor)
+            return ((GroovyInterceptor) interceptor).getScript();
+        if (interceptor instanceof JavascriptInterceptor)
+            return ((JavascriptInterceptor) interceptor).getScript();
+        if (interceptor instanceof ConditionalInterceptor)
+            return ((ConditionalInterceptor) interceptor).getCondition();
+        return null;
+    }
+
+    private void exportUserDataProviders(Rule rule) {
+        String prefix = "01=" + router.getJmx() + ", 02=" + rule.getName().replace(":", "") + ", name=";
+        List<Interceptor> interceptors = rule.getInterceptors();
+        for (int i = 0; i < interceptors.size(); i++) {
+            List<UserDataProvider> udps = new ArrayList<UserDataProvider>();
+            collectUserDataProviders(getUserDataProvider(interceptors.get(i)), udps);
+            for (int j = 0; j < udps.size(); j++) {
+                String name = prefix + i + (udps.size() > 1 ? "-" + j : "");
+                CredentialCache cache = getCredentialCache(udps.get(j));
+                if (cache != null && cache.isEnabled())
+                    exporter.addBean("org.membrane-soa:00=credentialCaches, " + name, new JmxCredentialCache(cache));
+                if (udps.get(j) instanceof LDAPUserDataProvider)
+                    exporter.addBean("org.membrane-soa:00=ldapUserDataProviders, " + name,
+                            new JmxLDAPUserDataProvider((LDAPUserDataProvider) udps.get(j)));
+            }
+        }
+    }
+
+    private UserDataProvider getUserDataProvider(Interceptor interceptor) {
+        if (interceptor instanceof BasicAuthenticationInterceptor)
+            return ((BasicAuthenticationInterceptor) interceptor).getUserDataProvider();
+        if (interceptor instanceof LoginInterceptor)
+            return ((LoginInterceptor) interceptor).getUserDataProvider();
+        return null;
+    }
+
+    private void collectUserDataProviders(UserDataProvider udp, List<UserDataProvider> udps) {
+        if (udp instanceof UnifyingUserDataProvider) {
+            for (UserDataProvider inner : ((UnifyingUserDataProvider) udp).getUserDataProviders())
+                collectUserDataProviders(inner, udps);
+        } else if (udp != null) {
+            udps.add(udp);
+        }
+    }
+
+    private CredentialCache getCredentialCache(UserDataProvider udp) {
+        if (udp instanceof StaticUserDataProvider)
+            return ((StaticUserDataProvider) udp).getCredentialCache();
+        if (udp instanceof JdbcUserDataProvider)
+            return ((JdbcUserDataProvider) udp).getCredentialCache();
+        if (udp instanceof LDAPUserDataProvider)
+            return ((LDAPUserDataProvider) udp).getCredentialCache();
+        return null;
+    }
+
+    /**
+     * Exports the connection pools of each HTTP client once, although several interceptors might share it.
+     */
+    private void exportConnectionPools() {
+        String prefix = "org.membrane-soa:00=connectionPools, 01=" + router.getJmx() + ", name=";
+        Set<HttpClient> exported = Collections.newSetFromMap(new IdentityHashMap<HttpClient, Boolean>());
+        if (router.getTransport() != null)
+            exportConnectionPools(prefix + "transport-", router.getTransport().getInterceptors(), exported);
+        for (Rule rule : router.getRules())
+            exportConnectionPools(prefix + rule.getName().replace(":", "") + "-", rule.getInterceptors(), exported);
+    }
+
+    private void exportConnectionPools(String prefix, List<Interceptor> interceptors, Set<HttpClient> exported) {
+        for (int i = 0; i < interceptors.size(); i++) {
+            if (!(interceptors.get(i) instanceof HTTPClientInterceptor))
+                continue;
+            HttpClient client = ((HTTPClientInterceptor) interceptors.get(i)).getHttpClient();
+            if (client != null && exported.add(client))
+                exporter.addBean(prefix + i, new JmxConnectionPools(client));
         }
     }
 
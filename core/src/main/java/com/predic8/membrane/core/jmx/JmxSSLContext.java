@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 predic8 GmbH, www.predic8.com
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.predic8.membrane.core.jmx;
+
+import com.predic8.membrane.core.transport.ssl.SSLContext;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource
+public class JmxSSLContext {
+
+    private final SSLContext sslContext;
+
+    public JmxSSLContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
+    @ManagedAttribute
+    public long getFullHandshakes() {
+        return sslContext.getFullHandshakes();
+    }
+
+    @ManagedAttribute
+    public long getResumedHandshakes() {
+        return sslContext.getResumedHandshakes();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 predic8 GmbH, www.predic8.com
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.predic8.membrane.core.jmx;
+
+import com.predic8.membrane.core.lang.ScriptExecutorPool;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource
+public class JmxScriptExecutorPool {
+
+    private final ScriptExecutorPool<?, ?> pool;
+
+    public JmxScriptExecutorPool(ScriptExecutorPool<?, ?> pool) {
+        this.pool = pool;
+    }
+
+    @ManagedAttribute(description = "number of script instances, in use or idle")
+    public int getSize() {
+        return pool.getSize();
+    }
+
+    @ManagedAttribute
+    public int getMaximumSize() {
+        return pool.getMaximumSize();
+    }
+
+    @ManagedAttribute
+    public int getInUse() {
+        return pool.getInUse();
+    }
+
+    @ManagedAttribute
+    public long getExecutions() {
+        return pool.getExecutions();
+    }
+
+    @ManagedAttribute(description = "number of executions which had to wait for a script instance")
+    public long getWaits() {
+        return pool.getWaits();
+    }
+
+    @ManagedAttribute(description = "total time executions waited for a script instance")
+    public long getWaitTimeMillis() {
+        return pool.getWaitTimeMillis();
+    }
+}
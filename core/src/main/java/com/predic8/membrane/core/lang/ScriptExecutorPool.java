@@ -15,47 +15,163 @@
 package com.predic8.membrane.core.lang;
 
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.transport.Transport;
+import com.predic8.membrane.core.transport.http.HttpTransport;
 
+/**
+ * Pools script instances, as they may not be used by more than one thread at a time.
+ *
+ * The pool starts with one script and creates more only when all existing ones are in use, up to the maximum number
+ * of threads the transport may use (or {@link #DEFAULT_MAXIMUM_SIZE}, if that is not limited). Scripts are reused
+ * most recently used first, so the least recently used ones become idle and are discarded after
+ * {@link #IDLE_TIMEOUT_MILLIS}.
+ */
 public abstract class ScriptExecutorPool<T, R> implements Function<Map<String, Object>, R> {
 	private static final Logger log = LoggerFactory.getLogger(ScriptExecutorPool.class);
 
-	private static final int concurrency = Runtime.getRuntime().availableProcessors() * 2;
-	ArrayBlockingQueue<T> scripts = new ArrayBlockingQueue<T>(concurrency);
+	public static final int DEFAULT_MAXIMUM_SIZE = Runtime.getRuntime().availableProcessors() * 16;
+	private static final long IDLE_TIMEOUT_MILLIS = 60000;
+
+	private static class Entry<T> {
+		private final T script;
+		private long lastUsed;
+
+		private Entry(T script) {
+			this.script = script;
+		}
+	}
+
+	private final ConcurrentLinkedDeque<Entry<T>> idle = new ConcurrentLinkedDeque<Entry<T>>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final AtomicLong lastShrink = new AtomicLong();
+	private int maximumSize;
+	private Semaphore permits;
+
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder waits = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
 
 	public void init(Router router) {
-		scripts.add(createOneScript());
-		router.getBackgroundInitializator().execute(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					for (int i = 1; i < concurrency; i++)
-						scripts.add(createOneScript());
-				} catch (Exception e) {
-					log.error("Error compiling script:", e);
-				}
-			}
-		});
+		maximumSize = getMaximumSize(router);
+		permits = new Semaphore(maximumSize);
+		// create the first script right away, so that compilation errors surface during startup
+		idle.push(newEntry());
+	}
+
+	private static int getMaximumSize(Router router) {
+		Transport transport = router.getTransport();
+		if (transport instanceof HttpTransport) {
+			int maxThreads = ((HttpTransport) transport).getMaxThreadPoolSize();
+			if (maxThreads > 0 && maxThreads < Integer.MAX_VALUE)
+				return maxThreads;
+		}
+		return DEFAULT_MAXIMUM_SIZE;
+	}
+
+	private Entry<T> newEntry() {
+		Entry<T> entry = new Entry<T>(createOneScript());
+		entry.lastUsed = System.currentTimeMillis();
+		size.incrementAndGet();
+		return entry;
 	}
 
 	public final Object execute(Map<String, Object> parameters) {
 		try {
-			T script = scripts.take();
-			try {
-				return invoke(script, parameters);
-			} finally {
-				scripts.put(script);
+			if (!permits.tryAcquire()) {
+				long start = System.nanoTime();
+				permits.acquire();
+				waits.increment();
+				waitNanos.add(System.nanoTime() - start);
 			}
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 			return null;
 		}
+		inUse.incrementAndGet();
+		executions.increment();
+		Entry<T> entry = null;
+		try {
+			entry = idle.pollFirst();
+			if (entry == null)
+				entry = newEntry();
+			return invoke(entry.script, parameters);
+		} finally {
+			if (entry != null) {
+				entry.lastUsed = System.currentTimeMillis();
+				idle.offerFirst(entry);
+				shrink(entry.lastUsed);
+			}
+			inUse.decrementAndGet();
+			permits.release();
+		}
+	}
+
+	/**
+	 * Discards scripts which have not been used for {@link #IDLE_TIMEOUT_MILLIS}, keeping at least one.
+	 */
+	private void shrink(long now) {
+		long last = lastShrink.get();
+		if (now - last < IDLE_TIMEOUT_MILLIS || !lastShrink.compareAndSet(last, now))
+			return;
+		while (true) {
+			Entry<T> oldest = idle.peekLast();
+			if (oldest == null || now - oldest.lastUsed < IDLE_TIMEOUT_MILLIS || size.get() <= 1)
+				return;
+			if (idle.removeLastOccurrence(oldest)) {
+				size.decrementAndGet();
+				if (log.isDebugEnabled())
+					log.debug("Discarded idle script, " + size.get() + " left.");
+			}
+		}
+	}
+
+	/**
+	 * @return the number of script instances currently pooled or in use
+	 */
+	public int getSize() {
+		return size.get();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return the number of script instances currently in use
+	 */
+	public int getInUse() {
+		return inUse.get();
+	}
+
+	public long getExecutions() {
+		return executions.sum();
+	}
+
+	/**
+	 * @return the number of executions which had to wait for a script instance, because {@link #getMaximumSize()}
+	 *         were in use
+	 */
+	public long getWaits() {
+		return waits.sum();
+	}
+
+	/**
+	 * @return the total time in milliseconds, executions waited for a script instance
+	 */
+	public long getWaitTimeMillis() {
+		return waitNanos.sum() / 1000000;
 	}
 
 	protected abstract Object invoke(T script, Map<String, Object> parameters);
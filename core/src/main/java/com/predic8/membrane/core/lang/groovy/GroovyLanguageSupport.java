@@ -18,6 +18,8 @@ import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import groovy.lang.Script;
 
+import org.codehaus.groovy.runtime.InvokerHelper;
+
 import java.util.Map;
 
 import com.google.common.base.Function;
@@ -30,6 +32,7 @@ public class GroovyLanguageSupport extends LanguageSupport {
 	private abstract class GroovyScriptExecutorPool<R> extends
 	ScriptExecutorPool<Script, R> {
 		private final String groovyCode;
+		private Class<? extends Script> scriptClass;
 
 		private GroovyScriptExecutorPool(Router router, String expression) {
 			this.groovyCode = expression;
@@ -39,7 +42,13 @@ public class GroovyLanguageSupport extends LanguageSupport {
 		@Override
 		protected Script createOneScript() {
 			synchronized (shell) {
-				return shell.parse(groovyCode);
+				if (scriptClass == null) {
+					Script script = shell.parse(groovyCode);
+					scriptClass = script.getClass();
+					return script;
+				}
+				// further instances do not need to compile the code again
+				return InvokerHelper.createScript(scriptClass, new Binding());
 			}
 		}
 
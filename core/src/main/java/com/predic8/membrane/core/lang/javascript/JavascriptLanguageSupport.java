@@ -20,6 +20,10 @@ import com.predic8.membrane.core.lang.ScriptExecutorPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -29,7 +33,20 @@ public class JavascriptLanguageSupport extends LanguageSupport {
 
     private static final Logger log = LoggerFactory.getLogger(JavascriptLanguageSupport.class);
 
-    private abstract class JavascriptScriptExecutorPool<R> extends ScriptExecutorPool<ScriptEngine,R>{
+    /**
+     * A pooled script engine together with the script compiled for it.
+     */
+    private static class CompiledJavascript {
+        private final CompiledScript script;
+        private final Bindings bindings;
+
+        private CompiledJavascript(CompiledScript script, Bindings bindings) {
+            this.script = script;
+            this.bindings = bindings;
+        }
+    }
+
+    private abstract class JavascriptScriptExecutorPool<R> extends ScriptExecutorPool<CompiledJavascript,R>{
         private final String javascriptCode;
 
         ScriptEngineManager sce;
@@ -42,21 +59,33 @@ public class JavascriptLanguageSupport extends LanguageSupport {
         }
 
         @Override
-        protected Object invoke(ScriptEngine script, Map<String, Object> parameters) {
-            for(String name : parameters.keySet())
-                script.put(name,parameters.get(name));
+        protected Object invoke(CompiledJavascript script, Map<String, Object> parameters) {
+            // the engine scope is kept per engine: fresh Bindings would make Nashorn create a new global object
+            // on every call, which is more expensive than parsing the script was.
+            script.bindings.putAll(parameters);
             try {
-                return script.eval(javascriptCode);
+                return script.script.eval(script.bindings);
             } catch (ScriptException e) {
-                log.error("Error compiling script:", e);
-                throw new RuntimeException("Error compiling script:", e);
+                log.error("Error executing script:", e);
+                throw new RuntimeException("Error executing script:", e);
+            } finally {
+                for (String name : parameters.keySet())
+                    script.bindings.remove(name);
             }
         }
 
         @Override
-        protected ScriptEngine createOneScript() {
+        protected CompiledJavascript createOneScript() {
+            ScriptEngine engine;
             synchronized (sce){
-                return sce.getEngineByName(javascriptEngineName);
+                engine = sce.getEngineByName(javascriptEngineName);
+            }
+            try {
+                return new CompiledJavascript(((Compilable) engine).compile(javascriptCode),
+                        engine.getBindings(ScriptContext.ENGINE_SCOPE));
+            } catch (ScriptException e) {
+                log.error("Error compiling script:", e);
+                throw new RuntimeException("Error compiling script:", e);
             }
         }
     }
@@ -25,6 +25,7 @@ import com.predic8.membrane.core.interceptor.Outcome;
 import com.predic8.membrane.core.sslinterceptor.SSLInterceptor;
 import com.predic8.membrane.core.stats.RuleStatisticCollector;
 import com.predic8.membrane.core.transport.http.Connection;
+import com.predic8.membrane.core.transport.http.HttpTransport;
 import com.predic8.membrane.core.transport.http.ConnectionManager;
 import com.predic8.membrane.core.transport.http.StreamPump;
 import com.predic8.membrane.core.transport.http.client.ConnectionConfiguration;
@@ -412,7 +413,10 @@ public class SSLProxy implements Rule {
             socket.setSoTimeout(0);
 
             String threadName = Thread.currentThread().getName();
-            new Thread(a, threadName + " " + protocol + " Backward Thread").start();
+            if (router.getTransport() instanceof HttpTransport)
+                ((HttpTransport) router.getTransport()).startThread(a, threadName + " " + protocol + " Backward Thread");
+            else
+                new Thread(a, threadName + " " + protocol + " Backward Thread").start();
             try {
                 Thread.currentThread().setName(threadName + " " + protocol + " Onward Thread");
                 b.run();
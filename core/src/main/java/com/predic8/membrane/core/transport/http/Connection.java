@@ -20,6 +20,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSocket;
@@ -67,6 +68,11 @@ public class Connection implements MessageObserver, NonRelevantBodyObserver {
 
 	private Exchange exchange;
 	private boolean keepAttachedToExchange;
+	private ConnectionManager.DestinationPool pool;
+	/**
+	 * Whether the {@link ConnectionManager} has already stopped counting this connection, as it has been closed.
+	 */
+	private final AtomicBoolean uncounted = new AtomicBoolean();
 
 	public static Connection open(String host, int port, String localHost, SSLProvider sslProvider, int connectTimeout) throws UnknownHostException, IOException {
 		return open(host, port, localHost, sslProvider, null, connectTimeout);
@@ -162,6 +168,21 @@ public class Connection implements MessageObserver, NonRelevantBodyObserver {
 		close();
 	}
 
+	ConnectionManager.DestinationPool getPool() {
+		return pool;
+	}
+
+	void setPool(ConnectionManager.DestinationPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return true the first time it is called, false afterwards
+	 */
+	boolean uncount() {
+		return uncounted.compareAndSet(false, true);
+	}
+
 	public boolean isClosed() {
 		return socket == null || socket.isClosed();
 	}
@@ -14,14 +14,21 @@
 package com.predic8.membrane.core.transport.http;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.predic8.membrane.core.transport.http.client.ProxyConfiguration;
 import com.predic8.membrane.core.transport.ssl.SSLContext;
@@ -50,6 +57,9 @@ import javax.annotation.Nullable;
  *
  * Note that you should call {@link Connection#release()} exactly once, or alternatively
  * {@link Connection#close()} at least once.
+ *
+ * Connections are pooled per destination (see {@link DestinationPool}). Leasing and releasing a connection does not
+ * take a lock, unless the destination's maximum number of connections has been reached and a caller has to wait.
  */
 public class ConnectionManager {
 
@@ -57,27 +67,44 @@ public class ConnectionManager {
 
 	private final long keepAliveTimeout;
 	private final long autoCloseInterval;
+	private final int maxIdlePerDestination;
+	private final int maxTotalPerDestination;
 
 	private static class ConnectionKey {
 		// SSLProvider and ProxyConfiguration do not override equals() or hashCode(), but this is OK, as only a few will exist and are used read-only
 
-		public final String host;
-		public final int port;
+		public String host;
+		public int port;
 		@Nullable private SSLProvider sslProvider;
 		@Nullable public String serverName;
 		@Nullable public ProxyConfiguration proxy;
+		private int hashCode;
 
-		public ConnectionKey(String host, int port, SSLProvider sslProvider, String serverName, ProxyConfiguration proxy) {
+		/**
+		 * Keys used for lookups are reused per thread, so that no object has to be allocated for a pool hit.
+		 */
+		public ConnectionKey set(String host, int port, SSLProvider sslProvider, String serverName, ProxyConfiguration proxy) {
 			this.host = host;
 			this.port = port;
 			this.sslProvider = sslProvider;
 			this.serverName = serverName;
 			this.proxy = proxy;
+			int h = host.hashCode();
+			h = 31 * h + port;
+			h = 31 * h + (sslProvider == null ? 0 : sslProvider.hashCode());
+			h = 31 * h + (serverName == null ? 0 : serverName.hashCode());
+			h = 31 * h + (proxy == null ? 0 : proxy.hashCode());
+			hashCode = h;
+			return this;
+		}
+
+		public ConnectionKey copy() {
+			return new ConnectionKey().set(host, port, sslProvider, serverName, proxy);
 		}
 
 		@Override
 		public int hashCode() {
-			return Objects.hashCode(host, port, sslProvider, serverName, proxy);
+			return hashCode;
 		}
 
 		@Override
@@ -120,15 +147,181 @@ public class ConnectionManager {
 		}
 	}
 
+	/**
+	 * The connections to one destination.
+	 *
+	 * Idle connections are kept in a lock-free deque and reused LIFO (the most recently used connection is the least
+	 * likely to have been closed by the server). The number of connections (idle plus leased) is tracked atomically; the
+	 * lock is only used by threads waiting for a connection when the maximum has been reached.
+	 */
+	static class DestinationPool {
+		private final ConnectionKey key;
+		private final ConcurrentLinkedDeque<OldConnection> idle = new ConcurrentLinkedDeque<OldConnection>();
+		private final AtomicInteger idleCount = new AtomicInteger();
+		private final AtomicInteger total = new AtomicInteger();
+		private final AtomicInteger pending = new AtomicInteger();
+		private final AtomicLong created = new AtomicLong();
+		private final AtomicLong evicted = new AtomicLong();
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition available = lock.newCondition();
+		/**
+		 * set when the pool has been dropped from {@link ConnectionManager#pools} for being unused
+		 */
+		private volatile boolean removed;
+
+		// written by the closer timer only
+		private volatile double createdPerSecond, evictedPerSecond;
+		private long lastSample = System.currentTimeMillis(), lastCreated, lastEvicted;
+
+		public DestinationPool(ConnectionKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * @return a live idle connection, or null
+		 */
+		private Connection pollIdle(long now) {
+			OldConnection c;
+			while ((c = idle.pollFirst()) != null) {
+				idleCount.decrementAndGet();
+				if (c.connection.isClosed())
+					continue; // already accounted for by releaseConnection()
+				if (c.deathTime > now)
+					return c.connection;
+				evict(c.connection);
+			}
+			return null;
+		}
+
+		private boolean tryReserve(int max) {
+			while (true) {
+				int t = total.get();
+				if (t >= max)
+					return false;
+				if (total.compareAndSet(t, t + 1))
+					return true;
+			}
+		}
+
+		private void evict(Connection connection) {
+			evicted.incrementAndGet();
+			try {
+				connection.close();
+			} catch (Exception e) {
+				// do nothing
+			}
+		}
+
+		private void signalWaiters() {
+			if (pending.get() == 0)
+				return;
+			lock.lock();
+			try {
+				available.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void sample(long now) {
+			long c = created.get(), e = evicted.get();
+			double seconds = Math.max(now - lastSample, 1) / 1000.0;
+			createdPerSecond = (c - lastCreated) / seconds;
+			evictedPerSecond = (e - lastEvicted) / seconds;
+			lastSample = now;
+			lastCreated = c;
+			lastEvicted = e;
+		}
+	}
+
+	/**
+	 * A snapshot of the metrics of one {@link DestinationPool}.
+	 */
+	public static class PoolStats {
+		private final String destination;
+		private final int idle, leased, pending;
+		private final long created, evicted;
+		private final double createdPerSecond, evictedPerSecond;
+
+		private PoolStats(DestinationPool pool) {
+			destination = pool.key.toString();
+			idle = pool.idleCount.get();
+			leased = Math.max(pool.total.get() - idle, 0);
+			pending = pool.pending.get();
+			created = pool.created.get();
+			evicted = pool.evicted.get();
+			createdPerSecond = pool.createdPerSecond;
+			evictedPerSecond = pool.evictedPerSecond;
+		}
+
+		public String getDestination() {
+			return destination;
+		}
+
+		public int getIdle() {
+			return idle;
+		}
+
+		public int getLeased() {
+			return leased;
+		}
+
+		/**
+		 * @return the number of threads waiting for a connection
+		 */
+		public int getPending() {
+			return pending;
+		}
+
+		public long getCreated() {
+			return created;
+		}
+
+		public long getEvicted() {
+			return evicted;
+		}
+
+		public double getCreatedPerSecond() {
+			return createdPerSecond;
+		}
+
+		public double getEvictedPerSecond() {
+			return evictedPerSecond;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("To %s: %d idle, %d leased, %d pending, %.1f created/s, %.1f evicted/s",
+					destination, idle, leased, pending, createdPerSecond, evictedPerSecond);
+		}
+	}
+
+	private static final ThreadLocal<ConnectionKey> lookupKey = new ThreadLocal<ConnectionKey>() {
+		@Override
+		protected ConnectionKey initialValue() {
+			return new ConnectionKey();
+		}
+	};
+
 	private AtomicInteger numberInPool = new AtomicInteger();
-	private HashMap<ConnectionKey, ArrayList<OldConnection>> availableConnections =
-			new HashMap<ConnectionManager.ConnectionKey, ArrayList<OldConnection>>(); // guarded by this
+	private final ConcurrentHashMap<ConnectionKey, DestinationPool> pools = new ConcurrentHashMap<ConnectionKey, DestinationPool>();
 	private Timer timer;
 	private volatile boolean shutdownWhenDone = false;
 
 	public ConnectionManager(long keepAliveTimeout) {
+		this(keepAliveTimeout, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxIdlePerDestination the maximum number of idle connections kept open per destination
+	 * @param maxTotalPerDestination the maximum number of connections (idle or in use) per destination: When reached,
+	 *                               callers wait up to their connect timeout for a connection to become available.
+	 */
+	public ConnectionManager(long keepAliveTimeout, int maxIdlePerDestination, int maxTotalPerDestination) {
 		this.keepAliveTimeout = keepAliveTimeout;
 		this.autoCloseInterval = keepAliveTimeout * 2;
+		this.maxIdlePerDestination = maxIdlePerDestination;
+		this.maxTotalPerDestination = maxTotalPerDestination;
 		timer = new Timer("Connection Closer", true);
 		timer.schedule(new TimerTask() {
 			@Override
@@ -142,9 +335,10 @@ public class ConnectionManager {
 	public Connection getConnection(String host, int port, String localHost, SSLProvider sslProvider, int connectTimeout, @Nullable String sniServerName,
 		@Nullable ProxyConfiguration proxy, @Nullable SSLContext proxySSLContext) throws UnknownHostException, IOException {
 
-		log.debug("connection requested for " + host + ":" + port + (proxy != null ? " via " + proxy.getHost() + ":" + proxy.getPort() : ""));
-
-		log.debug("Number of connections in pool: " + numberInPool.get());
+		if (log.isDebugEnabled()) {
+			log.debug("connection requested for " + host + ":" + port + (proxy != null ? " via " + proxy.getHost() + ":" + proxy.getPort() : ""));
+			log.debug("Number of connections in pool: " + numberInPool.get());
+		}
 
 		String cacheHost = host;
 		int cachePort = port;
@@ -155,30 +349,75 @@ public class ConnectionManager {
 			cachePort = 0;
 		}
 
-		ConnectionKey key = new ConnectionKey(cacheHost, cachePort, sslProvider, sniServerName, proxy);
-		long now = System.currentTimeMillis();
+		DestinationPool pool = getPool(lookupKey.get().set(cacheHost, cachePort, sslProvider, sniServerName, proxy));
 
-		synchronized(this) {
-			ArrayList<OldConnection> l = availableConnections.get(key);
-			if (l != null) {
-				int i = l.size() - 1;
-				while(i >= 0) {
-					OldConnection c = l.get(i);
-					if (c.deathTime > now) {
-						l.remove(i);
-						return c.connection;
-					}
-					Collections.swap(l, 0, i);
-					i--;
-				}
-			}
+		Connection result = pool.pollIdle(System.currentTimeMillis());
+		if (result != null)
+			return result;
+
+		if (!pool.tryReserve(maxTotalPerDestination)) {
+			result = awaitConnection(pool, connectTimeout);
+			if (result != null)
+				return result;
 		}
 
-		Connection result = Connection.open(host, port, localHost, sslProvider, this, connectTimeout,sniServerName,proxy,proxySSLContext);
+		try {
+			result = Connection.open(host, port, localHost, sslProvider, this, connectTimeout,sniServerName,proxy,proxySSLContext);
+		} catch (IOException e) {
+			pool.total.decrementAndGet();
+			pool.signalWaiters();
+			throw e;
+		} catch (RuntimeException e) {
+			pool.total.decrementAndGet();
+			pool.signalWaiters();
+			throw e;
+		}
+		result.setPool(pool);
+		pool.created.incrementAndGet();
 		numberInPool.incrementAndGet();
 		return result;
 	}
 
+	private DestinationPool getPool(ConnectionKey lookup) {
+		DestinationPool pool = pools.get(lookup);
+		if (pool != null)
+			return pool;
+		ConnectionKey key = lookup.copy();
+		pool = new DestinationPool(key);
+		DestinationPool old = pools.putIfAbsent(key, pool);
+		return old != null ? old : pool;
+	}
+
+	/**
+	 * Waits until either an idle connection or a free slot becomes available.
+	 *
+	 * @return an idle connection, or null if a slot has been reserved for a new connection
+	 */
+	private Connection awaitConnection(DestinationPool pool, int timeout) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout > 0 ? timeout : Integer.MAX_VALUE);
+		pool.lock.lock();
+		pool.pending.incrementAndGet();
+		try {
+			while (true) {
+				Connection c = pool.pollIdle(System.currentTimeMillis());
+				if (c != null)
+					return c;
+				if (pool.tryReserve(maxTotalPerDestination))
+					return null;
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					throw new SocketTimeoutException("Timeout waiting for a connection to " + pool.key + " (" + maxTotalPerDestination + " connections in use).");
+				pool.available.awaitNanos(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a connection to " + pool.key + ".");
+		} finally {
+			pool.pending.decrementAndGet();
+			pool.lock.unlock();
+		}
+	}
+
 	public Connection getConnection(String host, int port, String localHost, SSLProvider sslProvider, int connectTimeout) throws UnknownHostException, IOException {
 		return getConnection(host,port,localHost,sslProvider,connectTimeout,null,null,null);
 	}
@@ -187,59 +426,68 @@ public class ConnectionManager {
 		if (connection == null)
 			return;
 
+		DestinationPool pool = connection.getPool();
+
 		if (connection.isClosed()) {
+			// close() reports the connection, and a release() of the closed connection might follow
+			if (!connection.uncount())
+				return;
 			numberInPool.decrementAndGet();
+			if (pool != null) {
+				pool.total.decrementAndGet();
+				pool.signalWaiters();
+			}
 			return;
 		}
 
-		ConnectionKey key = new ConnectionKey(connection.getHost(), connection.socket.getPort(), connection.getSslProvider(), connection.getSniServerName(),connection.getProxyConfiguration());
-		OldConnection o = new OldConnection(connection, keepAliveTimeout);
-		ArrayList<OldConnection> l;
-		synchronized(this) {
-			l = availableConnections.get(key);
-			if (l == null) {
-				l = new ArrayList<OldConnection>();
-				availableConnections.put(key, l);
+		if (pool == null) {
+			// not opened by this manager
+			try {
+				connection.close();
+			} catch (IOException e) {
+				log.debug("", e);
 			}
-			l.add(o);
+			return;
+		}
+
+		if (pool.removed) {
+			pool.evict(connection);
+			return;
+		}
+		if (pool.idleCount.incrementAndGet() > maxIdlePerDestination) {
+			pool.idleCount.decrementAndGet();
+			pool.evict(connection);
+			return;
 		}
+		pool.idle.offerFirst(new OldConnection(connection, keepAliveTimeout));
+		pool.signalWaiters();
 	}
 
 	private int closeOldConnections() {
-		ArrayList<ConnectionKey> toRemove = new ArrayList<ConnectionKey>();
-		ArrayList<Connection> toClose = new ArrayList<Connection>();
 		long now = System.currentTimeMillis();
 		log.trace("closing old connections");
-		int closed = 0, remaining;
-		synchronized(this) {
-			// close connections after their timeout
-			for (Map.Entry<ConnectionKey, ArrayList<OldConnection>> e : availableConnections.entrySet()) {
-				ArrayList<OldConnection> l = e.getValue();
-				for (int i = 0; i < l.size(); i++) {
-					OldConnection o = l.get(i);
-					if (o.deathTime < now) {
-						// replace [i] by [last]
-						if (i == l.size() - 1)
-							l.remove(i);
-						else
-							l.set(i, l.remove(l.size() - 1));
-						--i;
-						closed++;
-						toClose.add(o.connection);
-					}
+		int closed = 0, remaining = 0;
+		List<Connection> toClose = new ArrayList<Connection>();
+		// close connections after their timeout
+		for (Iterator<Map.Entry<ConnectionKey, DestinationPool>> it = pools.entrySet().iterator(); it.hasNext(); ) {
+			DestinationPool pool = it.next().getValue();
+			for (Iterator<OldConnection> i = pool.idle.iterator(); i.hasNext(); ) {
+				OldConnection o = i.next();
+				if (o.deathTime < now && pool.idle.removeFirstOccurrence(o)) {
+					pool.idleCount.decrementAndGet();
+					closed++;
+					toClose.add(o.connection);
 				}
-				if (l.isEmpty())
-					toRemove.add(e.getKey());
 			}
-			for (ConnectionKey remove : toRemove)
-				availableConnections.remove(remove);
-			remaining = availableConnections.size();
-		}
-		for (Connection c : toClose) {
-			try {
-				c.close();
-			} catch (Exception e) {
-				// do nothing
+			for (Connection c : toClose)
+				pool.evict(c);
+			toClose.clear();
+			pool.sample(now);
+			if (pool.idleCount.get() > 0)
+				remaining++;
+			else if (pool.total.get() == 0 && pool.pending.get() == 0) {
+				pool.removed = true;
+				it.remove();
 			}
 		}
 		if (closed != 0)
@@ -255,15 +503,19 @@ public class ConnectionManager {
 		return numberInPool.get();
 	}
 
+	public List<PoolStats> getPoolStats() {
+		List<PoolStats> result = new ArrayList<PoolStats>();
+		for (DestinationPool pool : pools.values())
+			result.add(new PoolStats(pool));
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Number in pool: " + numberInPool.get() + "\n");
-		synchronized(this) {
-			for (Map.Entry<ConnectionKey, ArrayList<OldConnection>> e : availableConnections.entrySet()) {
-				sb.append("To " + e.getKey() + ": " + e.getValue().size() + "\n");
-			}
-		}
+		for (PoolStats stats : getPoolStats())
+			sb.append(stats).append("\n");
 		return sb.toString();
 	}
 }
@@ -21,8 +21,11 @@ import com.predic8.membrane.core.http.*;
 import com.predic8.membrane.core.model.AbstractExchangeViewerListener;
 import com.predic8.membrane.core.resolver.ResolverMap;
 import com.predic8.membrane.core.transport.http.client.AuthenticationConfiguration;
+import com.predic8.membrane.core.transport.http.client.ConnectionConfiguration;
 import com.predic8.membrane.core.transport.http.client.HttpClientConfiguration;
 import com.predic8.membrane.core.transport.http.client.ProxyConfiguration;
+import com.predic8.membrane.core.transport.http2.Http2Client;
+import com.predic8.membrane.core.transport.http2.Http2ClientPool;
 import com.predic8.membrane.core.transport.ssl.SSLContext;
 import com.predic8.membrane.core.transport.ssl.SSLProvider;
 import com.predic8.membrane.core.transport.ssl.StaticSSLContext;
@@ -37,6 +40,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * HttpClient with possibly multiple selectable destinations, with internal logic to auto-retry and to
@@ -73,6 +77,10 @@ public class HttpClient {
 	private final SSLContext sslContext;
 
 	private final ConnectionManager conMgr;
+	/**
+	 * null, if HTTP/2 is not used
+	 */
+	private final Http2ClientPool http2ClientPool;
 	private StreamPump.StreamPumpStats streamPumpStats;
 
 	/**
@@ -103,7 +111,12 @@ public class HttpClient {
 		connectTimeout = configuration.getConnection().getTimeout();
 		localAddr = configuration.getConnection().getLocalAddr();
 
-		conMgr = new ConnectionManager(configuration.getConnection().getKeepAliveTimeout());
+		ConnectionConfiguration connection = configuration.getConnection();
+		conMgr = new ConnectionManager(connection.getKeepAliveTimeout(), connection.getMaxIdlePerDestination(), connection.getMaxTotalPerDestination());
+		if (configuration.isUseExperimentalHttp2())
+			http2ClientPool = new Http2ClientPool(configuration.isHttp2PriorKnowledge(), connection.getKeepAliveTimeout());
+		else
+			http2ClientPool = null;
 	}
 
 	public void setStreamPumpStats(StreamPump.StreamPumpStats streamPumpStats) {
@@ -113,6 +126,8 @@ public class HttpClient {
 	@Override
 	protected void finalize() throws Throwable {
 		conMgr.shutdownWhenDone();
+		if (http2ClientPool != null)
+			http2ClientPool.shutdownWhenDone();
 	}
 
 	private void setRequestURI(Request req, String dest) throws MalformedURLException {
@@ -187,6 +202,7 @@ public class HttpClient {
 		boolean trackNodeStatus = trackNodeStatusObj != null && trackNodeStatusObj instanceof Boolean && (Boolean)trackNodeStatusObj;
 		while (counter < maxRetries) {
 			Connection con = null;
+			Http2Client http2Client = null;
 			String dest = getDestination(exc, counter);
 			HostColonPort target = null;
 			Integer responseStatusCode = null;
@@ -205,12 +221,14 @@ public class HttpClient {
 					}
 				}
 				SSLProvider sslProvider = getOutboundSSLProvider(exc, target);
-				if (con == null) {
+				if (con == null && http2ClientPool != null && isHttp2Possible(exc))
+					http2Client = http2ClientPool.reserveStream(target.host, target.port, localAddr, sslProvider, connectTimeout, getSNIServerName(exc), proxy, proxySSLContext);
+				if (con == null && http2Client == null) {
 					con = conMgr.getConnection(target.host, target.port, localAddr, sslProvider, connectTimeout, getSNIServerName(exc), proxy, proxySSLContext);
 					con.setKeepAttachedToExchange(exc.getRequest().isBindTargetConnectionToIncoming());
 					exc.setTargetConnection(con);
 				}
-				if (proxy != null && sslProvider == null)
+				if (proxy != null && sslProvider == null && http2Client == null)
 					// if we use a proxy for a plain HTTP (=non-HTTPS) request, attach the proxy credentials.
 					exc.getRequest().getHeader().setProxyAutorization(proxy.getCredentials());
 				Response response;
@@ -222,7 +240,7 @@ public class HttpClient {
 					newProtocol = "CONNECT";
 					//TODO should we report to the httpClientStatusEventBus here somehow?
 				} else {
-					response = doCall(exc, con);
+					response = http2Client != null ? http2Client.call(exc, maxRetries > 1) : doCall(exc, con);
 					if (trackNodeStatus)
 						exc.setNodeStatusCode(counter, response.getStatusCode());
 
@@ -256,11 +274,13 @@ public class HttpClient {
 					httpClientStatusEventBus.reportResponse(dest, responseStatusCode);
 
 				if (!failOverOn5XX || !is5xx(responseStatusCode) || counter == maxRetries-1) {
-					applyKeepAliveHeader(response, con);
 					exc.getDestinations().clear();
 					exc.getDestinations().add(dest);
-					con.setExchange(exc);
-					response.addObserver(con);
+					if (con != null) {
+						applyKeepAliveHeader(response, con);
+						con.setExchange(exc);
+						response.addObserver(con);
+					}
 					exc.setResponse(response);
 					//TODO should we report to the httpClientStatusEventBus here somehow?
 					return exc;
@@ -329,6 +349,15 @@ public class HttpClient {
 		throw exception;
 	}
 
+	/**
+	 * HTTP/2 does not support CONNECT requests (as used here) or upgrading the connection to another protocol.
+	 */
+	private boolean isHttp2Possible(Exchange exc) {
+		return !exc.getRequest().isCONNECTRequest()
+				&& exc.getRequest().getHeader().getFirstValue(Header.UPGRADE) == null
+				&& !exc.getRequest().isBindTargetConnectionToIncoming();
+	}
+
 	private String getSNIServerName(Exchange exc) {
 		Object sniObject = exc.getProperty(Exchange.SNI_SERVER_NAME);
 		if (sniObject == null)
@@ -427,7 +456,7 @@ public class HttpClient {
 			@Override
 			public void setExchangeFinished() {
 				String threadName = Thread.currentThread().getName();
-				new Thread(b, threadName + " " + protocol + " Backward Thread").start();
+				hsr.getTransport().startThread(b, threadName + " " + protocol + " Backward Thread");
 				try {
 					Thread.currentThread().setName(threadName + " " + protocol + " Onward Thread");
 					a.run();
@@ -472,4 +501,15 @@ public class HttpClient {
 	ConnectionManager getConnectionManager() {
 		return conMgr;
 	}
+
+	/**
+	 * @return the metrics of the connection pools of all destinations this client has connected to
+	 */
+	public List<ConnectionManager.PoolStats> getPoolStats() {
+		return conMgr.getPoolStats();
+	}
+
+	Http2ClientPool getHttp2ClientPool() {
+		return http2ClientPool;
+	}
 }
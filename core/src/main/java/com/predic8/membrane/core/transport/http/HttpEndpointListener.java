@@ -40,6 +40,7 @@ public class HttpEndpointListener extends Thread {
 	private final ServerSocket serverSocket;
 	private final HttpTransport transport;
 	private final SSLProvider sslProvider;
+	private final SelectorEventLoop selectorEventLoop;
 	private final ConcurrentHashMap<Socket, Boolean> idleSockets = new ConcurrentHashMap<Socket, Boolean>();
 	private final ConcurrentHashMap<Socket, Boolean> openSockets = new ConcurrentHashMap<Socket, Boolean>();
 	private final ConcurrentHashMap<InetAddress, ClientInfo> ipConnectionCount = new ConcurrentHashMap<>();
@@ -76,10 +77,16 @@ public class HttpEndpointListener extends Thread {
 		this.transport = transport;
 		this.sslProvider = sslProvider;
 		try {
-			if (sslProvider != null)
+			if (sslProvider != null) {
 				serverSocket = sslProvider.createServerSocket(p.getPort(), 50, p.getIp());
-			else
+				selectorEventLoop = null;
+			} else if (transport.getIoMode() == HttpTransport.IoMode.SELECTOR) {
+				selectorEventLoop = new SelectorEventLoop(this, p);
+				serverSocket = selectorEventLoop.getServerSocket();
+			} else {
 				serverSocket = new ServerSocket(p.getPort(), 50, p.getIp());
+				selectorEventLoop = null;
+			}
 
 			//TODO: use Spring scheduler
 			new Timer().schedule(new TimerTask() {
@@ -108,49 +115,22 @@ public class HttpEndpointListener extends Thread {
 
 	@Override
 	public void run() {
+		if (selectorEventLoop != null) {
+			selectorEventLoop.run();
+			return;
+		}
 		while (!closed) {
 			try {
 				@SuppressWarnings("resource")
 				Socket socket = serverSocket.accept();
 
-				InetAddress remoteIp = getRemoteIp(socket);
-				ClientInfo connectionCount = ipConnectionCount.get(remoteIp);
-				if (connectionCount == null) {
-					connectionCount = new ClientInfo();
-					ClientInfo oldconnectionCount = connectionCount;
-					connectionCount = ipConnectionCount.putIfAbsent(remoteIp, connectionCount);
-
-					if (connectionCount == null)
-						connectionCount = oldconnectionCount;
-				}
-				int concurrentConnectionLimitPerIp = transport.getConcurrentConnectionLimitPerIp();
-				boolean connnectionWithinLimit = true;
-				while(true) {
-					int currentConnections = connectionCount.get();
-					// TODO: if count == -1 -> try to get the counter in a while loop
-					if (currentConnections >= concurrentConnectionLimitPerIp) {
-						// TODO: send an SSL response, if this is an SSL server socket
-						log.warn(constructLogMessage(new StringBuilder(), remoteIp, readUpTo1KbOfDataFrom(socket, new byte[1023])));
-						writeRateLimitReachedToSource(socket);
-						socket.close();
-						connnectionWithinLimit = false;
-						break;
-					}
-					if (connectionCount.compareAndSet(currentConnections, currentConnections + 1))
-						break;
-				}
-				if (connnectionWithinLimit) {
-					openSockets.put(socket, Boolean.TRUE);
+				if (registerAcceptedSocket(socket)) {
 					try {
 						if (log.isDebugEnabled())
 							log.debug("Accepted connection from " + socket.getRemoteSocketAddress());
 						transport.getExecutorService().execute(new HttpServerHandler(socket, this));
 					} catch (RejectedExecutionException e) {
-						connectionCount.decrementAndGet();
-						openSockets.remove(socket);
-						log.error("HttpServerHandler execution rejected. Might be due to a proxies.xml hot deployment in progress or a low"
-								+ " value for <transport maxThreadPoolSize=\"...\">.");
-						socket.close();
+						handlerRejected(socket);
 					}
 				}
 			}
@@ -171,10 +151,71 @@ public class HttpEndpointListener extends Thread {
 		}
 	}
 
+	/**
+	 * Enforces the concurrent connection limit per IP for a freshly accepted socket and tracks it as open.
+	 * @return false, if the limit was reached (the socket has been answered with a 429 and closed)
+	 */
+	boolean registerAcceptedSocket(Socket socket) throws IOException {
+		if (tryRegisterAcceptedSocket(socket))
+			return true;
+		rejectOverLimit(socket);
+		return false;
+	}
+
+	/**
+	 * Like {@link #registerAcceptedSocket(Socket)}, but does not do any I/O.
+	 * @return false, if the limit was reached: the caller then has to {@link #rejectOverLimit(Socket)} the socket
+	 */
+	boolean tryRegisterAcceptedSocket(Socket socket) {
+		InetAddress remoteIp = getRemoteIp(socket);
+		ClientInfo connectionCount = ipConnectionCount.get(remoteIp);
+		if (connectionCount == null) {
+			connectionCount = new ClientInfo();
+			ClientInfo oldconnectionCount = connectionCount;
+			connectionCount = ipConnectionCount.putIfAbsent(remoteIp, connectionCount);
+
+			if (connectionCount == null)
+				connectionCount = oldconnectionCount;
+		}
+		int concurrentConnectionLimitPerIp = transport.getConcurrentConnectionLimitPerIp();
+		while(true) {
+			int currentConnections = connectionCount.get();
+			// TODO: if count == -1 -> try to get the counter in a while loop
+			if (currentConnections >= concurrentConnectionLimitPerIp)
+				return false;
+			if (connectionCount.compareAndSet(currentConnections, currentConnections + 1))
+				break;
+		}
+		openSockets.put(socket, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * Answers a socket exceeding the concurrent connection limit with a 429 and closes it. Blocks while writing.
+	 */
+	void rejectOverLimit(Socket socket) throws IOException {
+		try {
+			// TODO: send an SSL response, if this is an SSL server socket
+			log.warn(constructLogMessage(new StringBuilder(), getRemoteIp(socket), readUpTo1KbOfDataFrom(socket, new byte[1023])));
+			writeRateLimitReachedToSource(socket);
+		} finally {
+			socket.close();
+		}
+	}
+
+	void handlerRejected(Socket socket) throws IOException {
+		setOpenStatus(socket, false);
+		log.error("HttpServerHandler execution rejected. Might be due to a proxies.xml hot deployment in progress or a low"
+				+ " value for <transport maxThreadPoolSize=\"...\">.");
+		socket.close();
+	}
+
 	public void closePort() throws IOException {
 		closed = true;
 		if (!serverSocket.isClosed())
 			serverSocket.close();
+		if (selectorEventLoop != null)
+			selectorEventLoop.wakeup();
 	}
 
 	/**
@@ -216,6 +257,19 @@ public class HttpEndpointListener extends Thread {
 		}
 	}
 
+	/**
+	 * Hands an idle keep-alive connection back to the selector, so that no thread is blocked until the next
+	 * request head has arrived. Only valid in {@link HttpTransport.IoMode#SELECTOR} mode.
+	 */
+	void park(Socket socket) throws IOException {
+		setIdleStatus(socket, true);
+		selectorEventLoop.park(socket.getChannel());
+	}
+
+	boolean isParkingSupported() {
+		return selectorEventLoop != null;
+	}
+
 	public int getNumberOfOpenConnections(){
 		return openSockets.size();
 	}
@@ -16,9 +16,11 @@ package com.predic8.membrane.core.transport.http;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
@@ -49,14 +51,24 @@ public class HttpServerHandler extends AbstractHttpHandler implements Runnable {
 	private Socket sourceSocket;
 	private InputStream srcIn;
 	private OutputStream srcOut;
+	/**
+	 * bytes already read from the socket by the {@link SelectorEventLoop}, or null
+	 */
+	private final byte[] receivedHead;
+	private boolean parked;
 
 	private boolean showSSLExceptions = true;
 
 
 	public HttpServerHandler(Socket socket, HttpEndpointListener endpointListener) throws IOException {
+		this(socket, endpointListener, null);
+	}
+
+	public HttpServerHandler(Socket socket, HttpEndpointListener endpointListener, byte[] receivedHead) throws IOException {
 		super(endpointListener.getTransport());
 		this.endpointListener = endpointListener;
 		this.sourceSocket = socket;
+		this.receivedHead = receivedHead;
 	}
 
 	@Override
@@ -75,7 +87,10 @@ public class HttpServerHandler extends AbstractHttpHandler implements Runnable {
 			showSSLExceptions = false;
 		}
 		log.debug("New ServerThread created. " + counter.incrementAndGet());
-		srcIn = new BufferedInputStream(sourceSocket.getInputStream(), 2048);
+		InputStream in = sourceSocket.getInputStream();
+		if (receivedHead != null)
+			in = new SequenceInputStream(new ByteArrayInputStream(receivedHead), in);
+		srcIn = new BufferedInputStream(in, 2048);
 		srcOut = new BufferedOutputStream(sourceSocket.getOutputStream(), 2048);
 		sourceSocket.setSoTimeout(endpointListener.getTransport().getSocketTimeout());
 		sourceSocket.setTcpNoDelay(endpointListener.getTransport().isTcpNoDelay());
@@ -89,6 +104,13 @@ public class HttpServerHandler extends AbstractHttpHandler implements Runnable {
 			while (true) {
 				srcReq = new Request();
 
+				if (boundConnection == null && endpointListener.isParkingSupported() && srcIn.available() == 0) {
+					// the next request has not arrived yet: wait for it without blocking this thread
+					endpointListener.park(sourceSocket);
+					parked = true;
+					return;
+				}
+
 				endpointListener.setIdleStatus(sourceSocket, true);
 				try {
 					srcIn.mark(2);
@@ -166,16 +188,18 @@ public class HttpServerHandler extends AbstractHttpHandler implements Runnable {
 		}
 
 		finally {
-			endpointListener.setOpenStatus(sourceSocket, false);
+			if (!parked) {
+				endpointListener.setOpenStatus(sourceSocket, false);
 
-			if (boundConnection != null)
-				try {
-					boundConnection.close();
-				} catch (IOException e) {
-					log.debug("Closing bound connection.", e);
-				}
+				if (boundConnection != null)
+					try {
+						boundConnection.close();
+					} catch (IOException e) {
+						log.debug("Closing bound connection.", e);
+					}
 
-			closeConnections();
+				closeConnections();
+			}
 
 			exchange.detach();
 
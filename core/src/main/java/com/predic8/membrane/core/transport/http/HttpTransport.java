@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +36,7 @@ import com.predic8.membrane.core.Router;
 import com.predic8.membrane.core.model.IPortChangeListener;
 import com.predic8.membrane.core.transport.Transport;
 import com.predic8.membrane.core.transport.ssl.SSLProvider;
+import com.predic8.membrane.core.util.VirtualThreads;
 
 /**
  * @description <p>
@@ -48,6 +50,22 @@ public class HttpTransport extends Transport {
 
 	private static Logger log = LoggerFactory.getLogger(HttpTransport.class.getName());
 
+	public enum IoMode {
+		BLOCKING,
+		SELECTOR
+	}
+
+	public enum ExecutorType {
+		POOL,
+		VIRTUAL
+	}
+
+	/**
+	 * Runs HTTP/2 streams in {@link ExecutorType#POOL} mode. Not bounded by maxThreadPoolSize, as the connection
+	 * handlers wait for their streams.
+	 */
+	private static final ExecutorService streamThreadPool = Executors.newCachedThreadPool();
+
 	public static final String SOURCE_HOSTNAME = "com.predic8.membrane.transport.http.source.Hostname";
 	public static final String HEADER_HOST = "com.predic8.membrane.transport.http.header.Host";
 	public static final String SOURCE_IP = "com.predic8.membrane.transport.http.source.Ip";
@@ -55,15 +73,19 @@ public class HttpTransport extends Transport {
 	private int socketTimeout = 30000;
 	private int forceSocketCloseOnHotDeployAfter = 30000;
 	private boolean tcpNoDelay = true;
+	private IoMode ioMode = IoMode.BLOCKING;
 
 	private final Map<Integer, Map<IpPort, HttpEndpointListener>> portListenerMapping
 	        = new HashMap<Integer, Map<IpPort, HttpEndpointListener>>();
 	private final List<WeakReference<HttpEndpointListener>> stillRunning
 	        = new ArrayList<WeakReference<HttpEndpointListener>>();
 
-	private ThreadPoolExecutor executorService = new ThreadPoolExecutor(20,
+	private final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(20,
 			Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
 			new SynchronousQueue<Runnable>(), new HttpServerThreadFactory());
+	private ExecutorType executor = ExecutorType.POOL;
+	private ExecutorService executorService = threadPool;
+	private ExecutorService streamExecutorService = streamThreadPool;
 
 	@Override
 	public void init(Router router) throws Exception {
@@ -203,7 +225,7 @@ public class HttpTransport extends Transport {
 	}
 
 	public int getCoreThreadPoolSize() {
-		return executorService.getCorePoolSize();
+		return threadPool.getCorePoolSize();
 	}
 
 	/**
@@ -213,11 +235,11 @@ public class HttpTransport extends Transport {
 	 */
 	@MCAttribute
 	public void setCoreThreadPoolSize(int corePoolSize) {
-		executorService.setCorePoolSize(corePoolSize);
+		threadPool.setCorePoolSize(corePoolSize);
 	}
 
 	public int getMaxThreadPoolSize() {
-		return executorService.getMaximumPoolSize();
+		return threadPool.getMaximumPoolSize();
 	}
 
 	/**
@@ -227,13 +249,68 @@ public class HttpTransport extends Transport {
 	 */
 	@MCAttribute
 	public void setMaxThreadPoolSize(int value) {
-		executorService.setMaximumPoolSize(value);
+		threadPool.setMaximumPoolSize(value);
+	}
+
+	public ExecutorType getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @description <p>What runs the handlers of client connections, HTTP/2 streams and the stream pumps of
+	 *              WebSocket and CONNECT tunnels.</p>
+	 *              <p><i>pool</i>: Platform threads from a thread pool (see coreThreadPoolSize and
+	 *              maxThreadPoolSize).</p>
+	 *              <p><i>virtual</i>: A new virtual thread for each task. Blocking calls to backend servers then do not
+	 *              limit the number of concurrent exchanges. Requires Java 21 or newer: On older JVMs, a warning is
+	 *              logged and <i>pool</i> is used.</p>
+	 * @default pool
+	 * @example virtual
+	 */
+	@MCAttribute
+	public void setExecutor(ExecutorType executor) {
+		if (executor == ExecutorType.VIRTUAL && !VirtualThreads.isSupported()) {
+			log.warn("<transport executor=\"virtual\"> requires a JVM supporting virtual threads (Java 21+). Using the thread pool instead.");
+			executor = ExecutorType.POOL;
+		}
+		if (this.executor == executor)
+			return;
+		this.executor = executor;
+		if (executor == ExecutorType.VIRTUAL) {
+			executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+			streamExecutorService = executorService;
+		} else {
+			executorService.shutdown();
+			executorService = threadPool;
+			streamExecutorService = streamThreadPool;
+		}
 	}
 
+	/**
+	 * @return the executor running the {@link HttpServerHandler}s
+	 */
 	public ExecutorService getExecutorService() {
 		return executorService;
 	}
 
+	/**
+	 * @return the executor running HTTP/2 streams and frame senders
+	 */
+	public ExecutorService getStreamExecutorService() {
+		return streamExecutorService;
+	}
+
+	/**
+	 * Starts a long running thread outside of the executor, e.g. for a {@link StreamPump}.
+	 */
+	public Thread startThread(Runnable runnable, String name) {
+		if (executor == ExecutorType.VIRTUAL)
+			return VirtualThreads.start(runnable, name);
+		Thread thread = new Thread(runnable, name);
+		thread.start();
+		return thread;
+	}
+
 	public int getSocketTimeout() {
 		return socketTimeout;
 	}
@@ -264,6 +341,26 @@ public class HttpTransport extends Transport {
 		this.tcpNoDelay = tcpNoDelay;
 	}
 
+	public IoMode getIoMode() {
+		return ioMode;
+	}
+
+	/**
+	 * @description <p>How client connections are read from.</p>
+	 *              <p><i>blocking</i>: Each connection is served by its own thread for its whole lifetime, including
+	 *              the time a keep-alive connection waits for the next request.</p>
+	 *              <p><i>selector</i>: Connections are accepted, and idle keep-alive connections are watched, by a
+	 *              single NIO selector thread per port. A thread from the pool is only used once a complete request
+	 *              head has been received. This allows many mostly idle connections with few threads. Ports using
+	 *              SSL always use <i>blocking</i>.</p>
+	 * @default blocking
+	 * @example selector
+	 */
+	@MCAttribute
+	public void setIoMode(IoMode ioMode) {
+		this.ioMode = ioMode;
+	}
+
 	@Override
 	public boolean isOpeningPorts() {
 		return true;
@@ -0,0 +1,385 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.predic8.membrane.core.transport.PortOccupiedException;
+
+/**
+ * Event loop run by a {@link HttpEndpointListener} in {@link HttpTransport.IoMode#SELECTOR} mode.
+ *
+ * Accepts connections, parks idle keep-alive connections and collects request heads without blocking a thread per
+ * connection. As soon as a complete request head (request line and header fields up to the empty line) has been
+ * received, the channel is switched back to blocking mode and handed to a {@link HttpServerHandler} running on the
+ * transport's executor. The handler returns the connection via {@link #park(SocketChannel)} when it becomes idle.
+ */
+class SelectorEventLoop {
+
+	private static final Logger log = LoggerFactory.getLogger(SelectorEventLoop.class.getName());
+
+	private static final int INITIAL_HEAD_BUFFER_SIZE = 2048;
+	/**
+	 * Heads larger than this are handed to a worker thread unfinished: The worker then continues reading (and
+	 * fails on overlong lines) exactly as in blocking mode.
+	 */
+	private static final int MAX_HEAD_BUFFER_SIZE = 64 * 1024;
+	private static final long IDLE_CHECK_INTERVAL = 1000;
+
+	private final HttpEndpointListener listener;
+	private final ServerSocketChannel serverChannel;
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<SocketChannel> parked = new ConcurrentLinkedQueue<SocketChannel>();
+	private final List<PendingHead> completed = new ArrayList<PendingHead>();
+
+	private volatile boolean terminated;
+	private long lastIdleCheck = System.currentTimeMillis();
+
+	public SelectorEventLoop(HttpEndpointListener listener, IpPort p) throws IOException {
+		this.listener = listener;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.socket().bind(new InetSocketAddress(p.getIp(), p.getPort()), 50);
+		} catch (BindException e) {
+			serverChannel.close();
+			selector.close();
+			throw new PortOccupiedException(p);
+		}
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	public ServerSocket getServerSocket() {
+		return serverChannel.socket();
+	}
+
+	public void run() {
+		try {
+			while (!listener.isClosed()) {
+				try {
+					selector.select(IDLE_CHECK_INTERVAL);
+					registerParked();
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						if (!key.isValid())
+							continue;
+						if (key.isAcceptable())
+							accept();
+						else if (key.isReadable())
+							read(key);
+					}
+					closeIdle();
+					handOff();
+				} catch (ClosedSelectorException e) {
+					break;
+				} catch (IOException e) {
+					log.error("", e);
+				}
+			}
+		} finally {
+			terminated = true;
+			shutdown();
+		}
+	}
+
+	public void wakeup() {
+		selector.wakeup();
+	}
+
+	/**
+	 * Called by a {@link HttpServerHandler} thread: The connection is idle, its read buffer is empty, and it should
+	 * be watched for the next request head.
+	 */
+	public void park(SocketChannel channel) {
+		parked.add(channel);
+		if (terminated)
+			closeParked();
+		else
+			selector.wakeup();
+	}
+
+	private void registerParked() {
+		SocketChannel channel;
+		while ((channel = parked.poll()) != null) {
+			try {
+				channel.configureBlocking(false);
+				channel.register(selector, SelectionKey.OP_READ, new PendingHead(channel));
+			} catch (ClosedChannelException e) {
+				close(channel);
+			} catch (IOException e) {
+				log.debug("Could not park connection.", e);
+				close(channel);
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			if (!listener.tryRegisterAcceptedSocket(channel.socket())) {
+				reject(channel);
+				continue;
+			}
+			if (log.isDebugEnabled())
+				log.debug("Accepted connection from " + channel.socket().getRemoteSocketAddress());
+			try {
+				listener.setIdleStatus(channel.socket(), true);
+			} catch (IOException e) {
+				close(channel);
+				continue;
+			}
+			parked.add(channel);
+		}
+		registerParked();
+	}
+
+	/**
+	 * Answers a connection exceeding the concurrent connection limit on a worker thread, as writing the response
+	 * might block.
+	 */
+	private void reject(final SocketChannel channel) {
+		try {
+			listener.getTransport().getExecutorService().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						listener.rejectOverLimit(channel.socket());
+					} catch (IOException e) {
+						log.debug("", e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			try {
+				channel.close();
+			} catch (IOException e2) {
+				log.debug("", e2);
+			}
+		}
+	}
+
+	private void read(SelectionKey key) {
+		PendingHead head = (PendingHead) key.attachment();
+		boolean eof;
+		try {
+			eof = !head.read();
+		} catch (IOException e) {
+			log.debug("", e);
+			eof = true;
+		}
+		if (eof) {
+			key.cancel();
+			close(head);
+			return;
+		}
+		if (head.isComplete()) {
+			key.cancel();
+			head.done = true;
+			completed.add(head);
+		}
+	}
+
+	private void closeIdle() {
+		long now = System.currentTimeMillis();
+		if (now - lastIdleCheck < IDLE_CHECK_INTERVAL)
+			return;
+		lastIdleCheck = now;
+		int timeout = listener.getTransport().getSocketTimeout();
+		if (timeout <= 0)
+			return;
+		for (SelectionKey key : selector.keys()) {
+			if (!(key.attachment() instanceof PendingHead))
+				continue;
+			PendingHead head = (PendingHead) key.attachment();
+			if (!head.done && now - head.lastActivity > timeout) {
+				log.debug("Idle connection timed out.");
+				key.cancel();
+				close(head);
+			}
+		}
+	}
+
+	/**
+	 * Switches channels with a complete request head back to blocking mode and starts a handler for each of them.
+	 */
+	private void handOff() throws IOException {
+		if (completed.isEmpty())
+			return;
+		// deregisters the cancelled keys, which is a precondition for configureBlocking(true)
+		selector.selectNow();
+		for (PendingHead head : completed) {
+			try {
+				head.channel.configureBlocking(true);
+				listener.setIdleStatus(head.channel.socket(), false);
+			} catch (IOException e) {
+				close(head.channel);
+				continue;
+			}
+			try {
+				listener.getTransport().getExecutorService().execute(
+						new HttpServerHandler(head.channel.socket(), listener, head.getBytes()));
+			} catch (RejectedExecutionException e) {
+				listener.handlerRejected(head.channel.socket());
+			}
+		}
+		completed.clear();
+	}
+
+	private void close(PendingHead head) {
+		head.done = true;
+		close(head.channel);
+	}
+
+	private void close(SocketChannel channel) {
+		try {
+			listener.setIdleStatus(channel.socket(), false);
+		} catch (IOException e) {
+			// does not happen for isIdle=false
+		}
+		listener.setOpenStatus(channel.socket(), false);
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.debug("", e);
+		}
+	}
+
+	private void closeParked() {
+		SocketChannel channel;
+		while ((channel = parked.poll()) != null)
+			close(channel);
+	}
+
+	private void shutdown() {
+		try {
+			for (SelectionKey key : selector.keys()) {
+				if (!(key.attachment() instanceof PendingHead))
+					continue;
+				PendingHead head = (PendingHead) key.attachment();
+				if (!head.done)
+					close(head);
+			}
+			for (PendingHead head : completed)
+				close(head.channel);
+			completed.clear();
+			closeParked();
+			serverChannel.close();
+			selector.close();
+		} catch (ClosedSelectorException e) {
+			// already shut down
+		} catch (IOException e) {
+			log.error("", e);
+		}
+	}
+
+	/**
+	 * The bytes of a request head received so far.
+	 */
+	private static class PendingHead {
+		private final SocketChannel channel;
+		private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_HEAD_BUFFER_SIZE);
+		private long lastActivity = System.currentTimeMillis();
+		private int scanned;
+		private int lineLength;
+		private boolean complete;
+		/**
+		 * whether the connection has been closed or handed over
+		 */
+		private boolean done;
+
+		public PendingHead(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * @return false, if the end of the stream was reached
+		 */
+		public boolean read() throws IOException {
+			if (!buffer.hasRemaining()) {
+				if (buffer.capacity() >= MAX_HEAD_BUFFER_SIZE) {
+					complete = true;
+					return true;
+				}
+				ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			int read = channel.read(buffer);
+			if (read == -1)
+				return false;
+			lastActivity = System.currentTimeMillis();
+			scan();
+			if (!buffer.hasRemaining() && buffer.capacity() >= MAX_HEAD_BUFFER_SIZE)
+				complete = true;
+			return true;
+		}
+
+		/**
+		 * Looks for the first empty line, which terminates the request head. (An empty first line is handed over,
+		 * too: The handler then fails on it just as it does in blocking mode.)
+		 */
+		private void scan() {
+			byte[] b = buffer.array();
+			int end = buffer.position();
+			for (; scanned < end; scanned++) {
+				switch (b[scanned]) {
+				case '\n':
+					if (lineLength == 0) {
+						complete = true;
+						scanned++;
+						return;
+					}
+					lineLength = 0;
+					break;
+				case '\r':
+					break;
+				default:
+					lineLength++;
+				}
+			}
+		}
+
+		public boolean isComplete() {
+			return complete;
+		}
+
+		public byte[] getBytes() {
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+	}
+}
@@ -22,6 +22,8 @@ public class ConnectionConfiguration {
 	private long keepAliveTimeout = 4000;
 	private int connectTimeout = 10000;
 	private String localAddr;
+	private int maxIdlePerDestination = Integer.MAX_VALUE;
+	private int maxTotalPerDestination = Integer.MAX_VALUE;
 
 	public long getKeepAliveTimeout() {
 		return keepAliveTimeout;
@@ -64,5 +66,35 @@ public class ConnectionConfiguration {
 		this.localAddr = localAddr;
 	}
 
+	public int getMaxIdlePerDestination() {
+		return maxIdlePerDestination;
+	}
+
+	/**
+	 * @description The maximum number of idle connections kept open per destination (host, port, SSL and proxy
+	 *              settings). Additional connections are closed when they are released.
+	 * @default <i>no limit</i>
+	 * @example 50
+	 */
+	@MCAttribute
+	public void setMaxIdlePerDestination(int maxIdlePerDestination) {
+		this.maxIdlePerDestination = maxIdlePerDestination;
+	}
+
+	public int getMaxTotalPerDestination() {
+		return maxTotalPerDestination;
+	}
+
+	/**
+	 * @description The maximum number of connections (idle or in use) per destination. When it is reached, requests
+	 *              wait for a connection to become available, at most for the connection timeout.
+	 * @default <i>no limit</i>
+	 * @example 200
+	 */
+	@MCAttribute
+	public void setMaxTotalPerDestination(int maxTotalPerDestination) {
+		this.maxTotalPerDestination = maxTotalPerDestination;
+	}
+
 
 }
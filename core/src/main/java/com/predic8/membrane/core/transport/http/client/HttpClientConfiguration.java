@@ -33,6 +33,8 @@ public class HttpClientConfiguration implements ApplicationContextAware {
 	private AuthenticationConfiguration authentication;
 	private SSLParser sslParser;
 	private String baseLocation;
+	private boolean useExperimentalHttp2;
+	private boolean http2PriorKnowledge;
 
 
 
@@ -83,6 +85,37 @@ public class HttpClientConfiguration implements ApplicationContextAware {
 		this.maxRetries = maxRetries;
 	}
 
+	public boolean isUseExperimentalHttp2() {
+		return useExperimentalHttp2;
+	}
+
+	/**
+	 * @description Whether to talk HTTP/2 to the targets. Requests to one target are then multiplexed over a few
+	 *              connections, respecting the target's limit of concurrent streams and its flow control windows.
+	 *              For HTTPS targets, HTTP/2 is negotiated during the TLS handshake (ALPN): Targets which do not
+	 *              support it are accessed using HTTP/1.1. Requests upgrading the connection (e.g. WebSockets) are
+	 *              always sent using HTTP/1.1.
+	 * @default false
+	 */
+	@MCAttribute
+	public void setUseExperimentalHttp2(boolean useExperimentalHttp2) {
+		this.useExperimentalHttp2 = useExperimentalHttp2;
+	}
+
+	public boolean isHttp2PriorKnowledge() {
+		return http2PriorKnowledge;
+	}
+
+	/**
+	 * @description Whether to talk HTTP/2 to plain HTTP targets as well ("h2c" with prior knowledge). All
+	 *              plain HTTP targets must support HTTP/2 then. Only effective, if useExperimentalHttp2 is set.
+	 * @default false
+	 */
+	@MCAttribute
+	public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+		this.http2PriorKnowledge = http2PriorKnowledge;
+	}
+
 	public SSLParser getSslParser() {
 		return sslParser;
 	}
@@ -21,45 +21,70 @@ import com.twitter.hpack.Encoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Map;
 import java.util.concurrent.LinkedTransferQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The FrameSender instance synchronized access to the OutputStream as well as the Encoder.
+ *
+ * Non-DATA frames are sent in the order they were enqueued, before any DATA frame. DATA frames are chosen according to
+ * the stream priorities (see {@link PriorityTree#pollDataFrame()}). The sender thread waits without polling while
+ * there is nothing to send, and is woken up as soon as a frame is enqueued.
+ *
+ * Frames are gathered in a buffer, which is written to the socket when it is full or when there is no further frame
+ * to send.
  */
 public class FrameSender implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(FrameSender.class.getName());
     private static final int TYPE_STOP = -1;
+    private static final int BATCH_SIZE = 64 * 1024;
 
     private final OutputStream out;
     private final Encoder encoder;
     private final Settings peerSettings;
     private final Map<Integer, StreamInfo> streams;
+    private final PriorityTree priorityTree;
     private final String remoteAddr;
     private final LinkedTransferQueue<Frame> queue = new LinkedTransferQueue<>();
     private final AtomicInteger totalBufferedFrames = new AtomicInteger(0);
 
-    public FrameSender(OutputStream out, Encoder encoder, Settings peerSettings, Map<Integer, StreamInfo> streams, String remoteAddr) {
-        this.out = out;
+    private final Object signal = new Object();
+    /**
+     * Whether the sender thread is (about to start) waiting on {@link #signal}. Together with
+     * {@link #totalBufferedFrames}, this lets {@link #send(Frame)} skip the notification while the sender is busy.
+     */
+    private volatile boolean waiting;
+
+    public FrameSender(OutputStream out, Encoder encoder, Settings peerSettings, Map<Integer, StreamInfo> streams, PriorityTree priorityTree, String remoteAddr) {
+        this.out = new BufferedOutputStream(out, BATCH_SIZE);
         this.encoder = encoder;
         this.peerSettings = peerSettings;
         this.streams = streams;
+        this.priorityTree = priorityTree;
         this.remoteAddr = remoteAddr;
     }
 
     public void send(Frame frame) throws IOException {
         if (frame.getType() == Frame.TYPE_DATA) {
             StreamInfo streamInfo = streams.get(frame.getStreamId());
+            if (streamInfo == null) {
+                log.debug("dropping DATA frame of closed stream " + frame.getStreamId());
+                return;
+            }
             try {
                 streamInfo.getBufferedDataFrames().acquire();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
             streamInfo.getDataFramesToBeSent().add(frame);
+            enqueued();
+            if (streams.get(frame.getStreamId()) != streamInfo)
+                discard(streamInfo); // the stream has been removed concurrently: nobody would send the frame
+            return;
         } else {
             if (!queue.offer(frame)) {
                 long now = System.nanoTime();
@@ -69,7 +94,16 @@ public class FrameSender implements Runnable {
                     log.info("waited " + (enter - now) / 1000000 + "ms for queue");
             }
         }
+        enqueued();
+    }
+
+    private void enqueued() {
         totalBufferedFrames.incrementAndGet();
+        if (waiting) {
+            synchronized (signal) {
+                signal.notify();
+            }
+        }
     }
 
     public void send(int streamId, FrameProducer frameProducer) throws IOException {
@@ -85,13 +119,37 @@ public class FrameSender implements Runnable {
         }
     }
 
+    /**
+     * Drops the DATA frames of a closed or reset stream which have not been sent yet. Must be called after the stream
+     * has been removed from the stream map and the priority tree, as the frames could not be found anymore otherwise.
+     */
+    public void discard(StreamInfo streamInfo) {
+        while (streamInfo.getDataFramesToBeSent().poll() != null) {
+            streamInfo.getBufferedDataFrames().release();
+            totalBufferedFrames.decrementAndGet();
+        }
+        streamInfo.dataFramesSent();
+    }
+
+    int getBufferedFrameCount() {
+        return totalBufferedFrames.get();
+    }
+
     private Frame getNextFrame() {
         Frame frame = queue.poll();
         if (frame != null) {
             totalBufferedFrames.decrementAndGet();
             return frame;
         }
-        // TODO: implement prioritization logic
+        frame = priorityTree.pollDataFrame();
+        if (frame != null) {
+            StreamInfo streamInfo = streams.get(frame.getStreamId());
+            if (streamInfo != null) // null, if the stream has been closed (and removed) in the meantime
+                streamInfo.getBufferedDataFrames().release();
+            totalBufferedFrames.decrementAndGet();
+            return frame;
+        }
+        // streams are only missing in the priority tree, if something went wrong: still send their frames
         for (StreamInfo streamInfo : streams.values()) {
             frame = streamInfo.getDataFramesToBeSent().poll();
             if (frame != null) {
@@ -103,11 +161,18 @@ public class FrameSender implements Runnable {
         return null;
     }
 
-    private Frame waitForNextFrame() throws InterruptedException {
-        // TODO: improve waiting logic
-        Thread.sleep(100);
-        Frame frame = getNextFrame();
-        return frame;
+    private void waitForNextFrame() throws InterruptedException {
+        synchronized (signal) {
+            waiting = true;
+            try {
+                // enqueued() increments the counter before reading 'waiting', so either it sees 'waiting' and
+                // notifies us, or we see the incremented counter
+                while (totalBufferedFrames.get() == 0)
+                    signal.wait();
+            } finally {
+                waiting = false;
+            }
+        }
     }
 
     @Override
@@ -118,25 +183,27 @@ public class FrameSender implements Runnable {
                 Frame frame = getNextFrame();
                 if (frame == null) {
                     out.flush();
-                    log.info("found no frame to send, starting wait loop.");
-                    while (frame == null)
-                        frame = waitForNextFrame();
-                    log.info("found found another frame to send.");
+                    waitForNextFrame();
+                    continue;
                 }
 
                 if (frame.getType() == TYPE_STOP)
                     break;
 
-                if (frame.getType() == Frame.TYPE_RST_STREAM)
-                    streams.get(frame.getStreamId()).sendRstStream();
+                StreamInfo streamInfo = frame.getStreamId() == 0 ? null : streams.get(frame.getStreamId());
+
+                if (streamInfo != null) {
+                    if (frame.getType() == Frame.TYPE_RST_STREAM)
+                        streamInfo.sendRstStream();
 
-                if (frame.getType() == Frame.TYPE_HEADERS)
-                    streams.get(frame.getStreamId()).sendHeaders();
+                    if (frame.getType() == Frame.TYPE_HEADERS)
+                        streamInfo.sendHeaders();
 
-                if ((frame.getType() == Frame.TYPE_HEADERS ||
-                        frame.getType() == Frame.TYPE_DATA)&&
-                        (frame.getFlags() & HeadersFrame.FLAG_END_STREAM) != 0)
-                    streams.get(frame.getStreamId()).sendEndStream();
+                    if ((frame.getType() == Frame.TYPE_HEADERS ||
+                            frame.getType() == Frame.TYPE_DATA) &&
+                            (frame.getFlags() & HeadersFrame.FLAG_END_STREAM) != 0)
+                        streamInfo.sendEndStream();
+                }
 
                 if (log.isTraceEnabled())
                     log.trace("sending: " + frame);
@@ -144,6 +211,12 @@ public class FrameSender implements Runnable {
                     log.debug("sending: " + frame.getTypeString() + " length=" + frame.getLength());
 
                 frame.write(out);
+
+                if (streamInfo != null && frame.getType() == Frame.TYPE_DATA && streamInfo.isWaitingForDataFramesSent()
+                        && streamInfo.getDataFramesToBeSent().isEmpty()) {
+                    out.flush();
+                    streamInfo.dataFramesSent();
+                }
             }
         } catch (Throwable e) {
             e.printStackTrace();
@@ -157,6 +230,7 @@ public class FrameSender implements Runnable {
         Frame e = new Frame();
         e.fill(TYPE_STOP, 0, 0, null, 0, 0);
         queue.add(e);
+        enqueued();
     }
 
     private void updateThreadName(boolean fromConnection) {
@@ -0,0 +1,754 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http2;
+
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.AbstractBodyTransferrer;
+import com.predic8.membrane.core.http.Chunk;
+import com.predic8.membrane.core.http.EmptyBody;
+import com.predic8.membrane.core.http.Header;
+import com.predic8.membrane.core.http.HeaderField;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.transport.http.Connection;
+import com.predic8.membrane.core.transport.http2.frame.*;
+import com.twitter.hpack.Decoder;
+import com.twitter.hpack.Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.predic8.membrane.core.transport.http2.frame.Error.*;
+import static com.predic8.membrane.core.transport.http2.frame.Frame.*;
+import static com.predic8.membrane.core.transport.http2.frame.HeadersFrame.FLAG_END_HEADERS;
+import static com.predic8.membrane.core.transport.http2.frame.HeadersFrame.FLAG_END_STREAM;
+
+/**
+ * An HTTP/2 connection to a server, over which the requests of many exchanges are sent concurrently.
+ *
+ * A receiver thread reads the frames sent by the server and dispatches them to the streams. Frames to the server are
+ * sent by a {@link FrameSender} thread.
+ *
+ * Callers have to {@link #reserveStream()} before {@link #call(Exchange, boolean)}: This limits the number of open
+ * streams to the server's SETTINGS_MAX_CONCURRENT_STREAMS. DATA frames of request bodies are only sent, when the
+ * server's flow control windows allow it.
+ */
+public class Http2Client implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(Http2Client.class.getName());
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * used, if the server does not limit the number of concurrent streams
+     */
+    private static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+    private final Connection connection;
+    private final String scheme;
+    private final String remoteAddr;
+    private final FrameSender sender;
+    private final Decoder decoder;
+    private final FlowControl flowControl;
+    private final PeerFlowControl peerFlowControl;
+    private final Settings ourSettings = new Settings();
+    private final Settings peerSettings = new Settings();
+    private final Map<Integer, StreamInfo> streams = new ConcurrentHashMap<>();
+    private final Map<Integer, Stream> clientStreams = new ConcurrentHashMap<>();
+    private final PriorityTree priorityTree = new PriorityTree();
+    private final CountDownLatch settingsReceived = new CountDownLatch(1);
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    @GuardedBy("sender")
+    private int nextStreamId = 1;
+    /**
+     * set, when no new streams may be opened on this connection
+     */
+    private volatile boolean goingAway;
+    private volatile boolean closed;
+    private volatile long lastUse = System.currentTimeMillis();
+
+    private static class Stream {
+        private final StreamInfo streamInfo;
+        private final boolean headRequest;
+        private final CompletableFuture<Response> response = new CompletableFuture<>();
+        /**
+         * the number of directions (request, response) which have not been finished yet
+         */
+        private final AtomicInteger openSides = new AtomicInteger(2);
+
+        private Stream(StreamInfo streamInfo, boolean headRequest) {
+            this.streamInfo = streamInfo;
+            this.headRequest = headRequest;
+        }
+    }
+
+    /**
+     * @param connection a connection on which HTTP/2 has been negotiated (or which is known to speak HTTP/2), on
+     *                   which nothing has been sent yet
+     * @param scheme     "http" or "https"
+     */
+    public Http2Client(Connection connection, String scheme) {
+        this.connection = connection;
+        this.scheme = scheme;
+        remoteAddr = connection.socket.getInetAddress() + ":" + connection.socket.getPort();
+
+        decoder = new Decoder(4096, 4096);
+        sender = new FrameSender(new ClosingOutputStream(connection.out), new Encoder(4096), peerSettings, streams, priorityTree, remoteAddr);
+        flowControl = new FlowControl(0, sender, ourSettings);
+        peerFlowControl = new PeerFlowControl(0, sender, peerSettings);
+    }
+
+    /**
+     * Sends the connection preface and waits for the server's first SETTINGS frame.
+     */
+    public void start(int timeout) throws IOException {
+        connection.out.write(PREFACE);
+        connection.out.flush();
+
+        startThread(sender, "HTTP2 Frame Sender " + remoteAddr);
+        startThread(this, "HTTP2 Client Receiver " + remoteAddr);
+
+        Settings newSettings = new Settings();
+        newSettings.copyFrom(ourSettings);
+        newSettings.setEnablePush(0);
+        sender.send(SettingsFrame.diff(ourSettings, newSettings));
+        ourSettings.setEnablePush(0);
+
+        try {
+            if (!settingsReceived.await(timeout > 0 ? timeout : Integer.MAX_VALUE, TimeUnit.MILLISECONDS) || closed) {
+                close();
+                throw new IOException("No HTTP/2 SETTINGS received from " + remoteAddr + ".");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reserves a stream for a subsequent call to {@link #call(Exchange, boolean)}.
+     *
+     * @return false, if the server's limit of concurrent streams has been reached or the connection is closing
+     */
+    public boolean reserveStream() {
+        while (true) {
+            if (goingAway || closed)
+                return false;
+            int active = activeStreams.get();
+            if (active >= getMaxConcurrentStreams())
+                return false;
+            if (activeStreams.compareAndSet(active, active + 1))
+                return true;
+        }
+    }
+
+    private int getMaxConcurrentStreams() {
+        int max = peerSettings.getMaxConcurrentStreams();
+        return max < 0 ? DEFAULT_MAX_CONCURRENT_STREAMS : max;
+    }
+
+    /**
+     * Sends the request of the exchange on a new stream and waits for the response headers. The response body is
+     * received in the background, while it is read.
+     *
+     * A stream has to be reserved using {@link #reserveStream()} before.
+     *
+     * @param retryable whether the request body should be kept, so that the request can be sent again
+     */
+    public Response call(Exchange exc, boolean retryable) throws IOException {
+        Request request = exc.getRequest();
+        boolean hasBody = !isBodyEmpty(request);
+        Stream stream;
+        try {
+            stream = openStream(request, !hasBody);
+        } catch (IOException | RuntimeException e) {
+            activeStreams.decrementAndGet();
+            throw e;
+        }
+        StreamInfo streamInfo = stream.streamInfo;
+        int streamId = streamInfo.getStreamId();
+
+        try {
+            if (hasBody) {
+                request.getBody().write(new AbstractBodyTransferrer() {
+                    @Override
+                    public void write(byte[] content, int i, int length) throws IOException {
+                        sendData(streamInfo, content, i, length);
+                    }
+
+                    @Override
+                    public void write(Chunk chunk) throws IOException {
+                        sendData(streamInfo, chunk.getContent(), 0, chunk.getLength());
+                    }
+
+                    @Override
+                    public void finish() throws IOException {
+                    }
+                }, retryable);
+                checkNotReset(streamInfo);
+
+                Frame frame = new Frame();
+                frame.fill(TYPE_DATA, FLAG_END_STREAM, streamId, null, 0, 0);
+                sender.send(frame);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the server might have answered (and closed the stream) before the whole request was sent
+            if (!stream.response.isDone() || stream.response.isCompletedExceptionally()) {
+                reset(stream, ERROR_CANCEL);
+                throw e;
+            }
+        }
+        exc.setTimeReqSent(System.currentTimeMillis());
+        closeSide(stream);
+
+        try {
+            Response response = stream.response.get();
+            exc.setReceived();
+            exc.setTimeResReceived(System.currentTimeMillis());
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reset(stream, ERROR_CANCEL);
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Stream openStream(Request request, boolean endStream) throws IOException {
+        synchronized (sender) {
+            // stream IDs have to be sent in increasing order, so allocate the ID while holding the sender's lock
+            if (closed)
+                throw new IOException("HTTP/2 connection to " + remoteAddr + " has been closed.");
+            int streamId = nextStreamId;
+            nextStreamId += 2;
+            if (nextStreamId < 0)
+                goingAway = true; // stream IDs exhausted
+
+            StreamInfo streamInfo = new StreamInfo(streamId, sender, peerSettings, ourSettings);
+            Stream stream = new Stream(streamInfo, request.isHEADRequest());
+            streams.put(streamId, streamInfo);
+            clientStreams.put(streamId, stream);
+            try {
+                priorityTree.reprioritize(streamInfo, 16, null, false);
+                sender.send(streamId, (encoder, peerSettings) -> createHeadersFrames(streamId, request, encoder, peerSettings, endStream));
+            } catch (IOException | RuntimeException e) {
+                clientStreams.remove(streamId);
+                streams.remove(streamId);
+                priorityTree.remove(streamInfo);
+                throw e;
+            }
+            return stream;
+        }
+    }
+
+    private boolean isBodyEmpty(Request request) throws IOException {
+        return request.getBody() instanceof EmptyBody || request.isBodyEmpty();
+    }
+
+    private void sendData(StreamInfo streamInfo, byte[] content, int offset, int length) throws IOException {
+        int streamId = streamInfo.getStreamId();
+        int mOffset = offset;
+        while (mOffset < offset + length) {
+            checkNotReset(streamInfo);
+
+            int mLength = Math.min(peerSettings.getMaxFrameSize(), length - (mOffset - offset));
+
+            // as we do not send padding, reserve exactly the length we want to send
+            streamInfo.getPeerFlowControl().reserve(mLength, streamId);
+            peerFlowControl.reserve(mLength, streamId);
+
+            Frame frame = new Frame();
+            frame.fill(TYPE_DATA, 0, streamId, content, mOffset, mLength);
+            sender.send(frame);
+
+            mOffset += mLength;
+        }
+    }
+
+    private void checkNotReset(StreamInfo streamInfo) throws IOException {
+        if (streamInfo.isReset())
+            throw new IOException("stream " + streamInfo.getStreamId() + " was reset.");
+    }
+
+    private List<Frame> createHeadersFrames(int streamId, Request request, Encoder encoder, Settings peerSettings, boolean endStream) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        encoder.setMaxHeaderTableSize(baos, peerSettings.getHeaderTableSize());
+
+        StringBuilder sb = log.isDebugEnabled() ? new StringBuilder() : null;
+        if (sb != null) {
+            sb.append("Headers on stream ");
+            sb.append(streamId);
+            sb.append(":\n");
+        }
+
+        encodeHeader(encoder, baos, sb, ":method", request.getMethod());
+        encodeHeader(encoder, baos, sb, ":scheme", scheme);
+        String host = request.getHeader().getHost();
+        if (host != null)
+            encodeHeader(encoder, baos, sb, ":authority", host);
+        encodeHeader(encoder, baos, sb, ":path", request.getUri().isEmpty() ? "/" : request.getUri());
+
+        for (HeaderField hf : request.getHeader().getAllHeaderFields()) {
+            String key = hf.getHeaderName().toString().toLowerCase();
+            if ("host".equals(key) || "keep-alive".equals(key) || "proxy-connection".equals(key) || "transfer-encoding".equals(key) || "upgrade".equals(key) || "connection".equals(key))
+                continue;
+            if ("te".equals(key) && !"trailers".equalsIgnoreCase(hf.getValue()))
+                continue;
+            encodeHeader(encoder, baos, sb, key, hf.getValue());
+        }
+
+        if (sb != null)
+            log.debug(sb.toString());
+
+        byte[] header = baos.toByteArray();
+        List<Frame> frames = new ArrayList<>();
+
+        int maxFrameSize = peerSettings.getMaxFrameSize();
+        for (int offset = 0; offset < header.length; offset += maxFrameSize) {
+            Frame frame = new Frame();
+            boolean isLast = offset + maxFrameSize >= header.length;
+            frame.fill(
+                    offset == 0 ? TYPE_HEADERS : TYPE_CONTINUATION,
+                    (isLast ? FLAG_END_HEADERS : 0) + (endStream && offset == 0 ? FLAG_END_STREAM : 0),
+                    streamId,
+                    header,
+                    offset,
+                    Math.min(maxFrameSize, header.length - offset)
+            );
+            frames.add(frame);
+        }
+
+        return frames;
+    }
+
+    private void encodeHeader(Encoder encoder, OutputStream out, StringBuilder sb, String key, String value) throws IOException {
+        encoder.encodeHeader(out, key.getBytes(StandardCharsets.US_ASCII), value.getBytes(StandardCharsets.US_ASCII), false);
+        if (sb != null) {
+            sb.append(key);
+            sb.append(": ");
+            sb.append(value);
+            sb.append("\n");
+        }
+    }
+
+    /**
+     * The receiver thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Frame frame = new Frame(ourSettings);
+                frame.read(connection.in);
+                handleFrame(frame);
+            }
+        } catch (FatalConnectionException e) {
+            log.warn("HTTP/2 connection to " + remoteAddr + " failed with error code " + e.getErrorCode() + ".");
+            try {
+                sender.send(GoawayFrame.create(getLastStreamId(), e.getErrorCode()));
+            } catch (IOException e2) {
+                // ignore
+            }
+        } catch (IOException e) {
+            if (!closed)
+                log.debug("HTTP/2 connection to " + remoteAddr + " closed: " + e);
+        } catch (Exception e) {
+            log.error("", e);
+        } finally {
+            close();
+        }
+    }
+
+    private int getLastStreamId() {
+        synchronized (sender) {
+            return Math.max(0, nextStreamId - 2);
+        }
+    }
+
+    private void handleFrame(Frame frame) throws IOException {
+        if (log.isTraceEnabled())
+            log.trace("received: " + frame);
+        else if (log.isDebugEnabled())
+            log.debug("received: " + frame.getTypeString() + " length=" + frame.getLength());
+
+        switch (frame.getType()) {
+            case TYPE_SETTINGS:
+                handleFrame(frame.asSettings());
+                break;
+            case TYPE_HEADERS:
+                handleFrame(frame.asHeaders());
+                break;
+            case TYPE_WINDOW_UPDATE:
+                handleFrame(frame.asWindowUpdate());
+                break;
+            case TYPE_PING:
+                handleFrame(frame.asPing());
+                break;
+            case TYPE_DATA:
+                handleFrame(frame.asData());
+                break;
+            case TYPE_RST_STREAM:
+                handleFrame(frame.asRstStream());
+                break;
+            case TYPE_GOAWAY:
+                handleFrame(frame.asGoaway());
+                break;
+            case TYPE_PRIORITY:
+                // servers do not need to prioritize our streams
+                break;
+            case TYPE_CONTINUATION:
+                // CONTINUATION frames are handled within handleFrame(HeadersFrame)
+            case TYPE_PUSH_PROMISE:
+                // we disabled server push
+                throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+            default:
+                // frames of unknown types have to be ignored
+        }
+    }
+
+    private void handleFrame(SettingsFrame settings) throws IOException {
+        if (settings.getFrame().getLength() % 6 != 0)
+            throw new FatalConnectionException(ERROR_FRAME_SIZE_ERROR);
+
+        if (settings.getFrame().getStreamId() != 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        if (settings.isAck())
+            return;
+
+        peerSettings.apply(settings, streams.values());
+        sender.send(SettingsFrame.ack());
+        settingsReceived.countDown();
+    }
+
+    private void handleFrame(HeadersFrame headers) throws IOException {
+        int streamId = headers.getFrame().getStreamId();
+        if (streamId == 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        List<HeaderBlockFragment> headerFrames = new ArrayList<>();
+        headerFrames.add(headers);
+
+        HeaderBlockFragment last = headers;
+        while (!last.isEndHeaders()) {
+            Frame frame = new Frame(ourSettings);
+            frame.read(connection.in);
+
+            if (frame.getType() != TYPE_CONTINUATION || frame.getStreamId() != streamId)
+                throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+            last = frame.asContinuation();
+            headerFrames.add(last);
+        }
+
+        // the header block has to be decoded in any case, to keep the decoder's state in sync with the server's encoder
+        Response response = new Response();
+        int[] status = new int[] { -1 };
+        decoder.decode(Http2ServerHandler.getPackedHeaderStream(headerFrames), (name, value, sensitive) -> {
+            String key = new String(name, StandardCharsets.US_ASCII);
+            String val = new String(value, StandardCharsets.US_ASCII);
+            if (":status".equals(key))
+                status[0] = Integer.parseInt(val);
+            else if (!key.startsWith(":"))
+                response.getHeader().add(key, val);
+        });
+        decoder.endHeaderBlock();
+
+        Stream stream = clientStreams.get(streamId);
+        if (stream == null)
+            return; // the stream has already been closed or reset by us
+
+        if (!stream.response.isDone()) {
+            if (status[0] < 100)
+                throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+            if (status[0] < 200 && !headers.isEndStream())
+                return; // informational response: the final response will follow
+
+            response.setStatusCode(status[0]);
+            response.setStatusMessage("");
+            if (!headers.isEndStream()) {
+                response.setBody(stream.streamInfo.createBody());
+                if (!response.getHeader().hasContentLength() && !stream.headRequest)
+                    // required, when the response is forwarded using HTTP/1.1
+                    response.getHeader().add(Header.TRANSFER_ENCODING, Header.CHUNKED);
+            }
+            stream.response.complete(response);
+        } else if (headers.isEndStream()) {
+            // trailers: end the body
+            Frame end = new Frame();
+            end.fill(TYPE_DATA, FLAG_END_STREAM, streamId, null, 0, 0);
+            stream.streamInfo.receivedDataFrame(end.asData());
+        }
+
+        if (headers.isEndStream()) {
+            stream.streamInfo.receivedEndStream();
+            closeSide(stream);
+        }
+    }
+
+    private void handleFrame(DataFrame dataFrame) throws IOException {
+        int streamId = dataFrame.getFrame().getStreamId();
+        if (streamId == 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        // the connection window is not blocked by slow readers of single streams
+        flowControl.received(dataFrame.getFrame().getLength());
+        flowControl.processed(dataFrame.getFrame().getLength());
+
+        Stream stream = clientStreams.get(streamId);
+        if (stream == null)
+            return; // the stream has already been closed or reset by us
+        if (!stream.response.isDone() || stream.response.isCompletedExceptionally())
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR); // DATA before HEADERS
+
+        stream.streamInfo.receivedDataFrame(dataFrame);
+
+        if (dataFrame.isEndStream())
+            closeSide(stream);
+    }
+
+    private void handleFrame(WindowUpdateFrame windowUpdate) throws IOException {
+        if (windowUpdate.getWindowSizeIncrement() == 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        if (windowUpdate.getFrame().getStreamId() == 0) {
+            peerFlowControl.increment(windowUpdate.getWindowSizeIncrement());
+        } else {
+            StreamInfo streamInfo = streams.get(windowUpdate.getFrame().getStreamId());
+            if (streamInfo != null) // else the stream has already been closed
+                streamInfo.getPeerFlowControl().increment(windowUpdate.getWindowSizeIncrement());
+        }
+    }
+
+    private void handleFrame(PingFrame ping) throws IOException {
+        if (ping.isAck())
+            return;
+
+        if (ping.getFrame().getStreamId() != 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        if (ping.getFrame().getLength() != 8)
+            throw new FatalConnectionException(ERROR_FRAME_SIZE_ERROR);
+
+        sender.send(PingFrame.pong(ping));
+    }
+
+    private void handleFrame(RstStreamFrame rstStream) throws IOException {
+        rstStream.validateSize();
+
+        int streamId = rstStream.getFrame().getStreamId();
+        if (streamId == 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        Stream stream = clientStreams.get(streamId);
+        if (stream == null)
+            return;
+
+        stream.response.completeExceptionally(new IOException("stream " + streamId + " was reset by " + remoteAddr + " with error code " + rstStream.getErrorCode() + "."));
+        stream.streamInfo.receivedRstStream();
+        stream.streamInfo.reset();
+        closeStream(stream);
+    }
+
+    private void handleFrame(GoawayFrame goaway) throws IOException {
+        if (goaway.getFrame().getStreamId() != 0)
+            throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+
+        log.debug("received GOAWAY from " + remoteAddr + ": lastStreamId=" + goaway.getLastStreamId() + " errorCode=" + goaway.getErrorCode());
+        goingAway = true;
+
+        // streams with higher IDs have not been processed by the server, so they can safely be retried
+        for (Stream stream : clientStreams.values()) {
+            if (stream.streamInfo.getStreamId() > goaway.getLastStreamId()) {
+                stream.response.completeExceptionally(new IOException("stream " + stream.streamInfo.getStreamId() + " was refused by " + remoteAddr + " (GOAWAY)."));
+                stream.streamInfo.reset();
+                closeStream(stream);
+            }
+        }
+        if (activeStreams.get() == 0)
+            close();
+    }
+
+    private void reset(Stream stream, int errorCode) {
+        stream.response.completeExceptionally(new IOException("stream " + stream.streamInfo.getStreamId() + " was cancelled."));
+        stream.streamInfo.reset();
+        if (closeStream(stream)) {
+            try {
+                sender.send(RstStreamFrame.create(stream.streamInfo.getStreamId(), errorCode));
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Called when the request has been sent or the response has been received. Closes the stream, when both are done.
+     */
+    private void closeSide(Stream stream) {
+        if (stream.openSides.decrementAndGet() == 0)
+            // DATA frames might still be queued (e.g. the END_STREAM frame, if the response arrived first): the
+            // stream may only be forgotten once they have been sent
+            stream.streamInfo.whenDataFramesSent(() -> removeStream(stream));
+    }
+
+    /**
+     * Closes the stream immediately, dropping DATA frames not sent yet.
+     *
+     * @return false, if the stream had already been closed
+     */
+    private boolean closeStream(Stream stream) {
+        if (stream.openSides.getAndSet(0) <= 0) {
+            // the stream might still be waiting for its DATA frames to be sent
+            sender.discard(stream.streamInfo);
+            return false;
+        }
+        removeStream(stream);
+        sender.discard(stream.streamInfo);
+        return true;
+    }
+
+    private void removeStream(Stream stream) {
+        int streamId = stream.streamInfo.getStreamId();
+        clientStreams.remove(streamId);
+        streams.remove(streamId);
+        priorityTree.remove(stream.streamInfo);
+        lastUse = System.currentTimeMillis();
+        if (activeStreams.decrementAndGet() == 0 && goingAway)
+            close();
+    }
+
+    /**
+     * Do not open new streams on this connection. The connection is closed as soon as all streams are finished.
+     */
+    public void shutdownWhenDone() {
+        goingAway = true;
+        if (activeStreams.get() == 0)
+            close();
+    }
+
+    /**
+     * Closes the connection. Streams still open fail.
+     */
+    public void close() {
+        synchronized (sender) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        log.debug("closing HTTP/2 connection to " + remoteAddr);
+        IOException e = new IOException("HTTP/2 connection to " + remoteAddr + " has been closed.");
+        for (Stream stream : clientStreams.values()) {
+            stream.response.completeExceptionally(e);
+            stream.streamInfo.reset();
+        }
+        peerFlowControl.close();
+        settingsReceived.countDown();
+        sender.stop();
+        try {
+            connection.close();
+        } catch (IOException e2) {
+            log.debug("", e2);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    /**
+     * @return whether no stream has been open during the last <code>timeout</code> milliseconds
+     */
+    public boolean isIdle(long now, long timeout) {
+        return activeStreams.get() == 0 && now - lastUse > timeout;
+    }
+
+    @Override
+    public String toString() {
+        return "HTTP/2 connection to " + remoteAddr + " (" + activeStreams.get() + " streams)";
+    }
+
+    /**
+     * Closes the socket, when writing to it failed, so that the receiver thread terminates and the streams fail.
+     */
+    private class ClosingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        private ClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                out.write(b);
+            } catch (IOException e) {
+                fail();
+                throw e;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                fail();
+                throw e;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fail();
+                throw e;
+            }
+        }
+
+        private void fail() {
+            Http2Client.this.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http2;
+
+import com.google.common.base.Objects;
+import com.predic8.membrane.core.transport.http.Connection;
+import com.predic8.membrane.core.transport.http.client.ProxyConfiguration;
+import com.predic8.membrane.core.transport.ssl.SSLContext;
+import com.predic8.membrane.core.transport.ssl.SSLProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pools HTTP/2 connections per destination.
+ *
+ * Requests to a destination are multiplexed over its existing connections. A new connection is only opened, when all
+ * of them have reached the server's limit of concurrent streams. Connections without open streams are closed after
+ * the keep-alive timeout.
+ *
+ * For TLS destinations, HTTP/2 is negotiated using ALPN. If the server chooses HTTP/1.1, the destination is remembered
+ * and {@link #reserveStream} returns null for it, so that the caller falls back to HTTP/1.1. For plain HTTP
+ * destinations, HTTP/2 is only used, if <code>priorKnowledge</code> is set ("h2c", RFC 7540 section 3.4).
+ */
+public class Http2ClientPool {
+    private static final Logger log = LoggerFactory.getLogger(Http2ClientPool.class.getName());
+
+    private final boolean priorKnowledge;
+    private final long keepAliveTimeout;
+    private final ConcurrentHashMap<Key, Destination> destinations = new ConcurrentHashMap<>();
+    private final Timer timer;
+
+    private static class Key {
+        private final String host;
+        private final int port;
+        // SSLProvider and ProxyConfiguration do not override equals() or hashCode(), but this is OK, as only a few will exist and are used read-only
+        @Nullable private final SSLProvider sslProvider;
+        @Nullable private final String serverName;
+        @Nullable private final ProxyConfiguration proxy;
+
+        private Key(String host, int port, SSLProvider sslProvider, String serverName, ProxyConfiguration proxy) {
+            this.host = host;
+            this.port = port;
+            this.sslProvider = sslProvider;
+            this.serverName = serverName;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(host, port, sslProvider, serverName, proxy);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return host.equals(other.host)
+                    && port == other.port
+                    && Objects.equal(sslProvider, other.sslProvider)
+                    && Objects.equal(serverName, other.serverName)
+                    && Objects.equal(proxy, other.proxy);
+        }
+    }
+
+    private static class Destination {
+        private final CopyOnWriteArrayList<Http2Client> clients = new CopyOnWriteArrayList<>();
+        /**
+         * set, when the server did not choose HTTP/2 during the TLS handshake
+         */
+        private volatile boolean http1Only;
+    }
+
+    public Http2ClientPool(boolean priorKnowledge, long keepAliveTimeout) {
+        this.priorKnowledge = priorKnowledge;
+        this.keepAliveTimeout = keepAliveTimeout;
+        timer = new Timer("HTTP2 Connection Closer", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                closeIdleConnections();
+            }
+        }, keepAliveTimeout, keepAliveTimeout);
+    }
+
+    /**
+     * Reserves a stream on a connection to the destination, opening a new connection if necessary.
+     *
+     * @return the connection, on which {@link Http2Client#call} can be called once, or null, if HTTP/2 cannot be
+     * used for the destination
+     */
+    public Http2Client reserveStream(String host, int port, String localHost, @Nullable SSLProvider sslProvider, int connectTimeout,
+                                     @Nullable String sniServerName, @Nullable ProxyConfiguration proxy, @Nullable SSLContext proxySSLContext) throws IOException {
+        if (sslProvider == null && (!priorKnowledge || proxy != null))
+            return null;
+
+        Key key = new Key(host, port, sslProvider, sniServerName, proxy);
+        Destination destination = destinations.get(key);
+        if (destination == null) {
+            destination = new Destination();
+            Destination old = destinations.putIfAbsent(key, destination);
+            if (old != null)
+                destination = old;
+        }
+        if (destination.http1Only)
+            return null;
+
+        Http2Client client = reserveStream(destination);
+        if (client != null)
+            return client;
+
+        synchronized (destination) {
+            // another thread might have opened a connection in the meantime
+            client = reserveStream(destination);
+            if (client != null)
+                return client;
+            if (destination.http1Only)
+                return null;
+
+            client = connect(host, port, localHost, sslProvider, connectTimeout, sniServerName, proxy, proxySSLContext);
+            if (client == null) {
+                log.debug(host + ":" + port + " does not support HTTP/2, using HTTP/1.1.");
+                destination.http1Only = true;
+                return null;
+            }
+            destination.clients.add(client);
+            return client.reserveStream() ? client : null;
+        }
+    }
+
+    private Http2Client reserveStream(Destination destination) {
+        for (Http2Client client : destination.clients)
+            if (client.reserveStream())
+                return client;
+        return null;
+    }
+
+    private Http2Client connect(String host, int port, String localHost, SSLProvider sslProvider, int connectTimeout,
+                                String sniServerName, ProxyConfiguration proxy, SSLContext proxySSLContext) throws IOException {
+        Connection connection = Connection.open(host, port, localHost, sslProvider, null, connectTimeout, sniServerName, proxy, proxySSLContext);
+        try {
+            if (sslProvider != null) {
+                if (!(connection.socket instanceof SSLSocket)) {
+                    connection.close();
+                    return null;
+                }
+                SSLSocket socket = (SSLSocket) connection.socket;
+                Http2TlsSupport.offerHttp2(socket);
+                socket.startHandshake();
+                if (!Http2TlsSupport.isHttp2(socket)) {
+                    connection.close();
+                    return null;
+                }
+            }
+            Http2Client client = new Http2Client(connection, sslProvider != null ? "https" : "http");
+            client.start(connectTimeout);
+            return client;
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void closeIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Destination destination : destinations.values()) {
+            for (Http2Client client : destination.clients) {
+                if (client.isIdle(now, keepAliveTimeout))
+                    client.shutdownWhenDone();
+                if (client.isClosed())
+                    destination.clients.remove(client);
+            }
+        }
+    }
+
+    /**
+     * @return the number of open connections
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (Destination destination : destinations.values())
+            for (Http2Client client : destination.clients)
+                if (!client.isClosed())
+                    count++;
+        return count;
+    }
+
+    /**
+     * Closes all connections, as soon as their streams are finished.
+     */
+    public void shutdownWhenDone() {
+        timer.cancel();
+        for (Destination destination : destinations.values())
+            for (Http2Client client : destination.clients)
+                client.shutdownWhenDone();
+    }
+}
@@ -39,7 +39,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import static com.predic8.membrane.core.transport.http2.frame.Error.*;
 import static com.predic8.membrane.core.transport.http2.frame.Frame.*;
@@ -49,9 +48,9 @@ public class Http2ServerHandler extends AbstractHttpHandler {
     private static final Logger log = LoggerFactory.getLogger(Http2ServerHandler.class.getName());
     private static final byte[] PREFACE = new byte[]{0x50, 0x52, 0x49, 0x20, 0x2a, 0x20, 0x48, 0x54, 0x54, 0x50, 0x2f, 0x32, 0x2e,
             0x30, 0x0d, 0x0a, 0x0d, 0x0a, 0x53, 0x4d, 0x0d, 0x0a, 0x0d, 0x0a};
-    private static final ExecutorService executor = Executors.newCachedThreadPool();
 
     private final HttpServerHandler httpServerHandler;
+    private final ExecutorService executor;
     private final Socket sourceSocket;
     private final InputStream srcIn;
     private final FrameSender sender;
@@ -70,6 +69,7 @@ public class Http2ServerHandler extends AbstractHttpHandler {
         super(httpServerHandler.getTransport());
 
         this.httpServerHandler = httpServerHandler;
+        this.executor = httpServerHandler.getTransport().getStreamExecutorService();
         this.sourceSocket = sourceSocket;
         this.srcIn = srcIn;
         this.showSSLExceptions = showSSLExceptions;
@@ -88,7 +88,7 @@ public class Http2ServerHandler extends AbstractHttpHandler {
         int maxHeaderTableSize = 4096;
         decoder = new Decoder(maxHeaderSize, maxHeaderTableSize);
         Encoder encoder = new Encoder(maxHeaderTableSize); // TODO: update this value
-        this.sender = new FrameSender(srcOut, encoder, peerSettings, streams, remoteAddr);
+        this.sender = new FrameSender(srcOut, encoder, peerSettings, streams, priorityTree, remoteAddr);
         executor.submit(sender);
         flowControl = new FlowControl(0, sender, ourSettings);
         peerFlowControl = new PeerFlowControl(0, sender, peerSettings);
@@ -363,7 +363,7 @@ public class Http2ServerHandler extends AbstractHttpHandler {
             streamInfo.receivedEndStream();
     }
 
-    public InputStream getPackedHeaderStream(List<HeaderBlockFragment> headerFrames) {
+    public static InputStream getPackedHeaderStream(List<HeaderBlockFragment> headerFrames) {
         if (headerFrames.size() == 1) {
             HeaderBlockFragment one = headerFrames.get(0);
             return new ByteArrayInputStream(one.getContent(), one.getHeaderBlockStartIndex(), one.getHeaderBlockLength());
@@ -402,53 +402,7 @@ public class Http2ServerHandler extends AbstractHttpHandler {
             return;
         }
 
-        for (int i = 0; i < settings.getSettingsCount(); i++) {
-            long settingsValue = settings.getSettingsValue(i);
-            switch (settings.getSettingsId(i)) {
-                case ID_SETTINGS_MAX_FRAME_SIZE:
-                    if (settingsValue < 16384 || settingsValue > 16777215)
-                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
-                    peerSettings.setMaxFrameSize((int) settingsValue);
-                    break;
-                case ID_SETTINGS_ENABLE_PUSH:
-                    if (settingsValue != 0 && settingsValue != 1)
-                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
-                    peerSettings.setEnablePush((int) settingsValue);
-                    break;
-                case ID_SETTINGS_HEADER_TABLE_SIZE:
-                    if (settingsValue > Integer.MAX_VALUE) {
-                        System.err.println("HEADER_TABLE_SIZE > Integer.MAX_VALUE received: " + settingsValue);
-                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR); // this is limited by our implementation
-                    }
-                    peerSettings.setHeaderTableSize((int) settingsValue);
-                    break;
-                case ID_SETTINGS_MAX_CONCURRENT_STREAMS:
-                    if (settingsValue > Integer.MAX_VALUE)
-                        peerSettings.setMaxConcurrentStreams(Integer.MAX_VALUE); // this is the limit in our implementation
-                    else
-                        peerSettings.setMaxConcurrentStreams((int) settingsValue);
-                    break;
-                case ID_SETTINGS_INITIAL_WINDOW_SIZE:
-                    if (settingsValue > 1 << 31 - 1)
-                        throw new FatalConnectionException(ERROR_FLOW_CONTROL_ERROR);
-
-                    int delta = (int) settingsValue - peerSettings.getInitialWindowSize();
-                    for (StreamInfo si : streams.values()) {
-                        si.getPeerFlowControl().increment(delta);
-                    }
-
-                    peerSettings.setInitialWindowSize((int) settingsValue);
-                    break;
-                case ID_SETTINGS_MAX_HEADER_LIST_SIZE:
-                    if (settingsValue > Integer.MAX_VALUE)
-                        peerSettings.setMaxHeaderListSize(Integer.MAX_VALUE); // this is the limit in our implementation
-                    else
-                        peerSettings.setMaxHeaderListSize((int) settingsValue);
-                    break;
-                default:
-                    System.err.println("not implemented: setting " + settings.getSettingsId(i));
-            }
-        }
+        peerSettings.apply(settings, streams.values());
         sender.send(SettingsFrame.ack());
     }
 
@@ -18,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.concurrent.GuardedBy;
+import java.io.IOException;
 
 public class PeerFlowControl {
     private static final Logger log = LoggerFactory.getLogger(PeerFlowControl.class);
@@ -28,6 +29,8 @@ public class PeerFlowControl {
     public long peerWindowSize;
     @GuardedBy("this")
     public long peerWindowPosition;
+    @GuardedBy("this")
+    private boolean closed;
 
     public PeerFlowControl(int streamId, FrameSender sender, Settings peerSettings) {
         this.streamId = streamId;
@@ -51,9 +54,20 @@ public class PeerFlowControl {
         return peerWindowSize - peerWindowPosition >= length;
     }
 
-    public synchronized void reserve(int wantLength, int streamId) {
+    /**
+     * Wakes up threads waiting in {@link #reserve(int, int)}: the stream or connection was closed, so the window will
+     * never be incremented.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized void reserve(int wantLength, int streamId) throws IOException {
         boolean warned = false;
         while(!canUse(wantLength)) {
+            if (closed)
+                throw new IOException("stream " + streamId + " was closed while waiting for flow control on stream " + this.streamId + ".");
             if (!warned) {
                 log.warn("stream " + streamId + " blocked because of flow control on stream " + this.streamId + ".");
                 warned = true;
@@ -17,6 +17,7 @@ package com.predic8.membrane.core.transport.http2;
 import com.google.common.collect.Lists;
 import com.predic8.membrane.core.transport.http2.frame.Error;
 import com.predic8.membrane.core.transport.http2.frame.FatalConnectionException;
+import com.predic8.membrane.core.transport.http2.frame.Frame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +36,56 @@ public class PriorityTree {
 
     private StreamInfo root = new StreamInfo(0, null);
 
-    public void reprioritize(@NotNull StreamInfo stream, int weight, @Null StreamInfo parent, boolean exclusive) throws IOException {
+    /**
+     * Removes the next DATA frame to be sent from its stream's queue, choosing the stream as described in RFC 7540
+     * section 5.3: A parent stream is served before its dependent streams. If it has no frame to send, the bandwidth
+     * is shared between its children in proportion to their weights (using weighted fair queueing over virtual time).
+     *
+     * @return the frame or null, if no stream in the tree has a DATA frame queued
+     */
+    public synchronized Frame pollDataFrame() {
+        StreamInfo stream = select(root);
+        if (stream == null)
+            return null;
+        Frame frame = stream.getDataFramesToBeSent().poll();
+        if (frame != null)
+            charge(stream, frame.getLength());
+        return frame;
+    }
+
+    private StreamInfo select(StreamInfo node) {
+        if (node != root && !node.getDataFramesToBeSent().isEmpty())
+            return node;
+        StreamInfo best = null;
+        long bestTime = Long.MAX_VALUE;
+        for (StreamInfo child : node.getPriorityChildren()) {
+            long time = Math.max(child.virtualTime, node.childrenVirtualTime);
+            if (time >= bestTime)
+                continue;
+            StreamInfo candidate = select(child);
+            if (candidate != null) {
+                best = candidate;
+                bestTime = time;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Advances the virtual time of the stream and of its ancestors by the frame's size divided by their weights.
+     * Streams which were idle start at their parent's current virtual time, so they cannot claim the bandwidth they
+     * did not use.
+     */
+    private void charge(StreamInfo stream, int length) {
+        for (StreamInfo s = stream; s != root && s.getPriorityParent() != null; s = s.getPriorityParent()) {
+            StreamInfo parent = s.getPriorityParent();
+            long start = Math.max(s.virtualTime, parent.childrenVirtualTime);
+            parent.childrenVirtualTime = start;
+            s.virtualTime = start + (length + 1L) * 256 / Math.max(1, s.getWeight());
+        }
+    }
+
+    public synchronized void reprioritize(@NotNull StreamInfo stream, int weight, @Null StreamInfo parent, boolean exclusive) throws IOException {
         if (parent == stream)
             throw new FatalConnectionException(Error.ERROR_PROTOCOL_ERROR);
 
@@ -72,6 +122,23 @@ public class PriorityTree {
             log.trace("\n" + toString());
     }
 
+    /**
+     * Removes a closed stream from the tree. Its children inherit its parent (RFC 7540 section 5.3.4); their weights
+     * are kept.
+     */
+    public synchronized void remove(@NotNull StreamInfo stream) {
+        StreamInfo parent = stream.getPriorityParent();
+        if (parent == null)
+            return;
+        parent.getPriorityChildren().remove(stream);
+        for (StreamInfo child : stream.getPriorityChildren()) {
+            child.setPriorityParent(parent);
+            parent.getPriorityChildren().add(child);
+        }
+        stream.getPriorityChildren().clear();
+        stream.setPriorityParent(null);
+    }
+
     private boolean isChildOf(StreamInfo a, StreamInfo b) {
         StreamInfo p = a;
         while (true) {
@@ -146,7 +213,7 @@ public class PriorityTree {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return String.join("\n", toStringBuilderList(root));
     }
 }
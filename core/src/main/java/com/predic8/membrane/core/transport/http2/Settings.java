@@ -14,10 +14,19 @@
 
 package com.predic8.membrane.core.transport.http2;
 
+import com.predic8.membrane.core.transport.http2.frame.FatalConnectionException;
+import com.predic8.membrane.core.transport.http2.frame.SettingsFrame;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import static com.predic8.membrane.core.transport.http2.frame.Error.*;
+import static com.predic8.membrane.core.transport.http2.frame.SettingsFrame.*;
+
 public class Settings {
     private volatile int maxFrameSize = 16384;
     private int headerTableSize = 4096;
-    private int maxConcurrentStreams = -1; // initially, there is no limit
+    private volatile int maxConcurrentStreams = -1; // initially, there is no limit
     private int initialWindowSize = 65535;
     private int maxHeaderListSize = -1; // initially, there is no limit
     private int enablePush = 1;
@@ -87,4 +96,60 @@ public class Settings {
     public void setMaxHeaderListSize(int maxHeaderListSize) {
         this.maxHeaderListSize = maxHeaderListSize;
     }
+
+    /**
+     * PeerSettings: Applies a SETTINGS frame received from the peer. Called from the receiver thread.
+     *
+     * @param streams the streams of the connection, whose flow control windows are adjusted when the initial window
+     *                size changes
+     */
+    public void apply(SettingsFrame settings, Collection<StreamInfo> streams) throws IOException {
+        for (int i = 0; i < settings.getSettingsCount(); i++) {
+            long settingsValue = settings.getSettingsValue(i);
+            switch (settings.getSettingsId(i)) {
+                case ID_SETTINGS_MAX_FRAME_SIZE:
+                    if (settingsValue < 16384 || settingsValue > 16777215)
+                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+                    setMaxFrameSize((int) settingsValue);
+                    break;
+                case ID_SETTINGS_ENABLE_PUSH:
+                    if (settingsValue != 0 && settingsValue != 1)
+                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR);
+                    setEnablePush((int) settingsValue);
+                    break;
+                case ID_SETTINGS_HEADER_TABLE_SIZE:
+                    if (settingsValue > Integer.MAX_VALUE) {
+                        System.err.println("HEADER_TABLE_SIZE > Integer.MAX_VALUE received: " + settingsValue);
+                        throw new FatalConnectionException(ERROR_PROTOCOL_ERROR); // this is limited by our implementation
+                    }
+                    setHeaderTableSize((int) settingsValue);
+                    break;
+                case ID_SETTINGS_MAX_CONCURRENT_STREAMS:
+                    if (settingsValue > Integer.MAX_VALUE)
+                        setMaxConcurrentStreams(Integer.MAX_VALUE); // this is the limit in our implementation
+                    else
+                        setMaxConcurrentStreams((int) settingsValue);
+                    break;
+                case ID_SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (settingsValue > 1 << 31 - 1)
+                        throw new FatalConnectionException(ERROR_FLOW_CONTROL_ERROR);
+
+                    int delta = (int) settingsValue - getInitialWindowSize();
+                    for (StreamInfo si : streams) {
+                        si.getPeerFlowControl().increment(delta);
+                    }
+
+                    setInitialWindowSize((int) settingsValue);
+                    break;
+                case ID_SETTINGS_MAX_HEADER_LIST_SIZE:
+                    if (settingsValue > Integer.MAX_VALUE)
+                        setMaxHeaderListSize(Integer.MAX_VALUE); // this is the limit in our implementation
+                    else
+                        setMaxHeaderListSize((int) settingsValue);
+                    break;
+                default:
+                    System.err.println("not implemented: setting " + settings.getSettingsId(i));
+            }
+        }
+    }
 }
@@ -29,11 +29,17 @@ import java.util.List;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.predic8.membrane.core.transport.http2.frame.Error.ERROR_PROTOCOL_ERROR;
 
 public class StreamInfo {
     private static final Logger log = LoggerFactory.getLogger(StreamInfo.class);
+    private static final int MAX_BUFFERED_DATA_FRAMES = 4;
+    /**
+     * Queued behind the received DATA frames, when the stream was reset.
+     */
+    private static final DataFrame RESET = new Frame().asData();
 
     private final FlowControl flowControl;
     private final PeerFlowControl peerFlowControl;
@@ -41,19 +47,32 @@ public class StreamInfo {
     private final int streamId;
     private final List<StreamInfo> priorityChildren = new ArrayList<>();
     private final LinkedTransferQueue<Frame> dataFramesToBeSent = new LinkedTransferQueue<>();
-    private final Semaphore bufferedDataFrames = new Semaphore(4);
+    private final Semaphore bufferedDataFrames = new Semaphore(MAX_BUFFERED_DATA_FRAMES);
     private StreamInfo priorityParent = null;
     private StreamState state = StreamState.IDLE;
     private int weight;
+    private volatile boolean reset;
+    private final AtomicReference<Runnable> whenDataFramesSent = new AtomicReference<>();
+    /**
+     * Scheduling state, guarded by the {@link PriorityTree}: the virtual time at which this stream has used up its
+     * share of the bandwidth relative to its siblings, and the virtual time of the child last scheduled.
+     */
+    long virtualTime;
+    long childrenVirtualTime;
 
     public StreamInfo(int streamId, Http2ServerHandler h2sh) {
+        this(streamId, h2sh == null ? null : h2sh.getSender(), h2sh == null ? null : h2sh.getPeerSettings(),
+                h2sh == null ? null : h2sh.getOurSettings());
+    }
+
+    public StreamInfo(int streamId, FrameSender sender, Settings peerSettings, Settings ourSettings) {
         this.streamId = streamId;
         if (streamId == 0) {
             peerFlowControl = null;
             flowControl = null;
         } else {
-            peerFlowControl = new PeerFlowControl(streamId, h2sh.getSender(), h2sh.getPeerSettings());
-            flowControl = new FlowControl(streamId, h2sh.getSender(), h2sh.getOurSettings());
+            peerFlowControl = new PeerFlowControl(streamId, sender, peerSettings);
+            flowControl = new FlowControl(streamId, sender, ourSettings);
         }
 
     }
@@ -70,6 +89,10 @@ public class StreamInfo {
     public DataFrame removeDataFrame() throws IOException {
         try {
             DataFrame dataFrame = dataFramesReceived.poll(1, TimeUnit.MINUTES);
+            if (dataFrame == RESET) {
+                dataFramesReceived.add(RESET);
+                throw new IOException("stream " + streamId + " was reset.");
+            }
             if (dataFrame != null) {
                 flowControl.processed(dataFrame.getFrame().getLength());
             }
@@ -96,9 +119,48 @@ public class StreamInfo {
         if (state == StreamState.IDLE)
             return;
         setState(StreamState.CLOSED);
+        reset();
         // TODO: stop sending frames
     }
 
+    /**
+     * Aborts the stream: Threads reading its body or waiting for the peer's flow control window fail with an
+     * {@link IOException}, threads waiting to enqueue DATA frames are released.
+     */
+    public void reset() {
+        if (reset)
+            return;
+        reset = true;
+        dataFramesReceived.add(RESET);
+        if (peerFlowControl != null)
+            peerFlowControl.close();
+        bufferedDataFrames.release(MAX_BUFFERED_DATA_FRAMES);
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    /**
+     * Runs the action as soon as all DATA frames enqueued for this stream have been sent (or discarded), either
+     * immediately or later on the frame sender's thread.
+     */
+    public void whenDataFramesSent(Runnable action) {
+        whenDataFramesSent.set(action);
+        if (dataFramesToBeSent.isEmpty())
+            dataFramesSent();
+    }
+
+    boolean isWaitingForDataFramesSent() {
+        return whenDataFramesSent.get() != null;
+    }
+
+    void dataFramesSent() {
+        Runnable action = whenDataFramesSent.getAndSet(null);
+        if (action != null)
+            action.run();
+    }
+
     public synchronized void receivedEndStream() {
         if (state == StreamState.OPEN)
             setState(StreamState.HALF_CLOSED_REMOTE);
@@ -163,6 +225,8 @@ public class StreamInfo {
         }
 
         private byte[] createByteArray(DataFrame df) {
+            if (df.getDataLength() == 0)
+                return new byte[0];
             // TODO this has bad performance, can be avoided by subclassing Chunk
             byte[] buf = new byte[df.getDataLength()];
             System.arraycopy(df.getContent(), df.getDataStartIndex(), buf, 0, df.getDataLength());
@@ -185,7 +249,8 @@ public class StreamInfo {
                 DataFrame df = removeDataFrame();
                 if (df == null)
                     continue;
-                out.write(df.getContent(), df.getDataStartIndex(), df.getDataLength());
+                if (df.getDataLength() > 0)
+                    out.write(df.getContent(), df.getDataStartIndex(), df.getDataLength());
                 chunks.add(new Chunk(createByteArray(df)));
 
                 if (df.isEndStream())
@@ -203,7 +268,8 @@ public class StreamInfo {
                 DataFrame df = removeDataFrame();
                 if (df == null)
                     continue;
-                out.write(df.getContent(), df.getDataStartIndex(), df.getDataLength());
+                if (df.getDataLength() > 0)
+                    out.write(df.getContent(), df.getDataStartIndex(), df.getDataLength());
 
                 if (df.isEndStream())
                     break;
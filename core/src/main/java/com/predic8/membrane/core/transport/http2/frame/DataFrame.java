@@ -27,7 +27,7 @@ public class DataFrame implements StreamEnd {
         int p = 0;
 
         if (isPadded()) {
-            padLength = frame.content[p++];
+            padLength = frame.content[p++] & 0xFF;
         } else {
             padLength = 0;
         }
@@ -44,11 +44,11 @@ public class DataFrame implements StreamEnd {
     }
 
     public int getDataStartIndex() {
-        return 0;
+        return isPadded() ? 1 : 0;
     }
 
     public int getDataLength() {
-        return frame.length - padLength;
+        return frame.length - padLength - getDataStartIndex();
     }
 
     public byte[] getContent() {
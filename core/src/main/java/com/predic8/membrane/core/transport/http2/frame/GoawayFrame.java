@@ -50,4 +50,27 @@ public class GoawayFrame {
     public Frame getFrame() {
         return frame;
     }
+
+    public int getLastStreamId() {
+        return lastStreamId;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public static Frame create(int lastStreamId, int errorCode) {
+        Frame frame = new Frame();
+        byte[] buf = new byte[8];
+        buf[0] = (byte)(lastStreamId >> 24 & 0x7F);
+        buf[1] = (byte)(lastStreamId >> 16 & 0xFF);
+        buf[2] = (byte)(lastStreamId >> 8 & 0xFF);
+        buf[3] = (byte)(lastStreamId & 0xFF);
+        buf[4] = (byte)(errorCode >> 24 & 0xFF);
+        buf[5] = (byte)(errorCode >> 16 & 0xFF);
+        buf[6] = (byte)(errorCode >> 8 & 0xFF);
+        buf[7] = (byte)(errorCode & 0xFF);
+        frame.fill(Frame.TYPE_GOAWAY, 0, 0, buf, 0, 8);
+        return frame;
+    }
 }
@@ -41,6 +41,21 @@ public class RstStreamFrame {
         return frame;
     }
 
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public static Frame create(int streamId, int errorCode) {
+        Frame frame = new Frame();
+        byte[] buf = new byte[4];
+        buf[0] = (byte)(errorCode >> 24 & 0xFF);
+        buf[1] = (byte)(errorCode >> 16 & 0xFF);
+        buf[2] = (byte)(errorCode >> 8 & 0xFF);
+        buf[3] = (byte)(errorCode & 0xFF);
+        frame.fill(Frame.TYPE_RST_STREAM, 0, streamId, buf, 0, 4);
+        return frame;
+    }
+
     public void validateSize() throws IOException {
         if (frame.length != 4)
             throw new FatalConnectionException(Error.ERROR_FRAME_SIZE_ERROR);
@@ -20,8 +20,10 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.oracle.util.ssl.SSLCapabilities;
 import com.oracle.util.ssl.SSLExplorer;
+import com.predic8.membrane.core.config.security.KeyGenerator;
 import com.predic8.membrane.core.config.security.SSLParser;
 import com.predic8.membrane.core.resolver.ResolverMap;
+import com.predic8.membrane.core.util.FileUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
@@ -40,12 +42,17 @@ import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
 import javax.annotation.Nullable;
 import javax.net.ssl.*;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
@@ -57,13 +64,30 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 public class GeneratingSSLContext extends SSLContext {
     private static final Logger log = LoggerFactory.getLogger(GeneratingSSLContext.class.getName());
 
+    private static final Pattern CACHEABLE_HOSTNAME = Pattern.compile("[a-z0-9_-]+(\\.[a-z0-9_-]+)*");
+    /**
+     * Cached certificates expiring within this time are replaced.
+     */
+    private static final long CACHED_CERTIFICATE_MIN_VALIDITY = 24 * 60 * 60 * 1000L;
+    /**
+     * Certificates issued by the same CA need distinct serial numbers: Browsers reject a certificate, if they saw
+     * another one with the same serial number before.
+     */
+    private static final SecureRandom SERIAL_RANDOM = new SecureRandom();
+
     private final PrivateKey caPrivate;
     private final SSLParser sslParser;
     private final X509Certificate caPublic;
+    private final KeyPairPool keyPairPool;
+    @Nullable
+    private final File cacheDir;
+    private final char[] cachePassword;
 
     LoadingCache<String, SSLContext> cache;
 
@@ -103,10 +127,20 @@ public class GeneratingSSLContext extends SSLContext {
                 keyPassword = sslParser.getKeyGenerator().getKey().getPassword();
             kmf.init(ks, keyPassword.toCharArray());
 
-            cache = CacheBuilder.newBuilder().maximumSize(100).build(new CacheLoader<String, SSLContext>() {
+            KeyGenerator keyGenerator = sslParser.getKeyGenerator();
+            keyPairPool = new KeyPairPool(keyGenerator.getKeyAlgorithm(), keyGenerator.getKeyPoolSize());
+            cachePassword = keyPassword.toCharArray();
+            if (keyGenerator.getCacheDir() != null) {
+                cacheDir = new File(ResolverMap.combine(baseLocation, keyGenerator.getCacheDir()));
+                // holds private keys
+                FileUtil.mkdirsOwnerOnly(cacheDir);
+            } else {
+                cacheDir = null;
+            }
+
+            cache = CacheBuilder.newBuilder().maximumSize(keyGenerator.getCacheSize()).build(new CacheLoader<String, SSLContext>() {
                 @Override
                 public SSLContext load(String s) throws Exception {
-                    log.info("Generating certificate for " + s);
                     return getSSLContextForHostname(s);
                 }
             });
@@ -164,11 +198,13 @@ public class GeneratingSSLContext extends SSLContext {
             if (serverNames != null && serverNames.size() > 0) {
                 for (SNIServerName snisn : serverNames) {
                     String hostname = new String(snisn.getEncoded(), "UTF-8");
+                    Socket wrapped;
                     try {
-                        return cache.get(hostname).wrap(socket, buffer, position);
+                        wrapped = cache.get(hostname).wrap(socket, buffer, position);
                     } catch (Exception e) {
                         throw new RuntimeException(e);
                     }
+                    return handshake(wrapped);
                 }
             }
         }
@@ -187,19 +223,25 @@ public class GeneratingSSLContext extends SSLContext {
 
     public SSLContext getSSLContextForHostname(String hostname) {
         try {
-            KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
-            kpg.initialize(2048);
-            KeyPair kp = kpg.generateKeyPair();
+            File cacheFile = getCacheFile(hostname);
+            KeyStore ks = cacheFile != null ? loadCachedKey(cacheFile) : null;
+            if (ks == null) {
+                log.info("Generating certificate for " + hostname);
+                KeyPair kp = keyPairPool.take();
 
-            org.bouncycastle.asn1.x500.X500Name xn = new org.bouncycastle.asn1.x500.X500Name("CN="+hostname);
+                org.bouncycastle.asn1.x500.X500Name xn = new org.bouncycastle.asn1.x500.X500Name("CN="+hostname);
 
-            X509Certificate[] chain = new X509Certificate[]{
-                    sign(xn.toString(), caPublic, caPrivate, kp.getPublic())
-            };
+                X509Certificate[] chain = new X509Certificate[]{
+                        sign(xn.toString(), caPublic, caPrivate, kp.getPublic())
+                };
 
-            KeyStore ks = KeyStore.getInstance("JKS");
-            ks.load(null, null);
-            ks.setKeyEntry("alias", kp.getPrivate(), new char[0], chain);
+                ks = KeyStore.getInstance("JKS");
+                ks.load(null, null);
+                ks.setKeyEntry("alias", kp.getPrivate(), new char[0], chain);
+
+                if (cacheFile != null)
+                    storeCachedKey(cacheFile, kp.getPrivate(), chain);
+            }
 
             KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
             kmf.init(ks, new char[0]);
@@ -214,6 +256,69 @@ public class GeneratingSSLContext extends SSLContext {
         }
     }
 
+    /**
+     * @return the file caching the key and certificate for the hostname, or null, if there is no cache directory or
+     * the hostname is not suitable as a file name
+     */
+    @Nullable
+    File getCacheFile(String hostname) {
+        if (cacheDir == null)
+            return null;
+        String name = hostname.toLowerCase(Locale.US);
+        if (!CACHEABLE_HOSTNAME.matcher(name).matches())
+            return null;
+        return new File(cacheDir, name + ".p12");
+    }
+
+    /**
+     * @return a keystore containing the cached key and certificate, or null, if there is none or the certificate
+     * was not issued by the current CA or (almost) expired
+     */
+    @Nullable
+    KeyStore loadCachedKey(File file) {
+        if (!file.exists())
+            return null;
+        try {
+            KeyStore p12 = KeyStore.getInstance("PKCS12");
+            try (InputStream is = new FileInputStream(file)) {
+                p12.load(is, cachePassword);
+            }
+            Certificate[] chain = p12.getCertificateChain("alias");
+            X509Certificate cert = (X509Certificate) chain[0];
+            cert.checkValidity(new Date(System.currentTimeMillis() + CACHED_CERTIFICATE_MIN_VALIDITY));
+            cert.verify(caPublic.getPublicKey());
+
+            KeyStore ks = KeyStore.getInstance("JKS");
+            ks.load(null, null);
+            ks.setKeyEntry("alias", p12.getKey("alias", cachePassword), new char[0], chain);
+            return ks;
+        } catch (Exception e) {
+            log.debug("Not using cached certificate " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void storeCachedKey(File file, PrivateKey key, X509Certificate[] chain) {
+        KeyPairPool.BACKGROUND.execute(() -> {
+            try {
+                KeyStore p12 = KeyStore.getInstance("PKCS12");
+                p12.load(null, null);
+                p12.setKeyEntry("alias", key, cachePassword, chain);
+                File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                try {
+                    try (OutputStream os = FileUtil.createOwnerOnly(tmp)) {
+                        p12.store(os, cachePassword);
+                    }
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp.toPath());
+                }
+            } catch (Exception e) {
+                log.warn("Could not store certificate in " + file, e);
+            }
+        });
+    }
+
     public static X509Certificate sign(String subjectName, X509Certificate caPublic, PrivateKey caPrivate, PublicKey keyPublic)
             throws InvalidKeyException, NoSuchAlgorithmException,
             NoSuchProviderException, SignatureException, IOException,
@@ -228,7 +333,7 @@ public class GeneratingSSLContext extends SSLContext {
         org.bouncycastle.asn1.x500.X500Name caName = new JcaX509CertificateHolder(caPublic).getSubject();
 
         X509v3CertificateBuilder myCertificateGenerator = new X509v3CertificateBuilder(
-                caName, new BigInteger("1"), new Date(
+                caName, new BigInteger(64, SERIAL_RANDOM), new Date(
                 System.currentTimeMillis() - 30 * 24 * 24 * 60 * 60 * 1000), new Date(
                 System.currentTimeMillis() + 30 * 365 * 24 * 60 * 60
                         * 1000), new org.bouncycastle.asn1.x500.X500Name(subjectName), keyInfo);
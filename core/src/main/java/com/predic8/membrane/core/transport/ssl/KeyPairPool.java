@@ -0,0 +1,109 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Key pairs generated in advance, so that {@link GeneratingSSLContext} does not have to generate one while a TLS
+ * handshake waits for it.
+ *
+ * Whenever a key pair is taken, a replacement is generated in the background. The generator thread is shared by all
+ * pools and only runs while a pool is being refilled, so pools need no shutdown.
+ */
+class KeyPairPool {
+    private static final Logger log = LoggerFactory.getLogger(KeyPairPool.class.getName());
+
+    static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Key Pair Generator");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final String algorithm;
+    private final int size;
+    private final ConcurrentLinkedQueue<KeyPair> keyPairs = new ConcurrentLinkedQueue<>();
+    /**
+     * the number of pooled key pairs plus the number of scheduled generations
+     */
+    private final AtomicInteger available = new AtomicInteger();
+
+    /**
+     * @param algorithm "RSA" or "EC"
+     */
+    KeyPairPool(String algorithm, int size) throws GeneralSecurityException {
+        if (!"RSA".equals(algorithm) && !"EC".equals(algorithm))
+            throw new IllegalArgumentException("Unsupported key algorithm '" + algorithm + "'. Use 'RSA' or 'EC'.");
+        this.algorithm = algorithm;
+        this.size = size;
+        KeyPairGenerator.getInstance(algorithm); // fail early, if the algorithm is not available
+        refill();
+    }
+
+    /**
+     * @return a pooled key pair, or a newly generated one, if the pool is empty
+     */
+    KeyPair take() throws GeneralSecurityException {
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPair != null)
+            available.decrementAndGet();
+        refill();
+        return keyPair != null ? keyPair : generate();
+    }
+
+    private void refill() {
+        while (true) {
+            int a = available.get();
+            if (a >= size)
+                return;
+            if (available.compareAndSet(a, a + 1))
+                BACKGROUND.execute(() -> {
+                    try {
+                        keyPairs.add(generate());
+                    } catch (Exception e) {
+                        available.decrementAndGet();
+                        log.error("Could not generate key pair.", e);
+                    }
+                });
+        }
+    }
+
+    KeyPair generate() throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(algorithm);
+        if ("EC".equals(algorithm))
+            kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        else
+            kpg.initialize(2048);
+        return kpg.generateKeyPair();
+    }
+
+    /**
+     * @return the number of key pairs ready to be taken
+     */
+    int getPooledCount() {
+        return keyPairs.size();
+    }
+}
@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.ByteArrayInputStream;
@@ -30,6 +31,7 @@ import java.security.InvalidParameterException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class SSLContext implements SSLProvider {
     private static final Logger log = LoggerFactory.getLogger(SSLContext.class.getName());
@@ -42,6 +44,9 @@ public abstract class SSLContext implements SSLProvider {
     private boolean showSSLExceptions = true;
     private boolean useAsDefault;
 
+    private final AtomicLong fullHandshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+
     public void init(SSLParser sslParser, javax.net.ssl.SSLContext sslc) {
         showSSLExceptions = sslParser.isShowSSLExceptions();
         useAsDefault = sslParser.isUseAsDefault();
@@ -87,6 +92,14 @@ public abstract class SSLContext implements SSLProvider {
         }
 
         endpointIdentificationAlgorithm = sslParser.getEndpointIdentificationAlgorithm();
+
+        SSLSessionContext sessionContext = sslc.getServerSessionContext();
+        if (sessionContext != null) {
+            if (sslParser.getSessionCacheSize() >= 0)
+                sessionContext.setSessionCacheSize(sslParser.getSessionCacheSize());
+            if (sslParser.getSessionTimeout() >= 0)
+                sessionContext.setSessionTimeout(sslParser.getSessionTimeout());
+        }
     }
 
     abstract String getLocation();
@@ -118,6 +131,38 @@ public abstract class SSLContext implements SSLProvider {
         return serviceSocket;
     }
 
+    /**
+     * Completes the TLS handshake of an accepted socket and counts it as full or resumed handshake.
+     *
+     * A resumed session keeps its original creation time, so it was created before the handshake started.
+     */
+    protected Socket handshake(Socket socket) throws IOException {
+        if (!(socket instanceof SSLSocket))
+            return socket;
+        SSLSocket sslSocket = (SSLSocket) socket;
+        long start = System.currentTimeMillis();
+        sslSocket.startHandshake();
+        if (sslSocket.getSession().getCreationTime() < start)
+            resumedHandshakes.incrementAndGet();
+        else
+            fullHandshakes.incrementAndGet();
+        return socket;
+    }
+
+    /**
+     * @return the number of inbound handshakes, which established a new TLS session
+     */
+    public long getFullHandshakes() {
+        return fullHandshakes.get();
+    }
+
+    /**
+     * @return the number of inbound handshakes, which resumed a cached TLS session
+     */
+    public long getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
     public void applyCiphers(SSLSocket sslSocket) {
         if (ciphers != null) {
             SSLParameters sslParameters = sslSocket.getSSLParameters();
@@ -21,7 +21,10 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -66,8 +69,70 @@ public class SSLContextCollection implements SSLProvider {
 		}
 	}
 
+	/**
+	 * Finds the first {@link SSLContext} whose DNS names match a hostname, without trying all patterns one by one:
+	 * Plain names are looked up in a hash map, names of the form "*suffix" by looking up each suffix of the hostname.
+	 * Only names with other wildcards are matched using their regular expression.
+	 */
+	static class HostNameIndex {
+		private final Map<String, Integer> exact = new HashMap<String, Integer>();
+		private final Map<String, Integer> suffixes = new HashMap<String, Integer>();
+		private final List<Pattern> patterns = new ArrayList<Pattern>();
+		private final List<Integer> patternIndexes = new ArrayList<Integer>();
+
+		/**
+		 * @param dnsNames list of dnsName strings (same syntax as {@link ServiceProxyKey#setHost(String)})
+		 */
+		HostNameIndex(List<String> dnsNames) {
+			for (int i = 0; i < dnsNames.size(); i++) {
+				for (String name : dnsNames.get(i).split(" ")) {
+					if (name.isEmpty())
+						continue;
+					name = name.toLowerCase(Locale.US);
+					int wildcard = name.lastIndexOf('*');
+					if (wildcard == -1) {
+						putIfAbsent(exact, name, i);
+					} else if (wildcard == 0) {
+						putIfAbsent(suffixes, name.substring(1), i);
+					} else {
+						patterns.add(Pattern.compile(ServiceProxyKey.createHostPattern(name), Pattern.CASE_INSENSITIVE));
+						patternIndexes.add(i);
+					}
+				}
+			}
+		}
+
+		private static void putIfAbsent(Map<String, Integer> map, String key, int index) {
+			if (!map.containsKey(key))
+				map.put(key, index);
+		}
+
+		/**
+		 * @return the index of the first matching dnsName string, or -1
+		 */
+		int lookup(String hostname) {
+			hostname = hostname.toLowerCase(Locale.US);
+			int best = Integer.MAX_VALUE;
+			Integer i = exact.get(hostname);
+			if (i != null)
+				best = i;
+			if (!suffixes.isEmpty()) {
+				// '*' matches at least one character
+				for (int start = 1; start <= hostname.length(); start++) {
+					i = suffixes.get(hostname.substring(start));
+					if (i != null && i < best)
+						best = i;
+				}
+			}
+			for (int j = 0; j < patterns.size() && patternIndexes.get(j) < best; j++)
+				if (patterns.get(j).matcher(hostname).matches())
+					best = patternIndexes.get(j);
+			return best == Integer.MAX_VALUE ? -1 : best;
+		}
+	}
+
 	private final List<SSLContext> sslContexts;
-	private final List<Pattern> dnsNames;
+	private final HostNameIndex dnsNames;
 
 	/**
 	 * @param sslContexts
@@ -78,9 +143,7 @@ public class SSLContextCollection implements SSLProvider {
 	 *            {@link ServiceProxyKey#setHost(String)})
 	 */
 	private SSLContextCollection(List<SSLContext> sslContexts, List<String> dnsNames) {
-		this.dnsNames = new ArrayList<Pattern>();
-		for (String dnsName : dnsNames)
-			this.dnsNames.add(Pattern.compile(ServiceProxyKey.createHostPattern(dnsName), Pattern.CASE_INSENSITIVE));
+		this.dnsNames = new HostNameIndex(dnsNames);
 		this.sslContexts = sslContexts;
 	}
 
@@ -131,15 +194,13 @@ public class SSLContextCollection implements SSLProvider {
 		if (capabilities != null) {
 			List<SNIServerName> serverNames = capabilities.getServerNames();
 			if (serverNames != null && serverNames.size() > 0) {
-				OUTER:
-					for (SNIServerName snisn : serverNames) {
-						String hostname = new String(snisn.getEncoded(), "UTF-8");
-						for (int i = 0; i < dnsNames.size(); i++)
-							if (dnsNames.get(i).matcher(hostname).matches()) {
-								sslContext = sslContexts.get(i);
-								break OUTER;
-							}
+				for (SNIServerName snisn : serverNames) {
+					int i = dnsNames.lookup(new String(snisn.getEncoded(), "UTF-8"));
+					if (i != -1) {
+						sslContext = sslContexts.get(i);
+						break;
 					}
+				}
 			if (sslContext == null) {
 				// no hostname matched: send 'unrecognized_name' alert and close socket
 
@@ -178,19 +239,12 @@ public class SSLContextCollection implements SSLProvider {
 		if (sslContext == null)
 			sslContext = sslContexts.get(0);
 
-		return sslContext.wrap(socket, buffer, position);
+		return sslContext.handshake(sslContext.wrap(socket, buffer, position));
 	}
 
 	private SSLContext getSSLContextForHostname(String hostname) {
-		SSLContext sslContext = null;
-		for (int i = 0; i < dnsNames.size(); i++)
-			if (dnsNames.get(i).matcher(hostname).matches()) {
-				sslContext = sslContexts.get(i);
-				break;
-			}
-		if (sslContext == null)
-			sslContext = sslContexts.get(0);
-		return sslContext;
+		int i = dnsNames.lookup(hostname);
+		return sslContexts.get(i == -1 ? 0 : i);
 	}
 
 	@Override
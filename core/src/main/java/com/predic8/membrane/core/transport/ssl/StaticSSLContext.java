@@ -299,6 +299,10 @@ public class StaticSSLContext extends SSLContext {
     }
 
     public Socket wrapAcceptedSocket(Socket socket) throws IOException {
+        if (socket instanceof SSLSocket) {
+            socket.setSoTimeout(30000);
+            return handshake(socket);
+        }
         return socket;
     }
 
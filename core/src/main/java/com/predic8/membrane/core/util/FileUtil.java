@@ -15,8 +15,18 @@
 package com.predic8.membrane.core.util;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class FileUtil {
+	private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
+
 	public static File prefixMembraneHomeIfNeeded(File f) {
 		if ( f.isAbsolute() )
 			return f;
@@ -24,4 +34,42 @@ public class FileUtil {
 		return new File(System.getenv("MEMBRANE_HOME"), f.getPath());
 
 	}
+
+	/**
+	 * Creates the file (replacing an existing one) readable and writable by its owner only, for files holding secrets.
+	 */
+	public static OutputStream createOwnerOnly(File file) throws IOException {
+		Files.deleteIfExists(file.toPath());
+		try {
+			Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+			Files.createFile(file.toPath());
+			restrictToOwner(file);
+		}
+		return new FileOutputStream(file);
+	}
+
+	/**
+	 * Creates the directory, including missing parents, accessible by its owner only. Does nothing if it exists.
+	 */
+	public static void mkdirsOwnerOnly(File dir) throws IOException {
+		if (dir.isDirectory())
+			return;
+		try {
+			Files.createDirectories(dir.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		} catch (UnsupportedOperationException e) {
+			// not a POSIX file system
+			Files.createDirectories(dir.toPath());
+			if (!(dir.setExecutable(false, false) && dir.setExecutable(true, true)))
+				log.warn("Could not restrict access to " + dir + ".");
+			restrictToOwner(dir);
+		}
+	}
+
+	private static void restrictToOwner(File file) {
+		if (!(file.setReadable(false, false) && file.setReadable(true, true)
+				&& file.setWritable(false, false) && file.setWritable(true, true)))
+			log.warn("Could not restrict access to " + file + ".");
+	}
 }
@@ -14,6 +14,7 @@
 
 package com.predic8.membrane.core.util;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -21,6 +22,7 @@ import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -38,6 +40,11 @@ public class HttpUtil {
 
 	private static DateFormat GMT_DATE_FORMAT = createGMTDateFormat();
 	private final static int MAX_LINE_LENGTH;
+	/**
+	 * Number of bytes read ahead when reading a line from a stream supporting marks: Small compared to the
+	 * stream's buffer, so that marking does not grow it.
+	 */
+	private final static int READ_CHUNK_SIZE = 512;
 
 	static {
 		String maxLineLength = System.getProperty("membrane.core.http.body.maxlinelength");
@@ -51,32 +58,125 @@ public class HttpUtil {
 	}
 
 	public static String readLine(InputStream in) throws IOException, EndOfStreamException {
+		Line line = readLineBytes(in);
+		return line.toString();
+	}
+
+	/**
+	 * A line read by {@link HttpUtil#readLineBytes(InputStream)}. The instance (and its byte array) is reused by
+	 * the next call on the same thread.
+	 */
+	public static final class Line {
+		private byte[] bytes = new byte[256];
+		private int length;
+
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (bytes.length < capacity)
+				bytes = Arrays.copyOf(bytes, Math.max(capacity, Math.min(2 * bytes.length, MAX_LINE_LENGTH + 1)));
+		}
 
-		StringBuilder line = new StringBuilder(128);
+		/**
+		 * Bytes are converted char-by-char, see {@link Header#write(java.io.OutputStream)}.
+		 */
+		@Override
+		public String toString() {
+			return new String(bytes, 0, length, Constants.ISO_8859_1_CHARSET);
+		}
+	}
 
+	private static final ThreadLocal<Line> lines = new ThreadLocal<Line>() {
+		@Override
+		protected Line initialValue() {
+			return new Line();
+		}
+	};
+
+	/**
+	 * Same as {@link #readLine(InputStream)}, but returns the raw bytes of the line (excluding the line terminator)
+	 * in the calling thread's reusable {@link Line} buffer.
+	 *
+	 * If the stream supports {@link InputStream#mark(int)}, the bytes are read in bulk: The stream is reset to just
+	 * behind the line terminator afterwards.
+	 */
+	public static Line readLineBytes(InputStream in) throws IOException, EndOfStreamException {
+		Line line = lines.get();
+		line.length = 0;
+		if (!in.markSupported()) {
+			readLineByteByByte(in, line);
+			return line;
+		}
+		while (true) {
+			int chunk = Math.min(READ_CHUNK_SIZE, MAX_LINE_LENGTH - line.length);
+			line.ensureCapacity(line.length + chunk);
+			in.mark(chunk);
+			int read = in.read(line.bytes, line.length, chunk);
+			if (read == -1)
+				throw new EOFWhileReadingLineException(line.toString());
+			byte[] b = line.bytes;
+			int end = line.length + read;
+			for (int i = line.length; i < end; i++) {
+				if (b[i] == 13 || b[i] == 10) {
+					in.reset();
+					skipFully(in, i - line.length + 1);
+					line.length = i;
+					if (b[i] == 13) {
+						in.read();
+					} else {
+						in.mark(2);
+						if (in.read() != 13)
+							in.reset();
+					}
+					return line;
+				}
+				if (i + 1 == MAX_LINE_LENGTH) {
+					line.length = i + 1;
+					throw new LineTooLongException(line.toString());
+				}
+			}
+			line.length = end;
+		}
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0)
+				throw new IOException("Could not skip bytes which have been read before.");
+			n -= skipped;
+		}
+	}
+
+	private static void readLineByteByByte(InputStream in, Line line) throws IOException {
 		int b;
-		int l = 0;
 		while ((b = in.read()) != -1) {
 			if (b == 13) {
 				in.read();
-				return line.toString();
+				return;
 			}
 			if (b == 10) {
 				in.mark(2);
 				if (in.read() != 13)
 					in.reset();
-				return line.toString();
+				return;
 			}
 
-			line.append((char) b);
-			if (++l == MAX_LINE_LENGTH)
+			line.ensureCapacity(line.length + 1);
+			line.bytes[line.length++] = (byte) b;
+			if (line.length == MAX_LINE_LENGTH)
 				throw new LineTooLongException(line.toString());
 		}
 
 		throw new EOFWhileReadingLineException(line.toString());
 	}
 
-
 	public static int readChunkSize(InputStream in) throws IOException {
 		StringBuilder buffer = new StringBuilder();
 
@@ -253,19 +353,39 @@ public class HttpUtil {
 	}
 
 	public static void readChunksAndDrop(InputStream in, List<MessageObserver> observers) throws IOException {
-		int chunkSize;
-		while ((chunkSize = readChunkSize(in)) > 0) {
-			byte[] bytes = ByteUtil.readByteArray(in, chunkSize);
-			Chunk chunk = new Chunk(bytes);
-			for (MessageObserver observer : observers)
-				observer.bodyChunk(chunk);
-			in.read(); // CR
-			in.read(); // LF
+		byte[] buffer = Body.BUFFERS.acquire();
+		try {
+			int chunkSize;
+			while ((chunkSize = readChunkSize(in)) > 0) {
+				transferChunk(in, chunkSize, buffer, null, observers);
+				in.read(); // CR
+				in.read(); // LF
+			}
+		} finally {
+			Body.BUFFERS.release(buffer);
 		}
 		in.read(); // CR
 		in.read(); // LF
 	}
 
+	/**
+	 * Passes the data of a chunk through <code>buffer</code> to <code>out</code> (if not null) and the observers,
+	 * without allocating an array per chunk.
+	 */
+	public static void transferChunk(InputStream in, int chunkSize, byte[] buffer, AbstractBodyTransferrer out,
+			List<MessageObserver> observers) throws IOException {
+		while (chunkSize > 0) {
+			int length = in.read(buffer, 0, Math.min(buffer.length, chunkSize));
+			if (length < 0)
+				throw new EOFException("Unexpected end of stream while reading a chunk.");
+			if (out != null)
+				out.write(buffer, 0, length);
+			for (MessageObserver observer : observers)
+				observer.bodyChunk(buffer, 0, length);
+			chunkSize -= length;
+		}
+	}
+
 	public static String getHostName(String destination) throws MalformedURLException {
 		return new URL(destination).getHost();
 	}
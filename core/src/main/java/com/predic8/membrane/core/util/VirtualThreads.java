@@ -0,0 +1,88 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (Project Loom) via reflection, as Membrane is still compiled for Java 8.
+ */
+public class VirtualThreads {
+
+	private static final Method newVirtualThreadPerTaskExecutor;
+	private static final Method startVirtualThread;
+
+	static {
+		Method executorFactory = null;
+		Method starter = null;
+		try {
+			executorFactory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			starter = Thread.class.getMethod("startVirtualThread", Runnable.class);
+			// fails on JVMs where virtual threads are a disabled preview feature
+			((ExecutorService) executorFactory.invoke(null)).shutdown();
+		} catch (Exception e) {
+			executorFactory = null;
+			starter = null;
+		} catch (LinkageError e) {
+			executorFactory = null;
+			starter = null;
+		}
+		newVirtualThreadPerTaskExecutor = executorFactory;
+		startVirtualThread = starter;
+	}
+
+	public static boolean isSupported() {
+		return newVirtualThreadPerTaskExecutor != null;
+	}
+
+	/**
+	 * @return an executor starting a new virtual thread for each task
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		return (ExecutorService) invoke(newVirtualThreadPerTaskExecutor);
+	}
+
+	/**
+	 * Starts a virtual thread with the given name running the runnable.
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads
+	 */
+	public static Thread start(final Runnable runnable, final String name) {
+		return (Thread) invoke(startVirtualThread, new Runnable() {
+			@Override
+			public void run() {
+				Thread.currentThread().setName(name);
+				runnable.run();
+			}
+		});
+	}
+
+	private static Object invoke(Method method, Object... args) {
+		if (method == null)
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM.");
+		try {
+			return method.invoke(null, args);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new UnsupportedOperationException(e.getCause());
+		}
+	}
+}
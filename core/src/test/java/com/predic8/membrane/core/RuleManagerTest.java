@@ -15,8 +15,11 @@ package com.predic8.membrane.core;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -31,6 +34,8 @@ public class RuleManagerTest {
 
 	RuleManager manager;
 
+	MockRouter router;
+
 	Rule proxy3013;
 
 	Rule forwardBlz;
@@ -40,7 +45,7 @@ public class RuleManagerTest {
 	@Before
 	public void setUp() throws Exception{
 		manager = new RuleManager();
-		MockRouter router = new MockRouter();
+		router = new MockRouter();
 		manager.setRouter(router);
 		proxy3013 = new ProxyRule(new ProxyRuleKey(3013));
 		manager.addProxyAndOpenPortIfNew(proxy3013);
@@ -109,4 +114,91 @@ public class RuleManagerTest {
 		assertEquals(forwardBlz, manager.getRules().get(2));
 	}
 
+	@Test
+	public void testGetMatchingRuleAfterChanges() throws Exception {
+		ServiceProxy a = new ServiceProxy(new ServiceProxyKey("*", "GET", "/a/.*", 3016), "localhost", 80);
+		ServiceProxy b = new ServiceProxy(new ServiceProxyKey("*", "*", ".*", 3016), "localhost", 80);
+		a.getKey().setUsePathPattern(true);
+		a.init(router);
+		b.init(router);
+		manager.addProxy(a, RuleManager.RuleDefinitionSource.MANUAL);
+		manager.addProxy(b, RuleManager.RuleDefinitionSource.MANUAL);
+		assertEquals(a, manager.getMatchingRule("localhost", "GET", "/a/b", "1.1", 3016, null));
+
+		manager.ruleDown(a);
+		assertEquals(b, manager.getMatchingRule("localhost", "GET", "/a/b", "1.1", 3016, null));
+
+		manager.getRules().remove(b);
+		assertEquals(a, manager.getMatchingRule("localhost", "GET", "/a/b", "1.1", 3016, null));
+
+		a.getKey().setPath("/c/.*");
+		manager.ruleChanged(a);
+		assertNull(manager.getMatchingRule("localhost", "GET", "/a/b", "1.1", 3016, null));
+		assertEquals(a, manager.getMatchingRule("localhost", "GET", "/c/b", "1.1", 3016, null));
+	}
+
+	@Test
+	public void testLiteralPrefix() {
+		assertEquals("/a/", RuleIndex.getLiteralPrefix("/a/.*"));
+		assertEquals("/a", RuleIndex.getLiteralPrefix("/ab?"));
+		assertEquals("/a", RuleIndex.getLiteralPrefix("/ab{2}"));
+		assertEquals("/ab", RuleIndex.getLiteralPrefix("/ab+"));
+		assertEquals("", RuleIndex.getLiteralPrefix("/a/.*|/b/.*"));
+		assertEquals("", RuleIndex.getLiteralPrefix("(?i)/a"));
+		assertEquals("/", RuleIndex.getLiteralPrefix("/\\Qa\\E"));
+	}
+
+	/**
+	 * Compares the rules found using the index with the ones found by checking every rule.
+	 */
+	@Test
+	public void testGetMatchingRuleLikeLinearScan() throws Exception {
+		String[] hosts = { "*", "localhost", "LocalHost", "example.com", "*.example.com", "a.com b.com", "" };
+		String[] methods = { "*", "GET", "POST" };
+		String[] paths = { ".*", "/a/.*", "/a/b", "/ab?c.*", "/a|/b", "/b/[0-9]+", "/" };
+		int[] ports = { 3014, 3016, 3017, -1 };
+		String[] hostHeaders = { null, "", "localhost", "LOCALHOST:3016", "example.com", "x.example.com", "b.com", "c.com" };
+		String[] uris = { "/", "/a", "/a/", "/a/b", "/abc", "/ac", "/b", "/b/1", "/c" };
+
+		Random random = new Random(42);
+		manager.removeAllRules();
+		for (int i = 0; i < 200; i++) {
+			ServiceProxyKey key = new ServiceProxyKey(pick(random, hosts), pick(random, methods), pick(random, paths),
+					ports[random.nextInt(ports.length)]);
+			key.setUsePathPattern(random.nextBoolean());
+			key.setPathRegExp(random.nextInt(4) != 0);
+			ServiceProxy rule = new ServiceProxy(key, "localhost", 80);
+			rule.setName("rule" + i);
+			rule.init(router);
+			manager.getRules().add(rule);
+		}
+		ProxyRule proxy = new ProxyRule(new ProxyRuleKey(3017));
+		proxy.init(router);
+		manager.getRules().add(proxy);
+
+		int matches = 0;
+		for (int i = 0; i < 5000; i++) {
+			String hostHeader = pick(random, hostHeaders);
+			String method = pick(random, methods);
+			String uri = pick(random, uris);
+			int port = ports[random.nextInt(ports.length)];
+			Rule expected = getMatchingRuleLinear(hostHeader, method, uri, "1.1", port, null);
+			assertEquals(expected, manager.getMatchingRule(hostHeader, method, uri, "1.1", port, null));
+			if (expected != null)
+				matches++;
+		}
+		assertTrue(matches > 1000);
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	private Rule getMatchingRuleLinear(String hostHeader, String method, String uri, String version, int port, String localIP) {
+		for (Rule rule : manager.getRules())
+			if (RuleManager.matches(rule, hostHeader, method, uri, version, port, localIP))
+				return rule;
+		return null;
+	}
+
 }
@@ -26,7 +26,14 @@ import com.predic8.membrane.core.http.ResponseTest;
 import com.predic8.membrane.core.interceptor.*;
 import com.predic8.membrane.core.interceptor.acl.AccessControlInterceptorTest;
 import com.predic8.membrane.core.interceptor.acl.AccessControlParserTest;
+import com.predic8.membrane.core.interceptor.authentication.session.AccountBlockerTest;
+import com.predic8.membrane.core.interceptor.authentication.session.CredentialCacheTest;
+import com.predic8.membrane.core.interceptor.authentication.session.LDAPConnectionPoolTest;
+import com.predic8.membrane.core.interceptor.authentication.session.SessionManagerTest;
+import com.predic8.membrane.core.interceptor.session.JwtSessionManagerTest;
 import com.predic8.membrane.core.interceptor.balancer.*;
+import com.predic8.membrane.core.interceptor.cache.LimitedMemoryStoreTest;
+import com.predic8.membrane.core.interceptor.cache.LogStoreTest;
 import com.predic8.membrane.core.interceptor.cbr.XPathCBRInterceptorTest;
 import com.predic8.membrane.core.interceptor.formvalidation.FormValidationInterceptorTest;
 import com.predic8.membrane.core.interceptor.groovy.GroovyInterceptorTest;
@@ -36,6 +43,7 @@ import com.predic8.membrane.core.interceptor.rest.HTTP2XMLInterceptorTest;
 import com.predic8.membrane.core.interceptor.rewrite.ReverseProxyingInterceptorTest;
 import com.predic8.membrane.core.interceptor.rewrite.RewriteInterceptorTest;
 import com.predic8.membrane.core.interceptor.schemavalidation.JSONSchemaValidationTest;
+import com.predic8.membrane.core.interceptor.schemavalidation.SchemaCacheTest;
 import com.predic8.membrane.core.interceptor.schemavalidation.SOAPMessageValidatorInterceptorTest;
 import com.predic8.membrane.core.interceptor.schemavalidation.SOAPUtilTest;
 import com.predic8.membrane.core.interceptor.schemavalidation.ValidatorInterceptorTest;
@@ -45,15 +53,22 @@ import com.predic8.membrane.core.interceptor.xmlcontentfilter.SimpleXPathParserT
 import com.predic8.membrane.core.interceptor.xmlcontentfilter.XMLContentFilterTest;
 import com.predic8.membrane.core.interceptor.xmlcontentfilter.XMLElementFinderTest;
 import com.predic8.membrane.core.interceptor.xslt.XSLTInterceptorTest;
+import com.predic8.membrane.core.lang.ScriptExecutorPoolTest;
 import com.predic8.membrane.core.magic.MagicTest;
 import com.predic8.membrane.core.multipart.ReassembleTest;
 import com.predic8.membrane.core.resolver.SingleResolverTest;
 import com.predic8.membrane.core.rules.ProxyRuleTest;
 import com.predic8.membrane.core.rules.ServiceProxyKeyTest;
 import com.predic8.membrane.core.transport.ExchangeTest;
+import com.predic8.membrane.core.transport.http.ConnectionManagerTest;
+import com.predic8.membrane.core.transport.http.Http2ClientTest;
+import com.predic8.membrane.core.transport.http2.FrameSenderTest;
 import com.predic8.membrane.core.transport.http.HostColonPortTest;
 import com.predic8.membrane.core.transport.http.HttpKeepAliveTest;
+import com.predic8.membrane.core.transport.http.SelectorIoModeTest;
 import com.predic8.membrane.core.transport.http.ServiceInvocationTest;
+import com.predic8.membrane.core.transport.ssl.GeneratingSSLContextTest;
+import com.predic8.membrane.core.transport.ssl.SSLContextCollectionTest;
 import com.predic8.membrane.core.transport.ssl.SSLContextTest;
 import com.predic8.membrane.core.transport.ssl.SessionResumptionTest;
 import com.predic8.membrane.core.util.*;
@@ -70,7 +85,7 @@ import org.junit.runners.Suite.SuiteClasses;
         MagicTest.class, WSDLInterceptorTest.class,
         AccessControlParserTest.class, AccessControlInterceptorTest.class,
         DispatchingInterceptorTest.class,
-        HostColonPortTest.class,
+        HostColonPortTest.class, ConnectionManagerTest.class, Http2ClientTest.class, FrameSenderTest.class,
         HTTP2XMLInterceptorTest.class, ReadRulesConfigurationTest.class,
         ReadRulesWithInterceptorsConfigurationTest.class,
         RuleManagerTest.class, ProxyTest.class, ServiceProxyKeyTest.class,
@@ -79,22 +94,25 @@ import org.junit.runners.Suite.SuiteClasses;
         ClusterNotificationInterceptorTest.class,
         XMLSessionIdExtractorTest.class, ClusterBalancerTest.class,
         LoadBalancingWithClusterManagerAndNoSessionTest.class,
-        LoadBalancingWithClusterManagerTest.class,
+        LoadBalancingWithClusterManagerTest.class, DispatchingStrategyTest.class,
         MultipleLoadBalancersTest.class, DNSCacheTest.class,
-        ValidatorInterceptorTest.class, XPathCBRInterceptorTest.class,
+        ValidatorInterceptorTest.class, SchemaCacheTest.class, XPathCBRInterceptorTest.class,
         CustomSpringConfigurationTest.class, JSESSIONIDExtractorTest.class,
-        ThrottleInterceptorTest.class, GroovyInterceptorTest.class,
+        ThrottleInterceptorTest.class, GroovyInterceptorTest.class, ScriptExecutorPoolTest.class,
         FormValidationInterceptorTest.class, ServiceInvocationTest.class,
-        HttpKeepAliveTest.class, ReverseProxyingInterceptorTest.class,
-        SSLContextTest.class, RelocatorWADLTest.class,
+        HttpKeepAliveTest.class, SelectorIoModeTest.class, ReverseProxyingInterceptorTest.class,
+        SSLContextTest.class, GeneratingSSLContextTest.class, SSLContextCollectionTest.class, RelocatorWADLTest.class,
         WADLInterceptorTest.class, ReassembleTest.class,
         XMLContentFilterTest.class, XMLElementFinderTest.class,
         SimpleXPathAnalyzerTest.class, SimpleXPathParserTest.class,
         InternalInvocationTest.class, HeaderFilterInterceptorTest.class,
+        CompressionInterceptorTest.class, CredentialCacheTest.class, LDAPConnectionPoolTest.class,
+        SessionManagerTest.class, AccountBlockerTest.class,
+        JwtSessionManagerTest.class,
         SOAPUtilTest.class, SoapOperationExtractorTest.class,
         ContentTypeDetectorTest.class,
         MessageAnalyserTest.class, ExchangeTest.class,
-        LimitedMemoryExchangeStoreTest.class,
+        LimitedMemoryExchangeStoreTest.class, LimitedMemoryStoreTest.class, LogStoreTest.class,
         IndexInterceptorTest.class,
         SingleResolverTest.class,
         JSONSchemaValidationTest.class,
@@ -14,17 +14,23 @@
 package com.predic8.membrane.core.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.predic8.membrane.core.Constants;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.util.ByteUtil;
 
 @SuppressWarnings("unused")
 public class BodyTest {
@@ -126,4 +132,121 @@ public class BodyTest {
 		assertTrue(Arrays.equals(ciob2.getContent(), ciob.getContent()));
 	}
 
+	@Test
+	public void testStreamedStopsAtContentLength() throws Exception {
+		byte[] content = new byte[20000];
+		new Random(42).nextBytes(content);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		wire.write(content);
+		wire.write("next".getBytes(Constants.UTF_8_CHARSET));
+		ByteArrayInputStream in = new ByteArrayInputStream(wire.toByteArray());
+
+		Body body = new Body(in, content.length);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.write(new PlainBodyTransferrer(out), false);
+
+		assertTrue(Arrays.equals(content, out.toByteArray()));
+		assertEquals(content.length, body.getLength());
+		assertEquals(4, in.available());
+	}
+
+	@Test
+	public void testChunkedStreamedThroughSmallBuffer() throws Exception {
+		byte[] content = new byte[20000];
+		new Random(42).nextBytes(content);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		new ChunkedBodyTransferrer(wire).write(content, 0, content.length);
+		wire.write("0\r\n\r\n".getBytes(Constants.UTF_8_CHARSET));
+
+		ChunkedBody body = new ChunkedBody(new ByteArrayInputStream(wire.toByteArray()));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.write(new ChunkedBodyTransferrer(out), false);
+
+		assertTrue(Arrays.equals(content, new ChunkedBody(new ByteArrayInputStream(out.toByteArray())).getContent()));
+		assertEquals(content.length, body.getLength());
+	}
+
+	@Test
+	public void testBufferPool() throws Exception {
+		BufferPool pool = new BufferPool(16, 1);
+		byte[] a = pool.acquire();
+		byte[] b = pool.acquire();
+		assertEquals(16, a.length);
+		pool.release(a);
+		pool.release(b);
+		pool.release(new byte[8]);
+		assertEquals(1, pool.getPooledCount());
+		assertSame(a, pool.acquire());
+		assertEquals(0, pool.getPooledCount());
+	}
+
+	@Test
+	public void testSpillToDisk() throws Exception {
+		byte[] content = new byte[3 * 1024 * 1024 + 17];
+		new Random(42).nextBytes(content);
+
+		long threshold = AbstractBody.spillThreshold;
+		AbstractBody.spillThreshold = 100000;
+		try {
+			for (long length : new long[] { content.length, -1 }) {
+				Body body = new Body(new ByteArrayInputStream(content), length);
+				body.read();
+				assertTrue(body.isSpilled());
+				assertTrue(body.getHeapLength() <= 100000);
+				assertTrue(Arrays.equals(content, body.getContent()));
+				assertTrue(Arrays.equals(content, ByteUtil.getByteArrayData(body.getContentAsStream())));
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				body.write(new PlainBodyTransferrer(out), true);
+				assertTrue(Arrays.equals(content, out.toByteArray()));
+
+				Exchange exc = new Exchange(null);
+				exc.setRequest(new Request());
+				exc.getRequest().setBody(body);
+				exc.detach();
+				try {
+					body.getContent();
+					fail();
+				} catch (RuntimeException e) {
+					// expected, the spill file was deleted
+				}
+			}
+
+			Body small = new Body(new ByteArrayInputStream(msg2), msg2.length);
+			small.read();
+			assertFalse(small.isSpilled());
+			assertTrue(Arrays.equals(msg2, small.getContent()));
+		} finally {
+			AbstractBody.spillThreshold = threshold;
+		}
+	}
+
+	@Test
+	public void testChunkedSpillToDisk() throws Exception {
+		byte[] content = new byte[3 * 1024 * 1024];
+		new Random(42).nextBytes(content);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		new ChunkedBodyTransferrer(wire).write(content, 0, 1000);
+		new ChunkedBodyTransferrer(wire).write(content, 1000, content.length - 1000);
+		wire.write("0\r\n\r\n".getBytes(Constants.UTF_8_CHARSET));
+
+		long threshold = AbstractBody.spillThreshold;
+		AbstractBody.spillThreshold = 100000;
+		try {
+			ChunkedBody body = new ChunkedBody(new ByteArrayInputStream(wire.toByteArray()));
+			assertTrue(Arrays.equals(content, ByteUtil.getByteArrayData(body.getContentAsStream())));
+			assertTrue(body.isSpilled());
+			assertTrue(Arrays.equals(content, body.getContent()));
+
+			body = new ChunkedBody(new ByteArrayInputStream(wire.toByteArray()));
+			body.read();
+			assertTrue(body.isSpilled());
+			assertEquals(content.length, body.getLength());
+			assertTrue(Arrays.equals(content, new ChunkedBody(new ByteArrayInputStream(body.getRaw())).getContent()));
+			body.deleteSpillFile();
+		} finally {
+			AbstractBody.spillThreshold = threshold;
+		}
+	}
+
 }
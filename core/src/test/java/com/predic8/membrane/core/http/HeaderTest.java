@@ -16,6 +16,8 @@ package com.predic8.membrane.core.http;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 
 import javax.activation.MimeType;
@@ -79,4 +81,58 @@ public class HeaderTest {
 		assertEquals("utf-8", header.getCharset());
 	}
 
+	@Test
+	public void testParse() throws Exception {
+		Header header = new Header(new ByteArrayInputStream(
+				"Host: localhost:2000\r\ncontent-type:  text/xml \r\nX-Custom:\r\n\r\n".getBytes()));
+		assertEquals("localhost:2000", header.getFirstValue("host"));
+		assertEquals("text/xml", header.getContentType());
+		assertEquals("", header.getFirstValue("X-Custom"));
+
+		HeaderField[] fields = header.getAllHeaderFields();
+		assertSame(new Header(new ByteArrayInputStream("Host: a\r\n\r\n".getBytes())).getAllHeaderFields()[0].getHeaderName(),
+				fields[0].getHeaderName());
+		assertEquals("content-type", fields[1].getHeaderName().toString());
+		assertEquals(new HeaderName(Header.CONTENT_TYPE).hashCode(), fields[1].getHeaderName().hashCode());
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		Header header = new Header();
+		header.add("Cookie", "a=1");
+		header.add("X-Custom", "1");
+		header.add("cookie", "b=2");
+		header.add("x-custom", "2");
+		header.add("Host", "localhost");
+
+		assertEquals(2, header.getNumberOf("COOKIE"));
+		assertEquals("a=1,b=2", header.getNormalizedValue("Cookie"));
+		assertEquals("1", header.getFirstValue("X-CUSTOM"));
+		assertEquals(2, header.getValues(new HeaderName("X-Custom")).size());
+
+		header.remove(header.getAllHeaderFields()[0]);
+		assertEquals("b=2", header.getFirstValue("Cookie"));
+
+		header.setValue("X-Custom", "3");
+		assertEquals(1, header.getNumberOf("X-Custom"));
+		assertEquals("3", header.getFirstValue("x-custom"));
+
+		header.removeFields("cookie");
+		assertNull(header.getFirstValue("Cookie"));
+		assertEquals(0, header.getValues(new HeaderName("Cookie")).size());
+		assertEquals("X-Custom: 3\r\nHost: localhost\r\n", header.toString());
+
+		header.clear();
+		assertNull(header.getFirstValue("Host"));
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		Header header = new Header(new ByteArrayInputStream("Host: h\u00e4\r\nX-A:  b \r\n\r\n".getBytes(Constants.ISO_8859_1_CHARSET)));
+		header.add("X-Unmappable", "\u20ac\ud83d\ude00");
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		header.write(baos);
+		assertEquals("Host: h\u00e4\r\nX-A: b\r\nX-Unmappable: ??\r\n", new String(baos.toByteArray(), Constants.ISO_8859_1_CHARSET));
+	}
+
 }
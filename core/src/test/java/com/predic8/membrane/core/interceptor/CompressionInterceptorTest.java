@@ -0,0 +1,121 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.CompressedBody.Encoding;
+import com.predic8.membrane.core.http.Header;
+import com.predic8.membrane.core.http.PlainBodyTransferrer;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+
+public class CompressionInterceptorTest {
+
+	private final CompressionInterceptor ci = new CompressionInterceptor();
+
+	@Test
+	public void negotiate() {
+		assertEquals(Encoding.GZIP, CompressionInterceptor.negotiate("gzip, deflate"));
+		assertEquals(Encoding.DEFLATE, CompressionInterceptor.negotiate("gzip;q=0.5, deflate"));
+		assertEquals(Encoding.GZIP, CompressionInterceptor.negotiate("*"));
+		assertEquals(Encoding.DEFLATE, CompressionInterceptor.negotiate("gzip;q=0, *"));
+		assertNull(CompressionInterceptor.negotiate("gzip;q=0"));
+		assertNull(CompressionInterceptor.negotiate("identity"));
+		assertNull(CompressionInterceptor.negotiate(null));
+	}
+
+	@Test
+	public void gzip() throws Exception {
+		byte[] content = createContent(100000);
+		Exchange exc = createExchange("gzip", "text/plain", content);
+
+		ci.handleResponse(exc);
+
+		Header header = exc.getResponse().getHeader();
+		assertEquals("gzip", header.getFirstValue(Header.CONTENT_ENCODING));
+		assertEquals(Header.ACCEPT_ENCODING, header.getFirstValue(Header.VARY));
+		assertTrue(header.isChunked());
+		assertEquals(-1, header.getContentLength());
+		assertEquals("W/\"abc\"", header.getFirstValue(Header.ETAG));
+		assertArrayEquals(content, IOUtils.toByteArray(new GZIPInputStream(
+				new ByteArrayInputStream(exc.getResponse().getBody().getContent()))));
+	}
+
+	@Test
+	public void deflateStreamed() throws Exception {
+		byte[] content = createContent(100000);
+		Exchange exc = new Exchange(null);
+		exc.setRequest(new Request.Builder().get("/").header(Header.ACCEPT_ENCODING, "deflate").build());
+		exc.setResponse(Response.ok().contentType("application/soap+xml; charset=UTF-8")
+				.body(new ByteArrayInputStream(content), true).build());
+
+		ci.handleResponse(exc);
+
+		assertEquals("deflate", exc.getResponse().getHeader().getFirstValue(Header.CONTENT_ENCODING));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		exc.getResponse().getBody().write(new PlainBodyTransferrer(baos), false);
+		assertEquals(baos.size(), exc.getResponse().getBody().getLength());
+		assertArrayEquals(content, IOUtils.toByteArray(new InflaterInputStream(
+				new ByteArrayInputStream(baos.toByteArray()))));
+	}
+
+	@Test
+	public void uncompressed() throws Exception {
+		assertUncompressed(createExchange("br", "text/plain", createContent(10000)));
+		assertUncompressed(createExchange("gzip", "image/png", createContent(10000)));
+		assertUncompressed(createExchange("gzip", "text/plain", createContent(100)));
+
+		Exchange exc = createExchange("gzip", "text/plain", createContent(10000));
+		exc.getResponse().getHeader().add(Header.CONTENT_ENCODING, "br");
+		ci.handleResponse(exc);
+		assertEquals("br", exc.getResponse().getHeader().getFirstValue(Header.CONTENT_ENCODING));
+	}
+
+	private void assertUncompressed(Exchange exc) throws Exception {
+		ci.handleResponse(exc);
+		assertNull(exc.getResponse().getHeader().getFirstValue(Header.CONTENT_ENCODING));
+	}
+
+	private Exchange createExchange(String acceptEncoding, String contentType, byte[] content) throws Exception {
+		Exchange exc = new Exchange(null);
+		exc.setRequest(new Request.Builder().get("/").header(Header.ACCEPT_ENCODING, acceptEncoding).build());
+		exc.setResponse(Response.ok().contentType(contentType).header(Header.ETAG, "\"abc\"").body(content).build());
+		return exc;
+	}
+
+	private byte[] createContent(int length) {
+		// compressible, but not trivially
+		Random random = new Random(42);
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++)
+			content[i] = (byte) ('a' + random.nextInt(8));
+		return content;
+	}
+
+}
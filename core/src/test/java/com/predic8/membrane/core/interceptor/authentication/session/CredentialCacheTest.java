@@ -0,0 +1,121 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.codec.digest.Crypt;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class CredentialCacheTest {
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final Function<Map<String, String>, Map<String, String>> verifier = postData -> {
+		calls.incrementAndGet();
+		if (!"secret".equals(postData.get("password")))
+			throw new NoSuchElementException();
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("username", postData.get("username"));
+		return attributes;
+	};
+
+	@Test
+	public void remembersSuccessfulVerifications() {
+		CredentialCache cache = new CredentialCache(10, 60);
+
+		assertEquals("alice", cache.verify(login("alice", "secret"), verifier).get("username"));
+		assertEquals("alice", cache.verify(login("alice", "secret"), verifier).get("username"));
+		assertEquals(1, calls.get());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRate(), 0.001);
+
+		cache.invalidateAll();
+		cache.verify(login("alice", "secret"), verifier);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void doesNotRememberFailures() {
+		CredentialCache cache = new CredentialCache(10, 60);
+		cache.verify(login("alice", "secret"), verifier);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.verify(login("alice", "wrong"), verifier);
+				fail();
+			} catch (NoSuchElementException e) {
+			}
+		}
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void returnsCopies() {
+		CredentialCache cache = new CredentialCache(10, 60);
+		cache.verify(login("alice", "secret"), verifier).put("password", "secret");
+		cache.verify(login("alice", "secret"), verifier).put("password", "secret");
+		assertFalse(cache.verify(login("alice", "secret"), verifier).containsKey("password"));
+	}
+
+	@Test
+	public void disabled() {
+		CredentialCache cache = new CredentialCache(10, 0);
+		cache.verify(login("alice", "secret"), verifier);
+		cache.verify(login("alice", "secret"), verifier);
+		assertEquals(2, calls.get());
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void staticUserDataProvider() {
+		StaticUserDataProvider udp = new StaticUserDataProvider();
+		udp.getUsersByName().put("alice", new StaticUserDataProvider.User("alice", Crypt.crypt("secret", "$6$12345678")));
+
+		udp.verify(login("alice", "secret"));
+		udp.verify(login("alice", "secret"));
+		try {
+			udp.verify(login("alice", "wrong"));
+			fail();
+		} catch (NoSuchElementException e) {
+		}
+		assertEquals(1, udp.getCredentialCache().getHitCount());
+		assertEquals(1, udp.getCredentialCache().getSize());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void unknownUserIsRejected() {
+		new StaticUserDataProvider().verify(login("error", "secret"));
+	}
+
+	@Test
+	public void hitRateOfDisabledCache() {
+		assertEquals(0, new CredentialCache(10, 0).getHitRate(), 0.001);
+	}
+
+	private Map<String, String> login(String username, String password) {
+		return ImmutableMap.of("username", username, "password", password);
+	}
+}
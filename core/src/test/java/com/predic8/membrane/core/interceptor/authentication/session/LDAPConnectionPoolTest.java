@@ -0,0 +1,118 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import org.junit.Test;
+
+public class LDAPConnectionPoolTest {
+
+	private final List<DirContext> created = new ArrayList<DirContext>();
+
+	private final LDAPConnectionPool.ConnectionFactory factory = new LDAPConnectionPool.ConnectionFactory() {
+		@Override
+		public DirContext create() {
+			DirContext ctx = mock(DirContext.class);
+			created.add(ctx);
+			return ctx;
+		}
+	};
+
+	private DirContext use(LDAPConnectionPool pool) throws NamingException {
+		return pool.execute(new LDAPConnectionPool.Operation<DirContext>() {
+			@Override
+			public DirContext execute(DirContext ctx) {
+				return ctx;
+			}
+		});
+	}
+
+	@Test
+	public void reusesConnections() throws Exception {
+		LDAPConnectionPool pool = new LDAPConnectionPool(factory, 2, 60000);
+		assertSame(use(pool), use(pool));
+		assertEquals(1, pool.getCreated());
+		assertEquals(1, pool.getReused());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(0, pool.getInUse());
+	}
+
+	@Test
+	public void keepsConnectionAfterOperationFailure() throws Exception {
+		LDAPConnectionPool pool = new LDAPConnectionPool(factory, 2, 60000);
+		try {
+			pool.execute(new LDAPConnectionPool.Operation<Object>() {
+				@Override
+				public Object execute(DirContext ctx) {
+					throw new NoSuchElementException();
+				}
+			});
+			fail();
+		} catch (NoSuchElementException e) {
+		}
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void closesConnectionsWithoutPooling() throws Exception {
+		LDAPConnectionPool pool = new LDAPConnectionPool(factory, 0, 60000);
+		use(pool);
+		use(pool);
+		assertEquals(2, created.size());
+		verify(created.get(0)).close();
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void closesExpiredConnections() throws Exception {
+		LDAPConnectionPool pool = new LDAPConnectionPool(factory, 2, 0);
+		use(pool);
+		use(pool);
+		assertEquals(2, created.size());
+		assertEquals(1, pool.getExpired());
+		verify(created.get(0)).close();
+	}
+
+	@Test
+	public void retriesBrokenConnection() throws Exception {
+		LDAPConnectionPool pool = new LDAPConnectionPool(factory, 2, 60000);
+		final DirContext first = use(pool);
+		DirContext used = pool.execute(new LDAPConnectionPool.Operation<DirContext>() {
+			@Override
+			public DirContext execute(DirContext ctx) throws NamingException {
+				if (ctx == first)
+					throw new CommunicationException();
+				return ctx;
+			}
+		});
+		assertSame(created.get(1), used);
+		assertEquals(1, pool.getBroken());
+		verify(first).close();
+		assertEquals(1, pool.getIdleCount());
+	}
+}
@@ -0,0 +1,185 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.authentication.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.interceptor.authentication.session.SessionManager.Session;
+import com.predic8.membrane.core.rules.ServiceProxy;
+
+public class SessionManagerTest {
+
+	@Test
+	public void findsSessionByCookie() throws Exception {
+		SessionManager sm = createSessionManager(300000);
+		Exchange exc = exchange(null);
+		Session s = sm.createSession(exc);
+
+		assertSame(s, sm.getSession(exchange(getId(exc))));
+		assertNull(sm.getSession(exchange("unknown")));
+
+		sm.removeSession(s);
+		assertNull(sm.getSession(exchange(getId(exc))));
+		assertEquals(0, sm.getSessionCount());
+	}
+
+	@Test
+	public void expiresUnusedSessions() throws Exception {
+		SessionManager sm = createSessionManager(1);
+		Exchange exc = exchange(null);
+		sm.createSession(exc);
+
+		Thread.sleep(2100);
+		sm.cleanup();
+		assertNull(sm.getSession(exchange(getId(exc))));
+	}
+
+	@Test
+	public void keepsUsedSessions() throws Exception {
+		SessionManager sm = createSessionManager(300000);
+		Exchange exc = exchange(null);
+		Session s = sm.createSession(exc);
+
+		Thread.sleep(1100);
+		sm.cleanup();
+		assertSame(s, sm.getSession(exchange(getId(exc))));
+	}
+
+	@Test
+	public void userAttributesAcceptNull() {
+		Session s = new Session();
+		s.getUserAttributes().put("foo", "bar");
+		s.getUserAttributes().put("foo", null);
+		assertFalse(s.getUserAttributes().containsKey("foo"));
+	}
+
+	@Test
+	public void persistsSessions() throws Exception {
+		File file = File.createTempFile("sessions", ".json");
+		file.deleteOnExit();
+		try {
+			SessionManager sm = createSessionManager(300000);
+			Exchange exc = exchange(null);
+			Session s = sm.createSession(exc);
+			s.preAuthorize("alice", ImmutableMap.of("email", "alice@example.com"));
+			s.authorize();
+			sm.saveSessions(file);
+
+			if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+				assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file.toPath()));
+
+			SessionManager restored = createSessionManager(300000);
+			restored.setPersistenceFile(file.getPath());
+			restored.init(new HttpRouter());
+
+			Session r = restored.getSession(exchange(getId(exc)));
+			assertNotNull(r);
+			assertTrue(r.isAuthorized());
+			assertEquals("alice", r.getUserName());
+			assertEquals("alice@example.com", r.getUserAttributes().get("email"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void doesNotRestoreSessionsHoldingCredentials() throws Exception {
+		File file = File.createTempFile("sessions", ".json");
+		file.deleteOnExit();
+		try {
+			SessionManager sm = createSessionManager(300000);
+			Exchange exc = exchange(null);
+			Session s = sm.createSession(exc);
+			s.preAuthorize("alice", ImmutableMap.of("email", "alice@example.com"));
+			s.authorize();
+			s.getUserAttributes().put("oauth2Answer", "{\"accessToken\":\"secret\"}");
+			s.getUserAttributes().put("password", "secret");
+			sm.saveSessions(file);
+
+			String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			assertFalse(content.contains("secret"));
+
+			SessionManager restored = createSessionManager(300000);
+			restored.setPersistenceFile(file.getPath());
+			restored.init(new HttpRouter());
+
+			Session r = restored.getSession(exchange(getId(exc)));
+			assertTrue(r == null || !r.isAuthorized());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void expiryWheel() {
+		ExpiryWheel<String> wheel = new ExpiryWheel<String>(1000, 16);
+		long now = System.currentTimeMillis();
+		wheel.schedule("soon", now + 5000);
+		wheel.schedule("later", now + 60000);
+
+		List<String> due = new ArrayList<String>();
+		wheel.advance(now + 1000, due::add);
+		assertTrue(due.isEmpty());
+
+		wheel.advance(now + 6000, due::add);
+		assertEquals(1, due.size());
+		assertEquals("soon", due.get(0));
+
+		// more than one revolution ahead: handed out early, once per revolution
+		wheel.advance(now + 17000, due::add);
+		assertEquals(2, due.size());
+		assertEquals("later", due.get(1));
+	}
+
+	private SessionManager createSessionManager(long timeout) {
+		SessionManager sm = new SessionManager();
+		sm.setTimeout(timeout);
+		sm.init(new HttpRouter());
+		return sm;
+	}
+
+	private Exchange exchange(String sessionId) throws Exception {
+		Request.Builder builder = new Request.Builder().get("/");
+		if (sessionId != null)
+			builder.header("Cookie", "SESSIONID=" + sessionId);
+		Exchange exc = new Exchange(null);
+		exc.setRequest(builder.build());
+		exc.setRule(new ServiceProxy());
+		return exc;
+	}
+
+	private String getId(Exchange exc) {
+		return ((String) exc.getProperty(SessionManager.SESSION_ID)).split(";")[0];
+	}
+}
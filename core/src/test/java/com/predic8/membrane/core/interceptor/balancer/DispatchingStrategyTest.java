@@ -0,0 +1,167 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.balancer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.exchange.Exchange;
+
+public class DispatchingStrategyTest {
+
+	private LoadBalancingInterceptor lb;
+	private Node a, b, c;
+
+	@Before
+	public void setUp() throws Exception {
+		lb = new LoadBalancingInterceptor();
+		lb.getClusterManager().up(Cluster.DEFAULT_NAME, "a", 80);
+		lb.getClusterManager().up(Cluster.DEFAULT_NAME, "b", 80);
+		lb.getClusterManager().up(Cluster.DEFAULT_NAME, "c", 80);
+		List<Node> nodes = lb.getEndpoints();
+		a = nodes.get(0);
+		b = nodes.get(1);
+		c = nodes.get(2);
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		List<Node> snapshot = lb.getEndpoints();
+		assertSame(snapshot, lb.getEndpoints());
+
+		lb.getClusterManager().takeout(Cluster.DEFAULT_NAME, "b", 80);
+		assertEquals(3, snapshot.size());
+		assertEquals(2, lb.getEndpoints().size());
+		assertEquals(c, lb.getEndpoints().get(1));
+
+		lb.getClusterManager().down(Cluster.DEFAULT_NAME, "c", 80);
+		assertEquals(1, lb.getEndpoints().size());
+
+		lb.getClusterManager().up(Cluster.DEFAULT_NAME, "b", 80);
+		lb.getClusterManager().removeNode(Cluster.DEFAULT_NAME, "a", 80);
+		assertEquals(1, lb.getEndpoints().size());
+		assertEquals(b, lb.getEndpoints().get(0));
+	}
+
+	@Test
+	public void testRoundRobin() throws Exception {
+		RoundRobinStrategy strategy = new RoundRobinStrategy();
+		for (int i = 0; i < 2; i++) {
+			assertSame(a, strategy.dispatch(lb, new Exchange(null)));
+			assertSame(b, strategy.dispatch(lb, new Exchange(null)));
+			assertSame(c, strategy.dispatch(lb, new Exchange(null)));
+		}
+	}
+
+	@Test
+	public void testLeastConnections() throws Exception {
+		LeastConnectionsStrategy strategy = new LeastConnectionsStrategy();
+		a.addThread();
+		c.addThread();
+		for (int i = 0; i < 5; i++)
+			assertSame(b, strategy.dispatch(lb, new Exchange(null)));
+
+		b.addThread();
+		int[] counts = new int[3];
+		for (int i = 0; i < 30; i++) {
+			Node n = strategy.dispatch(lb, new Exchange(null));
+			counts[n == a ? 0 : n == b ? 1 : 2]++;
+		}
+		// ties are dispatched round-robin
+		assertEquals(10, counts[0]);
+		assertEquals(10, counts[1]);
+		assertEquals(10, counts[2]);
+	}
+
+	@Test
+	public void testThreadCounter() throws Exception {
+		a.addThread();
+		a.addThread();
+		a.removeThread();
+		assertEquals(1, a.getThreads());
+		lb.getClusterManager().down(Cluster.DEFAULT_NAME, "a", 80);
+		a.removeThread();
+		assertEquals(0, a.getThreads());
+	}
+
+	@Test
+	public void testPowerOfTwoChoices() throws Exception {
+		PowerOfTwoChoicesStrategy strategy = new PowerOfTwoChoicesStrategy();
+		for (int i = 0; i < 10; i++)
+			c.addThread();
+		int[] counts = new int[3];
+		for (int i = 0; i < 300; i++) {
+			Node n = strategy.dispatch(lb, new Exchange(null));
+			counts[n == a ? 0 : n == b ? 1 : 2]++;
+		}
+		// the most loaded node only wins if it is drawn twice, which never happens
+		assertEquals(0, counts[2]);
+		assertTrue(counts[0] > 50);
+		assertTrue(counts[1] > 50);
+	}
+
+	@Test
+	public void testLatency() throws Exception {
+		LatencyStrategy strategy = new LatencyStrategy();
+		for (int i = 0; i < 10; i++) {
+			respond(strategy, a, 10);
+			respond(strategy, b, 100);
+			respond(strategy, c, 100);
+		}
+		assertEquals(10, strategy.getLatency(a), 0.01);
+
+		int[] counts = new int[3];
+		for (int i = 0; i < 1200; i++) {
+			Node n = strategy.dispatch(lb, new Exchange(null));
+			counts[n == a ? 0 : n == b ? 1 : 2]++;
+		}
+		// expected: 1000, 100, 100
+		assertTrue(counts[0] > 850);
+		assertTrue(counts[1] > 40 && counts[1] < 180);
+
+		// new nodes are weighted like the fastest one
+		lb.getClusterManager().up(Cluster.DEFAULT_NAME, "d", 80);
+		int d = 0;
+		for (int i = 0; i < 1200; i++)
+			if (strategy.dispatch(lb, new Exchange(null)).getHost().equals("d"))
+				d++;
+		assertTrue(d > 400);
+
+		// nodes with outstanding requests are avoided
+		for (int i = 0; i < 100; i++)
+			a.addThread();
+		lb.getClusterManager().down(Cluster.DEFAULT_NAME, "d", 80);
+		int first = 0;
+		for (int i = 0; i < 1200; i++)
+			if (strategy.dispatch(lb, new Exchange(null)) == a)
+				first++;
+		assertTrue(first < 200);
+	}
+
+	private void respond(LatencyStrategy strategy, Node node, long latency) {
+		Exchange exc = new Exchange(null);
+		exc.setProperty("dispatchedNode", node);
+		exc.setTimeReqSent(System.currentTimeMillis() - latency);
+		exc.setTimeResReceived(exc.getTimeReqSent() + latency);
+		strategy.done(exc);
+	}
+
+}
@@ -0,0 +1,202 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+package com.predic8.membrane.core.interceptor.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.interceptor.Outcome;
+
+public class LimitedMemoryStoreTest {
+
+	private LimitedMemoryStore store;
+
+	private static class TestNode extends Node {
+		private static final long serialVersionUID = 1L;
+
+		TestNode(long expires) {
+			this.expires = expires;
+		}
+
+		@Override
+		public int estimateHeapSize() {
+			return 1000;
+		}
+
+		@Override
+		public Response toResponse(Request request) {
+			return Response.ok().build();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		store = new LimitedMemoryStore();
+	}
+
+	@Test
+	public void testMaxEntries() {
+		store.setMaxEntries(2);
+		Node a = new TestNode(0);
+		store.put("a", a);
+		store.put("b", new TestNode(0));
+		store.put("c", new TestNode(0));
+		assertNull(store.get("a"));
+		assertNotNull(store.get("b"));
+		assertNotNull(store.get("c"));
+		assertEquals(2, store.getEntryCount());
+		assertEquals(1, store.getEvictions());
+	}
+
+	@Test
+	public void testMaxSizeKeepsProtectedEntries() {
+		store.setMaxSize(5000);
+		Node popular = new TestNode(0);
+		store.put("popular", popular);
+		assertSame(popular, store.get("popular"));
+		for (int i = 0; i < 10; i++)
+			store.put("once" + i, new TestNode(0));
+		assertSame(popular, store.get("popular"));
+		assertNull(store.get("once0"));
+		assertNotNull(store.get("once9"));
+		assertTrue(store.getSize() <= 5000);
+	}
+
+	@Test
+	public void testReplace() {
+		store.put("a", new TestNode(0));
+		Node a = new TestNode(0);
+		store.put("a", a);
+		assertSame(a, store.get("a"));
+		assertEquals(1, store.getEntryCount());
+	}
+
+	@Test
+	public void testExpiry() {
+		store.put("expired", new TestNode(System.currentTimeMillis() - 1));
+		assertNull(store.get("expired"));
+
+		store.put("expiring", new TestNode(System.currentTimeMillis() + 100));
+		assertNotNull(store.get("expiring"));
+		store.put("valid", new TestNode(System.currentTimeMillis() + 100000));
+		assertEquals(2, store.getEntryCount());
+	}
+
+	@Test
+	public void testGetExpires() {
+		long now = System.currentTimeMillis();
+		long expires = CacheInterceptor.getExpires(Response.ok().header("Cache-Control", "public, max-age=60").build());
+		assertEquals(now + 60000, expires, 1000);
+		assertEquals(1, CacheInterceptor.getExpires(Response.ok().header("Expires", "0").build()));
+		assertEquals(0, CacheInterceptor.getExpires(Response.ok().build()));
+	}
+
+	@Test
+	public void testCoalesceMisses() throws Exception {
+		final CacheInterceptor cache = new CacheInterceptor();
+		cache.setStore(store);
+		cache.setCoalesceMisses(true);
+
+		Exchange first = createExchange();
+		assertEquals(Outcome.CONTINUE, cache.handleRequest(first));
+
+		final AtomicReference<Object> second = new AtomicReference<Object>();
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Exchange exc = createExchange();
+					second.set(cache.handleRequest(exc) == Outcome.RETURN ? exc.getResponse().getBodyAsStringDecoded() : "fetched");
+				} catch (Exception e) {
+					second.set(e);
+				}
+			}
+		});
+		t.start();
+		while (cache.getCoalescedMisses() == 0)
+			Thread.sleep(10);
+
+		first.setResponse(Response.ok("cached").contentType("text/plain").build());
+		cache.handleResponse(first);
+		t.join(5000);
+		assertEquals("cached", second.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testCoalesceMissesWithUncacheableResponse() throws Exception {
+		final CacheInterceptor cache = new CacheInterceptor();
+		cache.setStore(store);
+		cache.setCoalesceMisses(true);
+
+		Exchange first = createExchange();
+		assertEquals(Outcome.CONTINUE, cache.handleRequest(first));
+
+		final AtomicReference<Object> second = new AtomicReference<Object>();
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					second.set(cache.handleRequest(createExchange()));
+				} catch (Exception e) {
+					second.set(e);
+				}
+			}
+		});
+		t.start();
+		while (cache.getCoalescedMisses() == 0)
+			Thread.sleep(10);
+
+		long start = System.currentTimeMillis();
+		first.setResponse(Response.internalServerError().build());
+		cache.handleResponse(first);
+		t.join(5000);
+		// the waiting request is released at once and fetches the response itself
+		assertEquals(Outcome.CONTINUE, second.get());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		// the URL is not pending anymore
+		assertEquals(Outcome.CONTINUE, cache.handleRequest(createExchange()));
+		assertEquals(1, cache.getCoalescedMisses());
+	}
+
+	@Test
+	public void testMissesAreNotCoalescedByDefault() throws Exception {
+		CacheInterceptor cache = new CacheInterceptor();
+		cache.setStore(store);
+		assertEquals(Outcome.CONTINUE, cache.handleRequest(createExchange()));
+		assertEquals(Outcome.CONTINUE, cache.handleRequest(createExchange()));
+		assertEquals(0, cache.getCoalescedMisses());
+	}
+
+	private static Exchange createExchange() throws Exception {
+		Exchange exc = new Request.Builder().get("http://localhost/a").header("Host", "localhost").buildExchange();
+		exc.getDestinations().add("http://localhost/a");
+		return exc;
+	}
+}
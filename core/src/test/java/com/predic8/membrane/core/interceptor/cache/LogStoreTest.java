@@ -0,0 +1,186 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+package com.predic8.membrane.core.interceptor.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+
+public class LogStoreTest {
+
+	private File dir;
+	private HttpRouter router;
+	private final List<LogStore> stores = new ArrayList<LogStore>();
+
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("logstore", "");
+		dir.delete();
+		router = new HttpRouter();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (LogStore store : stores)
+			store.close();
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private LogStore createStore(int segmentSize, long maxSize) {
+		LogStore store = new LogStore();
+		store.setDir(dir.getAbsolutePath());
+		store.setSegmentSize(segmentSize);
+		store.setMaxSize(maxSize);
+		store.init(router);
+		stores.add(store);
+		return store;
+	}
+
+	private File[] listSegments() {
+		return dir.listFiles((d, name) -> name.endsWith(".log"));
+	}
+
+	private static Node createNode(String body, int status) throws Exception {
+		Exchange exc = new Request.Builder().get("http://localhost/").header("Accept", "text/plain").buildExchange();
+		exc.setResponse(Response.ok(body).status(status, "").contentType("text/plain").build());
+		return status == 200 ? new PositiveNode(exc) : new NegativeNode(exc);
+	}
+
+	private static String getBody(Node node) throws Exception {
+		Request request = new Request.Builder().get("http://localhost/").header("Accept", "text/plain").build();
+		return node.toResponse(request).getBodyAsStringDecoded();
+	}
+
+	@Test
+	public void testPutAndGetAfterRestart() throws Exception {
+		LogStore store = createStore(4096, 1024 * 1024);
+		store.put("a", createNode("first", 200));
+		store.put("a", createNode("second", 200));
+		store.put("b", createNode("", 404));
+		assertEquals("second", getBody(store.get("a")));
+		assertEquals(404, store.get("b").toResponse(null).getStatusCode());
+		assertNull(store.get("c"));
+
+		store.close();
+		store = createStore(4096, 1024 * 1024);
+		assertEquals("second", getBody(store.get("a")));
+		assertEquals(2, store.getEntryCount());
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		LogStore store = createStore(1024, 2048);
+		for (int i = 0; i < 50; i++)
+			store.put("url" + i, createNode("body " + i, 200));
+		assertNull(store.get("url0"));
+		assertEquals("body 49", getBody(store.get("url49")));
+		assertTrue(store.getEvictions() > 0);
+		assertTrue(store.getSize() <= 2048 + 1024);
+	}
+
+	@Test
+	public void testMaxSizeKeepsRewrittenEntries() throws Exception {
+		LogStore store = createStore(1024, 2048);
+		for (int i = 0; i < 50; i++) {
+			store.put("url" + i, createNode("body " + i, 200));
+			if (i % 5 == 0)
+				store.put("a", createNode("a " + i, 200));
+		}
+		assertEquals("a 45", getBody(store.get("a")));
+
+		// the segments' records are known after a restart, too
+		store.close();
+		store = createStore(1024, 2048);
+		for (int i = 50; i < 100; i++)
+			store.put("url" + i, createNode("body " + i, 200));
+		assertTrue(store.getEvictions() > 0);
+		assertNull(store.get("url49"));
+		assertNull(store.get("a"));
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		LogStore store = createStore(1024, 1024 * 1024);
+		for (int i = 0; i < 20; i++)
+			store.put("url" + (i % 2), createNode("body " + i, 200));
+		long size = store.getSize();
+		store.compact();
+		assertTrue(store.getSize() < size);
+		assertEquals("body 18", getBody(store.get("url0")));
+		assertEquals("body 19", getBody(store.get("url1")));
+		// only the active segment is left
+		assertEquals(1, listSegments().length);
+	}
+
+	@Test
+	public void testDirectoryIsLocked() throws Exception {
+		LogStore store = createStore(4096, 1024 * 1024);
+		try {
+			createStore(4096, 1024 * 1024);
+			fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+		store.close();
+		createStore(4096, 1024 * 1024);
+	}
+
+	@Test
+	public void testSegmentsGrow() throws Exception {
+		LogStore store = createStore(64 * 1024 * 1024, 1024L * 1024 * 1024);
+		assertEquals(1024 * 1024, listSegments()[0].length());
+
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < 1024 * 1024; i++)
+			body.append('x');
+		store.put("a", createNode(body.toString(), 200));
+		store.put("b", createNode("b", 200));
+		assertEquals(1, listSegments().length);
+		assertEquals(2 * 1024 * 1024, listSegments()[0].length());
+		assertEquals(body.toString(), getBody(store.get("a")));
+		assertEquals("b", getBody(store.get("b")));
+	}
+
+	@Test
+	public void testMemoryStore() throws Exception {
+		LogStore store = new LogStore();
+		store.setDir(dir.getAbsolutePath());
+		LimitedMemoryStore memoryStore = new LimitedMemoryStore();
+		memoryStore.setMaxEntries(1);
+		store.setMemoryStore(memoryStore);
+		store.init(router);
+		stores.add(store);
+
+		store.put("a", createNode("a", 200));
+		store.put("b", createNode("b", 200));
+		assertNull(memoryStore.get("a"));
+		assertEquals("a", getBody(store.get("a")));
+		assertEquals("a", getBody(memoryStore.get("a")));
+	}
+}
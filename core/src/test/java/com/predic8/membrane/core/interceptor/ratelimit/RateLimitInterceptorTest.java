@@ -18,11 +18,13 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.joda.time.Duration;
 import org.junit.Test;
 
 import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
 import com.predic8.membrane.core.http.Response.ResponseBuilder;
 import com.predic8.membrane.core.interceptor.Outcome;
 
@@ -97,4 +99,121 @@ public class RateLimitInterceptorTest {
 		assertEquals(16, continues.get());
 		assertEquals(984, returns.get());
 	}
+
+	@Test
+	public void testTokenBucketConcurrency() throws Exception {
+		RateLimitInterceptor rli = new RateLimitInterceptor(Duration.standardHours(1), 16);
+		rli.setStrategy(RateLimitInterceptor.Strategy.TOKEN_BUCKET);
+		assertEquals(16, countContinues(rli, 1000));
+	}
+
+	@Test
+	public void testSlidingWindowConcurrency() throws Exception {
+		RateLimitInterceptor rli = new RateLimitInterceptor(Duration.standardHours(1), 16);
+		rli.setStrategy(RateLimitInterceptor.Strategy.SLIDING_WINDOW);
+		assertEquals(16, countContinues(rli, 1000));
+	}
+
+	private int countContinues(final RateLimitInterceptor rli, int requests) throws InterruptedException {
+		final Exchange exc = new Exchange(null);
+		exc.setResponse(ResponseBuilder.newInstance().build());
+		exc.setRemoteAddrIp("192.168.1.100");
+		final AtomicInteger continues = new AtomicInteger();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < requests; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (rli.handleRequest(exc) == Outcome.CONTINUE)
+							continues.incrementAndGet();
+					} catch (Exception e) {
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads)
+			t.join();
+		return continues.get();
+	}
+
+	@Test
+	public void testTokenBucketRefill() throws Exception {
+		TokenBucketRateLimit limit = new TokenBucketRateLimit(Duration.millis(1000), 4);
+		for (int i = 0; i < 4; i++)
+			assertFalse(limit.isRequestLimitReached("a"));
+		assertTrue(limit.isRequestLimitReached("a"));
+		assertFalse(limit.isRequestLimitReached("b"));
+		assertTrue(limit.getServiceAvailableAgainTime("a").isAfterNow());
+
+		Thread.sleep(300);
+		assertFalse(limit.isRequestLimitReached("a"));
+		assertTrue(limit.isRequestLimitReached("a"));
+	}
+
+	@Test
+	public void testSlidingWindowNoBurstAtBoundary() throws Exception {
+		SlidingWindowRateLimit limit = new SlidingWindowRateLimit(Duration.millis(1000), 4);
+		for (int i = 0; i < 4; i++)
+			assertFalse(limit.isRequestLimitReached("a"));
+		assertTrue(limit.isRequestLimitReached("a"));
+
+		Thread.sleep(2000);
+		assertFalse(limit.isRequestLimitReached("a"));
+	}
+
+	@Test
+	public void testIdleKeysAreRemoved() throws Exception {
+		TokenBucketRateLimit limit = new TokenBucketRateLimit(Duration.millis(200), 4);
+		assertFalse(limit.isRequestLimitReached("a"));
+		AtomicLong state = limit.states.get("a");
+
+		Thread.sleep(500);
+		assertFalse(limit.isRequestLimitReached("b"));
+		assertFalse(limit.states.containsKey("a"));
+		// a thread still holding the removed state must not update it
+		assertEquals(PerKeyRateLimit.REMOVED, state.get());
+		assertFalse(limit.isRequestLimitReached("a"));
+		assertNotSame(state, limit.states.get("a"));
+	}
+
+	@Test
+	public void testHeaderKey() throws Exception {
+		RateLimitInterceptor rli = new RateLimitInterceptor(Duration.standardHours(1), 1);
+		rli.setStrategy(RateLimitInterceptor.Strategy.TOKEN_BUCKET);
+		rli.setKey(RateLimitInterceptor.KeyType.API_KEY);
+
+		assertEquals(Outcome.CONTINUE, rli.handleRequest(createExchange("/?api_key=a")));
+		assertEquals(Outcome.RETURN, rli.handleRequest(createExchange("/?api_key=a")));
+		Exchange exc = createExchange("/");
+		exc.getRequest().getHeader().add("X-Api-Key", "b");
+		assertEquals(Outcome.CONTINUE, rli.handleRequest(exc));
+		Exchange limited = createExchange("/?api_key=a");
+		assertEquals(Outcome.RETURN, rli.handleRequest(limited));
+		assertEquals(429, limited.getResponse().getStatusCode());
+	}
+
+	@Test
+	public void testKeyCannotBeSpoofed() throws Exception {
+		RateLimitInterceptor rli = new RateLimitInterceptor(Duration.standardHours(1), 1);
+		rli.setStrategy(RateLimitInterceptor.Strategy.TOKEN_BUCKET);
+		rli.setKey(RateLimitInterceptor.KeyType.API_KEY);
+
+		// uses up the budget of the API key "192.168.1.100", not the one of the IP address
+		assertEquals(Outcome.CONTINUE, rli.handleRequest(createExchange("/?api_key=192.168.1.100")));
+		assertEquals(Outcome.CONTINUE, rli.handleRequest(createExchange("/")));
+
+		Exchange limited = createExchange("/?api_key=secret");
+		assertEquals(Outcome.CONTINUE, rli.handleRequest(createExchange("/?api_key=secret")));
+		assertEquals(Outcome.RETURN, rli.handleRequest(limited));
+		assertFalse(limited.getResponse().getBodyAsStringDecoded().contains("secret"));
+	}
+
+	private Exchange createExchange(String uri) throws Exception {
+		Exchange exc = new Request.Builder().get(uri).buildExchange();
+		exc.setRemoteAddrIp("192.168.1.100");
+		return exc;
+	}
 }
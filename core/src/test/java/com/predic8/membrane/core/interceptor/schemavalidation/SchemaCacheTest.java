@@ -0,0 +1,98 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.schemavalidation;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import com.predic8.membrane.core.resolver.ResolverMap;
+
+public class SchemaCacheTest {
+
+	private static final String LOCATION = "classpath:/validation/SchemaCacheTest.xsd";
+
+	private static String schema(String elementName) {
+		return "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">" +
+				"<xsd:element name=\"" + elementName + "\" type=\"xsd:string\"/>" +
+				"</xsd:schema>";
+	}
+
+	private static String including(String schemaLocation) {
+		return "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">" +
+				"<xsd:include schemaLocation=\"" + schemaLocation + "\"/>" +
+				"</xsd:schema>";
+	}
+
+	@Test
+	public void compilesSameContentOnce() throws Exception {
+		ResolverMap resolver = new ResolverMap();
+		Schema a = SchemaCache.get(resolver, LOCATION, schema("a"));
+		assertSame(a, SchemaCache.get(resolver, LOCATION, schema("a")));
+		assertSame(a, SchemaCache.get(resolver, LOCATION, schema("a").getBytes("UTF-8")));
+	}
+
+	@Test
+	public void compilesChangedContentAgain() throws Exception {
+		ResolverMap resolver = new ResolverMap();
+		Schema a = SchemaCache.get(resolver, LOCATION, schema("a"));
+		assertNotSame(a, SchemaCache.get(resolver, LOCATION, schema("b")));
+		assertNotSame(a, SchemaCache.get(resolver, "classpath:/validation/Other.xsd", schema("a")));
+	}
+
+	@Test
+	public void compilesAgainIfIncludedSchemaChanged() throws Exception {
+		File dir = Files.createTempDirectory("SchemaCacheTest").toFile();
+		try {
+			File included = new File(dir, "included.xsd");
+			String location = new File(dir, "main.xsd").toURI().toString();
+			ResolverMap resolver = new ResolverMap();
+
+			Files.write(included.toPath(), schema("a").getBytes(StandardCharsets.UTF_8));
+			Schema a = SchemaCache.get(resolver, location, including("included.xsd"));
+			assertSame(a, SchemaCache.get(resolver, location, including("included.xsd")));
+
+			Files.write(included.toPath(), schema("b").getBytes(StandardCharsets.UTF_8));
+			assertNotSame(a, SchemaCache.get(resolver, location, including("included.xsd")));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void keepsEncodingOfIncludedSchema() throws Exception {
+		File dir = Files.createTempDirectory("SchemaCacheTest").toFile();
+		try {
+			String latin1 = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + schema("gr\u00f6\u00dfe");
+			Files.write(new File(dir, "included.xsd").toPath(), latin1.getBytes(StandardCharsets.ISO_8859_1));
+			String location = new File(dir, "main.xsd").toURI().toString();
+
+			Schema schema = SchemaCache.get(new ResolverMap(), location, including("included.xsd"));
+			schema.newValidator().validate(new StreamSource(new StringReader("<gr\u00f6\u00dfe>x</gr\u00f6\u00dfe>")));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.interceptor.session;
+
+import com.predic8.membrane.core.HttpRouter;
+import org.jose4j.jwk.EcJwkGenerator;
+import org.jose4j.jwk.EllipticCurveJsonWebKey;
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.keys.EllipticCurves;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JwtSessionManagerTest {
+
+    private static final String ISSUER = "http://localhost:3001/";
+
+    @Test
+    public void ellipticCurveKey() throws Exception {
+        JwtSessionManager sm = createSessionManager(createEllipticCurveJwk());
+        String cookie = createCookie(sm);
+
+        String header = new String(Base64.getUrlDecoder().decode(cookie.split("\\.")[0]), StandardCharsets.UTF_8);
+        assertTrue(header.contains("\"alg\":\"ES256\""));
+        // the second check is answered from the cache
+        assertTrue(sm.isValidCookieForThisSessionManager(cookie));
+        assertTrue(sm.isValidCookieForThisSessionManager(cookie));
+        assertEquals("bar", sm.cookieValueToAttributes(cookie).get("foo"));
+        assertFalse(sm.cookieRenewalNeeded(cookie));
+    }
+
+    @Test
+    public void rejectsCookieSignedWithOtherKey() throws Exception {
+        JwtSessionManager sm = createSessionManager(createEllipticCurveJwk());
+        JwtSessionManager other = createSessionManager(createEllipticCurveJwk());
+
+        assertFalse(sm.isValidCookieForThisSessionManager(createCookie(other)));
+    }
+
+    @Test
+    public void cachedVerificationIsBoundToIssuer() throws Exception {
+        JwtSessionManager sm = createSessionManager(null);
+        String cookie = createCookie(sm);
+        assertTrue(sm.isValidCookieForThisSessionManager(cookie));
+
+        sm.issuer = "http://otherhost:3001/";
+        assertFalse(sm.isValidCookieForThisSessionManager(cookie));
+    }
+
+    @Test
+    public void returnsCopiesOfCachedAttributes() throws Exception {
+        JwtSessionManager sm = createSessionManager(null);
+        String cookie = createCookie(sm);
+        assertTrue(sm.isValidCookieForThisSessionManager(cookie));
+
+        sm.cookieValueToAttributes(cookie).put("foo", "baz");
+        assertEquals("bar", sm.cookieValueToAttributes(cookie).get("foo"));
+    }
+
+    private JwtSessionManager.Jwk createEllipticCurveJwk() throws Exception {
+        EllipticCurveJsonWebKey key = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        key.setKeyId("test");
+        JwtSessionManager.Jwk jwk = new JwtSessionManager.Jwk();
+        jwk.setContent(key.toJson(JsonWebKey.OutputControlLevel.INCLUDE_PRIVATE));
+        return jwk;
+    }
+
+    private JwtSessionManager createSessionManager(JwtSessionManager.Jwk jwk) throws Exception {
+        JwtSessionManager sm = new JwtSessionManager();
+        sm.setJwk(jwk);
+        sm.init(new HttpRouter());
+        sm.issuer = ISSUER;
+        return sm;
+    }
+
+    private String createCookie(JwtSessionManager sm) {
+        Session session = new Session(sm.usernameKeyName, new HashMap<>());
+        session.put("foo", "bar");
+        return sm.getCookieValues(session).get(session) + "=true";
+    }
+}
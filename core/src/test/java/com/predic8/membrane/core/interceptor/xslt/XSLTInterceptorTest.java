@@ -13,8 +13,14 @@
    limitations under the License. */
 package com.predic8.membrane.core.interceptor.xslt;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
@@ -27,6 +33,7 @@ import org.xml.sax.InputSource;
 import com.predic8.membrane.core.HttpRouter;
 import com.predic8.membrane.core.exchange.Exchange;
 import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.resolver.ResolverMap;
 
 public class XSLTInterceptorTest extends TestCase {
 
@@ -72,6 +79,25 @@ public class XSLTInterceptorTest extends TestCase {
 		assertXPath("/person/company", "predic8");
 	}
 
+	@Test
+	public void testCompiledStylesheetIsShared() throws Exception {
+		ResolverMap rr = new ResolverMap();
+		Templates t = TemplatesCache.get(XSLTTransformer.Engine.DEFAULT, rr, "classpath:/customer2person.xsl", "classpath:/customer2person.xsl");
+		assertSame(t, TemplatesCache.get(XSLTTransformer.Engine.DEFAULT, rr, "classpath:/customer2person.xsl", "classpath:/customer2person.xsl"));
+		assertNotSame(t, TemplatesCache.get(XSLTTransformer.Engine.DEFAULT, rr, "classpath:/customer2personAddCompany.xsl", "classpath:/customer2personAddCompany.xsl"));
+	}
+
+	@Test
+	public void testParametersAreNotReused() throws Exception {
+		XSLTTransformer t = new XSLTTransformer("classpath:/customer2personAddCompany.xsl", new HttpRouter());
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("XSLT_COMPANY", "predic8");
+		String first = new String(t.transform(new StreamSource(getClass().getResourceAsStream("/customer.xml")), parameters), UTF_8);
+		assertTrue(first.contains("predic8"));
+		String second = new String(t.transform(new StreamSource(getClass().getResourceAsStream("/customer.xml"))), UTF_8);
+		assertFalse(second.contains("predic8"));
+	}
+
 	@SuppressWarnings("unused")
 	private void printBodyContent() throws Exception {
 		InputStream i = exc.getResponse().getBodyAsStream();
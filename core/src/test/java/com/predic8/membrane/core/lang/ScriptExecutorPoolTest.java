@@ -0,0 +1,120 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+
+public class ScriptExecutorPoolTest {
+
+	private static class CountingPool extends ScriptExecutorPool<Integer, Object> {
+		private final AtomicInteger created = new AtomicInteger();
+		private final CountDownLatch started;
+		private final CountDownLatch release;
+
+		private CountingPool(HttpRouter router, CountDownLatch started, CountDownLatch release) {
+			this.started = started;
+			this.release = release;
+			init(router);
+		}
+
+		@Override
+		protected Integer createOneScript() {
+			return created.incrementAndGet();
+		}
+
+		@Override
+		protected Object invoke(Integer script, Map<String, Object> parameters) {
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return script;
+		}
+
+		@Override
+		public Object apply(Map<String, Object> parameters) {
+			return execute(parameters);
+		}
+	}
+
+	@Test
+	public void reusesIdleScript() {
+		CountDownLatch released = new CountDownLatch(0);
+		CountingPool pool = new CountingPool(new HttpRouter(), new CountDownLatch(0), released);
+		for (int i = 0; i < 10; i++)
+			assertEquals(1, pool.apply(Collections.<String, Object>emptyMap()));
+		assertEquals(1, pool.getSize());
+		assertEquals(10, pool.getExecutions());
+		assertEquals(0, pool.getWaits());
+	}
+
+	@Test
+	public void growsUpToTransportThreadCount() throws Exception {
+		HttpRouter router = new HttpRouter();
+		router.getTransport().setCoreThreadPoolSize(2);
+		router.getTransport().setMaxThreadPoolSize(2);
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		final CountingPool pool = new CountingPool(router, started, release);
+		assertEquals(2, pool.getMaximumSize());
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 3; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					pool.apply(Collections.<String, Object>emptyMap());
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(2, pool.getInUse());
+		// the third thread waits for a script without timeout, the others are in invoke()
+		while (!isWaiting(threads))
+			Thread.sleep(10);
+		release.countDown();
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(2, pool.getSize());
+		assertEquals(3, pool.getExecutions());
+		assertEquals(1, pool.getWaits());
+		assertEquals(0, pool.getInUse());
+	}
+
+	private static boolean isWaiting(List<Thread> threads) {
+		for (Thread t : threads)
+			if (t.getState() == Thread.State.WAITING)
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,159 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConnectionManagerTest {
+
+	private ServerSocket server;
+	private final List<Socket> accepted = new ArrayList<Socket>();
+
+	@Before
+	public void setUp() throws Exception {
+		server = new ServerSocket(0);
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						Socket s = server.accept();
+						synchronized (accepted) {
+							accepted.add(s);
+						}
+					}
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		synchronized (accepted) {
+			for (Socket s : accepted)
+				s.close();
+		}
+	}
+
+	private Connection get(ConnectionManager cm) throws IOException {
+		return cm.getConnection("localhost", server.getLocalPort(), null, null, 1000);
+	}
+
+	@Test
+	public void testLifoReuse() throws Exception {
+		ConnectionManager cm = new ConnectionManager(30000);
+		Connection c1 = get(cm);
+		Connection c2 = get(cm);
+		assertNotSame(c1, c2);
+		c1.release();
+		c2.release();
+		assertSame(c2, get(cm));
+		assertSame(c1, get(cm));
+		assertEquals(2, cm.getNumberInPool());
+	}
+
+	@Test
+	public void testMaxIdle() throws Exception {
+		ConnectionManager cm = new ConnectionManager(30000, 1, Integer.MAX_VALUE);
+		Connection c1 = get(cm);
+		Connection c2 = get(cm);
+		c1.release();
+		c2.release();
+		assertTrue(c2.isClosed());
+		assertEquals(1, cm.getNumberInPool());
+
+		ConnectionManager.PoolStats stats = cm.getPoolStats().get(0);
+		assertEquals(1, stats.getIdle());
+		assertEquals(0, stats.getLeased());
+		assertEquals(2, stats.getCreated());
+		assertEquals(1, stats.getEvicted());
+	}
+
+	@Test
+	public void testMaxTotalWaitsForRelease() throws Exception {
+		final ConnectionManager cm = new ConnectionManager(30000, Integer.MAX_VALUE, 1);
+		Connection c1 = get(cm);
+
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		Thread waiter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(get(cm));
+				} catch (IOException e) {
+					result.set(e);
+				}
+			}
+		});
+		waiter.start();
+		while (cm.getPoolStats().get(0).getPending() == 0)
+			Thread.sleep(10);
+		assertEquals(1, cm.getPoolStats().get(0).getLeased());
+
+		c1.release();
+		waiter.join(5000);
+		assertSame(c1, result.get());
+	}
+
+	@Test
+	public void testMaxTotalAfterClose() throws Exception {
+		ConnectionManager cm = new ConnectionManager(30000, Integer.MAX_VALUE, 1);
+		Connection c1 = get(cm);
+		c1.close();
+		Connection c2 = get(cm);
+		assertNotSame(c1, c2);
+		assertEquals(1, cm.getNumberInPool());
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testReleaseAfterCloseCountsOnce() throws Exception {
+		ConnectionManager cm = new ConnectionManager(30000, Integer.MAX_VALUE, 1);
+		Connection c1 = get(cm);
+		c1.close();
+		c1.release();
+		get(cm);
+		assertEquals(1, cm.getNumberInPool());
+		assertEquals(1, cm.getPoolStats().get(0).getLeased());
+		// the limit must still be enforced
+		cm.getConnection("localhost", server.getLocalPort(), null, null, 100);
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testMaxTotalTimeout() throws Exception {
+		ConnectionManager cm = new ConnectionManager(30000, Integer.MAX_VALUE, 1);
+		get(cm);
+		cm.getConnection("localhost", server.getLocalPort(), null, null, 100);
+	}
+}
@@ -0,0 +1,165 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.RuleManager;
+import com.predic8.membrane.core.config.security.KeyStore;
+import com.predic8.membrane.core.config.security.SSLParser;
+import com.predic8.membrane.core.config.security.TrustStore;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.interceptor.AbstractInterceptor;
+import com.predic8.membrane.core.interceptor.Outcome;
+import com.predic8.membrane.core.resolver.ResolverMap;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+import com.predic8.membrane.core.transport.http.client.HttpClientConfiguration;
+import com.predic8.membrane.core.transport.ssl.SSLProvider;
+import com.predic8.membrane.core.transport.ssl.StaticSSLContext;
+
+public class Http2ClientTest {
+
+	private HttpRouter router;
+	private int port;
+	private HttpClient client;
+	private SSLProvider clientSSLContext;
+
+	private void startBackend(boolean http2, final long delay) throws Exception {
+		try (ServerSocket ss = new ServerSocket(0)) {
+			port = ss.getLocalPort();
+		}
+		router = new HttpRouter();
+		router.setHotDeploy(false);
+		ServiceProxy sp = new ServiceProxy(new ServiceProxyKey(port), null, 0);
+		SSLParser sslParser = new SSLParser();
+		sslParser.setKeyStore(new KeyStore());
+		sslParser.getKeyStore().setLocation("classpath:/ssl-rsa.keystore");
+		sslParser.getKeyStore().setKeyPassword("secret");
+		sslParser.setUseExperimentalHttp2(http2);
+		sp.setSslInboundParser(sslParser);
+		sp.getInterceptors().add(new AbstractInterceptor() {
+			@Override
+			public Outcome handleRequest(Exchange exc) throws Exception {
+				Thread.sleep(delay);
+				if (exc.getRequest().isPOSTRequest())
+					exc.setResponse(Response.ok().body(exc.getRequest().getBody().getContent()).build());
+				else
+					exc.setResponse(Response.ok(exc.getRequest().getUri()).build());
+				return Outcome.RETURN;
+			}
+		});
+		router.getRuleManager().addProxy(sp, RuleManager.RuleDefinitionSource.MANUAL);
+		router.start();
+
+		HttpClientConfiguration configuration = new HttpClientConfiguration();
+		configuration.setUseExperimentalHttp2(true);
+		client = new HttpClient(configuration);
+
+		SSLParser clientSSLParser = new SSLParser();
+		clientSSLParser.setTrustStore(new TrustStore());
+		clientSSLParser.getTrustStore().setLocation("classpath:/ssl-rsa-pub.keystore");
+		clientSSLParser.getTrustStore().setPassword("secret");
+		clientSSLParser.setEndpointIdentificationAlgorithm(""); // the certificate was not issued for 'localhost'
+		clientSSLContext = new StaticSSLContext(clientSSLParser, new ResolverMap(), null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (client != null)
+			client.getHttp2ClientPool().shutdownWhenDone();
+		if (router != null)
+			router.shutdown();
+	}
+
+	private Response call(Request.Builder builder) throws Exception {
+		Exchange exc = builder.buildExchange();
+		exc.setProperty(Exchange.SSL_CONTEXT, clientSSLContext);
+		return client.call(exc).getResponse();
+	}
+
+	@Test
+	public void testMultiplexing() throws Exception {
+		startBackend(true, 300);
+
+		ExecutorService executor = Executors.newFixedThreadPool(20);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 20; i++) {
+				final String path = "/" + i;
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						Response response = Http2ClientTest.this.call(new Request.Builder().get("https://localhost:" + port + path));
+						assertEquals(200, response.getStatusCode());
+						return response.getBodyAsStringDecoded();
+					}
+				}));
+			}
+			for (int i = 0; i < 20; i++)
+				assertEquals("/" + i, results.get(i).get());
+		} finally {
+			executor.shutdown();
+		}
+
+		// the backend allows 50 concurrent streams
+		assertEquals(1, client.getHttp2ClientPool().getConnectionCount());
+	}
+
+	@Test
+	public void testLargeBodies() throws Exception {
+		startBackend(true, 0);
+
+		// larger than the initial flow control windows
+		byte[] body = new byte[300000];
+		new Random(42).nextBytes(body);
+		for (int i = 0; i < 3; i++) {
+			Response response = call(new Request.Builder().post("https://localhost:" + port + "/").body(body));
+			assertEquals(200, response.getStatusCode());
+			assertArrayEquals(body, response.getBody().getContent());
+		}
+		assertEquals(1, client.getHttp2ClientPool().getConnectionCount());
+	}
+
+	@Test
+	public void testFallbackToHttp1() throws Exception {
+		startBackend(false, 0);
+
+		for (int i = 0; i < 3; i++) {
+			Response response = call(new Request.Builder().get("https://localhost:" + port + "/foo"));
+			assertEquals(200, response.getStatusCode());
+			assertEquals("/foo", response.getBodyAsStringDecoded());
+			assertNull(response.getHeader().getFirstValue("Transfer-Encoding"));
+		}
+		assertEquals(0, client.getHttp2ClientPool().getConnectionCount());
+	}
+}
@@ -0,0 +1,147 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.interceptor.AbstractInterceptor;
+import com.predic8.membrane.core.interceptor.Outcome;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+
+public class SelectorIoModeTest {
+
+	private final Set<Integer> clientPorts = new HashSet<Integer>();
+	private HttpRouter router;
+
+	@Before
+	public void setUp() throws Exception {
+		router = new HttpRouter();
+		router.getTransport().setIoMode(HttpTransport.IoMode.SELECTOR);
+		ServiceProxy sp = new ServiceProxy(new ServiceProxyKey("localhost", "*", ".*", 3061), "localhost", 80);
+		sp.getInterceptors().add(new AbstractInterceptor() {
+			@Override
+			public Outcome handleRequest(Exchange exc) throws Exception {
+				exc.getRequest().readBody();
+				synchronized (clientPorts) {
+					clientPorts.add(((HttpServerHandler) exc.getHandler()).getSourceSocket().getPort());
+				}
+				exc.setResponse(Response.ok(exc.getRequest().getUri()).build());
+				return Outcome.RETURN;
+			}
+		});
+		router.getRuleManager().addProxyAndOpenPortIfNew(sp);
+		router.init();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		router.shutdown();
+	}
+
+	private String call(HttpClient client, String path) throws Exception {
+		Exchange exc = new Request.Builder().get("http://localhost:3061" + path).buildExchange();
+		Response response = client.call(exc).getResponse();
+		assertEquals(200, response.getStatusCode());
+		return response.getBodyAsStringDecoded();
+	}
+
+	@Test
+	public void testKeepAlive() throws Exception {
+		HttpClient client = new HttpClient();
+		for (int i = 0; i < 5; i++)
+			assertEquals("/" + i, call(client, "/" + i));
+		assertEquals(1, clientPorts.size());
+	}
+
+	@Test
+	public void testPipelining() throws Exception {
+		Socket s = new Socket("localhost", 3061);
+		try {
+			OutputStream out = s.getOutputStream();
+			out.write(("GET /a HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+					"GET /b HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+			out.flush();
+			InputStream in = s.getInputStream();
+			Response r1 = new Response();
+			r1.read(in, true);
+			assertEquals("/a", r1.getBodyAsStringDecoded());
+			Response r2 = new Response();
+			r2.read(in, true);
+			assertEquals("/b", r2.getBodyAsStringDecoded());
+		} finally {
+			s.close();
+		}
+	}
+
+	@Test
+	public void testManyIdleConnections() throws Exception {
+		int threadsBefore = Thread.activeCount();
+		List<Socket> sockets = new ArrayList<Socket>();
+		try {
+			for (int i = 0; i < 50; i++)
+				sockets.add(new Socket("localhost", 3061));
+			Thread.sleep(200);
+			// idle connections do not occupy a handler thread each
+			assertTrue(Thread.activeCount() - threadsBefore < 50);
+
+			Socket s = sockets.get(25);
+			s.getOutputStream().write("GET /x HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			Response r = new Response();
+			r.read(s.getInputStream(), true);
+			assertEquals("/x", r.getBodyAsStringDecoded());
+		} finally {
+			for (Socket s : sockets)
+				s.close();
+		}
+	}
+
+	@Test
+	public void testConnectionLimit() throws Exception {
+		router.getTransport().setConcurrentConnectionLimitPerIp(1);
+		Socket first = new Socket("localhost", 3061);
+		try {
+			Thread.sleep(200);
+			Socket second = new Socket("localhost", 3061);
+			try {
+				second.setSoTimeout(10000);
+				// answered by a worker thread, as writing might block
+				assertTrue(IOUtils.toString(second.getInputStream(), "US-ASCII").startsWith("HTTP/1.1 429"));
+			} finally {
+				second.close();
+			}
+		} finally {
+			first.close();
+		}
+	}
+}
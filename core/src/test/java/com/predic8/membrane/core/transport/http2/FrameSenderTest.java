@@ -0,0 +1,118 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.http2;
+
+import static com.predic8.membrane.core.transport.http2.frame.Frame.TYPE_DATA;
+import static com.predic8.membrane.core.transport.http2.frame.HeadersFrame.FLAG_END_STREAM;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.transport.http2.frame.Frame;
+import com.twitter.hpack.Encoder;
+
+public class FrameSenderTest {
+
+    private final Map<Integer, StreamInfo> streams = new ConcurrentHashMap<>();
+    private final PriorityTree priorityTree = new PriorityTree();
+    private final Settings settings = new Settings();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private FrameSender sender;
+    private StreamInfo streamInfo;
+    private Thread thread;
+
+    @Before
+    public void setUp() throws Exception {
+        sender = new FrameSender(out, new Encoder(4096), settings, streams, priorityTree, "test");
+        streamInfo = new StreamInfo(1, sender, settings, settings);
+        streams.put(1, streamInfo);
+        priorityTree.reprioritize(streamInfo, 16, null, false);
+        thread = new Thread(sender);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sender.stop();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void discardsFramesOfResetStream() throws Exception {
+        for (int i = 0; i < 3; i++)
+            sender.send(dataFrame(0));
+        assertEquals(3, sender.getBufferedFrameCount());
+        assertEquals(1, streamInfo.getBufferedDataFrames().availablePermits());
+
+        streams.remove(1);
+        priorityTree.remove(streamInfo);
+        sender.discard(streamInfo);
+
+        assertEquals(0, sender.getBufferedFrameCount());
+        assertEquals(4, streamInfo.getBufferedDataFrames().availablePermits());
+        assertTrue(streamInfo.getDataFramesToBeSent().isEmpty());
+
+        // the sender thread has nothing to do and must not busy-spin
+        thread.start();
+        assertTrue(waitFor(Thread.State.WAITING));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void dropsFramesOfRemovedStream() throws Exception {
+        streams.remove(1);
+        priorityTree.remove(streamInfo);
+        sender.send(dataFrame(0));
+        assertEquals(0, sender.getBufferedFrameCount());
+    }
+
+    @Test
+    public void runsActionAfterQueuedFramesHaveBeenSent() throws Exception {
+        sender.send(dataFrame(0));
+        sender.send(dataFrame(FLAG_END_STREAM));
+        CountDownLatch sent = new CountDownLatch(1);
+        streamInfo.whenDataFramesSent(sent::countDown);
+        assertEquals(1, sent.getCount());
+
+        thread.start();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(2 * (9 + 10), out.size());
+    }
+
+    private Frame dataFrame(int flags) {
+        Frame frame = new Frame();
+        frame.fill(TYPE_DATA, flags, 1, new byte[10], 0, 10);
+        return frame;
+    }
+
+    private boolean waitFor(Thread.State state) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (thread.getState() == state)
+                return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.interfaces.ECPublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+
+import org.apache.commons.io.FileUtils;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.config.security.Certificate;
+import com.predic8.membrane.core.config.security.Key;
+import com.predic8.membrane.core.config.security.KeyGenerator;
+import com.predic8.membrane.core.config.security.SSLParser;
+import com.predic8.membrane.core.resolver.ResolverMap;
+
+public class GeneratingSSLContextTest {
+
+	private File cacheDir;
+	private SSLParser sslParser;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheDir = Files.createTempDirectory("membrane-certs").toFile();
+
+		KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(2048);
+		KeyPair ca = kpg.generateKeyPair();
+		X500Name name = new X500Name("CN=Membrane Test CA");
+		X509Certificate caCert = new JcaX509CertificateConverter().getCertificate(new JcaX509v3CertificateBuilder(
+				name, BigInteger.ONE, new Date(System.currentTimeMillis() - 60000),
+				new Date(System.currentTimeMillis() + 3600000), name, ca.getPublic())
+				.build(new JcaContentSignerBuilder("SHA256withRSA").build(ca.getPrivate())));
+
+		Key key = new Key();
+		key.setPrivate(new Key.Private());
+		key.getPrivate().setContent(toPEM(ca.getPrivate()));
+		Certificate certificate = new Certificate();
+		certificate.setContent(toPEM(caCert));
+		key.setCertificates(Collections.singletonList(certificate));
+
+		KeyGenerator keyGenerator = new KeyGenerator();
+		keyGenerator.setKey(key);
+		keyGenerator.setKeyAlgorithm("EC");
+		keyGenerator.setKeyPoolSize(2);
+		keyGenerator.setCacheDir(cacheDir.getAbsolutePath());
+		sslParser = new SSLParser();
+		sslParser.setKeyGenerator(keyGenerator);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(cacheDir);
+	}
+
+	private static String toPEM(Object o) throws Exception {
+		StringWriter sw = new StringWriter();
+		try (JcaPEMWriter w = new JcaPEMWriter(sw)) {
+			w.writeObject(o);
+		}
+		return sw.toString();
+	}
+
+	@Test
+	public void testKeyPairPool() throws Exception {
+		KeyPairPool pool = new KeyPairPool("EC", 2);
+		for (int i = 0; i < 100 && pool.getPooledCount() < 2; i++)
+			Thread.sleep(50);
+		assertEquals(2, pool.getPooledCount());
+		assertTrue(pool.take().getPublic() instanceof ECPublicKey);
+		for (int i = 0; i < 100 && pool.getPooledCount() < 2; i++)
+			Thread.sleep(50);
+		assertEquals(2, pool.getPooledCount());
+	}
+
+	@Test
+	public void testPersistentCache() throws Exception {
+		GeneratingSSLContext context = new GeneratingSSLContext(sslParser, new ResolverMap(), null);
+		assertNotNull(context.getSSLContextForHostname("Example.com"));
+
+		File file = context.getCacheFile("example.com");
+		for (int i = 0; i < 100 && !file.exists(); i++)
+			Thread.sleep(50);
+		assertTrue(file.exists());
+
+		// as if after a restart
+		GeneratingSSLContext context2 = new GeneratingSSLContext(sslParser, new ResolverMap(), null);
+		KeyStore ks = context2.loadCachedKey(context2.getCacheFile("EXAMPLE.com"));
+		assertNotNull(ks);
+		X509Certificate cert = (X509Certificate) ks.getCertificate("alias");
+		assertEquals("cn=example.com", cert.getSubjectX500Principal().getName().toLowerCase());
+		assertEquals("CN=Membrane Test CA", cert.getIssuerX500Principal().getName());
+		assertTrue(cert.getPublicKey() instanceof ECPublicKey);
+
+		assertNull(context.getCacheFile("../example.com"));
+		assertNull(context.getCacheFile("a/b"));
+	}
+}
@@ -0,0 +1,121 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.core.transport.ssl;
+
+import static com.predic8.membrane.core.interceptor.Outcome.RETURN;
+import static org.junit.Assert.assertEquals;
+
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.RuleManager;
+import com.predic8.membrane.core.config.security.KeyStore;
+import com.predic8.membrane.core.config.security.SSLParser;
+import com.predic8.membrane.core.config.security.TrustStore;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.interceptor.AbstractInterceptor;
+import com.predic8.membrane.core.interceptor.Outcome;
+import com.predic8.membrane.core.resolver.ResolverMap;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+import com.predic8.membrane.core.transport.http.HttpClient;
+
+public class SSLContextCollectionTest {
+
+	private HttpRouter router;
+
+	@After
+	public void tearDown() throws Exception {
+		if (router != null)
+			router.shutdown();
+	}
+
+	@Test
+	public void testHostNameIndex() {
+		SSLContextCollection.HostNameIndex index = new SSLContextCollection.HostNameIndex(Arrays.asList(
+				"www.example.com",
+				"*.example.com api.example.org",
+				"a*.example.net",
+				"*"));
+
+		assertEquals(0, index.lookup("www.example.com"));
+		assertEquals(0, index.lookup("WWW.Example.COM"));
+		assertEquals(1, index.lookup("foo.example.com"));
+		assertEquals(1, index.lookup("a.b.example.com"));
+		assertEquals(1, index.lookup("api.example.org"));
+		assertEquals(2, index.lookup("abc.example.net"));
+		assertEquals(3, index.lookup("bc.example.net"));
+		// '*' matches at least one character
+		assertEquals(3, index.lookup(".example.com"));
+		assertEquals(3, index.lookup("localhost"));
+
+		index = new SSLContextCollection.HostNameIndex(Arrays.asList("www.example.com", "*.example.com", "www.example.com"));
+		assertEquals(0, index.lookup("www.example.com"));
+		assertEquals(1, index.lookup("api.example.com"));
+		assertEquals(-1, index.lookup("example.com"));
+		assertEquals(-1, index.lookup("www.example.org"));
+	}
+
+	@Test
+	public void testHandshakeCounting() throws Exception {
+		int port;
+		try (ServerSocket ss = new ServerSocket(0)) {
+			port = ss.getLocalPort();
+		}
+		router = new HttpRouter();
+		router.setHotDeploy(false);
+		ServiceProxy sp = new ServiceProxy(new ServiceProxyKey(port), null, 0);
+		SSLParser sslParser = new SSLParser();
+		sslParser.setKeyStore(new KeyStore());
+		sslParser.getKeyStore().setLocation("classpath:/ssl-rsa.keystore");
+		sslParser.getKeyStore().setKeyPassword("secret");
+		sslParser.setSessionCacheSize(10);
+		sslParser.setSessionTimeout(60);
+		sp.setSslInboundParser(sslParser);
+		sp.getInterceptors().add(new AbstractInterceptor() {
+			@Override
+			public Outcome handleRequest(Exchange exc) throws Exception {
+				exc.setResponse(Response.ok("ok").header("Connection", "close").build());
+				return RETURN;
+			}
+		});
+		router.getRuleManager().addProxy(sp, RuleManager.RuleDefinitionSource.MANUAL);
+		router.start();
+
+		SSLParser clientSSLParser = new SSLParser();
+		clientSSLParser.setTrustStore(new TrustStore());
+		clientSSLParser.getTrustStore().setLocation("classpath:/ssl-rsa-pub.keystore");
+		clientSSLParser.getTrustStore().setPassword("secret");
+		clientSSLParser.setEndpointIdentificationAlgorithm(""); // the certificate was not issued for 'localhost'
+		SSLProvider clientSSLContext = new StaticSSLContext(clientSSLParser, new ResolverMap(), null);
+
+		HttpClient client = new HttpClient();
+		for (int i = 0; i < 3; i++) {
+			Exchange exc = new Request.Builder().get("https://localhost:" + port + "/").buildExchange();
+			exc.setProperty(Exchange.SSL_CONTEXT, clientSSLContext);
+			assertEquals("ok", client.call(exc).getResponse().getBodyAsStringDecoded());
+		}
+
+		SSLContext serverSSLContext = sp.getSslInboundContext();
+		assertEquals(1, serverSSLContext.getFullHandshakes());
+		assertEquals(2, serverSSLContext.getResumedHandshakes());
+	}
+}
@@ -16,16 +16,22 @@ package com.predic8.membrane.core.util;
 
 import static com.predic8.membrane.core.util.HttpUtil.readLine;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
 
 
 import com.predic8.membrane.core.Constants;
+import com.predic8.membrane.core.transport.http.EOFWhileReadingLineException;
+import com.predic8.membrane.core.transport.http.LineTooLongException;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class HttpUtilTest {
 
@@ -55,6 +61,38 @@ public class HttpUtilTest {
 		assertEquals("POST /operation/call HTTP/1.1", line);
 	}
 
+	@Test
+	public void testReadLineBuffered() throws Exception {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 1500; i++)
+			longLine.append((char) ('a' + i % 26));
+		InputStream in = new BufferedInputStream(new ByteArrayInputStream(
+				("foo\r\n" + longLine + "\nbar\n\rbaz\r\n\r\nrest").getBytes()), 1024);
+		assertEquals("foo", readLine(in));
+		assertEquals(longLine.toString(), readLine(in));
+		assertEquals("bar", readLine(in));
+		assertEquals("baz", readLine(in));
+		assertEquals("", readLine(in));
+		assertEquals('r', in.read());
+	}
+
+	@Test(expected = LineTooLongException.class)
+	public void testReadLineTooLong() throws Exception {
+		byte[] line = new byte[10000];
+		Arrays.fill(line, (byte) 'a');
+		readLine(new BufferedInputStream(new ByteArrayInputStream(line)));
+	}
+
+	@Test
+	public void testReadLineEOF() throws Exception {
+		try {
+			readLine(new BufferedInputStream(new ByteArrayInputStream("foo".getBytes())));
+			fail();
+		} catch (EOFWhileReadingLineException e) {
+			assertEquals("foo", e.getLineSoFar());
+		}
+	}
+
 	@Test
 	public void testReadChunkSize() throws Exception {
 		String s = "3d2F" + Constants.CRLF;
@@ -0,0 +1,127 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.http.Header;
+import com.predic8.membrane.core.http.HeaderField;
+import com.predic8.membrane.core.util.HttpUtil;
+
+/**
+ * Compares the byte-level header parser of {@link Header#Header(InputStream)} with the previous implementation, which
+ * read each line byte by byte into a {@link StringBuilder}.
+ *
+ * Prints the time and (on HotSpot) the number of bytes allocated per parsed header.
+ */
+public class HeaderParsingPerformance {
+
+	private static final int WARMUP = 100000;
+	private static final int ITERATIONS = 300000;
+
+	private byte[] request;
+
+	@Before
+	public void setUp() throws Exception {
+		InputStream in = getClass().getClassLoader().getResourceAsStream("request.txt");
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			baos.write(buffer, 0, read);
+		request = baos.toByteArray();
+	}
+
+	@Test
+	public void compare() throws Exception {
+		for (int round = 0; round < 3; round++) {
+			measure("old", false);
+			measure("new", true);
+		}
+	}
+
+	private void measure(String name, boolean byteLevel) throws Exception {
+		for (int i = 0; i < WARMUP; i++)
+			parse(byteLevel);
+		long allocatedBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		int fields = 0;
+		for (int i = 0; i < ITERATIONS; i++)
+			fields += parse(byteLevel);
+		long time = System.nanoTime() - start;
+		long allocated = getAllocatedBytes() - allocatedBefore;
+		System.out.println(name + ": " + time / ITERATIONS + " ns/header, "
+				+ (allocatedBefore < 0 ? "?" : String.valueOf(allocated / ITERATIONS)) + " bytes/header"
+				+ " (" + fields / ITERATIONS + " fields)");
+	}
+
+	private int parse(boolean byteLevel) throws Exception {
+		InputStream in = new BufferedInputStream(new ByteArrayInputStream(request));
+		HttpUtil.readLine(in); // start line
+		if (byteLevel)
+			return new Header(in).getAllHeaderFields().length;
+		return parseOld(in).getAllHeaderFields().length;
+	}
+
+	/**
+	 * The previous implementation of {@link Header#Header(InputStream)}.
+	 */
+	private static Header parseOld(InputStream in) throws IOException {
+		Header header = new Header();
+		String line;
+		while ((line = readLineOld(in)).length() > 0)
+			header.add(new HeaderField(line));
+		return header;
+	}
+
+	/**
+	 * The previous implementation of {@link HttpUtil#readLine(InputStream)}.
+	 */
+	private static String readLineOld(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder(128);
+		int b;
+		while ((b = in.read()) != -1) {
+			if (b == 13) {
+				in.read();
+				return line.toString();
+			}
+			if (b == 10) {
+				in.mark(2);
+				if (in.read() != 13)
+					in.reset();
+				return line.toString();
+			}
+			line.append((char) b);
+		}
+		throw new IOException("EOF");
+	}
+
+	private static long getAllocatedBytes() {
+		try {
+			return (Long) Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class)
+					.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import static com.predic8.membrane.core.interceptor.Outcome.RETURN;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.Router;
+import com.predic8.membrane.core.RuleManager;
+import com.predic8.membrane.core.config.security.KeyStore;
+import com.predic8.membrane.core.config.security.SSLParser;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Response;
+import com.predic8.membrane.core.interceptor.AbstractInterceptor;
+import com.predic8.membrane.core.interceptor.Outcome;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+import com.predic8.membrane.core.transport.http2.Settings;
+import com.predic8.membrane.core.transport.http2.frame.Frame;
+import com.predic8.membrane.core.transport.http2.frame.HeadersFrame;
+import com.predic8.membrane.core.transport.http2.frame.SettingsFrame;
+import com.twitter.hpack.Encoder;
+
+/**
+ * Measures the time to first byte of responses sent over an HTTP/2 connection, which is idle between the requests.
+ *
+ * Uses a minimal HTTP/2 client built from Membrane's frame classes, as there is no HTTP/2 client on the classpath.
+ */
+public class Http2TimeToFirstBytePerformance {
+
+	private static final int REQUESTS = 200;
+
+	private Router router;
+	private int port;
+
+	@Before
+	public void setUp() throws Exception {
+		try (ServerSocket ss = new ServerSocket(0)) {
+			port = ss.getLocalPort();
+		}
+		router = new HttpRouter();
+		router.setHotDeploy(false);
+		ServiceProxy rule = new ServiceProxy(new ServiceProxyKey(port), null, 0);
+		SSLParser sslParser = new SSLParser();
+		KeyStore keyStore = new KeyStore();
+		keyStore.setLocation("classpath:/ssl-rsa.keystore");
+		keyStore.setKeyPassword("secret");
+		sslParser.setKeyStore(keyStore);
+		sslParser.setUseExperimentalHttp2(true);
+		rule.setSslInboundParser(sslParser);
+		rule.getInterceptors().add(new AbstractInterceptor() {
+			@Override
+			public Outcome handleRequest(Exchange exc) throws Exception {
+				exc.setResponse(Response.ok("Hello").build());
+				return RETURN;
+			}
+		});
+		router.getRuleManager().addProxy(rule, RuleManager.RuleDefinitionSource.MANUAL);
+		router.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		router.shutdown();
+	}
+
+	@Test
+	public void measure() throws Exception {
+		SSLSocket socket = (SSLSocket) createTrustAllContext().getSocketFactory().createSocket("localhost", port);
+		try {
+			SSLParameters parameters = socket.getSSLParameters();
+			SSLParameters.class.getMethod("setApplicationProtocols", String[].class)
+					.invoke(parameters, new Object[] { new String[] { "h2" } });
+			socket.setSSLParameters(parameters);
+			socket.setTcpNoDelay(true);
+
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+			SettingsFrame.empty().write(out);
+			out.flush();
+
+			Encoder encoder = new Encoder(4096);
+			Settings settings = new Settings();
+			long[] ttfb = new long[REQUESTS];
+			for (int i = 0; i < REQUESTS; i++) {
+				int streamId = 2 * i + 1;
+				Thread.sleep(5); // let the connection become idle
+
+				ByteArrayOutputStream headers = new ByteArrayOutputStream();
+				encode(encoder, headers, ":method", "GET");
+				encode(encoder, headers, ":scheme", "https");
+				encode(encoder, headers, ":path", "/");
+				encode(encoder, headers, ":authority", "localhost:" + port);
+				Frame request = new Frame();
+				request.fill(Frame.TYPE_HEADERS, HeadersFrame.FLAG_END_HEADERS | HeadersFrame.FLAG_END_STREAM, streamId,
+						headers.toByteArray(), 0, headers.size());
+
+				long start = System.nanoTime();
+				request.write(out);
+				out.flush();
+
+				boolean firstByte = false;
+				while (true) {
+					Frame frame = new Frame(settings);
+					frame.read(in);
+					if (frame.getType() == Frame.TYPE_SETTINGS && (frame.getFlags() & SettingsFrame.FLAG_ACK) == 0) {
+						SettingsFrame.ack().write(out);
+						out.flush();
+					}
+					if (frame.getStreamId() != streamId)
+						continue;
+					if (!firstByte) {
+						ttfb[i] = System.nanoTime() - start;
+						firstByte = true;
+					}
+					if ((frame.getFlags() & HeadersFrame.FLAG_END_STREAM) != 0)
+						break;
+				}
+			}
+
+			Arrays.sort(ttfb);
+			System.out.println("HTTP/2 time to first byte: median " + ttfb[REQUESTS / 2] / 1000 + "us, 90th percentile "
+					+ ttfb[REQUESTS * 9 / 10] / 1000 + "us, max " + ttfb[REQUESTS - 1] / 1000 + "us");
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static void encode(Encoder encoder, OutputStream out, String name, String value) throws Exception {
+		encoder.encodeHeader(out, name.getBytes(StandardCharsets.US_ASCII), value.getBytes(StandardCharsets.US_ASCII), false);
+	}
+
+	private static SSLContext createTrustAllContext() throws Exception {
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, new TrustManager[] { new X509TrustManager() {
+			@Override
+			public void checkClientTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			@Override
+			public void checkServerTrusted(X509Certificate[] chain, String authType) {
+			}
+
+			@Override
+			public X509Certificate[] getAcceptedIssuers() {
+				return new X509Certificate[0];
+			}
+		} }, null);
+		return context;
+	}
+}
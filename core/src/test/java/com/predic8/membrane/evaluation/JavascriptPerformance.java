@@ -0,0 +1,127 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.google.common.base.Function;
+import com.predic8.membrane.core.MockRouter;
+import com.predic8.membrane.core.exchange.Exchange;
+import com.predic8.membrane.core.http.Request;
+import com.predic8.membrane.core.interceptor.flow.ConditionalInterceptor;
+import com.predic8.membrane.core.interceptor.javascript.JavascriptInterceptor;
+import com.predic8.membrane.core.lang.javascript.JavascriptLanguageSupport;
+
+/**
+ * Measures the throughput of <code>&lt;javascript&gt;</code> and <code>&lt;if language="javascript"&gt;</code> and
+ * compares the compiled scripts of {@link JavascriptLanguageSupport} with the previous implementation, which
+ * evaluated the source on every call.
+ */
+public class JavascriptPerformance {
+
+	private static final int ITERATIONS = 100000;
+
+	private static final String SCRIPT = "exc.getRequest().getHeader().add('X-Seen', 'true'); CONTINUE";
+	private static final String EXPRESSION = "exc.getRequest().getUri().startsWith('/api')";
+
+	@Test
+	public void compare() throws Exception {
+		MockRouter router = new MockRouter();
+		// JavascriptInterceptor looks up the classes of the http package using the application's class loader
+		ApplicationContext applicationContext = mock(ApplicationContext.class);
+		when(applicationContext.getClassLoader()).thenReturn(getClass().getClassLoader());
+		router.setApplicationContext(applicationContext);
+		Exchange exc = new Request.Builder().get("/api/foo").buildExchange();
+
+		for (int round = 0; round < 2; round++) {
+			measureSource(exc);
+			measureCompiled(router, exc);
+			measureInterceptors(router, exc);
+		}
+	}
+
+	private void measureSource(Exchange exc) throws Exception {
+		ScriptEngine engine = new ScriptEngineManager().getEngineByName("nashorn");
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			engine.put("exc", exc);
+			engine.put("CONTINUE", "CONTINUE");
+			engine.eval(SCRIPT);
+			exc.getRequest().getHeader().removeFields("X-Seen");
+		}
+		print("script, evaluated from source", System.nanoTime() - start);
+	}
+
+	private void measureCompiled(MockRouter router, Exchange exc) {
+		Function<Map<String, Object>, Object> script = new JavascriptLanguageSupport().compileScript(router, SCRIPT);
+		Function<Map<String, Object>, Boolean> expression = new JavascriptLanguageSupport().compileExpression(router, EXPRESSION);
+
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put("exc", exc);
+		parameters.put("CONTINUE", "CONTINUE");
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			script.apply(parameters);
+			exc.getRequest().getHeader().removeFields("X-Seen");
+		}
+		print("script, compiled", System.nanoTime() - start);
+
+		start = System.nanoTime();
+		int matched = 0;
+		for (int i = 0; i < ITERATIONS; i++)
+			if (expression.apply(parameters))
+				matched++;
+		print("expression, compiled (" + matched + " matched)", System.nanoTime() - start);
+	}
+
+	private void measureInterceptors(MockRouter router, Exchange exc) throws Exception {
+		JavascriptInterceptor javascript = new JavascriptInterceptor();
+		javascript.setSrc(SCRIPT);
+		javascript.init(router);
+
+		ConditionalInterceptor condition = new ConditionalInterceptor();
+		condition.setLanguage(ConditionalInterceptor.LanguageType.JAVASCRIPT);
+		condition.setTest(EXPRESSION);
+		condition.init(router);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			javascript.handleRequest(exc);
+			exc.getRequest().getHeader().removeFields("X-Seen");
+		}
+		print("<javascript>", System.nanoTime() - start);
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+			condition.handleRequest(exc);
+		print("<if language=\"javascript\">", System.nanoTime() - start);
+	}
+
+	private static void print(String what, long time) {
+		System.out.println(what + ": " + time / ITERATIONS + " ns/call, "
+				+ ITERATIONS * 1000000000L / Math.max(time, 1) + " calls/s");
+	}
+}
@@ -0,0 +1,79 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.joda.time.Duration;
+import org.junit.Test;
+
+import com.predic8.membrane.core.interceptor.ratelimit.LazyRateLimit;
+import com.predic8.membrane.core.interceptor.ratelimit.RateLimitStrategy;
+import com.predic8.membrane.core.interceptor.ratelimit.SlidingWindowRateLimit;
+import com.predic8.membrane.core.interceptor.ratelimit.TokenBucketRateLimit;
+
+/**
+ * Compares the throughput of the {@link RateLimitStrategy} implementations, called by 64 threads for 1000 keys.
+ */
+public class RateLimitPerformance {
+
+	private static final int THREADS = 64;
+	private static final int KEYS = 1000;
+	private static final int CALLS_PER_THREAD = 500000;
+
+	private final String[] keys = new String[KEYS];
+
+	{
+		for (int i = 0; i < KEYS; i++)
+			keys[i] = "10.0." + i / 256 + "." + i % 256;
+	}
+
+	@Test
+	public void compare() throws Exception {
+		for (int round = 0; round < 3; round++) {
+			measure(new LazyRateLimit(Duration.standardSeconds(1), 1000));
+			measure(new TokenBucketRateLimit(Duration.standardSeconds(1), 1000));
+			measure(new SlidingWindowRateLimit(Duration.standardSeconds(1), 1000));
+		}
+	}
+
+	private void measure(final RateLimitStrategy strategy) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			final int offset = i * 7;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < CALLS_PER_THREAD; j++)
+						strategy.isRequestLimitReached(keys[(offset + j) % KEYS]);
+				}
+			});
+			threads[i].start();
+		}
+		long time = System.nanoTime();
+		start.countDown();
+		for (Thread t : threads)
+			t.join();
+		time = System.nanoTime() - time;
+		System.out.println(strategy.getClass().getSimpleName() + ": "
+				+ (long) THREADS * CALLS_PER_THREAD * 1000 / (time / 1000000) + " calls/s");
+	}
+}
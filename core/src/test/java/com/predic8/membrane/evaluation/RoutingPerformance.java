@@ -0,0 +1,106 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.predic8.membrane.core.MockRouter;
+import com.predic8.membrane.core.RuleManager;
+import com.predic8.membrane.core.rules.Rule;
+import com.predic8.membrane.core.rules.RuleKey;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+
+/**
+ * Compares the cost of {@link RuleManager#getMatchingRule(String, String, String, String, int, String)} with the
+ * previous implementation, which checked every rule, for a growing number of serviceProxies.
+ */
+public class RoutingPerformance {
+
+	private static final int ITERATIONS = 200000;
+
+	@Test
+	public void compare() throws Exception {
+		for (int round = 0; round < 2; round++)
+			for (int rules : new int[] { 10, 100, 1000 })
+				measure(rules);
+	}
+
+	private void measure(int count) throws Exception {
+		MockRouter router = new MockRouter();
+		RuleManager manager = router.getRuleManager();
+		for (int i = 0; i < count; i++) {
+			ServiceProxyKey key = new ServiceProxyKey(i % 2 == 0 ? "*" : "host" + i + ".example.com",
+					i % 3 == 0 ? "*" : "GET", "/service" + i + "/.*", 3000);
+			key.setUsePathPattern(true);
+			ServiceProxy rule = new ServiceProxy(key, "localhost", 8080);
+			rule.init(router);
+			manager.addProxy(rule, RuleManager.RuleDefinitionSource.MANUAL);
+		}
+
+		String[] hosts = new String[count];
+		String[] uris = new String[count];
+		for (int i = 0; i < count; i++) {
+			hosts[i] = "host" + i + ".example.com:3000";
+			uris[i] = "/service" + i + "/operation";
+		}
+
+		for (boolean indexed : new boolean[] { false, true }) {
+			long start = System.nanoTime();
+			int found = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				int r = i * 7 % count;
+				Rule rule = indexed
+						? manager.getMatchingRule(hosts[r], "GET", uris[r], "1.1", 3000, null)
+						: getMatchingRuleLinear(manager.getRules(), hosts[r], "GET", uris[r], "1.1", 3000, null);
+				if (rule != null)
+					found++;
+			}
+			long time = System.nanoTime() - start;
+			System.out.println(count + " rules, " + (indexed ? "indexed" : "linear") + ": " + time / ITERATIONS
+					+ " ns/lookup (" + found + " found)");
+		}
+	}
+
+	/**
+	 * The previous implementation of {@link RuleManager#getMatchingRule(String, String, String, String, int, String)}.
+	 */
+	private static Rule getMatchingRuleLinear(List<Rule> rules, String hostHeader, String method, String uri,
+			String version, int port, String localIP) {
+		for (Rule rule : rules) {
+			RuleKey key = rule.getKey();
+			if (!rule.isActive())
+				continue;
+			if (!key.matchesVersion(version))
+				continue;
+			if (key.getIp() != null && !key.getIp().equals(localIP))
+				continue;
+			if (!key.matchesHostHeader(hostHeader))
+				continue;
+			if (key.getPort() != -1 && port != -1 && key.getPort() != port)
+				continue;
+			if (!key.getMethod().equals(method) && !key.isMethodWildcard())
+				continue;
+			if (key.isUsePathPattern() && !key.matchesPath(uri))
+				continue;
+			if (!key.complexMatch(hostHeader, method, uri, version, port, localIP))
+				continue;
+			return rule;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,246 @@
+/* Copyright 2021 predic8 GmbH, www.predic8.com
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+   http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License. */
+
+package com.predic8.membrane.evaluation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.predic8.membrane.core.HttpRouter;
+import com.predic8.membrane.core.rules.ServiceProxy;
+import com.predic8.membrane.core.rules.ServiceProxyKey;
+import com.predic8.membrane.core.transport.http.HttpTransport;
+
+/**
+ * Compares the thread footprint and the latency of the proxy for the executor types of {@link HttpTransport}, using
+ * many concurrent client connections and a slow backend.
+ *
+ * The backend and the clients are implemented using a single NIO thread each, so that the measured number of threads
+ * is the proxy's. Run with "-Dconnections=10000" (and a sufficient "ulimit -n").
+ */
+public class TransportExecutorLoadTest {
+
+	private static final int CONNECTIONS = Integer.getInteger("connections", 10000);
+	private static final int BACKEND_DELAY_MS = 200;
+	private static final byte[] REQUEST = "GET /test HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes();
+	private static final byte[] RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes();
+
+	@Test
+	public void pool() throws Exception {
+		run(HttpTransport.ExecutorType.POOL);
+	}
+
+	@Test
+	public void virtual() throws Exception {
+		run(HttpTransport.ExecutorType.VIRTUAL);
+	}
+
+	private void run(HttpTransport.ExecutorType executorType) throws Exception {
+		SlowBackend backend = new SlowBackend(3062);
+		HttpRouter router = new HttpRouter();
+		router.getTransport().setExecutor(executorType);
+		router.getTransport().setConcurrentConnectionLimitPerIp(Integer.MAX_VALUE);
+		router.getRuleManager().addProxyAndOpenPortIfNew(new ServiceProxy(new ServiceProxyKey("*", "*", ".*", 3063), "localhost", 3062));
+		router.init();
+		try {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			int threadsBefore = threads.getThreadCount();
+			threads.resetPeakThreadCount();
+
+			long[] latencies = new Clients(3063, CONNECTIONS).run();
+
+			Arrays.sort(latencies);
+			System.out.println("executor=" + router.getTransport().getExecutor() + " (requested " + executorType + ")"
+					+ " connections=" + CONNECTIONS
+					+ " additionalPeakThreads=" + (threads.getPeakThreadCount() - threadsBefore)
+					+ " p50=" + latencies[latencies.length / 2] + "ms"
+					+ " p99=" + latencies[(int) (latencies.length * 0.99)] + "ms"
+					+ " max=" + latencies[latencies.length - 1] + "ms");
+		} finally {
+			router.shutdown();
+			backend.close();
+		}
+	}
+
+	/**
+	 * Opens all connections, sends one request on each at once and measures the time until the response is complete.
+	 */
+	private static class Clients {
+		private final int port;
+		private final int count;
+
+		public Clients(int port, int count) {
+			this.port = port;
+			this.count = count;
+		}
+
+		public long[] run() throws IOException {
+			Selector selector = Selector.open();
+			long[] latencies = new long[count];
+			List<SocketChannel> channels = new ArrayList<>();
+			try {
+				for (int i = 0; i < count; i++) {
+					SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port));
+					channels.add(channel);
+				}
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < count; i++) {
+					SocketChannel channel = channels.get(i);
+					channel.write(ByteBuffer.wrap(REQUEST));
+					channel.configureBlocking(false);
+					channel.register(selector, SelectionKey.OP_READ, i);
+				}
+				int done = 0;
+				ByteBuffer buffer = ByteBuffer.allocate(4096);
+				while (done < count) {
+					selector.select(60000);
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						buffer.clear();
+						int read = ((SocketChannel) key.channel()).read(buffer);
+						if (read == -1 || endsWithBody(buffer)) {
+							latencies[(Integer) key.attachment()] = System.currentTimeMillis() - start;
+							key.cancel();
+							done++;
+						}
+					}
+				}
+			} finally {
+				for (SocketChannel channel : channels)
+					channel.close();
+				selector.close();
+			}
+			return latencies;
+		}
+
+		private boolean endsWithBody(ByteBuffer buffer) {
+			int p = buffer.position();
+			return p >= 2 && buffer.get(p - 2) == 'O' && buffer.get(p - 1) == 'K';
+		}
+	}
+
+	/**
+	 * Answers each request after {@link #BACKEND_DELAY_MS}, using a single thread.
+	 */
+	private static class SlowBackend implements Runnable {
+		private final ServerSocketChannel server;
+		private final Selector selector;
+		private final DelayQueue<DelayedResponse> responses = new DelayQueue<>();
+		private final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		private final Thread thread;
+		private volatile boolean closed;
+
+		public SlowBackend(int port) throws IOException {
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.socket().bind(new InetSocketAddress(port), 1000);
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			thread = new Thread(this, "Slow Backend");
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			ByteBuffer buffer = ByteBuffer.allocate(4096);
+			try {
+				while (!closed) {
+					selector.select(10);
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						if (key.isAcceptable()) {
+							SocketChannel channel;
+							while ((channel = server.accept()) != null) {
+								channel.configureBlocking(false);
+								channel.register(selector, SelectionKey.OP_READ);
+							}
+						} else if (key.isReadable()) {
+							buffer.clear();
+							SocketChannel channel = (SocketChannel) key.channel();
+							int read = channel.read(buffer);
+							if (read == -1) {
+								key.cancel();
+								channel.close();
+							} else if (containsEmptyLine(buffer)) {
+								responses.add(new DelayedResponse(channel));
+							}
+						}
+					}
+					DelayedResponse r;
+					while ((r = responses.poll()) != null)
+						r.channel.write(ByteBuffer.wrap(RESPONSE));
+				}
+			} catch (Throwable t) {
+				errors.add(t);
+			}
+		}
+
+		private boolean containsEmptyLine(ByteBuffer buffer) {
+			for (int i = 3; i < buffer.position(); i++)
+				if (buffer.get(i - 3) == '\r' && buffer.get(i - 2) == '\n' && buffer.get(i - 1) == '\r' && buffer.get(i) == '\n')
+					return true;
+			return false;
+		}
+
+		public void close() throws Exception {
+			closed = true;
+			thread.join();
+			for (SelectionKey key : selector.keys())
+				key.channel().close();
+			selector.close();
+			if (!errors.isEmpty())
+				throw new RuntimeException(errors.peek());
+		}
+	}
+
+	private static class DelayedResponse implements Delayed {
+		private final SocketChannel channel;
+		private final long due = System.currentTimeMillis() + BACKEND_DELAY_MS;
+
+		public DelayedResponse(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return Long.compare(due, ((DelayedResponse) o).due);
+		}
+	}
+}